@@ -5,17 +5,22 @@ import org.springframework.context.annotation.Bean;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.scheduling.annotation.EnableScheduling;
 
 import com.angus.spring.aspect.LoggingAspect;
+import com.example.foodhistory.config.StartupTimingReporter;
 
 @SpringBootApplication
 @EnableScheduling
 @ComponentScan(basePackageClasses = {LoggingAspect.class, FoodHistoryApplication.class})
 public class FoodHistoryApplication {
     public static void main(String[] args) {
-        SpringApplication.run(FoodHistoryApplication.class, args);
+        SpringApplication application = new SpringApplication(FoodHistoryApplication.class);
+        // 記錄各啟動步驟耗時，啟動完成後由 StartupTimingReporter 整理
+        application.setApplicationStartup(new BufferingApplicationStartup(StartupTimingReporter.CAPACITY));
+        application.run(args);
     }
 
     @Bean
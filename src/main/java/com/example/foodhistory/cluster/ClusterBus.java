@@ -0,0 +1,49 @@
+package com.example.foodhistory.cluster;
+
+import java.io.Closeable;
+import java.util.Map;
+
+/**
+ * 叢集訊息匯流排
+ * 在 nginx backend_app 後方執行多個節點時，把只存在單一 JVM 的廣播（SSE / WebSocket 推送）轉送到所有節點。
+ * 訊息依序號遞增傳遞給每個節點（包含發送的節點本身），同一則訊息在同一節點只傳遞一次；
+ * 序號在整個叢集內一致，可以直接作為客戶端比對的資料版本。
+ */
+public interface ClusterBus extends Closeable {
+
+    /**
+     * 本節點的識別碼
+     */
+    String getNodeId();
+
+    /**
+     * 送出訊息給所有節點（非同步，實作可能合併成批次再送出）
+     */
+    void publish(String topic, String payload);
+
+    /**
+     * 訂閱主題；listener 在匯流排的傳遞執行緒上呼叫，不應阻塞
+     */
+    void subscribe(String topic, Listener listener);
+
+    /**
+     * 本節點已傳遞的最新序號；啟動時為叢集中既有的最新序號
+     */
+    long lastSequence();
+
+    /**
+     * 統計資訊（送出、傳遞筆數等）
+     */
+    Map<String, Object> getStats();
+
+    @Override
+    default void close() {
+    }
+
+    /**
+     * 訊息接收者
+     */
+    interface Listener {
+        void onMessage(ClusterMessage message);
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.foodhistory.cluster;
+
+/**
+ * 叢集訊息
+ * sequence 由匯流排指派，整個叢集內遞增；messageId 為送出時產生的唯一識別碼（去除重複用）；origin 為送出訊息的節點。
+ */
+public class ClusterMessage {
+
+    private final long sequence;
+    private final String messageId;
+    private final String origin;
+    private final String topic;
+    private final String payload;
+
+    public ClusterMessage(long sequence, String messageId, String origin, String topic, String payload) {
+        this.sequence = sequence;
+        this.messageId = messageId;
+        this.origin = origin;
+        this.topic = topic;
+        this.payload = payload;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public String getMessageId() {
+        return messageId;
+    }
+
+    public String getOrigin() {
+        return origin;
+    }
+
+    public String getTopic() {
+        return topic;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+}
@@ -0,0 +1,258 @@
+package com.example.foodhistory.cluster;
+
+import com.example.foodhistory.concurrent.VirtualThreads;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 以共用資料庫表 cluster_message 轉送訊息的匯流排
+ * 各節點先把 publish 的訊息放進待送佇列，每 publish-interval-ms 以一次 batch insert 寫入；
+ * 再每 poll-interval-ms 依自動遞增的 id 讀取新訊息（包含自己送出的），依序傳遞給本機訂閱者，id 即訊息序號。
+ * 不同節點同時寫入時較小的 id 可能較晚提交，因此每次往回多讀 gap-lookback 個 id，並以 message_id 去除已傳遞的訊息。
+ * 超過保留時間的訊息定期刪除。
+ */
+public class JdbcClusterBus implements ClusterBus {
+
+    private static final Logger logger = LoggerFactory.getLogger(JdbcClusterBus.class);
+
+    // 與 cluster_message.payload 欄位長度（遷移 V2）一致
+    static final int MAX_PAYLOAD_LENGTH = 4000;
+
+    private static final int MAX_OUTBOX = 10000;
+
+    private static final int SEEN_CAPACITY = 10000;
+
+    private static final long CLEANUP_INTERVAL_MS = 60000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String nodeId;
+    private final long publishIntervalMs;
+    private final long pollIntervalMs;
+    private final int batchSize;
+    private final long gapLookback;
+    private final long retentionMs;
+
+    private final Map<String, List<Listener>> listeners = new ConcurrentHashMap<>();
+
+    // 待送訊息：{message_id, topic, payload}
+    private final LinkedBlockingDeque<String[]> outbox = new LinkedBlockingDeque<>(MAX_OUTBOX);
+
+    // 最近傳遞過的 message_id，只在匯流排執行緒存取
+    private final Map<String, Boolean> seen = new LinkedHashMap<String, Boolean>(256, 0.75f, false) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > SEEN_CAPACITY;
+        }
+    };
+
+    private volatile long lastSequence;
+
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong insertBatches = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong lateDeliveries = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    private ScheduledExecutorService scheduler;
+
+    public JdbcClusterBus(DataSource dataSource, String nodeId, long publishIntervalMs, long pollIntervalMs,
+                          int batchSize, long gapLookback, long retentionMs) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.nodeId = nodeId;
+        this.publishIntervalMs = publishIntervalMs;
+        this.pollIntervalMs = pollIntervalMs;
+        this.batchSize = Math.max(1, batchSize);
+        this.gapLookback = Math.max(0, gapLookback);
+        this.retentionMs = retentionMs;
+    }
+
+    /**
+     * 讀取目前最新序號並開始定期寫入與讀取（cluster_message 表由 Flyway 遷移 V2 建立）
+     * 啟動前已存在的訊息不會再傳遞
+     */
+    public void start() {
+        Long max = jdbcTemplate.queryForObject("SELECT MAX(id) FROM cluster_message", Long.class);
+        lastSequence = max == null ? 0 : max;
+        // 往回讀取範圍內的既有訊息視為已傳遞，避免第一次讀取時重送
+        for (String messageId : jdbcTemplate.queryForList(
+                "SELECT message_id FROM cluster_message WHERE id > ?", String.class, lastSequence - gapLookback)) {
+            seen.put(messageId, Boolean.TRUE);
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(VirtualThreads.newFactory("cluster-bus-", false));
+        scheduler.scheduleWithFixedDelay(this::flushOutbox, publishIntervalMs, publishIntervalMs, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::poll, pollIntervalMs, pollIntervalMs, TimeUnit.MILLISECONDS);
+        if (retentionMs > 0) {
+            scheduler.scheduleWithFixedDelay(this::cleanup, CLEANUP_INTERVAL_MS, CLEANUP_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
+        logger.info("叢集訊息匯流排（資料庫）已啟動: node={}, 最新序號={}", nodeId, lastSequence);
+    }
+
+    @Override
+    public void close() {
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // 關閉前送出尚未寫入的訊息，讓其他節點仍能收到
+        flushOutbox();
+    }
+
+    @Override
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public void publish(String topic, String payload) {
+        if (payload.length() > MAX_PAYLOAD_LENGTH) {
+            throw new IllegalArgumentException("叢集訊息超過 " + MAX_PAYLOAD_LENGTH + " 字元: topic=" + topic);
+        }
+        if (outbox.offerLast(new String[]{UUID.randomUUID().toString(), topic, payload})) {
+            published.incrementAndGet();
+        } else {
+            dropped.incrementAndGet();
+            logger.warn("叢集訊息待送佇列已滿，丟棄訊息: topic={}", topic);
+        }
+    }
+
+    @Override
+    public void subscribe(String topic, Listener listener) {
+        listeners.computeIfAbsent(topic, key -> new CopyOnWriteArrayList<>()).add(listener);
+    }
+
+    @Override
+    public long lastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * 把待送訊息以 batch insert 寫入，每批最多 batch-size 筆；寫入失敗時放回佇列前端，下次重試
+     */
+    void flushOutbox() {
+        while (!outbox.isEmpty()) {
+            List<String[]> batch = new ArrayList<>(Math.min(batchSize, outbox.size()));
+            outbox.drainTo(batch, batchSize);
+            long now = System.currentTimeMillis();
+            List<Object[]> args = new ArrayList<>(batch.size());
+            for (String[] message : batch) {
+                args.add(new Object[]{message[0], nodeId, message[1], message[2], now});
+            }
+            try {
+                jdbcTemplate.batchUpdate(
+                        "INSERT INTO cluster_message (message_id, origin, topic, payload, created_at) VALUES (?, ?, ?, ?, ?)",
+                        args);
+                insertBatches.incrementAndGet();
+            } catch (Exception e) {
+                errors.incrementAndGet();
+                logger.warn("叢集訊息寫入失敗，{} 筆稍後重試", batch.size(), e);
+                for (int i = batch.size() - 1; i >= 0; i--) {
+                    if (!outbox.offerFirst(batch.get(i))) {
+                        dropped.incrementAndGet();
+                    }
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * 讀取新訊息並依 id 順序傳遞，每次查詢最多 batch-size 筆，讀滿時繼續讀下一批
+     */
+    void poll() {
+        try {
+            long after = Math.max(0, lastSequence - gapLookback);
+            while (true) {
+                List<ClusterMessage> rows = jdbcTemplate.query(
+                        "SELECT id, message_id, origin, topic, payload FROM cluster_message WHERE id > ? ORDER BY id LIMIT ?",
+                        (rs, rowNum) -> new ClusterMessage(rs.getLong("id"), rs.getString("message_id"),
+                                rs.getString("origin"), rs.getString("topic"), rs.getString("payload")),
+                        after, batchSize);
+                for (ClusterMessage message : rows) {
+                    after = message.getSequence();
+                    if (seen.put(message.getMessageId(), Boolean.TRUE) != null) {
+                        continue; // 往回讀取時再次讀到已傳遞的訊息
+                    }
+                    if (message.getSequence() <= lastSequence) {
+                        lateDeliveries.incrementAndGet();
+                    } else {
+                        lastSequence = message.getSequence();
+                    }
+                    deliver(message);
+                }
+                if (rows.size() < batchSize) {
+                    return;
+                }
+            }
+        } catch (Exception e) {
+            errors.incrementAndGet();
+            logger.warn("叢集訊息讀取失敗", e);
+        }
+    }
+
+    private void deliver(ClusterMessage message) {
+        delivered.incrementAndGet();
+        List<Listener> subscribers = listeners.get(message.getTopic());
+        if (subscribers == null) {
+            return;
+        }
+        for (Listener listener : subscribers) {
+            try {
+                listener.onMessage(message);
+            } catch (Exception e) {
+                logger.warn("叢集訊息處理失敗: topic={}", message.getTopic(), e);
+            }
+        }
+    }
+
+    void cleanup() {
+        try {
+            int deleted = jdbcTemplate.update("DELETE FROM cluster_message WHERE created_at < ?",
+                    System.currentTimeMillis() - retentionMs);
+            if (deleted > 0) {
+                logger.debug("已刪除 {} 筆過期叢集訊息", deleted);
+            }
+        } catch (Exception e) {
+            errors.incrementAndGet();
+            logger.warn("過期叢集訊息刪除失敗", e);
+        }
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("type", "jdbc");
+        stats.put("nodeId", nodeId);
+        stats.put("lastSequence", lastSequence);
+        stats.put("published", published.get());
+        stats.put("pending", outbox.size());
+        stats.put("dropped", dropped.get());
+        stats.put("insertBatches", insertBatches.get());
+        stats.put("delivered", delivered.get());
+        stats.put("lateDeliveries", lateDeliveries.get());
+        stats.put("errors", errors.get());
+        return stats;
+    }
+}
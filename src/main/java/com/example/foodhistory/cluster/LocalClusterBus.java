@@ -0,0 +1,81 @@
+package com.example.foodhistory.cluster;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 單一 JVM 的匯流排（預設）
+ * 只有一個節點時使用：publish 直接在呼叫端執行緒依序傳遞給本機訂閱者。
+ * 序號以啟動時間為起點遞增，重新啟動後仍大於先前發出的序號。
+ */
+public class LocalClusterBus implements ClusterBus {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocalClusterBus.class);
+
+    private final String nodeId;
+
+    private final Map<String, List<Listener>> listeners = new ConcurrentHashMap<>();
+
+    private long sequence = System.currentTimeMillis();
+
+    private long published;
+
+    public LocalClusterBus() {
+        this(UUID.randomUUID().toString());
+    }
+
+    public LocalClusterBus(String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    @Override
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public synchronized void publish(String topic, String payload) {
+        // 持有鎖傳遞，確保訂閱者收到的序號依序遞增
+        ClusterMessage message = new ClusterMessage(++sequence, UUID.randomUUID().toString(), nodeId, topic, payload);
+        published++;
+        List<Listener> subscribers = listeners.get(topic);
+        if (subscribers == null) {
+            return;
+        }
+        for (Listener listener : subscribers) {
+            try {
+                listener.onMessage(message);
+            } catch (Exception e) {
+                logger.warn("叢集訊息處理失敗: topic={}", topic, e);
+            }
+        }
+    }
+
+    @Override
+    public void subscribe(String topic, Listener listener) {
+        listeners.computeIfAbsent(topic, key -> new CopyOnWriteArrayList<>()).add(listener);
+    }
+
+    @Override
+    public synchronized long lastSequence() {
+        return sequence;
+    }
+
+    @Override
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("type", "local");
+        stats.put("nodeId", nodeId);
+        stats.put("lastSequence", sequence);
+        stats.put("published", published);
+        stats.put("delivered", published);
+        return stats;
+    }
+}
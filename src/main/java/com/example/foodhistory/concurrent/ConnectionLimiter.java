@@ -0,0 +1,237 @@
+package com.example.foodhistory.concurrent;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 長連線（SSE / WebSocket）的連線許可
+ * 總連線數超過 max-connections 時拒絕新連線；同一使用者（見 {@link #clientKey}）超過 max-connections-per-user 時
+ * 關閉該使用者最舊的連線，讓新開的分頁可以連上；被取代的連線不自動重連，避免分頁數超過上限時互相輪流踢掉。
+ * 每條連線最多維持 max-lifetime-ms（隨機提前最多 10%，避免同時重連），
+ * 到期時通知客戶端在 reconnect-delay-ms 後重新連線，讓長時間佔住的連線定期釋放並重新分散到各節點。
+ * 設定值為 0 表示不限制。
+ */
+@Component
+public class ConnectionLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConnectionLimiter.class);
+
+    public static final String SSE = "sse";
+    public static final String WEBSOCKET = "websocket";
+
+    /**
+     * 連線被伺服器關閉的原因
+     */
+    public enum CloseReason {
+        /** 超過最長連線時間 */
+        EXPIRED,
+        /** 同一使用者開啟了更多連線，最舊的連線被關閉；客戶端不應自動重連，等使用者回到該頁面時再連線 */
+        REPLACED
+    }
+
+    /**
+     * 由各端點實作：送出重連提示後關閉連線，不應阻塞呼叫端
+     */
+    public interface Closer {
+        void close(CloseReason reason, long retryMs);
+    }
+
+    /**
+     * 一條已許可的連線，連線結束時呼叫 {@link #release()}（可重複呼叫）
+     */
+    public final class Lease {
+        private final String kind;
+        private final String client;
+        private final Closer closer;
+        private ScheduledFuture<?> expiry;
+        private boolean released;
+
+        private Lease(String kind, String client, Closer closer) {
+            this.kind = kind;
+            this.client = client;
+            this.closer = closer;
+        }
+
+        public void release() {
+            ConnectionLimiter.this.release(this);
+        }
+    }
+
+    @Autowired
+    private StreamDispatcher streamDispatcher;
+
+    @Value("${app.stream.max-connections:2000}")
+    private int maxConnections = 2000;
+
+    @Value("${app.stream.max-connections-per-user:6}")
+    private int maxConnectionsPerUser = 6;
+
+    @Value("${app.stream.max-lifetime-ms:1800000}")
+    private long maxLifetimeMs = 1800000;
+
+    @Value("${app.stream.reconnect-delay-ms:3000}")
+    private long reconnectDelayMs = 3000;
+
+    @Value("${app.stream.busy-retry-ms:30000}")
+    private long busyRetryMs = 30000;
+
+    // 每個使用者的連線，依建立順序排列（最舊的在前）
+    private final Map<String, Deque<Lease>> clients = new HashMap<>();
+    private final Map<String, Integer> activeByKind = new HashMap<>();
+    private int active;
+    private int peak;
+    private long admitted;
+    private long rejected;
+    private long shed;
+    private long expired;
+
+    /**
+     * 識別使用者：登入使用者以名稱識別；未登入時以 HTTP session 識別（只記錄雜湊，不把 session id 寫進日誌），
+     * 沒有 session 時才使用來源位址（server.forward-headers-strategy=FRAMEWORK 時為 X-Forwarded-For 中的客戶端位址），
+     * 避免同一個 NAT 或反向代理後的所有訪客共用同一份上限
+     * @param principal 登入使用者，可為 null
+     * @param sessionId HTTP session id，可為 null
+     * @param remoteAddress 客戶端位址，可為 null
+     */
+    public static String clientKey(Principal principal, String sessionId, String remoteAddress) {
+        if (principal != null && principal.getName() != null) {
+            return "user:" + principal.getName();
+        }
+        if (sessionId != null) {
+            return "session:" + DigestUtils.md5DigestAsHex(sessionId.getBytes(StandardCharsets.UTF_8));
+        }
+        return "ip:" + (remoteAddress == null ? "unknown" : remoteAddress);
+    }
+
+    /**
+     * 申請一條連線；總連線數已滿時回傳 null，呼叫端應拒絕並提示客戶端 {@link #getBusyRetryMs()} 後再試
+     */
+    public Lease tryAcquire(String kind, String client, Closer closer) {
+        Lease lease = new Lease(kind, client, closer);
+        List<Lease> replaced = new ArrayList<>();
+        synchronized (this) {
+            Deque<Lease> leases = clients.get(client);
+            int sameClient = leases == null ? 0 : leases.size();
+            // 使用者自己的舊連線會被關閉，不佔用總數
+            int freed = maxConnectionsPerUser > 0 ? Math.max(0, sameClient + 1 - maxConnectionsPerUser) : 0;
+            if (maxConnections > 0 && active - freed >= maxConnections) {
+                rejected++;
+                return null;
+            }
+            for (int i = 0; i < freed; i++) {
+                Lease oldest = leases.peekFirst();
+                remove(oldest);
+                replaced.add(oldest);
+            }
+            clients.computeIfAbsent(client, key -> new ArrayDeque<>()).addLast(lease);
+            activeByKind.merge(kind, 1, Integer::sum);
+            active++;
+            peak = Math.max(peak, active);
+            admitted++;
+            shed += replaced.size();
+            if (maxLifetimeMs > 0) {
+                long lifetime = maxLifetimeMs - ThreadLocalRandom.current().nextLong(maxLifetimeMs / 10 + 1);
+                lease.expiry = streamDispatcher.schedule(() -> expire(lease), lifetime);
+            }
+        }
+        for (Lease oldest : replaced) {
+            logger.debug("使用者 {} 的長連線超過 {} 條，關閉最舊的 {} 連線", client, maxConnectionsPerUser, oldest.kind);
+            close(oldest, CloseReason.REPLACED, busyRetryMs);
+        }
+        return lease;
+    }
+
+    private void expire(Lease lease) {
+        synchronized (this) {
+            if (lease.released) {
+                return;
+            }
+            remove(lease);
+            expired++;
+        }
+        close(lease, CloseReason.EXPIRED, reconnectDelayMs);
+    }
+
+    private void release(Lease lease) {
+        synchronized (this) {
+            if (lease.released) {
+                return;
+            }
+            remove(lease);
+        }
+    }
+
+    // 需持有鎖
+    private void remove(Lease lease) {
+        lease.released = true;
+        if (lease.expiry != null) {
+            lease.expiry.cancel(false);
+        }
+        Deque<Lease> leases = clients.get(lease.client);
+        if (leases != null) {
+            leases.remove(lease);
+            if (leases.isEmpty()) {
+                clients.remove(lease.client);
+            }
+        }
+        activeByKind.merge(lease.kind, -1, Integer::sum);
+        active--;
+    }
+
+    private static void close(Lease lease, CloseReason reason, long retryMs) {
+        try {
+            lease.closer.close(reason, retryMs);
+        } catch (RuntimeException e) {
+            logger.debug("關閉長連線失敗: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 一般情況下客戶端的重連等待時間（SSE 的 retry:）
+     */
+    public long getReconnectDelayMs() {
+        return reconnectDelayMs;
+    }
+
+    /**
+     * 連線被拒絕或被取代時建議客戶端等待的時間
+     */
+    public long getBusyRetryMs() {
+        return busyRetryMs;
+    }
+
+    /**
+     * 統計資訊（目前連線數與各類型連線數、使用者數、上限、許可 / 拒絕 / 取代 / 到期次數）
+     */
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("active", active);
+        stats.put("peak", peak);
+        stats.put(SSE, activeByKind.getOrDefault(SSE, 0));
+        stats.put(WEBSOCKET, activeByKind.getOrDefault(WEBSOCKET, 0));
+        stats.put("clients", clients.size());
+        stats.put("maxConnections", maxConnections);
+        stats.put("maxConnectionsPerUser", maxConnectionsPerUser);
+        stats.put("maxLifetimeMs", maxLifetimeMs);
+        stats.put("admitted", admitted);
+        stats.put("rejected", rejected);
+        stats.put("shed", shed);
+        stats.put("expired", expired);
+        return stats;
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.foodhistory.concurrent;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 依序執行的執行器：同一個實例送出的工作一次只執行一個、依送出順序執行，實際在共用的工作執行緒上跑
+ * 每條 SSE / WebSocket 連線一個實例，連線的寫入不會交錯，慢的客戶端也只會佔住一條工作執行緒。
+ */
+public final class SerialExecutor implements Executor {
+
+    private static final Logger logger = LoggerFactory.getLogger(SerialExecutor.class);
+
+    private final Executor delegate;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public SerialExecutor(Executor delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        tasks.add(task);
+        schedule();
+    }
+
+    /**
+     * 沒有等待中或執行中的工作
+     */
+    public boolean isIdle() {
+        return !running.get() && tasks.isEmpty();
+    }
+
+    private void schedule() {
+        if (running.compareAndSet(false, true)) {
+            try {
+                delegate.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                // 工作執行緒已關閉（應用程式停止中），剩下的工作不再執行
+                tasks.clear();
+                running.set(false);
+                throw e;
+            }
+        }
+    }
+
+    private void drain() {
+        try {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    logger.warn("連線工作執行失敗", e);
+                }
+            }
+        } finally {
+            running.set(false);
+            // 清空佇列與重設旗標之間可能有新工作加入
+            if (!tasks.isEmpty()) {
+                schedule();
+            }
+        }
+    }
+}
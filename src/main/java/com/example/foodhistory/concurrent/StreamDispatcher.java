@@ -0,0 +1,83 @@
+package com.example.foodhistory.concurrent;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 長連線（SSE / WebSocket）共用的排程與寫入執行緒
+ * 心跳計時只用一條排程執行緒；實際寫入交給工作執行緒，每條連線以 {@link SerialExecutor} 保持寫入順序。
+ * app.threads.virtual=true 且執行於 Java 21 以上時，每次寫入使用一條虛擬執行緒，阻塞中的慢連線不佔用平台執行緒。
+ */
+@Component
+public class StreamDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(StreamDispatcher.class);
+
+    @Value("${app.threads.virtual:false}")
+    private boolean virtualThreads;
+
+    @Value("${app.stream.workers:4}")
+    private int workers = 4;
+
+    private ScheduledExecutorService ticker;
+
+    private ExecutorService writers;
+
+    private boolean virtual;
+
+    @PostConstruct
+    public void init() {
+        ticker = Executors.newSingleThreadScheduledExecutor(VirtualThreads.newFactory("stream-heartbeat-", false));
+        virtual = virtualThreads && VirtualThreads.isSupported();
+        if (virtual) {
+            writers = Executors.newCachedThreadPool(VirtualThreads.newFactory("stream-writer-", true));
+        } else {
+            writers = Executors.newFixedThreadPool(Math.max(1, workers), VirtualThreads.newFactory("stream-writer-", false));
+        }
+        logger.info("長連線寫入使用{}", virtual ? "虛擬執行緒" : workers + " 條平台執行緒");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ticker.shutdownNow();
+        writers.shutdownNow();
+    }
+
+    /**
+     * 為一條連線建立依序寫入的執行器
+     */
+    public SerialExecutor newConnectionExecutor() {
+        return new SerialExecutor(writers);
+    }
+
+    /**
+     * 定期執行（例如心跳）；task 應只把寫入送到連線的執行器，不要直接阻塞
+     */
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable task, long periodMs) {
+        return ticker.scheduleAtFixedRate(task, periodMs, periodMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 延遲執行一次（例如合併變更通知後再送出），task 同樣不應阻塞
+     */
+    public ScheduledFuture<?> schedule(Runnable task, long delayMs) {
+        return ticker.schedule(task, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 寫入是否使用虛擬執行緒
+     */
+    public boolean isVirtual() {
+        return virtual;
+    }
+}
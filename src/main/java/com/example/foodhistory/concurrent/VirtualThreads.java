@@ -0,0 +1,68 @@
+package com.example.foodhistory.concurrent;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 虛擬執行緒工具
+ * 專案以 Java 8 編譯，Thread.ofVirtual() 以反射呼叫；執行環境為 Java 21 以上時才會真正建立虛擬執行緒，
+ * 其他版本一律退回一般（平台）執行緒。
+ */
+public final class VirtualThreads {
+
+    private static final Method OF_VIRTUAL;
+    private static final Method BUILDER_NAME;
+    private static final Method BUILDER_FACTORY;
+
+    static {
+        Method ofVirtual = null;
+        Method name = null;
+        Method factory = null;
+        try {
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            name = builder.getMethod("name", String.class, long.class);
+            factory = builder.getMethod("factory");
+            // Java 19 / 20 為預覽功能，未開啟 --enable-preview 時呼叫會丟出例外
+            ofVirtual.invoke(null);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            ofVirtual = null;
+        }
+        OF_VIRTUAL = ofVirtual;
+        BUILDER_NAME = name;
+        BUILDER_FACTORY = factory;
+    }
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * 目前的執行環境是否支援虛擬執行緒
+     */
+    public static boolean isSupported() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * 建立執行緒工廠，執行緒名稱為 prefix 加上流水號（例如 image-processor-1）
+     * @param prefix 執行緒名稱前綴
+     * @param virtual 是否使用虛擬執行緒（不支援時使用 daemon 平台執行緒）
+     */
+    public static ThreadFactory newFactory(String prefix, boolean virtual) {
+        if (virtual && isSupported()) {
+            try {
+                Object builder = BUILDER_NAME.invoke(OF_VIRTUAL.invoke(null), prefix, 1L);
+                return (ThreadFactory) BUILDER_FACTORY.invoke(builder);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Cannot create virtual thread factory", e);
+            }
+        }
+        AtomicInteger threadNumber = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.foodhistory.config;
+
+import com.example.foodhistory.storage.BlobStore;
+import com.example.foodhistory.storage.FilesystemBlobStore;
+import com.example.foodhistory.storage.S3BlobStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+
+/**
+ * 影像共用物件儲存配置
+ * app.image.blob.store=local（預設）時不建立 BlobStore，影像只存在本機目錄；
+ * filesystem / s3 時各節點共用同一份影像，本機目錄作為讀取快取，可以執行多個應用程式節點。
+ */
+@Configuration
+public class BlobStoreConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "app.image.blob.store", havingValue = "filesystem")
+    public BlobStore filesystemBlobStore(@Value("${app.image.blob.filesystem.path}") String path) throws IOException {
+        return new FilesystemBlobStore(path);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "app.image.blob.store", havingValue = "s3")
+    public BlobStore s3BlobStore(@Value("${app.image.blob.s3.endpoint:}") String endpoint,
+                                 @Value("${app.image.blob.s3.region:us-east-1}") String region,
+                                 @Value("${app.image.blob.s3.bucket}") String bucket,
+                                 @Value("${app.image.blob.s3.prefix:images/}") String prefix,
+                                 @Value("${app.image.blob.s3.access-key:}") String accessKey,
+                                 @Value("${app.image.blob.s3.secret-key:}") String secretKey,
+                                 @Value("${app.image.blob.s3.path-style:true}") boolean pathStyle,
+                                 @Value("${app.image.blob.s3.part-size-bytes:8388608}") long partSize,
+                                 @Value("${app.image.blob.s3.upload-parallelism:4}") int uploadParallelism,
+                                 @Value("${app.image.blob.s3.create-bucket:true}") boolean createBucket) throws IOException {
+        S3BlobStore store = new S3BlobStore(endpoint, region, bucket, prefix, accessKey, secretKey, pathStyle,
+                partSize, uploadParallelism);
+        if (createBucket) {
+            store.ensureBucket();
+        }
+        return store;
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.foodhistory.config;
+
+import com.example.foodhistory.cluster.ClusterBus;
+import com.example.foodhistory.cluster.JdbcClusterBus;
+import com.example.foodhistory.cluster.LocalClusterBus;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.util.UUID;
+
+/**
+ * 叢集訊息匯流排配置
+ * app.cluster.bus=local（預設）時只在本機 JVM 傳遞；多個節點共用同一個資料庫時設為 jdbc，
+ * 資料變更通知經由 cluster_message 表轉送到所有節點的 SSE / WebSocket 連線。
+ */
+@Configuration
+public class ClusterBusConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "app.cluster.bus", havingValue = "local", matchIfMissing = true)
+    public ClusterBus localClusterBus(@Value("${app.cluster.node-id:${HOSTNAME:}}") String nodeId) {
+        return new LocalClusterBus(resolveNodeId(nodeId));
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "app.cluster.bus", havingValue = "jdbc")
+    public ClusterBus jdbcClusterBus(DataSource dataSource,
+                                     @Value("${app.cluster.node-id:${HOSTNAME:}}") String nodeId,
+                                     @Value("${app.cluster.jdbc.publish-interval-ms:100}") long publishIntervalMs,
+                                     @Value("${app.cluster.jdbc.poll-interval-ms:500}") long pollIntervalMs,
+                                     @Value("${app.cluster.jdbc.batch-size:200}") int batchSize,
+                                     @Value("${app.cluster.jdbc.gap-lookback:100}") long gapLookback,
+                                     @Value("${app.cluster.jdbc.retention-ms:600000}") long retentionMs) {
+        JdbcClusterBus bus = new JdbcClusterBus(dataSource, resolveNodeId(nodeId), publishIntervalMs, pollIntervalMs,
+                batchSize, gapLookback, retentionMs);
+        bus.start();
+        return bus;
+    }
+
+    private static String resolveNodeId(String nodeId) {
+        if (nodeId == null || nodeId.trim().isEmpty()) {
+            return UUID.randomUUID().toString().substring(0, 8);
+        }
+        String trimmed = nodeId.trim();
+        return trimmed.length() > 64 ? trimmed.substring(0, 64) : trimmed;
+    }
+}
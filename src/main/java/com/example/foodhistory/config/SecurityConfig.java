@@ -5,6 +5,7 @@ import java.util.Set;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.oauth2.client.userinfo.OAuth2UserService;
@@ -68,7 +69,9 @@ public class SecurityConfig {
     public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
         http
             .authorizeRequests(authz -> authz
-                .antMatchers("/css/**", "/js/**", "/icons/**", "/fonts/**", "/foods/images/**", "/ws/**", "/sw.js", "/manifest.json").permitAll()
+                .antMatchers("/css/**", "/js/**", "/icons/**", "/fonts/**", "/foods/images/**", "/ws/**", "/sw.js", "/sw-precache.js", "/manifest.json").permitAll()
+                // 執行期開關 SQL 日誌（可能記錄綁定參數中的使用者資料）只限管理員
+                .antMatchers(HttpMethod.POST, "/api/stats/sql-logging").hasRole("ADMIN")
                 .anyRequest().authenticated()
             )
             .formLogin(form -> form
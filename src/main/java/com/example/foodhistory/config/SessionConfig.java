@@ -0,0 +1,58 @@
+package com.example.foodhistory.config;
+
+import com.example.foodhistory.session.JdbcSessionStore;
+import com.example.foodhistory.session.RedisSessionStore;
+import com.example.foodhistory.session.SessionAttributeCodec;
+import com.example.foodhistory.session.SessionStore;
+import com.example.foodhistory.session.StoreSessionRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.session.config.annotation.web.http.EnableSpringHttpSession;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * 外部 Session 儲存配置
+ * app.session.store=memory（預設）時沿用 Tomcat 記憶體中的 HttpSession；
+ * jdbc / redis 時由 Spring Session 的 SessionRepositoryFilter 改用共用儲存，任一節點都能處理同一使用者的請求，
+ * nginx backend_app 不需要 sticky session。SecurityContext、OAuth2 登入流程中的授權請求都保存在 Session 中。
+ */
+@Configuration
+@ConditionalOnExpression("'${app.session.store:memory}' != 'memory'")
+@EnableSpringHttpSession
+public class SessionConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "app.session.store", havingValue = "jdbc")
+    public SessionStore jdbcSessionStore(DataSource dataSource,
+                                         @Value("${app.session.jdbc.cleanup-interval-ms:300000}") long cleanupIntervalMs) {
+        JdbcSessionStore store = new JdbcSessionStore(dataSource, cleanupIntervalMs);
+        store.start();
+        return store;
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "app.session.store", havingValue = "redis")
+    public SessionStore redisSessionStore(@Value("${app.session.redis.host:localhost}") String host,
+                                          @Value("${app.session.redis.port:6379}") int port,
+                                          @Value("${app.session.redis.password:}") String password,
+                                          @Value("${app.session.redis.database:0}") int database,
+                                          @Value("${app.session.redis.timeout-ms:2000}") int timeoutMs,
+                                          @Value("${app.session.redis.max-connections:16}") int maxConnections,
+                                          @Value("${app.session.redis.key-prefix:food-history:session:}") String keyPrefix) {
+        return new RedisSessionStore(host, port, password, database, timeoutMs, maxConnections, keyPrefix);
+    }
+
+    @Bean
+    public StoreSessionRepository sessionRepository(SessionStore sessionStore,
+                                                    @Value("${server.servlet.session.timeout:30m}") Duration timeout,
+                                                    @Value("${app.session.touch-interval-ms:60000}") long touchIntervalMs,
+                                                    @Value("${app.session.compress-threshold-bytes:256}") int compressThreshold) {
+        SessionAttributeCodec codec = new SessionAttributeCodec(compressThreshold, SessionConfig.class.getClassLoader());
+        return new StoreSessionRepository(sessionStore, codec, timeout, touchIntervalMs);
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.foodhistory.config;
+
+import com.example.foodhistory.service.FoodChangeBus;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.orm.jpa.AbstractEntityManagerFactoryBean;
+
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * 快速啟動配置（fast-startup profile 開啟 spring.main.lazy-initialization）
+ * 大部分 bean 延遲到第一次使用時才建立；含 @Scheduled 的 bean 由 Spring Boot 自動排除，
+ * 啟動完成事件的處理者在事件發生時建立。
+ */
+@Configuration
+public class StartupConfig {
+
+    /**
+     * 延遲初始化時仍提早建立的 bean
+     * EntityManagerFactory 在背景初始化（bootstrap-mode=deferred），與其他 bean 的建立同時進行，
+     * 結構驗證（ddl-auto=validate）失敗時啟動即失敗，而不是在第一個請求才發現。
+     * FoodChangeBus 啟動時就訂閱叢集訊息匯流排，沒有本機變更的節點也能收到其他節點的變更通知。
+     */
+    @Bean
+    public static LazyInitializationExcludeFilter eagerStartupBeans() {
+        return LazyInitializationExcludeFilter.forBeanTypes(EntityManagerFactory.class,
+                AbstractEntityManagerFactoryBean.class, FoodChangeBus.class);
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.foodhistory.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.boot.context.metrics.buffering.StartupTimeline;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.metrics.ApplicationStartup;
+import org.springframework.core.metrics.StartupStep;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 啟動階段耗時報告
+ * FoodHistoryApplication 以 BufferingApplicationStartup 記錄 Spring 啟動步驟；啟動完成後整理成
+ * JVM 啟動、各啟動里程碑、context refresh、最慢的 bean 等耗時，寫入記錄並提供給 /api/stats/startup。
+ */
+@Component
+public class StartupTimingReporter {
+
+    private static final Logger logger = LoggerFactory.getLogger(StartupTimingReporter.class);
+
+    // 緩衝的啟動步驟上限
+    public static final int CAPACITY = 4096;
+
+    private static final int SLOWEST_BEANS = 10;
+
+    private static final String BEAN_STEP = "spring.beans.instantiate";
+    private static final String MILESTONE_PREFIX = "spring.boot.application.";
+
+    // 啟動完成後立即結束（建置映像檔時產生 AppCDS 封存檔的訓練執行）
+    @Value("${app.startup.exit-on-ready:false}")
+    private boolean exitOnReady;
+
+    private volatile Map<String, Object> report = Collections.emptyMap();
+
+    // 在其他啟動完成事件處理之後執行，計入它們的耗時
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public void onApplicationReady(ApplicationReadyEvent event) {
+        long jvmStart = ManagementFactory.getRuntimeMXBean().getStartTime();
+        long readyAt = System.currentTimeMillis();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("totalMs", readyAt - jvmStart);
+
+        ApplicationStartup startup = event.getApplicationContext().getApplicationStartup();
+        if (startup instanceof BufferingApplicationStartup) {
+            BufferingApplicationStartup buffering = (BufferingApplicationStartup) startup;
+            StartupTimeline timeline = buffering.drainBufferedTimeline();
+            // 之後延遲建立的 bean 不再記錄
+            buffering.addFilter(step -> false);
+            summarize(timeline, jvmStart, result);
+        }
+        report = Collections.unmodifiableMap(result);
+        logger.info("啟動耗時：{}", result);
+
+        if (exitOnReady) {
+            logger.info("app.startup.exit-on-ready=true，啟動完成後結束");
+            System.exit(SpringApplication.exit(event.getApplicationContext()));
+        }
+    }
+
+    /**
+     * 最近一次啟動的耗時報告
+     */
+    public Map<String, Object> getReport() {
+        return report;
+    }
+
+    private static void summarize(StartupTimeline timeline, long jvmStart, Map<String, Object> result) {
+        long mainStart = timeline.getStartTime().toEpochMilli();
+        result.put("jvmToMainMs", mainStart - jvmStart);
+
+        // 里程碑：從 main 開始到各階段開始的時間
+        Map<String, Long> milestones = new LinkedHashMap<>();
+        Map<String, Long> phases = new LinkedHashMap<>();
+        List<StartupTimeline.TimelineEvent> beans = new ArrayList<>();
+        for (StartupTimeline.TimelineEvent timelineEvent : timeline.getEvents()) {
+            String name = timelineEvent.getStartupStep().getName();
+            if (BEAN_STEP.equals(name)) {
+                beans.add(timelineEvent);
+            } else if (name.startsWith(MILESTONE_PREFIX)) {
+                milestones.put(name.substring(MILESTONE_PREFIX.length()),
+                        timelineEvent.getStartTime().toEpochMilli() - mainStart);
+            } else {
+                phases.merge(name, timelineEvent.getDuration().toMillis(), Long::sum);
+            }
+        }
+        result.put("milestonesMs", milestones);
+        result.put("phasesMs", phases);
+
+        // 耗時包含它所依賴的 bean
+        beans.sort(Comparator.comparing(StartupTimeline.TimelineEvent::getDuration).reversed());
+        Map<String, Long> slowest = new LinkedHashMap<>();
+        for (StartupTimeline.TimelineEvent bean : beans.subList(0, Math.min(SLOWEST_BEANS, beans.size()))) {
+            slowest.put(beanName(bean.getStartupStep()), bean.getDuration().toMillis());
+        }
+        result.put("slowestBeansMs", slowest);
+    }
+
+    private static String beanName(StartupStep step) {
+        for (StartupStep.Tag tag : step.getTags()) {
+            if ("beanName".equals(tag.getKey())) {
+                return tag.getValue();
+            }
+        }
+        return String.valueOf(step.getId());
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.foodhistory.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.regex.Pattern;
+
+/**
+ * 靜態資源快取配置
+ * /css、/js、/fonts 由資源鏈以內容雜湊產生網址（例如 /css/main-3f2a….css，見 spring.web.resources.chain.strategy），
+ * 網址含雜湊的請求內容永遠不變，可以讓瀏覽器快取一年且不必重新驗證；沒有雜湊的舊網址維持原本每次驗證。
+ */
+@Configuration
+public class StaticResourceConfig implements WebMvcConfigurer {
+
+    static final String IMMUTABLE_CACHE_CONTROL = "public, max-age=31536000, immutable";
+
+    // ContentVersionStrategy 在檔名後加上 -<32 位 MD5>
+    private static final Pattern VERSIONED_PATH = Pattern.compile(".*-[0-9a-f]{32}\\.[^/]+$");
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new VersionedResourceCacheInterceptor())
+                .addPathPatterns("/css/**", "/js/**", "/fonts/**");
+    }
+
+    /**
+     * 網址含內容雜湊時加上長期快取標頭（Spring Security 不會覆寫已存在的 Cache-Control）
+     */
+    static class VersionedResourceCacheInterceptor implements HandlerInterceptor {
+
+        @Override
+        public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+            if (VERSIONED_PATH.matcher(request.getRequestURI()).matches()) {
+                response.setHeader("Cache-Control", IMMUTABLE_CACHE_CONTROL);
+            }
+            return true;
+        }
+    }
+}
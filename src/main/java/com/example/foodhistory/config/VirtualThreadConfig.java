@@ -0,0 +1,38 @@
+package com.example.foodhistory.config;
+
+import com.example.foodhistory.concurrent.VirtualThreads;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * 虛擬執行緒請求處理模式（app.threads.virtual=true，需要 Java 21 以上）
+ * Tomcat 的請求處理改為每個請求一條虛擬執行緒，阻塞的 JDBC / 檔案 I/O 不再受 server.tomcat.threads.max 限制；
+ * 同時存取資料庫的數量仍由連線池大小決定。執行環境不支援時記錄警告並維持原本的執行緒池。
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.threads.virtual", havingValue = "true")
+public class VirtualThreadConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreadConfig.class);
+
+    @Bean
+    public WebServerFactoryCustomizer<TomcatServletWebServerFactory> virtualThreadTomcatCustomizer() {
+        return factory -> {
+            if (!VirtualThreads.isSupported()) {
+                logger.warn("app.threads.virtual=true 但執行環境 Java {} 不支援虛擬執行緒，使用一般執行緒池",
+                        System.getProperty("java.specification.version"));
+                return;
+            }
+            ThreadFactory threads = VirtualThreads.newFactory("http-virtual-", true);
+            factory.addProtocolHandlerCustomizers(protocol -> protocol.setExecutor(task -> threads.newThread(task).start()));
+            logger.info("Tomcat 請求處理使用虛擬執行緒");
+        };
+    }
+}
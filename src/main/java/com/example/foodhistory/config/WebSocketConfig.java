@@ -1,5 +1,6 @@
 package com.example.foodhistory.config;
 
+import com.example.foodhistory.websocket.ClientKeyHandshakeInterceptor;
 import com.example.foodhistory.websocket.ConnectionWebSocketHandler;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
@@ -21,6 +22,7 @@ public class WebSocketConfig implements WebSocketConfigurer {
     @Override
     public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
         registry.addHandler(connectionWebSocketHandler, "/ws/connection")
+                .addInterceptors(new ClientKeyHandshakeInterceptor())
                 .setAllowedOrigins("*");
     }
 }
@@ -0,0 +1,29 @@
+package com.example.foodhistory.controller;
+
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.core.oidc.user.OidcUser;
+
+import java.security.Principal;
+
+/**
+ * 目前登入使用者的識別名稱
+ * OAuth2 使用者以 email 識別（與 Remember Me 一致），其他使用者使用登入名稱
+ */
+final class CurrentUser {
+    
+    private CurrentUser() {
+    }
+    
+    static String username(Principal principal) {
+        if (principal == null) {
+            return null;
+        }
+        if (principal instanceof OAuth2AuthenticationToken) {
+            Object oauthPrincipal = ((OAuth2AuthenticationToken) principal).getPrincipal();
+            if (oauthPrincipal instanceof OidcUser && ((OidcUser) oauthPrincipal).getEmail() != null) {
+                return ((OidcUser) oauthPrincipal).getEmail();
+            }
+        }
+        return principal.getName();
+    }
+}
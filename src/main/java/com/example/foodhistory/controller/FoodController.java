@@ -1,17 +1,19 @@
 package com.example.foodhistory.controller;
 
 import com.example.foodhistory.model.Food;
+import com.example.foodhistory.repository.projection.FoodListView;
 import com.example.foodhistory.service.FoodService;
 import com.example.foodhistory.service.FileStorageService;
+import com.example.foodhistory.service.ImageProcessingService;
+import com.example.foodhistory.service.InvalidImageException;
+import com.example.foodhistory.service.SearchHistoryService;
+import com.example.foodhistory.service.SearchMode;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -19,12 +21,14 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
-import javax.servlet.http.HttpSession;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.nio.file.NoSuchFileException;
+import java.security.Principal;
 import java.util.*;
 
 @Controller
@@ -37,31 +41,45 @@ public class FoodController {
     @Autowired
     private FileStorageService fileStorageService;
     
+    @Autowired
+    private SearchHistoryService searchHistoryService;
+    
+    @Autowired
+    private ImageProcessingService imageProcessingService;
+    
     @GetMapping
     public String list(@RequestParam(required = false) String keyword,
                       @RequestParam(defaultValue = "0") int page,
                       @RequestParam(defaultValue = "12") int size,
-                      HttpSession session,
+                      Principal principal,
                       Model model) {
         // 創建分頁請求，按ID降序排列（最新的在前面）
         Pageable pageable = PageRequest.of(page, size, Sort.by("id").descending());
-        Page<Food> foodPage = foodService.searchFoods(keyword, pageable);
+        // 列表只讀取投影，不載入受管實體
+        Page<FoodListView> foodPage = foodService.searchFoodViews(keyword, pageable);
+        
+        // 完全比對找不到時改用模糊 / 發音比對（錯字、同音字、拼音、注音）
+        boolean fuzzyMatch = false;
+        if (keyword != null && !keyword.trim().isEmpty() && foodPage.getTotalElements() == 0) {
+            foodPage = foodService.searchFoodViews(keyword, pageable, SearchMode.FUZZY);
+            fuzzyMatch = foodPage.getTotalElements() > 0;
+        }
         
         // 處理搜尋歷史
+        String username = CurrentUser.username(principal);
         if (keyword != null && !keyword.trim().isEmpty()) {
-            addToSearchHistory(session, keyword.trim());
+            searchHistoryService.record(username, keyword);
         }
         
         // 獲取最愛食物推薦（前5個）
-        List<Food> favoriteRecommendations = foodService.getFavoriteRecommendations(5);
+        List<FoodListView> favoriteRecommendations = foodService.getFavoriteRecommendations(5);
         
         // 獲取近期搜尋推薦（前5個）
-        List<String> allRecentSearches = getRecentSearches(session);
-        List<String> recentSearches = allRecentSearches.size() > 5 ? 
-            allRecentSearches.subList(0, 5) : allRecentSearches;
+        List<String> recentSearches = searchHistoryService.getRecentSearches(username, 5);
                 
         model.addAttribute("foods", foodPage.getContent());
         model.addAttribute("keyword", keyword);
+        model.addAttribute("fuzzyMatch", fuzzyMatch);
         model.addAttribute("currentPage", page);
         model.addAttribute("totalPages", foodPage.getTotalPages());
         model.addAttribute("totalElements", foodPage.getTotalElements());
@@ -146,6 +164,7 @@ public class FoodController {
                 if (!Boolean.TRUE.equals(removeImage) && existingFood != null) {
                     food.setImagePath(existingFood.getImagePath());
                     food.setImageContentType(existingFood.getImageContentType());
+                    food.setImageProcessing(existingFood.getImageProcessing());
                 }
             }
             
@@ -161,28 +180,17 @@ public class FoodController {
                 // 清空圖片資訊
                 savedFood.setImagePath(null);
                 savedFood.setImageContentType(null);
+                savedFood.setImageProcessing(false);
                 foodService.saveFood(savedFood);
             }
             // 處理圖片上傳
             else if (imageFile != null && !imageFile.isEmpty()) {
-                String contentType = imageFile.getContentType();
-                if (contentType != null && (
-                    contentType.equals(MediaType.IMAGE_JPEG_VALUE) ||
-                    contentType.equals(MediaType.IMAGE_PNG_VALUE) ||
-                    contentType.equals(MediaType.IMAGE_GIF_VALUE))) {
-                    
-                    // 刪除舊圖片
-                    if (existingFood != null && existingFood.getImagePath() != null) {
-                        fileStorageService.deleteImage(existingFood.getImagePath());
-                    }
-                    
-                    // 儲存新圖片
-                    String filename = fileStorageService.storeImage(imageFile, savedFood.getId());
-                    savedFood.setImagePath(filename);
-                    savedFood.setImageContentType(contentType);
-                    foodService.saveFood(savedFood);
-                } else {
-                    redirectAttributes.addFlashAttribute("error", "只支援 JPEG、PNG 或 GIF 格式的圖片");
+                FileStorageService.StoredImage storedImage;
+                try (InputStream imageStream = imageFile.getInputStream()) {
+                    // 格式以檔案開頭的 magic bytes 判斷，不信任瀏覽器提供的 content type
+                    storedImage = fileStorageService.storeImage(imageStream, savedFood.getId());
+                } catch (InvalidImageException e) {
+                    redirectAttributes.addFlashAttribute("error", e.getMessage());
                     StringBuilder errorRedirect = new StringBuilder("redirect:/foods/" + savedFood.getId() + "/edit");
                     List<String> errorParams = new ArrayList<>();
                     try {
@@ -198,16 +206,29 @@ public class FoodController {
                         if (!errorParams.isEmpty()) {
                             errorRedirect.append("?").append(String.join("&", errorParams));
                         }
-                    } catch (UnsupportedEncodingException e) {
+                    } catch (UnsupportedEncodingException ex) {
                         // UTF-8 should always be supported
                     }
                     return errorRedirect.toString();
                 }
+                
+                // 新圖片已原子替換到位；副檔名不同時才需刪除舊圖片
+                if (existingFood != null && existingFood.getImagePath() != null
+                        && !existingFood.getImagePath().equals(storedImage.getFilename())) {
+                    fileStorageService.deleteImage(existingFood.getImagePath());
+                }
+                savedFood.setImagePath(storedImage.getFilename());
+                savedFood.setImageContentType(storedImage.getContentType());
+                // 縮圖、轉正等處理交給背景佇列，請求只需等待資料庫寫入
+                savedFood.setImageProcessing(true);
+                foodService.saveFood(savedFood);
+                imageProcessingService.enqueue(savedFood.getId(), storedImage.getFilename());
             }
             // 沒有上傳新圖片也沒有移除圖片時，保持原有的圖片資訊
             else if (existingFood != null && existingFood.getImagePath() != null) {
                 savedFood.setImagePath(existingFood.getImagePath());
                 savedFood.setImageContentType(existingFood.getImageContentType());
+                savedFood.setImageProcessing(existingFood.getImageProcessing());
                 foodService.saveFood(savedFood);
             }
             
@@ -286,45 +307,75 @@ public class FoodController {
         return response;
     }
     
-    // 搜尋歷史管理方法
-    @SuppressWarnings("unchecked")
-    private void addToSearchHistory(HttpSession session, String keyword) {
-        List<String> searchHistory = (List<String>) session.getAttribute("searchHistory");
-        if (searchHistory == null) {
-            searchHistory = new ArrayList<>();
+    /**
+     * 串流上傳圖片：請求內容即為圖片本身（非 multipart），直接從請求串流寫入磁碟，
+     * 不經過容器的 multipart 解析與暫存，適合大型圖片與不穩定的網路
+     */
+    @PutMapping("/{id}/image")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> uploadImage(@PathVariable Long id, HttpServletRequest request) throws IOException {
+        Map<String, Object> response = new HashMap<>();
+        Food food = foodService.getFoodById(id);
+        if (food == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (request.getContentLengthLong() > fileStorageService.getMaxImageBytes()) {
+            response.put("success", false);
+            response.put("error", "圖片大小超過限制");
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(response);
         }
         
-        // 移除已存在的相同關鍵字（避免重複）
-        searchHistory.remove(keyword);
-        
-        // 添加到開頭
-        searchHistory.add(0, keyword);
+        FileStorageService.StoredImage storedImage;
+        try {
+            storedImage = fileStorageService.storeImage(request.getInputStream(), id);
+        } catch (InvalidImageException e) {
+            response.put("success", false);
+            response.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
         
-        // 只保留最近50次搜尋
-        if (searchHistory.size() > 50) {
-            searchHistory = searchHistory.subList(0, 50);
+        if (food.getImagePath() != null && !food.getImagePath().equals(storedImage.getFilename())) {
+            fileStorageService.deleteImage(food.getImagePath());
         }
+        food.setImagePath(storedImage.getFilename());
+        food.setImageContentType(storedImage.getContentType());
+        food.setImageProcessing(true);
+        foodService.saveFood(food);
+        imageProcessingService.enqueue(id, storedImage.getFilename());
         
-        session.setAttribute("searchHistory", searchHistory);
+        response.put("success", true);
+        response.put("processing", true);
+        response.put("imagePath", storedImage.getFilename());
+        response.put("contentType", storedImage.getContentType());
+        response.put("size", storedImage.getSize());
+        response.put("sha256", storedImage.getSha256());
+        return ResponseEntity.ok(response);
     }
     
-    @SuppressWarnings("unchecked")
-    private List<String> getRecentSearches(HttpSession session) {
-        List<String> searchHistory = (List<String>) session.getAttribute("searchHistory");
-        return searchHistory != null ? new ArrayList<>(searchHistory) : new ArrayList<>();
+    /**
+     * 圖片背景處理狀態，完成時另會透過 SSE / WebSocket 發送 data-updated 事件（op 為 image）
+     */
+    @GetMapping("/{id}/image/status")
+    @ResponseBody
+    public Map<String, Object> imageStatus(@PathVariable Long id) {
+        Map<String, Object> response = imageProcessingService.getStatus(id);
+        Food food = foodService.getFoodById(id);
+        response.put("processing", food != null && Boolean.TRUE.equals(food.getImageProcessing()));
+        response.put("imagePath", food != null ? food.getImagePath() : null);
+        return response;
     }
     
     // 獲取完整推薦資料的API
     @GetMapping("/recommendations")
     @ResponseBody
-    public Map<String, Object> getFullRecommendations(HttpSession session) {
+    public Map<String, Object> getFullRecommendations(Principal principal) {
         Map<String, Object> result = new HashMap<>();
         
         // 獲取所有最愛食物
         List<Food> allFavorites = foodService.getAllFavorites();
         
         // 獲取所有近期搜尋
-        List<String> allRecentSearches = getRecentSearches(session);
+        List<String> allRecentSearches = searchHistoryService.getRecentSearches(CurrentUser.username(principal));
         
         result.put("favorites", allFavorites);
         result.put("recentSearches", allRecentSearches);
@@ -332,34 +383,36 @@ public class FoodController {
         return result;
     }
     
-    // 提供影像檔案存取
+    // 提供影像檔案存取（支援 Range 續傳、條件式請求與格式協商）
     @GetMapping("/images/{filename:.+}")
-    @ResponseBody
-    public ResponseEntity<Resource> serveImage(@PathVariable String filename,
-                                               @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+    public void serveImage(@PathVariable String filename,
+                           HttpServletRequest request,
+                           HttpServletResponse response) throws IOException {
+        // 依 Accept 選擇 AVIF / WebP 變體或原檔，快取與 CDN 需依 Accept 區分
+        FileStorageService.ImageMetadata image = fileStorageService.getBestImage(filename, request.getHeader("Accept"));
+        if (image == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        response.setHeader("Vary", "Accept");
         try {
-            Path filePath = fileStorageService.getImagePath(filename);
-            if (filePath == null || !Files.exists(filePath)) {
-                return ResponseEntity.notFound().build();
+            // 熱門小圖從記憶體快取送出，不必每次開檔
+            ImageResponseWriter.write(request, response, image, () -> fileStorageService.getImageBytes(image));
+        } catch (NoSuchFileException e) {
+            // 檔案已被移除或搬到分層目錄，讓快取的中繼資料失效後重新查找一次
+            fileStorageService.evictImageMetadata(filename);
+            fileStorageService.evictImageMetadata(image.getPath().getFileName().toString());
+            if (response.isCommitted()) {
+                return;
             }
-            
-            Resource resource = new UrlResource(filePath.toUri());
-            if (resource.exists() && resource.isReadable()) {
-                // 從檔名判斷 content type
-                String contentType = Files.probeContentType(filePath);
-                if (contentType == null) {
-                    contentType = MediaType.APPLICATION_OCTET_STREAM_VALUE;
-                }
-                
-                return ResponseEntity.ok()
-                        .contentType(MediaType.parseMediaType(contentType))
-                        .header(HttpHeaders.CACHE_CONTROL, "max-age=0, must-revalidate")
-                        .body(resource);
-            } else {
-                return ResponseEntity.notFound().build();
+            response.reset();
+            FileStorageService.ImageMetadata moved = fileStorageService.getBestImage(filename, request.getHeader("Accept"));
+            if (moved == null || moved.getPath().equals(image.getPath())) {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+                return;
             }
-        } catch (Exception e) {
-            return ResponseEntity.notFound().build();
+            response.setHeader("Vary", "Accept");
+            ImageResponseWriter.write(request, response, moved, () -> fileStorageService.getImageBytes(moved));
         }
     }
 }
\ No newline at end of file
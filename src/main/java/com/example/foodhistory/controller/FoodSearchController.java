@@ -0,0 +1,128 @@
+package com.example.foodhistory.controller;
+
+import com.example.foodhistory.model.Food;
+import com.example.foodhistory.service.FoodNameIndex;
+import com.example.foodhistory.service.FoodSearchCriteria;
+import com.example.foodhistory.service.FoodService;
+import com.example.foodhistory.service.SearchHistoryService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.ModelAttribute;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.security.Principal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 食物搜尋 API 控制器
+ * 輸入即搜尋建議與結構化搜尋皆由記憶體中的食物索引回應
+ */
+@RestController
+@RequestMapping("/api/foods")
+public class FoodSearchController {
+
+    @Autowired
+    private FoodNameIndex foodNameIndex;
+
+    @Autowired
+    private FoodService foodService;
+
+    @Autowired
+    private SearchHistoryService searchHistoryService;
+
+    @Value("${app.search.suggest.max-results:20}")
+    private int maxResults = 20;
+
+    /**
+     * 搜尋建議
+     * 回應格式：{"items":[{"id":1,"name":"白飯","favorite":true}]}
+     * JSON 直接以 StringBuilder 組成，避免每次請求建立 Map 與經過 Jackson
+     */
+    @GetMapping(value = "/suggest", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<String> suggest(@RequestParam(value = "q", required = false) String query,
+                                          @RequestParam(value = "limit", defaultValue = "10") int limit,
+                                          Principal principal) {
+        int effectiveLimit = Math.max(0, Math.min(limit, maxResults));
+        List<String> recentSearches = searchHistoryService.getRecentSearches(CurrentUser.username(principal), 10);
+        List<FoodNameIndex.Entry> entries = foodNameIndex.suggest(query, effectiveLimit, recentSearches);
+
+        StringBuilder json = new StringBuilder(16 + entries.size() * 48);
+        json.append("{\"items\":[");
+        for (int i = 0; i < entries.size(); i++) {
+            FoodNameIndex.Entry entry = entries.get(i);
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"id\":").append(entry.getId()).append(",\"name\":");
+            appendJsonString(json, entry.getName());
+            json.append(",\"favorite\":").append(entry.isFavorite()).append('}');
+        }
+        json.append("]}");
+
+        return ResponseEntity.ok()
+                .header("Cache-Control", "no-cache")
+                .body(json.toString());
+    }
+
+    /**
+     * 結構化搜尋，所有條件皆為 AND，例如：
+     * /api/foods/search?notes=早餐&amp;unit=碗&amp;carbMin=10&amp;carbMax=20&amp;favorite=true
+     * 取代離線資料全部下載後在用戶端過濾的做法
+     */
+    @GetMapping("/search")
+    public Map<String, Object> search(@ModelAttribute FoodSearchCriteria criteria,
+                                      @RequestParam(defaultValue = "0") int page,
+                                      @RequestParam(defaultValue = "10") int size) {
+        int effectiveSize = Math.max(1, Math.min(size, 100));
+        Page<Food> result = foodService.searchFoods(criteria, PageRequest.of(Math.max(0, page), effectiveSize));
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("foods", result.getContent());
+        response.put("totalElements", result.getTotalElements());
+        response.put("totalPages", result.getTotalPages());
+        response.put("page", result.getNumber());
+        response.put("size", result.getSize());
+        return response;
+    }
+
+    private static void appendJsonString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20 || c == '<' || c == '>' || c == '&') {
+                        // 控制字元與 HTML 特殊字元一律以 unicode 跳脫
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        json.append('"');
+    }
+}
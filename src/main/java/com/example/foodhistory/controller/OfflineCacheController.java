@@ -1,8 +1,16 @@
 package com.example.foodhistory.controller;
 
-import com.example.foodhistory.model.Food;
+import com.example.foodhistory.concurrent.ConnectionLimiter;
+import com.example.foodhistory.concurrent.SerialExecutor;
+import com.example.foodhistory.concurrent.StreamDispatcher;
+import com.example.foodhistory.repository.projection.FoodOfflineView;
 import com.example.foodhistory.service.FoodService;
+import com.example.foodhistory.service.FoodChangeBatch;
+import com.example.foodhistory.service.FoodChangeBus;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -10,10 +18,14 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
 import java.io.IOException;
+import java.security.Principal;
 import java.time.Instant;
 import java.util.*;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
 import java.util.stream.Collectors;
 
 /**
@@ -27,14 +39,29 @@ public class OfflineCacheController {
     @Autowired
     private FoodService foodService;
     
+    @Autowired
+    private FoodChangeBus foodChangeBus;
+    
     // 快取版本號（每次資料結構變更或重大更新時遞增）
     private static final String CACHE_VERSION = "v1.0.0";
     
     // 上次資料更新時間（實際應用中應從資料庫或快取中取得）
     private volatile long lastDataUpdateTimestamp = System.currentTimeMillis();
     
-    // 儲存所有 SSE 連線
-    private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+    @Autowired
+    private StreamDispatcher streamDispatcher;
+    
+    @Autowired
+    private ConnectionLimiter connectionLimiter;
+    
+    @Value("${app.stream.heartbeat-interval-ms:25000}")
+    private long heartbeatIntervalMs = 25000;
+    
+    // 被同一使用者的新連線取代時的事件 id，EventSource 重連時以 Last-Event-ID 帶回
+    private static final String REPLACED_EVENT_ID = "replaced";
+    
+    // 儲存所有 SSE 連線與各自的寫入執行器
+    private final Map<SseEmitter, SerialExecutor> emitters = new ConcurrentHashMap<>();
     
     /**
      * 健康檢查端點 - 用於快速確認伺服器是否可達
@@ -51,67 +78,124 @@ public class OfflineCacheController {
      * SSE 連線端點 - 用於即時監測伺服器連線狀態
      * 當連線建立時，前端就知道 server 在線
      * 當連線斷開時，前端就知道 server 離線
+     * 連線數受 {@link ConnectionLimiter} 限制：總數已滿時回應 503 與 Retry-After；
+     * 連線到期或被同一使用者的新連線取代時，先送出 reconnect 事件（含 retry: 重連間隔）再結束連線，EventSource 會自動重連。
+     * 被取代的連線事件 id 為 replaced，EventSource 重連時帶著 Last-Event-ID: replaced，此時回應 204 讓它停止重連，
+     * 避免使用者開啟的分頁數超過上限時各分頁輪流取代彼此。
      */
     @GetMapping(value = "/connection-stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public SseEmitter connectionStream() {
-        // 設定 0 表示無超時（由心跳機制維護連線）
+    public ResponseEntity<SseEmitter> connectionStream(Principal principal, HttpServletRequest request) {
+        if (REPLACED_EVENT_ID.equals(request.getHeader("Last-Event-ID"))) {
+            return ResponseEntity.noContent().build();
+        }
+        // 設定 0 表示無超時（由心跳機制維護連線，最長連線時間由 ConnectionLimiter 控制）
         SseEmitter emitter = new SseEmitter(0L);
+        SerialExecutor writer = streamDispatcher.newConnectionExecutor();
         
-        emitters.add(emitter);
-        
-        // 立即發送連線確認事件
-        try {
-            emitter.send(SseEmitter.event()
-                    .name("connected")
-                    .data("{\"status\":\"connected\",\"timestamp\":" + System.currentTimeMillis() + "}"));
-        } catch (IOException e) {
-            emitter.completeWithError(e);
+        HttpSession httpSession = request.getSession(false);
+        String client = ConnectionLimiter.clientKey(principal, httpSession == null ? null : httpSession.getId(),
+                request.getRemoteAddr());
+        ConnectionLimiter.Lease lease = connectionLimiter.tryAcquire(ConnectionLimiter.SSE, client,
+                (reason, retryMs) -> writer.execute(() -> sendReconnect(emitter, reason, retryMs)));
+        if (lease == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header("Retry-After", String.valueOf(Math.max(1, connectionLimiter.getBusyRetryMs() / 1000)))
+                    .header("Cache-Control", "no-cache")
+                    .build();
         }
         
-        // 啟動心跳任務 - 每 25 秒發送一次心跳
-        java.util.concurrent.ScheduledExecutorService scheduler = 
-            java.util.concurrent.Executors.newSingleThreadScheduledExecutor();
-        java.util.concurrent.ScheduledFuture<?> heartbeatTask = scheduler.scheduleAtFixedRate(() -> {
-            try {
-                emitter.send(SseEmitter.event()
-                        .name("heartbeat")
-                        .data("{\"timestamp\":" + System.currentTimeMillis() + "}"));
-            } catch (IOException e) {
-                // 連線已斷開，取消心跳任務
-                scheduler.shutdown();
+        emitters.put(emitter, writer);
+        
+        // 立即發送連線確認事件，同時告知斷線後的重連間隔
+        String connected = "{\"status\":\"connected\",\"timestamp\":" + System.currentTimeMillis() + "}";
+        writer.execute(() -> send(emitter, SseEmitter.event()
+                .reconnectTime(connectionLimiter.getReconnectDelayMs())
+                .name("connected")
+                .data(connected)));
+        
+        // 心跳由共用的排程執行緒計時；上一次寫入還沒完成時略過這次心跳
+        ScheduledFuture<?> heartbeatTask = streamDispatcher.scheduleAtFixedRate(() -> {
+            if (writer.isIdle()) {
+                writer.execute(() -> send(emitter, "heartbeat", "{\"timestamp\":" + System.currentTimeMillis() + "}"));
             }
-        }, 25, 25, java.util.concurrent.TimeUnit.SECONDS);
+        }, heartbeatIntervalMs);
         
         // 設定完成、超時、錯誤時的清理
         Runnable cleanup = () -> {
             emitters.remove(emitter);
-            heartbeatTask.cancel(true);
-            scheduler.shutdown();
+            heartbeatTask.cancel(false);
+            lease.release();
         };
         emitter.onCompletion(cleanup);
         emitter.onTimeout(cleanup);
         emitter.onError(e -> cleanup.run());
         
-        return emitter;
+        return ResponseEntity.ok()
+                .header("Cache-Control", "no-cache")
+                .body(emitter);
     }
     
     /**
      * 向所有連線的客戶端發送事件（例如資料更新通知）
+     * 寫入在各連線的執行器上進行，不會被慢的連線拖住
      */
     public void broadcastEvent(String eventName, String data) {
-        List<SseEmitter> deadEmitters = new ArrayList<>();
-        
-        for (SseEmitter emitter : emitters) {
-            try {
-                emitter.send(SseEmitter.event()
-                        .name(eventName)
-                        .data(data));
-            } catch (IOException e) {
-                deadEmitters.add(emitter);
+        for (Map.Entry<SseEmitter, SerialExecutor> entry : emitters.entrySet()) {
+            SseEmitter emitter = entry.getKey();
+            entry.getValue().execute(() -> send(emitter, eventName, data));
+        }
+    }
+    
+    private void send(SseEmitter emitter, String eventName, String data) {
+        send(emitter, SseEmitter.event()
+                .name(eventName)
+                .data(data));
+    }
+    
+    private void send(SseEmitter emitter, SseEmitter.SseEventBuilder event) {
+        try {
+            emitter.send(event);
+        } catch (IOException | IllegalStateException e) {
+            // 連線已斷開
+            emitters.remove(emitter);
+            emitter.completeWithError(e);
+        }
+    }
+    
+    /**
+     * 通知客戶端在 retryMs 後重新連線，然後結束這條連線
+     */
+    private void sendReconnect(SseEmitter emitter, ConnectionLimiter.CloseReason reason, long retryMs) {
+        emitters.remove(emitter);
+        try {
+            SseEmitter.SseEventBuilder event = SseEmitter.event()
+                    .reconnectTime(retryMs)
+                    .name("reconnect")
+                    .data("{\"reason\":\"" + reason.name().toLowerCase(Locale.ROOT) + "\",\"retry\":" + retryMs + "}");
+            if (reason == ConnectionLimiter.CloseReason.REPLACED) {
+                event.id(REPLACED_EVENT_ID);
             }
+            emitter.send(event);
+            emitter.complete();
+        } catch (IOException | IllegalStateException e) {
+            emitter.completeWithError(e);
         }
-        
-        emitters.removeAll(deadEmitters);
+    }
+    
+    /**
+     * 獲取當前 SSE 連線數
+     */
+    public int getConnectionCount() {
+        return emitters.size();
+    }
+    
+    /**
+     * 食物資料變更（含圖片處理完成）合併後推送給所有連線的客戶端
+     */
+    @EventListener
+    public void onFoodChanges(FoodChangeBatch batch) {
+        notifyDataUpdated();
+        broadcastEvent("data-updated", batch.toJson());
     }
     
     /**
@@ -120,7 +204,9 @@ public class OfflineCacheController {
      */
     @GetMapping("/offline-cache")
     public ResponseEntity<Map<String, Object>> getOfflineCacheData() {
-        List<Food> allFoods = foodService.getAllFoods();
+        // 先取版本再查詢：查詢期間的變更會讓客戶端再收到一次通知，而不是漏掉
+        long revision = foodChangeBus.currentRevision();
+        List<FoodOfflineView> allFoods = foodService.getOfflineFoods();
         
         // 轉換為適合前端快取的格式
         List<Map<String, Object>> foodsData = allFoods.stream()
@@ -134,6 +220,7 @@ public class OfflineCacheController {
         response.put("cacheVersion", CACHE_VERSION);
         response.put("timestamp", Instant.now().toString());
         response.put("lastUpdate", lastDataUpdateTimestamp);
+        response.put("revision", revision);
         
         return ResponseEntity.ok()
                 .header("Cache-Control", "no-cache")
@@ -150,7 +237,8 @@ public class OfflineCacheController {
         response.put("version", CACHE_VERSION);
         response.put("timestamp", Instant.now().toString());
         response.put("lastUpdate", lastDataUpdateTimestamp);
-        response.put("totalFoods", foodService.getAllFoods().size());
+        response.put("revision", foodChangeBus.currentRevision());
+        response.put("totalFoods", foodService.countFoods());
         
         return ResponseEntity.ok()
                 .header("Cache-Control", "no-cache")
@@ -172,11 +260,8 @@ public class OfflineCacheController {
      */
     @GetMapping("/image-list")
     public ResponseEntity<Map<String, Object>> getImageList() {
-        List<Food> allFoods = foodService.getAllFoods();
-        
-        List<String> imageUrls = allFoods.stream()
-                .filter(food -> food.getImagePath() != null && !food.getImagePath().isEmpty())
-                .map(food -> "/foods/images/" + food.getImagePath())
+        List<String> imageUrls = foodService.getAllImagePaths().stream()
+                .map(imagePath -> "/foods/images/" + imagePath)
                 .collect(Collectors.toList());
         
         Map<String, Object> response = new HashMap<>();
@@ -198,9 +283,9 @@ public class OfflineCacheController {
     }
     
     /**
-     * 將 Food 實體轉換為 Map，適合前端使用
+     * 將食物投影轉換為 Map，適合前端使用
      */
-    private Map<String, Object> convertFoodToMap(Food food) {
+    private Map<String, Object> convertFoodToMap(FoodOfflineView food) {
         Map<String, Object> map = new HashMap<>();
         map.put("id", food.getId());
         map.put("name", food.getName());
@@ -211,6 +296,7 @@ public class OfflineCacheController {
         map.put("notes", food.getNotes());
         map.put("imagePath", food.getImagePath());
         map.put("imageContentType", food.getImageContentType());
+        map.put("imageProcessing", food.getImageProcessing());
         map.put("isFavorite", food.getIsFavorite());
         return map;
     }
@@ -0,0 +1,54 @@
+package com.example.foodhistory.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.resource.ResourceUrlProvider;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Service Worker 預快取清單
+ * sw.js 以 importScripts 載入，清單中是資源鏈產生的內容雜湊網址；資源內容改變時清單也改變，
+ * 瀏覽器比對後更新 Service Worker，不需要手動修改版本號。
+ */
+@RestController
+public class ServiceWorkerController {
+
+    // 預快取的靜態資源（未加雜湊的路徑）
+    static final List<String> PRECACHE_ASSETS = Arrays.asList(
+            "/css/main.css",
+            "/css/recommendations.css",
+            "/css/bootstrap-icons.css",
+            "/fonts/bootstrap-icons.woff2",
+            "/fonts/bootstrap-icons.woff",
+            "/js/food.js",
+            "/js/offline-search.js",
+            "/js/connection-manager.js");
+
+    @Autowired
+    private ResourceUrlProvider resourceUrlProvider;
+
+    @GetMapping(value = "/sw-precache.js", produces = "application/javascript")
+    public ResponseEntity<String> precacheManifest() {
+        StringBuilder script = new StringBuilder("self.__PRECACHE_MANIFEST = [");
+        boolean first = true;
+        for (String asset : PRECACHE_ASSETS) {
+            String url = resourceUrlProvider.getForLookupPath(asset);
+            if (url == null) {
+                continue;
+            }
+            if (!first) {
+                script.append(',');
+            }
+            script.append("\n    { url: '").append(url).append("', revision: null }");
+            first = false;
+        }
+        script.append("\n];\n");
+        return ResponseEntity.ok()
+                .header("Cache-Control", "no-cache")
+                .body(script.toString());
+    }
+}
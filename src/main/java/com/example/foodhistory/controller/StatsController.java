@@ -0,0 +1,254 @@
+package com.example.foodhistory.controller;
+
+import com.example.foodhistory.cluster.ClusterBus;
+import com.example.foodhistory.concurrent.ConnectionLimiter;
+import com.example.foodhistory.concurrent.StreamDispatcher;
+import com.example.foodhistory.config.StartupTimingReporter;
+import com.example.foodhistory.datasource.ConnectionPoolMetrics;
+import com.example.foodhistory.datasource.ReadReplicaRoutingDataSource;
+import com.example.foodhistory.logging.SqlLogging;
+import com.example.foodhistory.service.FileStorageService;
+import com.example.foodhistory.service.ImageProcessingService;
+import com.example.foodhistory.service.ImageReconciliationService;
+import com.example.foodhistory.service.ImageStorageMigrationService;
+import com.example.foodhistory.service.SearchResultCache;
+import com.example.foodhistory.session.StoreSessionRepository;
+import com.example.foodhistory.websocket.ConnectionWebSocketHandler;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 執行統計 API 控制器
+ * 提供快取命中率等運行指標，方便觀察效能
+ */
+@RestController
+@RequestMapping("/api/stats")
+public class StatsController {
+    
+    @Autowired
+    private SearchResultCache searchResultCache;
+    
+    @Autowired
+    private ImageProcessingService imageProcessingService;
+    
+    @Autowired
+    private FileStorageService fileStorageService;
+    
+    @Autowired
+    private ImageReconciliationService imageReconciliationService;
+    
+    @Autowired
+    private ImageStorageMigrationService imageStorageMigrationService;
+    
+    @Autowired
+    private StreamDispatcher streamDispatcher;
+    
+    @Autowired
+    private OfflineCacheController offlineCacheController;
+    
+    @Autowired
+    private ConnectionWebSocketHandler connectionWebSocketHandler;
+    
+    @Autowired
+    private ConnectionLimiter connectionLimiter;
+    
+    @Autowired
+    private StartupTimingReporter startupTimingReporter;
+    
+    @Autowired
+    private ConnectionPoolMetrics connectionPoolMetrics;
+    
+    @Autowired
+    private SqlLogging sqlLogging;
+    
+    @Autowired
+    private ClusterBus clusterBus;
+    
+    // 只有設定唯讀副本時才存在
+    @Autowired(required = false)
+    private ReadReplicaRoutingDataSource readReplicaRoutingDataSource;
+    
+    // 只有 app.session.store=jdbc / redis 時才存在
+    @Autowired(required = false)
+    private StoreSessionRepository storeSessionRepository;
+    
+    /**
+     * 搜尋結果快取統計
+     */
+    @GetMapping("/search-cache")
+    public ResponseEntity<Map<String, Object>> searchCache() {
+        return ResponseEntity.ok()
+                .header("Cache-Control", "no-cache")
+                .body(searchResultCache.getStats());
+    }
+    
+    /**
+     * 圖片背景處理佇列統計
+     */
+    @GetMapping("/image-processing")
+    public ResponseEntity<Map<String, Object>> imageProcessing() {
+        return ResponseEntity.ok()
+                .header("Cache-Control", "no-cache")
+                .body(imageProcessingService.getStats());
+    }
+    
+    /**
+     * 影像位元組快取統計（命中率、使用量）
+     */
+    @GetMapping("/image-cache")
+    public ResponseEntity<Map<String, Object>> imageCache() {
+        return ResponseEntity.ok()
+                .header("Cache-Control", "no-cache")
+                .body(fileStorageService.getImageCacheStats());
+    }
+    
+    /**
+     * 圖片儲存對帳報告（清除的孤立檔案、回收空間、引用不存在圖片的食物）
+     */
+    @GetMapping("/image-gc")
+    public ResponseEntity<Map<String, Object>> imageGc() {
+        return ResponseEntity.ok()
+                .header("Cache-Control", "no-cache")
+                .body(imageReconciliationService.getReport());
+    }
+    
+    /**
+     * 立即在背景執行一次圖片儲存對帳
+     */
+    @PostMapping("/image-gc")
+    public ResponseEntity<Map<String, Object>> runImageGc() {
+        boolean started = imageReconciliationService.trigger();
+        return ResponseEntity.status(started ? HttpStatus.ACCEPTED : HttpStatus.CONFLICT)
+                .body(imageReconciliationService.getReport());
+    }
+    
+    /**
+     * 影像目錄分層遷移進度
+     */
+    @GetMapping("/image-storage")
+    public ResponseEntity<Map<String, Object>> imageStorage() {
+        return ResponseEntity.ok()
+                .header("Cache-Control", "no-cache")
+                .body(imageStorageMigrationService.getStatus());
+    }
+    
+    /**
+     * 執行緒與長連線統計（是否使用虛擬執行緒、平台執行緒數、heap 使用量、SSE / WebSocket 連線數）
+     */
+    @GetMapping("/threads")
+    public ResponseEntity<Map<String, Object>> threads() {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("javaVersion", System.getProperty("java.version"));
+        stats.put("virtualThreads", streamDispatcher.isVirtual());
+        stats.put("platformThreads", threadBean.getThreadCount());
+        stats.put("peakPlatformThreads", threadBean.getPeakThreadCount());
+        stats.put("heapUsedBytes", ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
+        stats.put("sseConnections", offlineCacheController.getConnectionCount());
+        stats.put("webSocketConnections", connectionWebSocketHandler.getConnectionCount());
+        return ResponseEntity.ok()
+                .header("Cache-Control", "no-cache")
+                .body(stats);
+    }
+    
+    /**
+     * 長連線許可統計（目前 SSE / WebSocket 連線數、使用者數、上限，以及拒絕、取代、到期的次數）
+     */
+    @GetMapping("/streams")
+    public ResponseEntity<Map<String, Object>> streams() {
+        return ResponseEntity.ok()
+                .header("Cache-Control", "no-cache")
+                .body(connectionLimiter.getStats());
+    }
+    
+    /**
+     * WebSocket 統計（連線數、二進位協定連線數、協定層 ping / pong 次數、閒置關閉數、送出的訊息數與位元組數）
+     */
+    @GetMapping("/websocket")
+    public ResponseEntity<Map<String, Object>> websocket() {
+        return ResponseEntity.ok()
+                .header("Cache-Control", "no-cache")
+                .body(connectionWebSocketHandler.getStats());
+    }
+    
+    /**
+     * 最近一次啟動的各階段耗時
+     */
+    @GetMapping("/startup")
+    public ResponseEntity<Map<String, Object>> startup() {
+        return ResponseEntity.ok()
+                .header("Cache-Control", "no-cache")
+                .body(startupTimingReporter.getReport());
+    }
+    
+    /**
+     * 資料庫連線池統計（使用中 / 閒置 / 等待中連線數、取得連線延遲、逾時次數）與讀寫分離路由次數
+     */
+    @GetMapping("/db-pool")
+    public ResponseEntity<Map<String, Object>> dbPool() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("pools", connectionPoolMetrics.getStats());
+        stats.put("routing", readReplicaRoutingDataSource != null ? readReplicaRoutingDataSource.getStats() : null);
+        return ResponseEntity.ok()
+                .header("Cache-Control", "no-cache")
+                .body(stats);
+    }
+    
+    /**
+     * 叢集訊息匯流排統計（節點識別碼、最新序號、送出 / 傳遞筆數、批次寫入次數）
+     */
+    @GetMapping("/cluster")
+    public ResponseEntity<Map<String, Object>> cluster() {
+        return ResponseEntity.ok()
+                .header("Cache-Control", "no-cache")
+                .body(clusterBus.getStats());
+    }
+    
+    /**
+     * 外部 Session 儲存統計（讀取 / 寫入次數、略過的寫入、寫入的屬性位元組數）；使用容器記憶體 Session 時為 store=memory
+     */
+    @GetMapping("/sessions")
+    public ResponseEntity<Map<String, Object>> sessions() {
+        Map<String, Object> stats;
+        if (storeSessionRepository != null) {
+            stats = storeSessionRepository.getStats();
+        } else {
+            stats = new HashMap<>();
+            stats.put("store", "memory");
+        }
+        return ResponseEntity.ok()
+                .header("Cache-Control", "no-cache")
+                .body(stats);
+    }
+    
+    /**
+     * SQL 日誌目前是否開啟
+     */
+    @GetMapping("/sql-logging")
+    public ResponseEntity<Map<String, Object>> sqlLogging() {
+        return ResponseEntity.ok()
+                .header("Cache-Control", "no-cache")
+                .body(sqlLogging.getStatus());
+    }
+    
+    /**
+     * 執行期開關 SQL 日誌（bindParameters=true 時一併記錄綁定參數）
+     */
+    @PostMapping("/sql-logging")
+    public ResponseEntity<Map<String, Object>> setSqlLogging(@RequestParam boolean enabled,
+                                                             @RequestParam(defaultValue = "false") boolean bindParameters) {
+        sqlLogging.setEnabled(enabled, bindParameters);
+        return ResponseEntity.ok(sqlLogging.getStatus());
+    }
+}
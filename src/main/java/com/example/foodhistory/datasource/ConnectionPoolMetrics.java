@@ -0,0 +1,111 @@
+package com.example.foodhistory.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.PoolStats;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 連線池指標
+ * 為每個 HikariDataSource 在連線池啟動前掛上統計器，記錄使用中 / 閒置 / 等待中的連線數，
+ * 以及取得連線的延遲、連線占用時間與逾時次數。
+ */
+@Component
+public class ConnectionPoolMetrics implements BeanPostProcessor {
+
+    private final Map<String, PoolTracker> trackers = new ConcurrentHashMap<>();
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) {
+        if (bean instanceof HikariDataSource) {
+            register((HikariDataSource) bean);
+        }
+        return bean;
+    }
+
+    /**
+     * 必須在第一次取得連線（連線池啟動）之前呼叫
+     */
+    public void register(HikariDataSource dataSource) {
+        if (dataSource.getMetricsTrackerFactory() != null || dataSource.getMetricRegistry() != null) {
+            return;
+        }
+        dataSource.setMetricsTrackerFactory((poolName, poolStats) -> {
+            PoolTracker tracker = new PoolTracker(poolStats);
+            trackers.put(poolName, tracker);
+            return tracker;
+        });
+    }
+
+    /**
+     * 各連線池目前的狀態與累計統計
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        for (Map.Entry<String, PoolTracker> entry : trackers.entrySet()) {
+            stats.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        return stats;
+    }
+
+    static class PoolTracker implements IMetricsTracker {
+
+        private final PoolStats poolStats;
+        private final LongAdder acquireCount = new LongAdder();
+        private final LongAdder acquireNanos = new LongAdder();
+        private final AtomicLong maxAcquireNanos = new AtomicLong();
+        private final LongAdder usageCount = new LongAdder();
+        private final LongAdder usageMillis = new LongAdder();
+        private final AtomicLong maxUsageMillis = new AtomicLong();
+        private final LongAdder timeouts = new LongAdder();
+
+        PoolTracker(PoolStats poolStats) {
+            this.poolStats = poolStats;
+        }
+
+        @Override
+        public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+            acquireCount.increment();
+            acquireNanos.add(elapsedAcquiredNanos);
+            maxAcquireNanos.accumulateAndGet(elapsedAcquiredNanos, Math::max);
+        }
+
+        @Override
+        public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+            usageCount.increment();
+            usageMillis.add(elapsedBorrowedMillis);
+            maxUsageMillis.accumulateAndGet(elapsedBorrowedMillis, Math::max);
+        }
+
+        @Override
+        public void recordConnectionTimeout() {
+            timeouts.increment();
+        }
+
+        Map<String, Object> snapshot() {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("active", poolStats.getActiveConnections());
+            stats.put("idle", poolStats.getIdleConnections());
+            stats.put("pending", poolStats.getPendingThreads());
+            stats.put("total", poolStats.getTotalConnections());
+            stats.put("max", poolStats.getMaxConnections());
+            long acquired = acquireCount.sum();
+            stats.put("acquireCount", acquired);
+            stats.put("acquireAvgMs", acquired == 0 ? 0.0 : acquireNanos.sum() / (double) acquired / TimeUnit.MILLISECONDS.toNanos(1));
+            stats.put("acquireMaxMs", maxAcquireNanos.get() / (double) TimeUnit.MILLISECONDS.toNanos(1));
+            long used = usageCount.sum();
+            stats.put("usageAvgMs", used == 0 ? 0.0 : usageMillis.sum() / (double) used);
+            stats.put("usageMaxMs", maxUsageMillis.get());
+            stats.put("timeouts", timeouts.sum());
+            return stats;
+        }
+    }
+}
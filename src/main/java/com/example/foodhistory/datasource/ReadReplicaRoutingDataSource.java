@@ -0,0 +1,54 @@
+package com.example.foodhistory.datasource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 讀寫分離資料來源
+ * 唯讀交易（@Transactional(readOnly = true)）的連線取自唯讀副本，其餘（寫入交易、交易外的查詢、結構更新）取自主資料庫。
+ * 交易管理器在標記唯讀之前就會取得連線，因此必須外包一層 LazyConnectionDataSourceProxy，
+ * 讓實際取得連線延後到第一個 SQL 執行時。副本可能稍微落後主資料庫，寫入後需要立即讀回的流程應在寫入交易內讀取。
+ */
+public class ReadReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    static final String PRIMARY = "primary";
+    static final String REPLICA = "replica";
+
+    private final LongAdder primaryLookups = new LongAdder();
+    private final LongAdder replicaLookups = new LongAdder();
+
+    public ReadReplicaRoutingDataSource(DataSource primary, DataSource replica) {
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        targets.put(REPLICA, replica);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            replicaLookups.increment();
+            return REPLICA;
+        }
+        primaryLookups.increment();
+        return PRIMARY;
+    }
+
+    /**
+     * 各目標取得連線的次數
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("primaryConnections", primaryLookups.sum());
+        stats.put("replicaConnections", replicaLookups.sum());
+        return stats;
+    }
+}
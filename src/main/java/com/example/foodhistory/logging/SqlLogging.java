@@ -0,0 +1,69 @@
+package com.example.foodhistory.logging;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.logging.LogLevel;
+import org.springframework.boot.logging.LoggerConfiguration;
+import org.springframework.boot.logging.LoggingSystem;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * SQL 日誌執行期開關
+ * 預設關閉（spring.jpa.show-sql=false，Hibernate SQL logger 為 INFO）；排查問題時可暫時開啟，不必重新啟動。
+ * 綁定參數可能含使用者資料，需另外指定才記錄（只限管理員，見 SecurityConfig）。
+ * 開啟後超過 max-duration-ms 自動關閉，避免忘記關閉時持續輸出大量日誌。
+ */
+@Component
+public class SqlLogging {
+
+    private static final Logger logger = LoggerFactory.getLogger(SqlLogging.class);
+
+    static final String SQL_LOGGER = "org.hibernate.SQL";
+    static final String BINDER_LOGGER = "org.hibernate.type.descriptor.sql.BasicBinder";
+
+    @Autowired
+    private LoggingSystem loggingSystem;
+
+    // 開啟後自動關閉的時間，0 表示不自動關閉
+    @Value("${app.logging.sql.max-duration-ms:600000}")
+    private long maxDurationMs = 600000;
+
+    // 自動關閉的時間點，0 表示目前沒有由本開關開啟的 SQL 日誌
+    private volatile long expiresAt;
+
+    public synchronized void setEnabled(boolean enabled, boolean bindParameters) {
+        loggingSystem.setLogLevel(SQL_LOGGER, enabled ? LogLevel.DEBUG : LogLevel.INFO);
+        loggingSystem.setLogLevel(BINDER_LOGGER, enabled && bindParameters ? LogLevel.TRACE : LogLevel.INFO);
+        expiresAt = enabled && maxDurationMs > 0 ? System.currentTimeMillis() + maxDurationMs : 0;
+    }
+
+    /**
+     * 到期時關閉 SQL 日誌
+     */
+    @Scheduled(fixedDelayString = "${app.logging.sql.expiry-check-ms:10000}")
+    public synchronized void expire() {
+        if (expiresAt != 0 && System.currentTimeMillis() >= expiresAt) {
+            setEnabled(false, false);
+            logger.info("SQL 日誌已開啟超過 {} ms，自動關閉", maxDurationMs);
+        }
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("sql", isAtLeast(SQL_LOGGER, LogLevel.DEBUG));
+        status.put("bindParameters", isAtLeast(BINDER_LOGGER, LogLevel.TRACE));
+        status.put("expiresAt", expiresAt == 0 ? null : expiresAt);
+        return status;
+    }
+
+    private boolean isAtLeast(String loggerName, LogLevel level) {
+        LoggerConfiguration configuration = loggingSystem.getLoggerConfiguration(loggerName);
+        return configuration != null && configuration.getEffectiveLevel().ordinal() <= level.ordinal();
+    }
+}
@@ -4,6 +4,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.core.annotation.Order;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
@@ -12,8 +13,14 @@ import javax.sql.DataSource;
 import java.util.List;
 import java.util.Map;
 
+/**
+ * 舊版 persistent_logins 表（series 為主鍵、沒有 id 欄位）的結構遷移
+ * 每次啟動都會查詢 INFORMATION_SCHEMA；改用 Flyway 管理結構（fast-startup profile）時以
+ * app.migration.persistent-logins.enabled=false 關閉。
+ */
 @Component
 @Order(1) // 確保在其他初始化之前執行
+@ConditionalOnProperty(name = "app.migration.persistent-logins.enabled", havingValue = "true", matchIfMissing = true)
 public class PersistentLoginsMigration implements CommandLineRunner {
 
     private static final Logger logger = LoggerFactory.getLogger(PersistentLoginsMigration.class);
@@ -35,6 +35,10 @@ public class Food {
     @Column(name = "image_content_type")
     private String imageContentType;
     
+    // 圖片仍在背景處理中（縮圖、轉正、移除中繼資料），處理完成前顯示的是原始上傳檔
+    @Column(name = "image_processing", nullable = false, columnDefinition = "BOOLEAN DEFAULT FALSE")
+    private Boolean imageProcessing = false;
+    
     @Column(name = "is_favorite", nullable = false, columnDefinition = "BOOLEAN DEFAULT FALSE")
     private Boolean isFavorite = false;
 }
\ No newline at end of file
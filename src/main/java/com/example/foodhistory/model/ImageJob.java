@@ -0,0 +1,48 @@
+package com.example.foodhistory.model;
+
+import lombok.Data;
+import javax.persistence.*;
+import java.util.Date;
+
+@Data
+@Entity
+@Table(name = "image_jobs",
+       indexes = @Index(name = "idx_image_jobs_status", columnList = "status, id"))
+public class ImageJob {
+    
+    public enum Status {
+        PENDING, RUNNING, DONE, FAILED
+    }
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "food_id", nullable = false)
+    private Long foodId;
+    
+    @Column(name = "filename", nullable = false)
+    private String filename;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", length = 10, nullable = false)
+    private Status status = Status.PENDING;
+    
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+    
+    @Column(name = "last_error")
+    private String lastError;
+    
+    // 認領工作的節點（叢集節點 ID），執行中定期更新 updated_at，逾時未更新視為節點已停止
+    @Column(name = "owner_node", length = 64)
+    private String ownerNode;
+    
+    @Column(name = "created_at", nullable = false)
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date createdAt;
+    
+    @Column(name = "updated_at", nullable = false)
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date updatedAt;
+}
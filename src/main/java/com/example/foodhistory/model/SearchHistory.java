@@ -0,0 +1,27 @@
+package com.example.foodhistory.model;
+
+import lombok.Data;
+import javax.persistence.*;
+import java.util.Date;
+
+@Data
+@Entity
+@Table(name = "search_history",
+       uniqueConstraints = @UniqueConstraint(columnNames = {"username", "keyword"}),
+       indexes = @Index(name = "idx_search_history_user_time", columnList = "username, searched_at"))
+public class SearchHistory {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "username", nullable = false)
+    private String username;
+    
+    @Column(name = "keyword", length = 100, nullable = false)
+    private String keyword;
+    
+    @Column(name = "searched_at", nullable = false)
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date searchedAt;
+}
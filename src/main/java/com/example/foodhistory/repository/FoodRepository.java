@@ -1,14 +1,60 @@
 package com.example.foodhistory.repository;
 
 import com.example.foodhistory.model.Food;
+import com.example.foodhistory.repository.projection.FoodImageView;
+import com.example.foodhistory.repository.projection.FoodIndexView;
+import com.example.foodhistory.repository.projection.FoodListView;
+import com.example.foodhistory.repository.projection.FoodOfflineView;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 public interface FoodRepository extends JpaRepository<Food, Long> {
     List<Food> findByNameContainingIgnoreCase(String keyword);
     Page<Food> findByNameContainingIgnoreCase(String keyword, Pageable pageable);
     List<Food> findByIsFavoriteTrueOrderByNameAsc();
     Page<Food> findByIsFavoriteTrueOrderByNameAsc(Pageable pageable);
+    
+    @Query("SELECT f.name FROM Food f WHERE f.id = :id")
+    Optional<String> findNameById(@Param("id") Long id);
+    
+    List<FoodIndexView> findAllProjectedBy();
+    
+    // 列表頁與離線 API 的唯讀查詢：回傳投影而非受管實體，只讀取需要的欄位，也不必保留髒檢查快照
+    @Transactional(readOnly = true)
+    Page<FoodListView> findListViewsBy(Pageable pageable);
+    
+    @Transactional(readOnly = true)
+    Page<FoodListView> findListViewsByNameContainingIgnoreCase(String keyword, Pageable pageable);
+    
+    @Transactional(readOnly = true)
+    List<FoodListView> findListViewsByIdIn(Collection<Long> ids);
+    
+    @Transactional(readOnly = true)
+    List<FoodListView> findListViewsByIsFavoriteTrueOrderByNameAsc(Pageable pageable);
+    
+    @Transactional(readOnly = true)
+    List<FoodOfflineView> findOfflineViewsBy();
+    
+    @Transactional(readOnly = true)
+    @Query("SELECT f.imagePath FROM Food f WHERE f.imagePath IS NOT NULL AND f.imagePath <> '' ORDER BY f.id")
+    List<String> findAllImagePaths();
+    
+    @Query("SELECT f.imagePath FROM Food f WHERE f.imagePath IN :imagePaths")
+    List<String> findImagePathsIn(@Param("imagePaths") Collection<String> imagePaths);
+    
+    // 以 ID 分段（keyset）逐批讀取有圖片的食物，不必一次載入全表
+    List<FoodImageView> findByImagePathIsNotNullAndIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+    
+    @Transactional
+    @Modifying
+    @Query("UPDATE Food f SET f.imageProcessing = :processing WHERE f.id = :id AND f.imagePath = :imagePath")
+    int updateImageProcessing(@Param("id") Long id, @Param("imagePath") String imagePath, @Param("processing") boolean processing);
 }
\ No newline at end of file
@@ -0,0 +1,55 @@
+package com.example.foodhistory.repository;
+
+import com.example.foodhistory.model.ImageJob;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+public interface ImageJobRepository extends JpaRepository<ImageJob, Long> {
+    List<ImageJob> findByStatusOrderByIdAsc(ImageJob.Status status, Pageable pageable);
+    
+    Optional<ImageJob> findFirstByFoodIdOrderByIdDesc(Long foodId);
+    
+    long countByStatus(ImageJob.Status status);
+    
+    /**
+     * 認領工作：只有狀態仍是 from 時才改為 to 並記錄節點，回傳 1 表示認領成功
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE ImageJob j SET j.status = :to, j.attempts = j.attempts + 1, j.ownerNode = :owner, j.updatedAt = :now "
+            + "WHERE j.id = :id AND j.status = :from")
+    int claim(@Param("id") Long id, @Param("from") ImageJob.Status from, @Param("to") ImageJob.Status to,
+              @Param("owner") String owner, @Param("now") Date now);
+    
+    /**
+     * 結束工作：只有仍由該節點執行中時才寫入結果，回傳 0 表示工作已被其他節點接手
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE ImageJob j SET j.status = :to, j.lastError = :lastError, j.updatedAt = :now "
+            + "WHERE j.id = :id AND j.status = :from AND j.ownerNode = :owner")
+    int finish(@Param("id") Long id, @Param("owner") String owner, @Param("from") ImageJob.Status from,
+               @Param("to") ImageJob.Status to, @Param("lastError") String lastError, @Param("now") Date now);
+    
+    @Transactional
+    @Modifying
+    @Query("UPDATE ImageJob j SET j.updatedAt = :now WHERE j.status = :status AND j.ownerNode = :owner")
+    int heartbeat(@Param("owner") String owner, @Param("status") ImageJob.Status status, @Param("now") Date now);
+    
+    /**
+     * 把指定節點或逾時未更新的執行中工作改回 to
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE ImageJob j SET j.status = :to, j.ownerNode = NULL "
+            + "WHERE j.status = :from AND (j.ownerNode = :owner OR j.updatedAt < :staleBefore)")
+    int requeue(@Param("owner") String owner, @Param("staleBefore") Date staleBefore,
+                @Param("from") ImageJob.Status from, @Param("to") ImageJob.Status to);
+}
@@ -0,0 +1,11 @@
+package com.example.foodhistory.repository;
+
+import com.example.foodhistory.model.SearchHistory;
+import org.springframework.data.jpa.repository.JpaRepository;
+import java.util.List;
+import java.util.Optional;
+
+public interface SearchHistoryRepository extends JpaRepository<SearchHistory, Long> {
+    Optional<SearchHistory> findByUsernameAndKeyword(String username, String keyword);
+    List<SearchHistory> findByUsernameOrderBySearchedAtDesc(String username);
+}
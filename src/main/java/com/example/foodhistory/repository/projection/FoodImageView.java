@@ -0,0 +1,9 @@
+package com.example.foodhistory.repository.projection;
+
+/**
+ * 食物圖片投影：只取圖片對帳所需的欄位
+ */
+public interface FoodImageView {
+    Long getId();
+    String getImagePath();
+}
@@ -0,0 +1,14 @@
+package com.example.foodhistory.repository.projection;
+
+/**
+ * 食物索引投影：只取建立記憶體搜尋索引所需的欄位（不含圖片資訊）
+ */
+public interface FoodIndexView {
+    Long getId();
+    String getName();
+    Double getCoefficient();
+    Double getCarbGrams();
+    String getUnit();
+    String getNotes();
+    Boolean getIsFavorite();
+}
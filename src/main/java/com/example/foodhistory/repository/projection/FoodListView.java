@@ -0,0 +1,16 @@
+package com.example.foodhistory.repository.projection;
+
+/**
+ * 食物列表投影：只取列表頁與推薦區塊顯示所需的欄位（唯讀，不建立受管實體）
+ */
+public interface FoodListView {
+    Long getId();
+    String getName();
+    Double getCoefficient();
+    Double getCarbGrams();
+    Double getQuantity();
+    String getUnit();
+    String getNotes();
+    String getImagePath();
+    Boolean getIsFavorite();
+}
@@ -0,0 +1,18 @@
+package com.example.foodhistory.repository.projection;
+
+/**
+ * 離線快取投影：前端離線資料所需的欄位（唯讀，不建立受管實體）
+ */
+public interface FoodOfflineView {
+    Long getId();
+    String getName();
+    Double getCarbGrams();
+    Double getCoefficient();
+    Double getQuantity();
+    String getUnit();
+    String getNotes();
+    String getImagePath();
+    String getImageContentType();
+    Boolean getImageProcessing();
+    Boolean getIsFavorite();
+}
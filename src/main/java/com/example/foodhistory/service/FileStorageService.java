@@ -1,15 +1,39 @@
 package com.example.foodhistory.service;
 
+import com.example.foodhistory.storage.BlobInfo;
+import com.example.foodhistory.storage.BlobStore;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import javax.annotation.PostConstruct;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Stream;
 
 @Service
 public class FileStorageService {
@@ -17,8 +41,182 @@ public class FileStorageService {
     @Value("${app.image.storage.path:./data/images}")
     private String imageStoragePath;
     
+    // 兩層雜湊前綴目錄（例如 3f/a2/12.jpg），避免單一目錄累積大量檔案
+    @Value("${app.image.storage.sharded:true}")
+    private boolean sharded = true;
+    
+    // 共用物件儲存（app.image.blob.store=filesystem / s3）；未設定時影像只存在本機目錄
+    @Autowired(required = false)
+    private BlobStore blobStore;
+    
+    // 使用共用物件儲存時，本機快取副本每隔這段時間向物件儲存確認一次是否已被其他節點替換或刪除
+    @Value("${app.image.blob.revalidate-ms:60000}")
+    private long blobRevalidateMs = 60000;
+    
+    @Value("${app.image.max-size-bytes:20971520}")
+    private long maxImageBytes = 20L * 1024 * 1024;
+    
+    // 單張影像的像素數上限（寬 × 高），上傳時只讀檔頭檢查，0 表示不限制
+    @Value("${app.image.max-pixels:40000000}")
+    private long maxPixels = 40000000;
+    
+    @Value("${app.image.variants.webp.enabled:true}")
+    private boolean webpEnabled = true;
+    
+    @Value("${app.image.variants.webp.command:cwebp}")
+    private String webpCommand = "cwebp";
+    
+    @Value("${app.image.variants.webp.quality:75}")
+    private int webpQuality = 75;
+    
+    @Value("${app.image.variants.avif.enabled:false}")
+    private boolean avifEnabled = false;
+    
+    @Value("${app.image.variants.avif.command:avifenc}")
+    private String avifCommand = "avifenc";
+    
+    @Value("${app.image.variants.avif.quality:60}")
+    private int avifQuality = 60;
+    
+    // 變體必須小於原檔的這個比例才保留，否則直接送原檔
+    @Value("${app.image.variants.max-ratio:0.9}")
+    private double variantMaxRatio = 0.9;
+    
+    @Value("${app.image.variants.timeout-ms:30000}")
+    private long variantTimeoutMs = 30000;
+    
+    // 熱門小圖的位元組快取總容量（heap 記憶體），0 表示停用
+    @Value("${app.image.cache.max-bytes:33554432}")
+    private long imageCacheMaxBytes = 32L * 1024 * 1024;
+    
+    // 超過此大小的圖片不放入位元組快取，改由 sendfile 送出
+    @Value("${app.image.cache.max-entry-bytes:262144}")
+    private long imageCacheMaxEntryBytes = 256 * 1024;
+    
+    // 串流寫入時使用的緩衝區大小（每個上傳固定一塊，不隨檔案大小成長）
+    private static final int BUFFER_SIZE = 64 * 1024;
+    
     private Path imageStorageLocation;
     
+    // 平面目錄全部搬到分層目錄後建立的標記檔
+    private static final String MIGRATED_MARKER = ".sharded";
+    
+    // 遷移完成前，分層路徑找不到檔案時要再找舊的平面路徑
+    private volatile boolean legacyLookup;
+    
+    // 中繼資料快取的筆數上限（原檔與變體分開計算），超過時釋放最久未使用者
+    @Value("${app.image.metadata-cache.max-entries:10000}")
+    private int metadataCacheMaxEntries = 10000;
+    
+    // 「變體不存在」標記的保留時間，到期後重新查詢檔案系統
+    @Value("${app.image.metadata-cache.missing-ttl-ms:30000}")
+    private long missingTtlMs = 30000;
+    
+    // 影像中繼資料快取（長度、修改時間、content type），供送出影像時直接使用，不必每次查詢檔案系統
+    // access-order LRU，存取時需鎖定 metadataCache
+    private final LinkedHashMap<String, CachedMetadata> metadataCache = new LinkedHashMap<String, CachedMetadata>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedMetadata> eldest) {
+            return size() > metadataCacheMaxEntries;
+        }
+    };
+    
+    private ImageByteCache imageByteCache;
+    
+    // 變體不存在的標記，避免每次請求都查詢檔案系統
+    private static final ImageMetadata MISSING = new ImageMetadata(null, 0, 0, null);
+    
+    /**
+     * 快取的中繼資料與本機副本最近一次向物件儲存確認的時間
+     */
+    private static final class CachedMetadata {
+        final ImageMetadata metadata;
+        final long cachedAt;
+        volatile long validatedAt;
+        
+        CachedMetadata(ImageMetadata metadata, long now) {
+            this.metadata = metadata;
+            this.cachedAt = now;
+            this.validatedAt = now;
+        }
+    }
+    
+    // 影像變體編碼器，依偏好順序排列（AVIF 壓縮率最好）
+    private final List<ImageTranscoder> transcoders = new ArrayList<>();
+    
+    /**
+     * 已儲存影像的中繼資料
+     */
+    public static final class ImageMetadata {
+        private final Path path;
+        private final long length;
+        private final long lastModified;
+        private final String contentType;
+        private final String etag;
+        
+        ImageMetadata(Path path, long length, long lastModified, String contentType) {
+            this.path = path;
+            this.length = length;
+            this.lastModified = lastModified;
+            this.contentType = contentType;
+            // 強式 ETag（長度 + 修改時間），If-Range 只接受強式比對
+            this.etag = "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+        }
+        
+        public Path getPath() {
+            return path;
+        }
+        
+        public long getLength() {
+            return length;
+        }
+        
+        public long getLastModified() {
+            return lastModified;
+        }
+        
+        public String getContentType() {
+            return contentType;
+        }
+        
+        public String getEtag() {
+            return etag;
+        }
+    }
+    
+    /**
+     * 串流儲存的結果
+     */
+    public static final class StoredImage {
+        private final String filename;
+        private final String contentType;
+        private final long size;
+        private final String sha256;
+        
+        StoredImage(String filename, String contentType, long size, String sha256) {
+            this.filename = filename;
+            this.contentType = contentType;
+            this.size = size;
+            this.sha256 = sha256;
+        }
+        
+        public String getFilename() {
+            return filename;
+        }
+        
+        public String getContentType() {
+            return contentType;
+        }
+        
+        public long getSize() {
+            return size;
+        }
+        
+        public String getSha256() {
+            return sha256;
+        }
+    }
+    
     @PostConstruct
     public void init() {
         this.imageStorageLocation = Paths.get(imageStoragePath).toAbsolutePath().normalize();
@@ -27,6 +225,14 @@ public class FileStorageService {
         } catch (IOException ex) {
             throw new RuntimeException("Could not create image storage directory!", ex);
         }
+        legacyLookup = sharded && !Files.exists(this.imageStorageLocation.resolve(MIGRATED_MARKER));
+        imageByteCache = new ImageByteCache(imageCacheMaxBytes, imageCacheMaxEntryBytes);
+        if (avifEnabled) {
+            transcoders.add(ImageTranscoder.avif(avifCommand, avifQuality, variantTimeoutMs));
+        }
+        if (webpEnabled) {
+            transcoders.add(ImageTranscoder.webp(webpCommand, webpQuality, variantTimeoutMs));
+        }
     }
     
     /**
@@ -39,22 +245,132 @@ public class FileStorageService {
         if (file.isEmpty()) {
             return null;
         }
-        
-        // 取得檔案副檔名
-        String originalFilename = file.getOriginalFilename();
-        String extension = "";
-        if (originalFilename != null && originalFilename.contains(".")) {
-            extension = originalFilename.substring(originalFilename.lastIndexOf("."));
+        try (InputStream in = file.getInputStream()) {
+            return storeImage(in, foodId).getFilename();
+        }
+    }
+    
+    /**
+     * 以串流方式儲存影像：單次讀取同時檢查 magic bytes、計算 SHA-256 並寫入暫存檔，完成後以原子搬移放到定位
+     * 每個上傳只使用固定大小的緩衝區，記憶體用量與檔案大小、同時上傳數無關
+     * @param in 影像內容（呼叫端負責關閉）
+     * @param foodId 食物ID
+     * @return 儲存結果（檔名的副檔名依實際格式決定）
+     * @throws InvalidImageException 格式不是 JPEG / PNG / GIF，或超過大小、像素數上限
+     */
+    public StoredImage storeImage(InputStream in, Long foodId) throws IOException {
+        MessageDigest digest = sha256();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int head = readFully(in, buffer, 0, 12);
+        if (head == 0) {
+            throw new InvalidImageException("圖片檔案是空的");
+        }
+        ImageFormat format = ImageFormat.detect(buffer, head);
+        if (format == null) {
+            throw new InvalidImageException("只支援 JPEG、PNG 或 GIF 格式的圖片");
         }
         
-        // 使用 food ID 作為檔名
-        String filename = foodId + extension;
-        Path targetLocation = this.imageStorageLocation.resolve(filename);
-        
-        // 儲存檔案
-        Files.copy(file.getInputStream(), targetLocation, StandardCopyOption.REPLACE_EXISTING);
-        
-        return filename;
+        Path temp = createTempImageFile();
+        long size = 0;
+        boolean moved = false;
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                int count = head;
+                while (count > 0) {
+                    size += count;
+                    if (size > maxImageBytes) {
+                        throw new InvalidImageException("圖片大小超過限制（最大 " + (maxImageBytes / (1024 * 1024)) + "MB）");
+                    }
+                    digest.update(buffer, 0, count);
+                    ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, count);
+                    while (chunk.hasRemaining()) {
+                        channel.write(chunk);
+                    }
+                    count = in.read(buffer);
+                }
+                channel.force(false);
+            }
+            ImageProcessor.checkPixels(temp, maxPixels);
+            
+            String filename = foodId + format.extension;
+            replaceImage(filename, temp);
+            moved = true;
+            // 舊的變體屬於先前的圖片，由背景處理重新產生
+            deleteVariants(filename);
+            return new StoredImage(filename, format.contentType, size, toHex(digest.digest()));
+        } finally {
+            if (!moved) {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+    
+    /**
+     * 在影像目錄中建立暫存檔（與正式檔案位於同一檔案系統，才能原子搬移）
+     */
+    public Path createTempImageFile() throws IOException {
+        return Files.createTempFile(this.imageStorageLocation, ".upload-", ".tmp");
+    }
+    
+    /**
+     * 以暫存檔原子替換影像檔案，讀取端不會看到寫到一半的內容
+     * @param filename 目標檔案名稱
+     * @param temp 由 {@link #createTempImageFile()} 建立且已寫好的暫存檔
+     */
+    public void replaceImage(String filename, Path temp) throws IOException {
+        replaceImageIfUnchanged(filename, temp, null, null);
+    }
+    
+    /**
+     * 來源檔案仍是處理前的版本時才以暫存檔原子替換；在搬移前一刻比對，盡量縮短與新上傳競爭的時間窗
+     * @param filename 目標檔案名稱
+     * @param temp 已寫好的暫存檔
+     * @param source 處理時讀取的檔案（null 表示不比對）
+     * @param before 處理前讀取的 source 屬性
+     * @return 是否已替換；來源的修改時間或大小已改變時回傳 false（暫存檔由呼叫端刪除）
+     */
+    public boolean replaceImageIfUnchanged(String filename, Path temp, Path source, BasicFileAttributes before)
+            throws IOException {
+        Path target = storedPath(filename);
+        if (target == null) {
+            throw new IOException("Invalid image filename: " + filename);
+        }
+        if (source != null && !unchanged(source, before)) {
+            return false;
+        }
+        if (blobStore != null) {
+            // 先寫入共用儲存，失敗時本機也不替換，避免出現只有這個節點看得到的影像
+            blobStore.put(filename, temp, contentTypeOf(target), Files.getLastModifiedTime(temp).toMillis());
+            if (source != null && !unchanged(source, before)) {
+                // 上傳共用儲存期間來源已被新上傳替換，新上傳的工作會再寫一次
+                return false;
+            }
+        }
+        Files.createDirectories(target.getParent());
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        if (legacyLookup) {
+            // 新內容已寫到分層目錄，平面目錄的舊版本不再需要
+            Path legacy = this.imageStorageLocation.resolve(filename);
+            if (!legacy.equals(target)) {
+                Files.deleteIfExists(legacy);
+            }
+        }
+        evict(filename);
+        return true;
+    }
+    
+    private static boolean unchanged(Path source, BasicFileAttributes before) {
+        try {
+            BasicFileAttributes current = Files.readAttributes(source, BasicFileAttributes.class);
+            return current.lastModifiedTime().equals(before.lastModifiedTime()) && current.size() == before.size();
+        } catch (IOException e) {
+            // 已被刪除或搬走
+            return false;
+        }
     }
     
     /**
@@ -67,13 +383,129 @@ public class FileStorageService {
         }
         
         try {
-            Path filePath = this.imageStorageLocation.resolve(filename);
-            Files.deleteIfExists(filePath);
+            deleteFile(filename);
+            deleteVariants(filename);
         } catch (IOException ex) {
             // 忽略刪除錯誤
         }
     }
     
+    /**
+     * 逐一列出已儲存的影像檔（惰性讀取，呼叫端負責關閉 Stream）
+     * 使用共用物件儲存時列出物件儲存的內容，否則列出本機影像目錄（不含暫存檔）
+     */
+    public Stream<BlobInfo> streamStoredFiles() throws IOException {
+        if (blobStore != null) {
+            return blobStore.list();
+        }
+        // 平面目錄（深度 1）與兩層分層目錄（深度 3）中的檔案
+        return Files.walk(this.imageStorageLocation, sharded ? 3 : 1)
+                .filter(path -> !path.getFileName().toString().startsWith("."))
+                .map(path -> {
+                    try {
+                        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                        return attributes.isRegularFile()
+                                ? new BlobInfo(path.getFileName().toString(), attributes.size(),
+                                        attributes.lastModifiedTime().toMillis())
+                                : null;
+                    } catch (IOException e) {
+                        return null;
+                    }
+                })
+                .filter(Objects::nonNull);
+    }
+    
+    /**
+     * 逐一列出影像目錄最上層的上傳暫存檔（呼叫端負責關閉 Stream）
+     */
+    public Stream<Path> streamTempFiles() throws IOException {
+        return Files.list(this.imageStorageLocation).filter(path -> {
+            String name = path.getFileName().toString();
+            return name.startsWith(".upload-") && name.endsWith(".tmp");
+        });
+    }
+    
+    /**
+     * 刪除影像目錄中的單一檔案（對帳清理用，不連帶刪除變體），刪除失敗時拋出例外
+     * @param filename 檔案名稱
+     * @return 檔案存在並已刪除
+     */
+    public boolean deleteStoredFile(String filename) throws IOException {
+        return deleteFile(filename);
+    }
+    
+    /**
+     * 將仍留在平面目錄的一批檔案搬到分層目錄
+     * 遷移狀態就是檔案系統本身：每批只處理還在平面目錄的檔案，中斷後重新執行即可從剩下的檔案繼續。
+     * 遷移期間讀取端會依序查找分層與平面路徑，兩邊的檔案都能正常送出。
+     * @param limit 本批最多搬移的檔案數
+     * @return 本批搬移的檔案數；回傳 0 代表平面目錄已清空，並已建立完成標記
+     */
+    public int migrateLegacyFiles(int limit) throws IOException {
+        if (!legacyLookup) {
+            return 0;
+        }
+        List<String> names = new ArrayList<>(limit);
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.imageStorageLocation)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                if (names.size() >= limit) {
+                    break;
+                }
+                if (!name.startsWith(".") && Files.isRegularFile(path) && storedPath(name) != null) {
+                    names.add(name);
+                }
+            }
+        }
+        int moved = 0;
+        for (String name : names) {
+            Path legacy = this.imageStorageLocation.resolve(name);
+            Path target = storedPath(name);
+            Files.createDirectories(target.getParent());
+            try {
+                moveWithoutReplacing(legacy, target);
+            } catch (FileAlreadyExistsException e) {
+                // 分層目錄已有較新的版本（遷移期間重新上傳）
+                Files.deleteIfExists(legacy);
+            } catch (NoSuchFileException e) {
+                // 搬移前已被刪除
+                continue;
+            }
+            evict(name);
+            moved++;
+        }
+        if (names.isEmpty()) {
+            Files.write(this.imageStorageLocation.resolve(MIGRATED_MARKER), new byte[0]);
+            legacyLookup = false;
+        }
+        return moved;
+    }
+    
+    /**
+     * 搬移檔案，目標已存在時拋出 FileAlreadyExistsException 而不覆蓋
+     * ATOMIC_MOVE 在 Linux 是 rename()，會直接取代遷移期間由上傳寫入的新檔；
+     * 改以硬連結建立目標（已存在時失敗）後再刪除來源。
+     */
+    static void moveWithoutReplacing(Path source, Path target) throws IOException {
+        try {
+            Files.createLink(target, source);
+        } catch (FileAlreadyExistsException | NoSuchFileException e) {
+            throw e;
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            // 不支援硬連結的檔案系統：不帶 REPLACE_EXISTING 的搬移在目標存在時同樣失敗
+            Files.move(source, target);
+            return;
+        }
+        Files.deleteIfExists(source);
+    }
+    
+    /**
+     * 是否還在從平面目錄遷移到分層目錄
+     */
+    public boolean isMigrationPending() {
+        return legacyLookup;
+    }
+    
     /**
      * 取得影像檔案路徑
      * @param filename 檔案名稱
@@ -83,7 +515,7 @@ public class FileStorageService {
         if (filename == null || filename.isEmpty()) {
             return null;
         }
-        return this.imageStorageLocation.resolve(filename);
+        return locate(filename);
     }
     
     /**
@@ -95,7 +527,434 @@ public class FileStorageService {
         if (filename == null || filename.isEmpty()) {
             return false;
         }
-        Path filePath = this.imageStorageLocation.resolve(filename);
-        return Files.exists(filePath);
+        Path filePath = locate(filename);
+        if (filePath == null) {
+            return false;
+        }
+        if (Files.exists(filePath)) {
+            return true;
+        }
+        try {
+            return blobStore != null && blobStore.head(filename) != null;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+    
+    /**
+     * 單張影像的大小上限（位元組）
+     */
+    public long getMaxImageBytes() {
+        return maxImageBytes;
+    }
+    
+    /**
+     * 取得影像中繼資料，第一次讀取後快取；儲存或刪除影像時自動失效
+     * @param filename 檔案名稱
+     * @return 中繼資料，檔案不存在或不在影像目錄內時回傳 null
+     */
+    public ImageMetadata getImageMetadata(String filename) {
+        if (filename == null || filename.isEmpty()) {
+            return null;
+        }
+        ImageMetadata cached = cachedMetadata(filename);
+        if (cached != null) {
+            return cached != MISSING ? cached : null;
+        }
+        Path filePath = locate(filename);
+        if (filePath == null) {
+            return null;
+        }
+        try {
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(filePath, BasicFileAttributes.class);
+            } catch (NoSuchFileException e) {
+                // 本機沒有副本時從共用物件儲存下載
+                if (blobStore == null || !fetchFromBlobStore(filename, filePath)) {
+                    return null;
+                }
+                attributes = Files.readAttributes(filePath, BasicFileAttributes.class);
+            }
+            if (!attributes.isRegularFile()) {
+                return null;
+            }
+            // 使用實際路徑，sendfile 需要正規化的絕對路徑
+            ImageMetadata metadata = new ImageMetadata(filePath.toRealPath(), attributes.size(),
+                    attributes.lastModifiedTime().toMillis(), contentTypeOf(filePath));
+            synchronized (metadataCache) {
+                metadataCache.put(filename, new CachedMetadata(metadata, System.currentTimeMillis()));
+            }
+            return metadata;
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+    
+    /**
+     * 產生 WebP / AVIF 變體（檔名為原檔名加上副檔名，例如 12.jpg.webp）
+     * 變體沒有比原檔小到一定比例時不保留。GIF 可能是動畫，不轉檔。
+     * @param filename 原始影像檔名
+     * @return 產生的變體數
+     */
+    public int generateVariants(String filename) throws IOException {
+        ImageMetadata original = getImageMetadata(filename);
+        if (original == null || "image/gif".equals(original.getContentType())) {
+            return 0;
+        }
+        int generated = 0;
+        for (ImageTranscoder transcoder : transcoders) {
+            if (!transcoder.isAvailable()) {
+                continue;
+            }
+            String variant = filename + transcoder.getExtension();
+            Path temp = createTempImageFile();
+            boolean kept = false;
+            try {
+                if (transcoder.transcode(original.getPath(), temp)) {
+                    long size = Files.size(temp);
+                    if (size > 0 && size <= original.getLength() * variantMaxRatio) {
+                        replaceImage(variant, temp);
+                        kept = true;
+                        generated++;
+                    }
+                }
+            } finally {
+                if (!kept) {
+                    Files.deleteIfExists(temp);
+                    deleteFile(variant);
+                }
+            }
+        }
+        return generated;
+    }
+    
+    /**
+     * 依 Accept 標頭選擇最適合的影像版本（AVIF > WebP > 原檔）
+     * @param filename 原始影像檔名
+     * @param accept 請求的 Accept 標頭（可為 null）
+     * @return 選中版本的中繼資料，原檔不存在時回傳 null
+     */
+    public ImageMetadata getBestImage(String filename, String accept) {
+        ImageMetadata original = getImageMetadata(filename);
+        if (original == null || accept == null) {
+            return original;
+        }
+        for (ImageTranscoder transcoder : transcoders) {
+            if (acceptsType(accept, transcoder.getContentType())) {
+                ImageMetadata variant = variantMetadata(filename + transcoder.getExtension());
+                if (variant != null) {
+                    return variant;
+                }
+            }
+        }
+        return original;
+    }
+    
+    private ImageMetadata variantMetadata(String variant) {
+        ImageMetadata cached = cachedMetadata(variant);
+        if (cached != null) {
+            return cached != MISSING ? cached : null;
+        }
+        ImageMetadata metadata = getImageMetadata(variant);
+        if (metadata == null) {
+            // 只記錄已存在原檔的變體，數量有上限
+            synchronized (metadataCache) {
+                metadataCache.putIfAbsent(variant, new CachedMetadata(MISSING, System.currentTimeMillis()));
+            }
+        }
+        return metadata;
+    }
+    
+    /**
+     * 取得快取的中繼資料；使用共用物件儲存時定期確認本機副本仍是最新版本
+     */
+    private ImageMetadata cachedMetadata(String filename) {
+        CachedMetadata entry;
+        synchronized (metadataCache) {
+            entry = metadataCache.get(filename);
+        }
+        if (entry == null) {
+            return null;
+        }
+        ImageMetadata cached = entry.metadata;
+        long now = System.currentTimeMillis();
+        if (cached == MISSING && now - entry.cachedAt >= missingTtlMs) {
+            // 不存在的標記到期：可能已由其他請求或節點產生，重新查詢
+            synchronized (metadataCache) {
+                metadataCache.remove(filename, entry);
+            }
+            return null;
+        }
+        if (blobStore == null || now - entry.validatedAt < blobRevalidateMs) {
+            return cached;
+        }
+        entry.validatedAt = now;
+        BlobInfo blob;
+        try {
+            blob = blobStore.head(filename);
+        } catch (IOException e) {
+            // 物件儲存暫時無法連線時繼續使用本機副本
+            return cached;
+        }
+        boolean current = cached == MISSING
+                ? blob == null
+                : blob != null && blob.getSize() == cached.getLength() && blob.getLastModified() == cached.getLastModified();
+        if (current) {
+            return cached;
+        }
+        // 其他節點已替換或刪除：丟棄本機副本，之後重新下載
+        evict(filename);
+        if (cached != MISSING) {
+            try {
+                Files.deleteIfExists(cached.getPath());
+            } catch (IOException e) {
+                // 下載時會覆蓋
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * 從共用物件儲存下載到本機快取（先寫暫存檔再原子搬移，修改時間設為物件的修改時間，各節點 ETag 一致）
+     */
+    private boolean fetchFromBlobStore(String filename, Path target) throws IOException {
+        Path temp = createTempImageFile();
+        try {
+            BlobInfo blob = blobStore.get(filename, temp);
+            if (blob == null) {
+                return false;
+            }
+            Files.setLastModifiedTime(temp, FileTime.fromMillis(blob.getLastModified()));
+            Files.createDirectories(target.getParent());
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return true;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+    
+    private void deleteVariants(String filename) throws IOException {
+        for (ImageTranscoder transcoder : transcoders) {
+            deleteFile(filename + transcoder.getExtension());
+        }
+    }
+    
+    /**
+     * Accept 標頭是否明確接受指定的 media type（q > 0）
+     * 只認明確列出的型別，不以萬用字元（image/*、任意型別）推定支援新格式
+     */
+    static boolean acceptsType(String accept, String type) {
+        for (String part : accept.split(",")) {
+            String[] params = part.trim().split(";");
+            if (!params[0].trim().equalsIgnoreCase(type)) {
+                continue;
+            }
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        return Double.parseDouble(param.substring(2)) > 0;
+                    } catch (NumberFormatException e) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+    
+    /**
+     * 讓單一影像的中繼資料失效（例如送出時發現檔案已被外部移除）
+     */
+    public void evictImageMetadata(String filename) {
+        if (filename != null) {
+            evict(filename);
+        }
+    }
+    
+    /**
+     * 取得影像內容，小圖從記憶體快取讀取（以檔名 + ETag 比對，替換後的舊內容不會被送出）
+     * @param image {@link #getImageMetadata(String)} 或 {@link #getBestImage(String, String)} 取得的中繼資料
+     * @return 唯讀內容；圖片超過快取單筆上限時回傳 null，呼叫端應直接從檔案送出
+     */
+    public ByteBuffer getImageBytes(ImageMetadata image) throws IOException {
+        return imageByteCache.get(image.getPath().getFileName().toString(), image);
+    }
+    
+    /**
+     * 影像位元組快取統計
+     */
+    public Map<String, Object> getImageCacheStats() {
+        return imageByteCache.getStats();
+    }
+    
+    /**
+     * 檔案在目前設定下的正式位置（分層或平面），檔名不合法時回傳 null
+     */
+    private Path storedPath(String filename) {
+        if (filename == null || filename.isEmpty() || filename.equals(".") || filename.equals("..")
+                || filename.indexOf('/') >= 0 || filename.indexOf('\\') >= 0 || filename.indexOf('\0') >= 0) {
+            return null;
+        }
+        return sharded
+                ? this.imageStorageLocation.resolve(shardOf(filename)).resolve(filename)
+                : this.imageStorageLocation.resolve(filename);
+    }
+    
+    /**
+     * 檔案實際所在位置：遷移完成前，分層路徑不存在時改用平面路徑
+     */
+    private Path locate(String filename) {
+        Path path = storedPath(filename);
+        if (path == null || !legacyLookup || Files.exists(path)) {
+            return path;
+        }
+        Path legacy = this.imageStorageLocation.resolve(filename);
+        return Files.exists(legacy) ? legacy : path;
+    }
+    
+    /**
+     * 刪除檔案（遷移期間平面與分層位置都刪）
+     */
+    private boolean deleteFile(String filename) throws IOException {
+        Path path = storedPath(filename);
+        if (path == null) {
+            return false;
+        }
+        evict(filename);
+        boolean deleted = Files.deleteIfExists(path);
+        if (blobStore != null) {
+            deleted |= blobStore.delete(filename);
+        }
+        if (legacyLookup) {
+            deleted |= Files.deleteIfExists(this.imageStorageLocation.resolve(filename));
+        }
+        return deleted;
+    }
+    
+    /**
+     * 分層目錄：原始檔名 MD5 的前兩個位元組，例如 3f/a2；變體與原檔放在同一個目錄
+     */
+    static String shardOf(String filename) {
+        String original = originalName(filename);
+        byte[] hash = md5().digest((original != null ? original : filename).getBytes(StandardCharsets.UTF_8));
+        String hex = toHex(new byte[]{hash[0], hash[1]});
+        return hex.substring(0, 2) + "/" + hex.substring(2, 4);
+    }
+    
+    /**
+     * 圖片檔對應的原始檔名（變體 12.jpg.webp 對應 12.jpg）；不是圖片檔時回傳 null
+     */
+    static String originalName(String name) {
+        String lower = name.toLowerCase(Locale.ROOT);
+        if (lower.endsWith(".webp") || lower.endsWith(".avif")) {
+            return originalName(name.substring(0, name.length() - 5));
+        }
+        if (lower.endsWith(".jpg") || lower.endsWith(".jpeg") || lower.endsWith(".png") || lower.endsWith(".gif")) {
+            return name;
+        }
+        return null;
+    }
+    
+    private void evict(String filename) {
+        synchronized (metadataCache) {
+            metadataCache.remove(filename);
+        }
+        imageByteCache.invalidate(filename);
+    }
+    
+    /**
+     * 依檔案開頭 magic bytes 判斷的影像格式
+     */
+    private enum ImageFormat {
+        JPEG(".jpg", "image/jpeg"),
+        PNG(".png", "image/png"),
+        GIF(".gif", "image/gif");
+        
+        final String extension;
+        final String contentType;
+        
+        ImageFormat(String extension, String contentType) {
+            this.extension = extension;
+            this.contentType = contentType;
+        }
+        
+        static ImageFormat detect(byte[] head, int length) {
+            if (length >= 3 && (head[0] & 0xFF) == 0xFF && (head[1] & 0xFF) == 0xD8 && (head[2] & 0xFF) == 0xFF) {
+                return JPEG;
+            }
+            if (length >= 8 && (head[0] & 0xFF) == 0x89 && head[1] == 'P' && head[2] == 'N' && head[3] == 'G'
+                    && head[4] == 0x0D && head[5] == 0x0A && head[6] == 0x1A && head[7] == 0x0A) {
+                return PNG;
+            }
+            if (length >= 6 && head[0] == 'G' && head[1] == 'I' && head[2] == 'F' && head[3] == '8'
+                    && (head[4] == '7' || head[4] == '9') && head[5] == 'a') {
+                return GIF;
+            }
+            return null;
+        }
+    }
+    
+    private static int readFully(InputStream in, byte[] buffer, int offset, int length) throws IOException {
+        int total = 0;
+        while (total < length) {
+            int read = in.read(buffer, offset + total, length - total);
+            if (read < 0) {
+                break;
+            }
+            total += read;
+        }
+        return total;
+    }
+    
+    private static MessageDigest md5() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 not available", e);
+        }
+    }
+    
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+    
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+    
+    private static String contentTypeOf(Path filePath) throws IOException {
+        String name = filePath.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".jpg") || name.endsWith(".jpeg")) {
+            return "image/jpeg";
+        }
+        if (name.endsWith(".png")) {
+            return "image/png";
+        }
+        if (name.endsWith(".gif")) {
+            return "image/gif";
+        }
+        if (name.endsWith(".webp")) {
+            return "image/webp";
+        }
+        if (name.endsWith(".avif")) {
+            return "image/avif";
+        }
+        String probed = Files.probeContentType(filePath);
+        return probed != null ? probed : "application/octet-stream";
     }
 }
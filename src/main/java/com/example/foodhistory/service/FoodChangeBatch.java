@@ -0,0 +1,116 @@
+package com.example.foodhistory.service;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 合併後的一批食物變更，由 {@link FoodChangeBus} 發布
+ * changes 為 null 表示這段期間的變更太多（例如大量匯入），客戶端應重新載入全部資料。
+ * 經叢集匯流排轉送時以 {@link #encode} 的精簡文字傳遞；remote 表示變更發生在其他節點。
+ */
+public class FoodChangeBatch {
+
+    private final long revision;
+    private final Map<Long, FoodChangeEvent.Op> changes;
+    private final boolean remote;
+    private final String json;
+
+    public FoodChangeBatch(long revision, Map<Long, FoodChangeEvent.Op> changes) {
+        this(revision, changes, false);
+    }
+
+    public FoodChangeBatch(long revision, Map<Long, FoodChangeEvent.Op> changes, boolean remote) {
+        this.revision = revision;
+        this.changes = changes == null ? null : Collections.unmodifiableMap(changes);
+        this.remote = remote;
+        this.json = toJson(revision, changes);
+    }
+
+    public long getRevision() {
+        return revision;
+    }
+
+    public Map<Long, FoodChangeEvent.Op> getChanges() {
+        return changes;
+    }
+
+    public boolean isReload() {
+        return changes == null;
+    }
+
+    /**
+     * 變更是否發生在其他節點（本機的搜尋快取與索引沒有收到個別的異動通知）
+     */
+    public boolean isRemote() {
+        return remote;
+    }
+
+    /**
+     * 叢集訊息內容，例如 3:save,5:delete；changes 為 null 時為 *
+     */
+    public static String encode(Map<Long, FoodChangeEvent.Op> changes) {
+        if (changes == null) {
+            return "*";
+        }
+        StringBuilder payload = new StringBuilder();
+        for (Map.Entry<Long, FoodChangeEvent.Op> entry : changes.entrySet()) {
+            if (payload.length() > 0) {
+                payload.append(',');
+            }
+            payload.append(entry.getKey()).append(':').append(entry.getValue().getCode());
+        }
+        return payload.toString();
+    }
+
+    /**
+     * 解析 {@link #encode} 的內容，無法辨識的項目視為需要重新載入
+     */
+    public static Map<Long, FoodChangeEvent.Op> decode(String payload) {
+        if (payload == null || "*".equals(payload)) {
+            return null;
+        }
+        Map<Long, FoodChangeEvent.Op> changes = new LinkedHashMap<>();
+        if (payload.isEmpty()) {
+            return changes;
+        }
+        for (String item : payload.split(",")) {
+            int colon = item.indexOf(':');
+            FoodChangeEvent.Op op = colon < 0 ? null : FoodChangeEvent.Op.fromCode(item.substring(colon + 1));
+            if (op == null) {
+                return null;
+            }
+            try {
+                changes.put(Long.valueOf(item.substring(0, colon)), op);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * 推送給客戶端的精簡格式，例如 {"revision":12,"changes":[{"id":3,"op":"save"}]}
+     */
+    public String toJson() {
+        return json;
+    }
+
+    private static String toJson(long revision, Map<Long, FoodChangeEvent.Op> changes) {
+        StringBuilder json = new StringBuilder("{\"revision\":").append(revision);
+        if (changes == null) {
+            return json.append(",\"reload\":true}").toString();
+        }
+        json.append(",\"changes\":[");
+        boolean first = true;
+        for (Map.Entry<Long, FoodChangeEvent.Op> entry : changes.entrySet()) {
+            if (!first) {
+                json.append(',');
+            }
+            json.append("{\"id\":").append(entry.getKey())
+                    .append(",\"op\":\"").append(entry.getValue().getCode()).append("\"}");
+            first = false;
+        }
+        return json.append("]}").toString();
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.foodhistory.service;
+
+import com.example.foodhistory.cluster.ClusterBus;
+import com.example.foodhistory.cluster.ClusterMessage;
+import com.example.foodhistory.concurrent.StreamDispatcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 食物變更事件匯流排
+ * 收集 {@link FoodChangeEvent} 與圖片處理完成事件，在短時間窗內合併後發布一個 {@link FoodChangeBatch}，
+ * 由 SSE 與 WebSocket 推送給客戶端；連續的大量變更（例如匯入）只會產生一次通知，而不是每筆一次。
+ * 最後一筆變更後靜止 coalesce-window-ms 才送出，但第一筆變更最多延遲 max-delay-ms；
+ * 同一食物在窗內的多次變更只保留最後一次，窗內變更超過 max-items 時改為要求客戶端重新載入全部資料。
+ * 合併後的變更經由 {@link ClusterBus} 送到所有節點（包含本機）後才發布，資料版本即叢集訊息序號，各節點一致。
+ */
+@Component
+public class FoodChangeBus {
+
+    static final String TOPIC = "food-changes";
+
+    private static final Logger logger = LoggerFactory.getLogger(FoodChangeBus.class);
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private StreamDispatcher streamDispatcher;
+
+    @Autowired
+    private ClusterBus clusterBus;
+
+    @Value("${app.changes.coalesce-window-ms:200}")
+    private long coalesceWindowMs = 200;
+
+    @Value("${app.changes.max-delay-ms:2000}")
+    private long maxDelayMs = 2000;
+
+    @Value("${app.changes.max-items:100}")
+    private int maxItems = 100;
+
+    // 資料版本：最近一批變更的叢集訊息序號
+    private long revision;
+
+    private final Map<Long, FoodChangeEvent.Op> pending = new LinkedHashMap<>();
+    private boolean overflow;
+    private long firstPendingAt;
+    private long lastPendingAt;
+    private boolean flushScheduled;
+
+    @PostConstruct
+    public void init() {
+        revision = clusterBus.lastSequence();
+        clusterBus.subscribe(TOPIC, this::onClusterMessage);
+    }
+
+    @EventListener
+    public void onFoodChanged(FoodChangeEvent event) {
+        record(event.getFoodId(), event.getOp());
+    }
+
+    @EventListener
+    public void onImageProcessed(ImageProcessedEvent event) {
+        record(event.getFoodId(), FoodChangeEvent.Op.IMAGE);
+    }
+
+    /**
+     * 目前的資料版本（每批變更遞增）
+     */
+    public synchronized long currentRevision() {
+        return revision;
+    }
+
+    private void record(Long foodId, FoodChangeEvent.Op op) {
+        if (foodId == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            if (!overflow) {
+                pending.put(foodId, op);
+                if (pending.size() > maxItems) {
+                    overflow = true;
+                    pending.clear();
+                }
+            }
+            if (!flushScheduled) {
+                firstPendingAt = now;
+                flushScheduled = true;
+                streamDispatcher.schedule(this::flush, coalesceWindowMs);
+            }
+            lastPendingAt = now;
+        }
+    }
+
+    void flush() {
+        String payload;
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            long quiet = now - lastPendingAt;
+            long waited = now - firstPendingAt;
+            if (quiet < coalesceWindowMs && waited < maxDelayMs) {
+                // 變更仍在持續，等到靜止（或達到最長延遲）再送出
+                streamDispatcher.schedule(this::flush, Math.min(coalesceWindowMs - quiet, maxDelayMs - waited));
+                return;
+            }
+            payload = FoodChangeBatch.encode(overflow ? null : pending);
+            pending.clear();
+            overflow = false;
+            flushScheduled = false;
+        }
+        try {
+            clusterBus.publish(TOPIC, payload);
+        } catch (Exception e) {
+            logger.warn("資料變更通知送出失敗", e);
+        }
+    }
+
+    /**
+     * 收到任一節點（包含本機）送出的變更後發布給本機的 SSE / WebSocket
+     * 較晚提交的訊息序號可能小於目前版本，此時沿用目前版本，版本不會倒退
+     */
+    private void onClusterMessage(ClusterMessage message) {
+        long batchRevision;
+        synchronized (this) {
+            revision = Math.max(revision, message.getSequence());
+            batchRevision = revision;
+        }
+        boolean remote = !clusterBus.getNodeId().equals(message.getOrigin());
+        eventPublisher.publishEvent(new FoodChangeBatch(batchRevision, FoodChangeBatch.decode(message.getPayload()), remote));
+    }
+}
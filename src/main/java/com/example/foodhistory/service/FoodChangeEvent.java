@@ -0,0 +1,53 @@
+package com.example.foodhistory.service;
+
+/**
+ * 食物資料變更（新增 / 修改、刪除、切換最愛）提交後發布的應用程式事件
+ * 由 {@link FoodChangeBus} 合併後推送給連線中的客戶端
+ */
+public class FoodChangeEvent {
+
+    public enum Op {
+        SAVE("save"),
+        DELETE("delete"),
+        FAVORITE("favorite"),
+        IMAGE("image");
+
+        private final String code;
+
+        Op(String code) {
+            this.code = code;
+        }
+
+        public String getCode() {
+            return code;
+        }
+
+        /**
+         * 依代碼取得操作，無法辨識時回傳 null
+         */
+        public static Op fromCode(String code) {
+            for (Op op : values()) {
+                if (op.code.equals(code)) {
+                    return op;
+                }
+            }
+            return null;
+        }
+    }
+
+    private final Long foodId;
+    private final Op op;
+
+    public FoodChangeEvent(Long foodId, Op op) {
+        this.foodId = foodId;
+        this.op = op;
+    }
+
+    public Long getFoodId() {
+        return foodId;
+    }
+
+    public Op getOp() {
+        return op;
+    }
+}
@@ -0,0 +1,388 @@
+package com.example.foodhistory.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 食物欄式索引（不可變，隨 {@link FoodNameIndex} 快照一起重建）
+ * 數值欄位（碳水、係數）各自保存依值排序的列號，範圍條件以二分搜尋取得精確筆數與候選列；
+ * 單位與最愛保存倒排列表；文字包含條件（名稱、備註）無法由索引取出，只用於過濾。
+ * 查詢時由簡易的查詢規劃器挑選筆數最少的條件作為驅動，其餘條件依選擇性由高到低逐筆檢查。
+ */
+final class FoodColumnIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(FoodColumnIndex.class);
+
+    private final FoodNameIndex.Entry[] entries;
+    private final NumericColumn carbs;
+    private final NumericColumn coefficients;
+    private final Map<String, int[]> unitRows;
+    private final int[] favoriteRows;
+
+    FoodColumnIndex(FoodNameIndex.Entry[] entries) {
+        this.entries = entries;
+        this.carbs = new NumericColumn(entries, e -> e.carbGrams);
+        this.coefficients = new NumericColumn(entries, e -> e.coefficient);
+
+        Map<String, List<Integer>> units = new HashMap<>();
+        int favoriteCount = 0;
+        for (int row = 0; row < entries.length; row++) {
+            if (!entries[row].lowerUnit.isEmpty()) {
+                units.computeIfAbsent(entries[row].lowerUnit, k -> new ArrayList<>()).add(row);
+            }
+            if (entries[row].isFavorite()) {
+                favoriteCount++;
+            }
+        }
+        this.unitRows = new HashMap<>();
+        for (Map.Entry<String, List<Integer>> unit : units.entrySet()) {
+            this.unitRows.put(unit.getKey(), toArray(unit.getValue()));
+        }
+        this.favoriteRows = new int[favoriteCount];
+        for (int row = 0, n = 0; row < entries.length; row++) {
+            if (entries[row].isFavorite()) {
+                favoriteRows[n++] = row;
+            }
+        }
+    }
+
+    /**
+     * 將搜尋條件轉為述詞清單（與索引無關，可重複用於快照與暫存異動）
+     */
+    static Query prepare(FoodSearchCriteria criteria) {
+        List<Predicate> predicates = new ArrayList<>();
+        if (criteria == null) {
+            return new Query(predicates);
+        }
+        if (FoodSearchCriteria.hasText(criteria.getQ())) {
+            String q = lower(criteria.getQ());
+            predicates.add(new TextPredicate("q", e -> e.lowerName.contains(q) || e.lowerNotes.contains(q)));
+        }
+        if (FoodSearchCriteria.hasText(criteria.getName())) {
+            String name = lower(criteria.getName());
+            predicates.add(new TextPredicate("name", e -> e.lowerName.contains(name)));
+        }
+        if (FoodSearchCriteria.hasText(criteria.getNotes())) {
+            String notes = lower(criteria.getNotes());
+            predicates.add(new TextPredicate("notes", e -> e.lowerNotes.contains(notes)));
+        }
+        if (FoodSearchCriteria.hasText(criteria.getUnit())) {
+            predicates.add(new UnitPredicate(lower(criteria.getUnit())));
+        }
+        if (criteria.getCarbMin() != null || criteria.getCarbMax() != null) {
+            predicates.add(new RangePredicate("carbGrams", true, criteria.getCarbMin(), criteria.getCarbMax()));
+        }
+        if (criteria.getCoefficientMin() != null || criteria.getCoefficientMax() != null) {
+            predicates.add(new RangePredicate("coefficient", false, criteria.getCoefficientMin(), criteria.getCoefficientMax()));
+        }
+        if (criteria.getFavorite() != null) {
+            predicates.add(new FavoritePredicate(criteria.getFavorite()));
+        }
+        return new Query(predicates);
+    }
+
+    /**
+     * 執行查詢，回傳符合條件的索引項目（依列號順序）
+     */
+    List<FoodNameIndex.Entry> search(Query query) {
+        List<Predicate> plan = new ArrayList<>(query.predicates);
+        for (Predicate predicate : plan) {
+            predicate.estimate = predicate.cardinality(this);
+        }
+        // 可由索引取出列的條件排前面，同類依預估筆數由小到大；文字條件成本最高，排最後
+        plan.sort(Comparator.comparingInt((Predicate p) -> p instanceof IndexedPredicate ? 0 : 1)
+                .thenComparingInt(p -> p.estimate));
+
+        int[] driverRows;
+        int firstFilter;
+        if (!plan.isEmpty() && plan.get(0) instanceof IndexedPredicate) {
+            driverRows = ((IndexedPredicate) plan.get(0)).rows(this);
+            firstFilter = 1;
+        } else {
+            driverRows = null;
+            firstFilter = 0;
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("結構化搜尋計畫: driver={}, filters={}, rows={}",
+                    driverRows != null ? plan.get(0) : "fullScan",
+                    plan.subList(firstFilter, plan.size()), entries.length);
+        }
+
+        List<FoodNameIndex.Entry> result = new ArrayList<>();
+        if (driverRows != null) {
+            // 範圍條件依值排序取出，還原成列號順序以維持穩定輸出
+            int[] rows = driverRows.clone();
+            Arrays.sort(rows);
+            for (int row : rows) {
+                collect(plan, firstFilter, entries[row], result);
+            }
+        } else {
+            for (FoodNameIndex.Entry entry : entries) {
+                collect(plan, firstFilter, entry, result);
+            }
+        }
+        return result;
+    }
+
+    private static void collect(List<Predicate> plan, int firstFilter, FoodNameIndex.Entry entry,
+                                List<FoodNameIndex.Entry> result) {
+        for (int i = firstFilter; i < plan.size(); i++) {
+            if (!plan.get(i).test(entry)) {
+                return;
+            }
+        }
+        result.add(entry);
+    }
+
+    /**
+     * 已轉換的查詢條件
+     */
+    static final class Query {
+        private final List<Predicate> predicates;
+
+        Query(List<Predicate> predicates) {
+            this.predicates = predicates;
+        }
+
+        boolean matches(FoodNameIndex.Entry entry) {
+            for (Predicate predicate : predicates) {
+                if (!predicate.test(entry)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private abstract static class Predicate {
+        // 查詢規劃時填入的預估筆數
+        int estimate;
+
+        abstract boolean test(FoodNameIndex.Entry entry);
+
+        abstract int cardinality(FoodColumnIndex index);
+    }
+
+    /**
+     * 能直接由索引取出候選列的條件，可作為查詢的驅動
+     */
+    private abstract static class IndexedPredicate extends Predicate {
+
+        abstract int[] rows(FoodColumnIndex index);
+    }
+
+    private static final class TextPredicate extends Predicate {
+        private final String field;
+        private final java.util.function.Predicate<FoodNameIndex.Entry> condition;
+
+        TextPredicate(String field, java.util.function.Predicate<FoodNameIndex.Entry> condition) {
+            this.field = field;
+            this.condition = condition;
+        }
+
+        @Override
+        boolean test(FoodNameIndex.Entry entry) {
+            return condition.test(entry);
+        }
+
+        @Override
+        int cardinality(FoodColumnIndex index) {
+            return index.entries.length;
+        }
+
+        @Override
+        public String toString() {
+            return field + " contains";
+        }
+    }
+
+    private static final class UnitPredicate extends IndexedPredicate {
+        private final String unit;
+
+        UnitPredicate(String unit) {
+            this.unit = unit;
+        }
+
+        @Override
+        boolean test(FoodNameIndex.Entry entry) {
+            return entry.lowerUnit.equals(unit);
+        }
+
+        @Override
+        int cardinality(FoodColumnIndex index) {
+            return rows(index).length;
+        }
+
+        @Override
+        int[] rows(FoodColumnIndex index) {
+            int[] rows = index.unitRows.get(unit);
+            return rows != null ? rows : new int[0];
+        }
+
+        @Override
+        public String toString() {
+            return "unit=" + unit + " (" + estimate + ")";
+        }
+    }
+
+    private static final class FavoritePredicate extends IndexedPredicate {
+        private final boolean favorite;
+
+        FavoritePredicate(boolean favorite) {
+            this.favorite = favorite;
+        }
+
+        @Override
+        boolean test(FoodNameIndex.Entry entry) {
+            return entry.isFavorite() == favorite;
+        }
+
+        @Override
+        int cardinality(FoodColumnIndex index) {
+            return favorite ? index.favoriteRows.length : index.entries.length - index.favoriteRows.length;
+        }
+
+        @Override
+        int[] rows(FoodColumnIndex index) {
+            if (favorite) {
+                return index.favoriteRows;
+            }
+            // 非最愛通常是大多數，不另存倒排列表；只有筆數最少而被選為驅動時才由最愛列表補集算出
+            int[] rows = new int[index.entries.length - index.favoriteRows.length];
+            for (int row = 0, next = 0, n = 0; row < index.entries.length; row++) {
+                if (next < index.favoriteRows.length && index.favoriteRows[next] == row) {
+                    next++;
+                } else {
+                    rows[n++] = row;
+                }
+            }
+            return rows;
+        }
+
+        @Override
+        public String toString() {
+            return "favorite=" + favorite + " (" + estimate + ")";
+        }
+    }
+
+    private static final class RangePredicate extends IndexedPredicate {
+        private final String field;
+        private final boolean carbs;
+        private final double min;
+        private final double max;
+
+        RangePredicate(String field, boolean carbs, Double min, Double max) {
+            this.field = field;
+            this.carbs = carbs;
+            this.min = min != null ? min : Double.NEGATIVE_INFINITY;
+            this.max = max != null ? max : Double.POSITIVE_INFINITY;
+        }
+
+        @Override
+        boolean test(FoodNameIndex.Entry entry) {
+            Double value = carbs ? entry.carbGrams : entry.coefficient;
+            return value != null && value >= min && value <= max;
+        }
+
+        @Override
+        int cardinality(FoodColumnIndex index) {
+            NumericColumn column = column(index);
+            return Math.max(0, column.upperBound(max) - column.lowerBound(min));
+        }
+
+        @Override
+        int[] rows(FoodColumnIndex index) {
+            NumericColumn column = column(index);
+            int from = column.lowerBound(min);
+            int to = column.upperBound(max);
+            return from < to ? Arrays.copyOfRange(column.order, from, to) : new int[0];
+        }
+
+        private NumericColumn column(FoodColumnIndex index) {
+            return carbs ? index.carbs : index.coefficients;
+        }
+
+        @Override
+        public String toString() {
+            return field + " in [" + min + ", " + max + "] (" + estimate + ")";
+        }
+    }
+
+    /**
+     * 依值排序的數值欄位（空值不列入）
+     */
+    private static final class NumericColumn {
+        final double[] values;
+        final int[] order;
+
+        NumericColumn(FoodNameIndex.Entry[] entries, java.util.function.Function<FoodNameIndex.Entry, Double> getter) {
+            List<Integer> rows = new ArrayList<>();
+            for (int row = 0; row < entries.length; row++) {
+                Double value = getter.apply(entries[row]);
+                if (value != null && !value.isNaN()) {
+                    rows.add(row);
+                }
+            }
+            rows.sort(Comparator.comparingDouble(row -> getter.apply(entries[row])));
+            order = toArray(rows);
+            values = new double[order.length];
+            for (int i = 0; i < order.length; i++) {
+                values[i] = getter.apply(entries[order[i]]);
+            }
+        }
+
+        /**
+         * 第一個 >= min 的位置
+         */
+        int lowerBound(double min) {
+            int lo = 0;
+            int hi = values.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (values[mid] < min) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        /**
+         * 第一個 > max 的位置
+         */
+        int upperBound(double max) {
+            int lo = 0;
+            int hi = values.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (values[mid] <= max) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+    }
+
+    private static String lower(String value) {
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static int[] toArray(List<Integer> values) {
+        int[] array = new int[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i);
+        }
+        return array;
+    }
+}
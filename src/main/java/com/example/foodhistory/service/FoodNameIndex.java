@@ -0,0 +1,562 @@
+package com.example.foodhistory.service;
+
+import com.example.foodhistory.model.Food;
+import com.example.foodhistory.repository.FoodRepository;
+import com.example.foodhistory.repository.projection.FoodIndexView;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 食物名稱記憶體索引（供輸入即搜尋的建議使用）
+ * 以排序後的名稱後綴陣列做前綴查找，等同於 LIKE '%keyword%' 的子字串比對，但不需查詢資料庫。
+ * 名稱開頭相符者另由依名稱排序的陣列取出，排名最高的一定會被收進結果，不受後綴的排列順序影響。
+ * 讀取時使用不可變快照（無鎖），寫入先放入小型暫存區，再由背景執行緒合併重建索引。
+ * 快照同時包含模糊比對索引（{@link FuzzyNameMatcher}），供錯字與發音搜尋使用，
+ * 以及欄式索引（{@link FoodColumnIndex}），供備註、單位與數值範圍的結構化搜尋使用。
+ */
+@Component
+public class FoodNameIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(FoodNameIndex.class);
+
+    // 後綴以 (entry 索引 << 16 | 起始位置) 打包成 long
+    private static final int OFFSET_BITS = 16;
+    private static final long OFFSET_MASK = (1L << OFFSET_BITS) - 1;
+
+    @Autowired
+    private FoodRepository foodRepository;
+
+    @Value("${app.search.suggest.rebuild-delay-ms:2000}")
+    private long rebuildDelayMs = 2000;
+
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    // 尚未併入快照的異動（新增、修改、刪除）
+    private final ConcurrentHashMap<Long, Entry> pending = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean rebuildScheduled = new AtomicBoolean();
+
+    private ScheduledExecutorService rebuilder;
+
+    /**
+     * 索引中的單筆食物
+     */
+    public static final class Entry {
+        private final long id;
+        private final String name;
+        final String lowerName;
+        private final boolean favorite;
+        private final boolean deleted;
+        // 結構化搜尋用欄位
+        final String lowerNotes;
+        final String lowerUnit;
+        final Double carbGrams;
+        final Double coefficient;
+
+        Entry(long id, String name, boolean favorite, boolean deleted) {
+            this(id, name, null, null, null, null, favorite, deleted);
+        }
+
+        Entry(long id, String name, String notes, String unit, Double carbGrams, Double coefficient,
+              boolean favorite, boolean deleted) {
+            this.id = id;
+            this.name = name != null ? name : "";
+            this.lowerName = this.name.toLowerCase(Locale.ROOT);
+            this.lowerNotes = notes != null ? notes.toLowerCase(Locale.ROOT) : "";
+            this.lowerUnit = unit != null ? unit.trim().toLowerCase(Locale.ROOT) : "";
+            this.carbGrams = carbGrams;
+            this.coefficient = coefficient;
+            this.favorite = favorite;
+            this.deleted = deleted;
+        }
+
+        static Entry of(Food food) {
+            return new Entry(food.getId(), food.getName(), food.getNotes(), food.getUnit(),
+                    food.getCarbGrams(), food.getCoefficient(), Boolean.TRUE.equals(food.getIsFavorite()), false);
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isFavorite() {
+            return favorite;
+        }
+    }
+
+    private static final class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(new Entry[0], new long[0], new int[0], new Entry[0],
+                new FuzzyNameMatcher(new long[0], new String[0]), new FoodColumnIndex(new Entry[0]));
+
+        final Entry[] entries;
+        final long[] suffixes;
+        // 依名稱排序的 entry 索引（即起始位置為 0 的後綴），用於名稱開頭相符的範圍查找
+        final int[] byName;
+        final Entry[] favorites;
+        final FuzzyNameMatcher fuzzy;
+        final FoodColumnIndex columns;
+
+        Snapshot(Entry[] entries, long[] suffixes, int[] byName, Entry[] favorites, FuzzyNameMatcher fuzzy,
+                 FoodColumnIndex columns) {
+            this.entries = entries;
+            this.suffixes = suffixes;
+            this.byName = byName;
+            this.favorites = favorites;
+            this.fuzzy = fuzzy;
+            this.columns = columns;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        rebuilder = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "food-name-index");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebuilder.shutdownNow();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuilder.execute(this::rebuild);
+    }
+
+    /**
+     * 食物新增或修改後呼叫
+     */
+    public void onFoodSaved(Food food) {
+        if (food == null || food.getId() == null) {
+            return;
+        }
+        pending.put(food.getId(), Entry.of(food));
+        scheduleRebuild();
+    }
+
+    /**
+     * 其他節點的資料變更：本機沒有異動內容，稍後從資料庫重建
+     */
+    public void onExternalChanges() {
+        scheduleRebuild();
+    }
+
+    /**
+     * 食物刪除後呼叫
+     */
+    public void onFoodDeleted(Long id) {
+        if (id == null) {
+            return;
+        }
+        pending.put(id, new Entry(id, null, false, true));
+        scheduleRebuild();
+    }
+
+    /**
+     * 查詢名稱包含關鍵字的食物
+     * 排序：名稱開頭相符 > 最愛 > 符合近期搜尋詞，其次名稱較短、ID 較新者優先
+     * 開頭相符者一定排在其他結果之前，因此先由名稱排序陣列取出；已有 limit 筆開頭相符時不必再掃描後綴。
+     * 所有候選都在掃描途中以大小為 limit 的堆積排名，不會因為先掃到的後綴較多而漏掉排名較高的結果。
+     * @param query 關鍵字
+     * @param limit 最多筆數
+     * @param recentTerms 使用者近期搜尋詞（可為空）
+     */
+    public List<Entry> suggest(String query, int limit, List<String> recentTerms) {
+        if (query == null || limit <= 0) {
+            return Collections.emptyList();
+        }
+        String q = query.trim().toLowerCase(Locale.ROOT);
+        if (q.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<String> recent = new ArrayList<>();
+        if (recentTerms != null) {
+            for (String term : recentTerms) {
+                if (term != null && !term.trim().isEmpty()) {
+                    recent.add(term.trim().toLowerCase(Locale.ROOT));
+                }
+            }
+        }
+
+        Snapshot snap = snapshot;
+        Ranking ranking = new Ranking(limit, q, recent);
+        Set<Long> seen = new HashSet<>();
+
+        // 1. 尚未併入快照的異動優先處理（刪除的也要記下，避免從舊快照取出）
+        for (Entry entry : pending.values()) {
+            seen.add(entry.id);
+            if (!entry.deleted && entry.lowerName.contains(q)) {
+                ranking.offer(entry);
+            }
+        }
+
+        // 2. 最愛數量少，全部檢查
+        for (Entry entry : snap.favorites) {
+            if (entry.lowerName.contains(q) && seen.add(entry.id)) {
+                ranking.offer(entry);
+            }
+        }
+
+        // 3. 名稱開頭相符：名稱排序陣列中的連續範圍
+        int[] byName = snap.byName;
+        for (int i = lowerBoundByName(snap, q); i < byName.length; i++) {
+            Entry entry = snap.entries[byName[i]];
+            if (!entry.lowerName.startsWith(q)) {
+                break;
+            }
+            if (seen.add(entry.id)) {
+                ranking.offer(entry);
+            }
+        }
+
+        // 4. 名稱中間相符：後綴陣列前綴範圍（開頭相符者已在上一步處理）
+        if (ranking.prefixHits < limit) {
+            long[] suffixes = snap.suffixes;
+            for (int i = lowerBound(snap, q); i < suffixes.length; i++) {
+                Entry entry = snap.entries[(int) (suffixes[i] >>> OFFSET_BITS)];
+                int offset = (int) (suffixes[i] & OFFSET_MASK);
+                if (!entry.lowerName.startsWith(q, offset)) {
+                    break;
+                }
+                if (offset > 0 && seen.add(entry.id)) {
+                    ranking.offer(entry);
+                }
+            }
+        }
+
+        return ranking.result();
+    }
+
+    /**
+     * 保留排名最前的 limit 筆（堆積頂端為目前最差的一筆）
+     */
+    private static final class Ranking {
+        private final int limit;
+        private final String q;
+        private final List<String> recent;
+        private final PriorityQueue<Ranked> worstFirst;
+        int prefixHits;
+
+        Ranking(int limit, String q, List<String> recent) {
+            this.limit = limit;
+            this.q = q;
+            this.recent = recent;
+            this.worstFirst = new PriorityQueue<>(Math.min(limit, 64) + 1, Collections.reverseOrder(Ranked.ORDER));
+        }
+
+        void offer(Entry entry) {
+            Ranked ranked = new Ranked(entry, score(entry, q, recent));
+            if (entry.lowerName.startsWith(q)) {
+                prefixHits++;
+            }
+            if (worstFirst.size() < limit) {
+                worstFirst.add(ranked);
+            } else if (Ranked.ORDER.compare(ranked, worstFirst.peek()) < 0) {
+                worstFirst.poll();
+                worstFirst.add(ranked);
+            }
+        }
+
+        List<Entry> result() {
+            List<Ranked> ranked = new ArrayList<>(worstFirst);
+            ranked.sort(Ranked.ORDER);
+            List<Entry> entries = new ArrayList<>(ranked.size());
+            for (Ranked r : ranked) {
+                entries.add(r.entry);
+            }
+            return entries;
+        }
+    }
+
+    private static final class Ranked {
+        // 分數高、名稱短、ID 新者在前
+        static final Comparator<Ranked> ORDER = (a, b) -> {
+            int byScore = Integer.compare(b.score, a.score);
+            if (byScore != 0) {
+                return byScore;
+            }
+            int byLength = Integer.compare(a.entry.name.length(), b.entry.name.length());
+            return byLength != 0 ? byLength : Long.compare(b.entry.id, a.entry.id);
+        };
+
+        final Entry entry;
+        final int score;
+
+        Ranked(Entry entry, int score) {
+            this.entry = entry;
+            this.score = score;
+        }
+    }
+
+    /**
+     * 模糊 / 發音比對（錯字、同音字、拼音、注音、首字母）
+     * @param query 關鍵字
+     * @param limit 最多筆數
+     * @return 依相似度排序的食物 ID
+     */
+    public List<Long> fuzzySearch(String query, int limit) {
+        FuzzyNameMatcher.Query prepared = FuzzyNameMatcher.prepare(query);
+        if (prepared == null || limit <= 0) {
+            return new ArrayList<>();
+        }
+
+        Snapshot snap = snapshot;
+        List<FuzzyNameMatcher.Match> matches = new ArrayList<>();
+        for (FuzzyNameMatcher.Match match : snap.fuzzy.match(prepared, limit + pending.size())) {
+            if (!pending.containsKey(match.getId())) {
+                matches.add(match);
+            }
+        }
+        for (Entry entry : pending.values()) {
+            if (!entry.deleted) {
+                FuzzyNameMatcher.Match match = FuzzyNameMatcher.matchOne(prepared, entry.id, entry.name);
+                if (match != null) {
+                    matches.add(match);
+                }
+            }
+        }
+        matches.sort(FuzzyNameMatcher.ORDER);
+
+        List<Long> ids = new ArrayList<>(Math.min(limit, matches.size()));
+        for (int i = 0; i < matches.size() && i < limit; i++) {
+            ids.add(matches.get(i).getId());
+        }
+        return ids;
+    }
+
+    /**
+     * 結構化多欄位搜尋（名稱、備註、單位、碳水與係數範圍、最愛）
+     * 由欄式索引依最具選擇性的條件取出候選列，再以其餘條件過濾；尚未併入快照的異動逐筆比對
+     * @return 符合條件的食物 ID，新的在前
+     */
+    public List<Long> structuredSearch(FoodSearchCriteria criteria) {
+        FoodColumnIndex.Query query = FoodColumnIndex.prepare(criteria);
+        Snapshot snap = snapshot;
+
+        List<Long> ids = new ArrayList<>();
+        for (Entry entry : snap.columns.search(query)) {
+            if (!pending.containsKey(entry.id)) {
+                ids.add(entry.id);
+            }
+        }
+        for (Entry entry : pending.values()) {
+            if (!entry.deleted && query.matches(entry)) {
+                ids.add(entry.id);
+            }
+        }
+        ids.sort(Collections.reverseOrder());
+        return ids;
+    }
+
+    /**
+     * 目前索引的食物筆數（含尚未併入的異動）
+     */
+    public int size() {
+        return snapshot.entries.length + pending.size();
+    }
+
+    private static int score(Entry entry, String q, List<String> recent) {
+        int score = 0;
+        if (entry.lowerName.startsWith(q)) {
+            score += 4;
+        }
+        if (entry.favorite) {
+            score += 2;
+        }
+        for (String term : recent) {
+            if (entry.lowerName.contains(term)) {
+                score += 1;
+                break;
+            }
+        }
+        return score;
+    }
+
+    private void scheduleRebuild() {
+        if (rebuildScheduled.compareAndSet(false, true)) {
+            rebuilder.schedule(() -> {
+                rebuildScheduled.set(false);
+                rebuild();
+            }, rebuildDelayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 從資料庫重建快照
+     * 先記下目前的暫存異動，重建後只移除這些已反映在資料庫中的異動，期間新進的異動保留
+     */
+    void rebuild() {
+        try {
+            Map<Long, Entry> captured = new HashMap<>(pending);
+            List<FoodIndexView> rows = foodRepository.findAllProjectedBy();
+
+            Entry[] entries = new Entry[rows.size()];
+            List<Entry> favorites = new ArrayList<>();
+            int suffixCount = 0;
+            for (int i = 0; i < entries.length; i++) {
+                FoodIndexView row = rows.get(i);
+                entries[i] = new Entry(row.getId(), row.getName(), row.getNotes(), row.getUnit(),
+                        row.getCarbGrams(), row.getCoefficient(), Boolean.TRUE.equals(row.getIsFavorite()), false);
+                if (entries[i].favorite) {
+                    favorites.add(entries[i]);
+                }
+                suffixCount += Math.min(entries[i].lowerName.length(), (int) OFFSET_MASK);
+            }
+
+            long[] suffixes = new long[suffixCount];
+            int n = 0;
+            for (int i = 0; i < entries.length; i++) {
+                int length = Math.min(entries[i].lowerName.length(), (int) OFFSET_MASK);
+                for (int offset = 0; offset < length; offset++) {
+                    suffixes[n++] = ((long) i << OFFSET_BITS) | offset;
+                }
+            }
+            sortSuffixes(entries, suffixes);
+
+            int named = 0;
+            for (long suffix : suffixes) {
+                if ((suffix & OFFSET_MASK) == 0) {
+                    named++;
+                }
+            }
+            int[] byName = new int[named];
+            named = 0;
+            for (long suffix : suffixes) {
+                if ((suffix & OFFSET_MASK) == 0) {
+                    byName[named++] = (int) (suffix >>> OFFSET_BITS);
+                }
+            }
+
+            long[] ids = new long[entries.length];
+            String[] names = new String[entries.length];
+            for (int i = 0; i < entries.length; i++) {
+                ids[i] = entries[i].id;
+                names[i] = entries[i].name;
+            }
+            FuzzyNameMatcher fuzzy = new FuzzyNameMatcher(ids, names);
+
+            FoodColumnIndex columns = new FoodColumnIndex(entries);
+
+            snapshot = new Snapshot(entries, suffixes, byName, favorites.toArray(new Entry[0]), fuzzy, columns);
+            for (Map.Entry<Long, Entry> change : captured.entrySet()) {
+                pending.remove(change.getKey(), change.getValue());
+            }
+            logger.debug("食物名稱索引重建完成: {} 筆食物, {} 個後綴", entries.length, suffixes.length);
+        } catch (Exception e) {
+            logger.warn("食物名稱索引重建失敗", e);
+        }
+    }
+
+    private static int lowerBound(Snapshot snap, String q) {
+        int lo = 0;
+        int hi = snap.suffixes.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            long suffix = snap.suffixes[mid];
+            String name = snap.entries[(int) (suffix >>> OFFSET_BITS)].lowerName;
+            if (compareSuffix(name, (int) (suffix & OFFSET_MASK), q, 0) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private static int lowerBoundByName(Snapshot snap, String q) {
+        int lo = 0;
+        int hi = snap.byName.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compareSuffix(snap.entries[snap.byName[mid]].lowerName, 0, q, 0) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private static int compareSuffix(String a, int offsetA, String b, int offsetB) {
+        int lengthA = a.length() - offsetA;
+        int lengthB = b.length() - offsetB;
+        int min = Math.min(lengthA, lengthB);
+        for (int i = 0; i < min; i++) {
+            char ca = a.charAt(offsetA + i);
+            char cb = b.charAt(offsetB + i);
+            if (ca != cb) {
+                return ca - cb;
+            }
+        }
+        return lengthA - lengthB;
+    }
+
+    private static int compare(Entry[] entries, long x, long y) {
+        return compareSuffix(entries[(int) (x >>> OFFSET_BITS)].lowerName, (int) (x & OFFSET_MASK),
+                entries[(int) (y >>> OFFSET_BITS)].lowerName, (int) (y & OFFSET_MASK));
+    }
+
+    /**
+     * 由下而上的合併排序，直接在 long[] 上操作以免裝箱
+     */
+    private static void sortSuffixes(Entry[] entries, long[] suffixes) {
+        int n = suffixes.length;
+        long[] src = suffixes;
+        long[] dst = new long[n];
+        for (int width = 1; width < n; width <<= 1) {
+            for (int lo = 0; lo < n; lo += width << 1) {
+                int mid = Math.min(lo + width, n);
+                int hi = Math.min(lo + (width << 1), n);
+                int i = lo;
+                int j = mid;
+                int k = lo;
+                while (i < mid && j < hi) {
+                    dst[k++] = compare(entries, src[j], src[i]) < 0 ? src[j++] : src[i++];
+                }
+                while (i < mid) {
+                    dst[k++] = src[i++];
+                }
+                while (j < hi) {
+                    dst[k++] = src[j++];
+                }
+            }
+            long[] swap = src;
+            src = dst;
+            dst = swap;
+        }
+        if (src != suffixes) {
+            System.arraycopy(src, 0, suffixes, 0, n);
+        }
+    }
+}
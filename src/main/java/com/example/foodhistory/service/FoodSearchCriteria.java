@@ -0,0 +1,32 @@
+package com.example.foodhistory.service;
+
+import lombok.Data;
+
+/**
+ * 結構化搜尋條件（所有條件皆為 AND，未填寫的條件忽略）
+ */
+@Data
+public class FoodSearchCriteria {
+    // 名稱或備註包含（與離線搜尋相同語意）
+    private String q;
+    private String name;
+    private String notes;
+    // 單位完全相符（不分大小寫）
+    private String unit;
+    private Double carbMin;
+    private Double carbMax;
+    private Double coefficientMin;
+    private Double coefficientMax;
+    private Boolean favorite;
+
+    public boolean hasConditions() {
+        return hasText(q) || hasText(name) || hasText(notes) || hasText(unit)
+                || carbMin != null || carbMax != null
+                || coefficientMin != null || coefficientMax != null
+                || favorite != null;
+    }
+
+    static boolean hasText(String value) {
+        return value != null && !value.trim().isEmpty();
+    }
+}
@@ -2,21 +2,73 @@ package com.example.foodhistory.service;
 
 import com.example.foodhistory.model.Food;
 import com.example.foodhistory.repository.FoodRepository;
+import com.example.foodhistory.repository.projection.FoodListView;
+import com.example.foodhistory.repository.projection.FoodOfflineView;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
+/**
+ * 食物服務
+ * 預設為唯讀交易（不做髒檢查與 flush，設定讀寫分離時改由唯讀副本查詢），會寫入的方法另外標記 @Transactional。
+ * 唯讀交易載入的實體也是唯讀，不會被寫回；因此關閉 open-in-view，呼叫端取得的實體在交易結束後即脫離，
+ * 傳回 saveFood 時於讀寫交易中重新載入並合併。
+ */
 @Service
+@Transactional(readOnly = true)
 public class FoodService {
     @Autowired
     private FoodRepository foodRepository;
     
+    @Autowired
+    private SearchResultCache searchResultCache;
+    
+    @Autowired
+    private FoodNameIndex foodNameIndex;
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
+    @Value("${app.search.fuzzy.max-results:200}")
+    private int fuzzyMaxResults = 200;
+    
     public List<Food> getAllFoods() {
         return foodRepository.findAll();
     }
     
+    /**
+     * 離線快取用的全部食物（投影，唯讀）
+     */
+    public List<FoodOfflineView> getOfflineFoods() {
+        return foodRepository.findOfflineViewsBy();
+    }
+    
+    /**
+     * 所有已上傳圖片的檔名，只查詢 image_path 欄位
+     */
+    public List<String> getAllImagePaths() {
+        return foodRepository.findAllImagePaths();
+    }
+    
+    public long countFoods() {
+        return foodRepository.count();
+    }
+    
     public List<Food> searchFoods(String keyword) {
         if (keyword == null || keyword.trim().isEmpty()) {
             return foodRepository.findAll();
@@ -25,40 +77,217 @@ public class FoodService {
     }
     
     public Page<Food> searchFoods(String keyword, Pageable pageable) {
+        return cachedSearch(keyword, pageable, this::queryFoods, this::loadFoodsInOrder, Food::getId);
+    }
+    
+    /**
+     * 依搜尋模式查詢
+     * FUZZY 模式容許錯字、同音字、拼音 / 注音與首字母輸入，結果依相似度排序（忽略 pageable 的排序條件）
+     */
+    public Page<Food> searchFoods(String keyword, Pageable pageable, SearchMode mode) {
+        if (mode != SearchMode.FUZZY || keyword == null || keyword.trim().isEmpty()) {
+            return searchFoods(keyword, pageable);
+        }
+        return pageOfIds(foodNameIndex.fuzzySearch(keyword, fuzzyMaxResults), pageable, this::loadFoodsInOrder);
+    }
+    
+    /**
+     * 列表頁用的唯讀搜尋，與 searchFoods 共用搜尋結果快取
+     * 回傳投影而非受管實體，只讀取列表顯示的欄位
+     */
+    public Page<FoodListView> searchFoodViews(String keyword, Pageable pageable) {
+        return cachedSearch(keyword, pageable, this::queryFoodViews, this::loadFoodViewsInOrder, FoodListView::getId);
+    }
+    
+    public Page<FoodListView> searchFoodViews(String keyword, Pageable pageable, SearchMode mode) {
+        if (mode != SearchMode.FUZZY || keyword == null || keyword.trim().isEmpty()) {
+            return searchFoodViews(keyword, pageable);
+        }
+        return pageOfIds(foodNameIndex.fuzzySearch(keyword, fuzzyMaxResults), pageable, this::loadFoodViewsInOrder);
+    }
+    
+    /**
+     * 結構化多欄位搜尋（名稱、備註、單位、碳水與係數範圍、最愛），結果依 ID 由新到舊排序
+     * 條件比對完全在記憶體欄式索引中完成，資料庫只依 ID 載入該頁食物
+     */
+    public Page<Food> searchFoods(FoodSearchCriteria criteria, Pageable pageable) {
+        return pageOfIds(foodNameIndex.structuredSearch(criteria), pageable, this::loadFoodsInOrder);
+    }
+    
+    /**
+     * 以搜尋結果快取執行分頁查詢
+     * 命中快取時只需依 ID 載入該頁資料，省去 LIKE 查詢與 count
+     */
+    private <T> Page<T> cachedSearch(String keyword, Pageable pageable,
+                                     BiFunction<String, Pageable, Page<T>> query,
+                                     Function<List<Long>, List<T>> loader,
+                                     Function<T, Long> idOf) {
+        if (pageable.isUnpaged()) {
+            return query.apply(keyword, pageable);
+        }
+        
+        SearchResultCache.Entry cached = searchResultCache.get(keyword, pageable);
+        if (cached != null) {
+            return new PageImpl<>(loader.apply(cached.getIds()), pageable, cached.getTotalElements());
+        }
+        
+        long revision = searchResultCache.currentRevision();
+        Page<T> result = query.apply(keyword, pageable);
+        List<Long> ids = new ArrayList<>(result.getNumberOfElements());
+        for (T item : result.getContent()) {
+            ids.add(idOf.apply(item));
+        }
+        searchResultCache.put(keyword, pageable, revision, ids, result.getTotalElements());
+        return result;
+    }
+    
+    /**
+     * 將索引比對出的 ID 清單切出 pageable 指定的一頁並載入
+     */
+    private static <T> Page<T> pageOfIds(List<Long> ids, Pageable pageable, Function<List<Long>, List<T>> loader) {
+        if (pageable.isUnpaged()) {
+            return new PageImpl<>(loader.apply(ids), pageable, ids.size());
+        }
+        int from = (int) Math.min(pageable.getOffset(), ids.size());
+        int to = Math.min(from + pageable.getPageSize(), ids.size());
+        return new PageImpl<>(loader.apply(ids.subList(from, to)), pageable, ids.size());
+    }
+    
+    private Page<Food> queryFoods(String keyword, Pageable pageable) {
         if (keyword == null || keyword.trim().isEmpty()) {
             return foodRepository.findAll(pageable);
         }
         return foodRepository.findByNameContainingIgnoreCase(keyword.trim(), pageable);
     }
     
+    private Page<FoodListView> queryFoodViews(String keyword, Pageable pageable) {
+        if (keyword == null || keyword.trim().isEmpty()) {
+            return foodRepository.findListViewsBy(pageable);
+        }
+        return foodRepository.findListViewsByNameContainingIgnoreCase(keyword.trim(), pageable);
+    }
+    
+    /**
+     * 依 ID 清單載入食物並維持原本順序，已被刪除的 ID 會略過
+     */
+    private List<Food> loadFoodsInOrder(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return inIdOrder(ids, foodRepository.findAllById(ids), Food::getId);
+    }
+    
+    private List<FoodListView> loadFoodViewsInOrder(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return inIdOrder(ids, foodRepository.findListViewsByIdIn(ids), FoodListView::getId);
+    }
+    
+    private static <T> List<T> inIdOrder(List<Long> ids, Iterable<T> loaded, Function<T, Long> idOf) {
+        Map<Long, T> byId = new HashMap<>();
+        for (T item : loaded) {
+            byId.put(idOf.apply(item), item);
+        }
+        List<T> ordered = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            T item = byId.get(id);
+            if (item != null) {
+                ordered.add(item);
+            }
+        }
+        return ordered;
+    }
+    
     public Food getFoodById(Long id) {
         return foodRepository.findById(id).orElse(null);
     }
     
+    @Transactional
     public Food saveFood(Food food) {
-        return foodRepository.save(food);
+        if (food.getId() == null) {
+            Food saved = foodRepository.save(food);
+            afterCommit(() -> {
+                searchResultCache.onFoodCreated(saved.getName());
+                foodNameIndex.onFoodSaved(saved);
+                eventPublisher.publishEvent(new FoodChangeEvent(saved.getId(), FoodChangeEvent.Op.SAVE));
+            });
+            return saved;
+        }
+        // 更新前先讀出資料庫中的舊名稱，讓舊名稱對應的搜尋結果一併失效
+        String oldName = foodRepository.findNameById(food.getId()).orElse(null);
+        Food saved = foodRepository.save(food);
+        afterCommit(() -> {
+            searchResultCache.onFoodUpdated(oldName, saved.getName());
+            foodNameIndex.onFoodSaved(saved);
+            eventPublisher.publishEvent(new FoodChangeEvent(saved.getId(), FoodChangeEvent.Op.SAVE));
+        });
+        return saved;
     }
     
+    @Transactional
     public void deleteFood(Long id) {
         // 先檢查是否存在，避免刪除不存在的食物時拋出異常
         if (foodRepository.existsById(id)) {
+            String name = foodRepository.findNameById(id).orElse(null);
             foodRepository.deleteById(id);
+            afterCommit(() -> {
+                searchResultCache.onFoodDeleted(name);
+                foodNameIndex.onFoodDeleted(id);
+                eventPublisher.publishEvent(new FoodChangeEvent(id, FoodChangeEvent.Op.DELETE));
+            });
         }
         // 如果不存在也不報錯，符合冪等性原則
     }
     
+    @Transactional
     public Food toggleFavorite(Long id) {
         Food food = getFoodById(id);
         if (food != null) {
             food.setIsFavorite(!food.getIsFavorite());
-            return saveFood(food);
+            // 最愛狀態不影響搜尋結果的 ID 清單，無需讓搜尋快取失效
+            Food saved = foodRepository.save(food);
+            afterCommit(() -> {
+                foodNameIndex.onFoodSaved(saved);
+                eventPublisher.publishEvent(new FoodChangeEvent(saved.getId(), FoodChangeEvent.Op.FAVORITE));
+            });
+            return saved;
         }
         return null;
     }
     
-    public List<Food> getFavoriteRecommendations(int limit) {
-        List<Food> favorites = foodRepository.findByIsFavoriteTrueOrderByNameAsc();
-        return favorites.size() > limit ? favorites.subList(0, limit) : favorites;
+    /**
+     * 交易提交後才讓搜尋快取與索引失效並發布變更事件，避免其他請求在提交前重新快取或讀到舊資料；沒有交易時立即執行
+     */
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+    
+    /**
+     * 其他節點的變更沒有經過本機的 saveFood / deleteFood，清除本機搜尋快取並重建名稱索引
+     */
+    @EventListener
+    public void onFoodChanges(FoodChangeBatch batch) {
+        if (batch.isRemote()) {
+            searchResultCache.clear();
+            foodNameIndex.onExternalChanges();
+        }
+    }
+    
+    /**
+     * 最愛推薦（依名稱排序的前 limit 筆），只讀取列表顯示的欄位
+     */
+    public List<FoodListView> getFavoriteRecommendations(int limit) {
+        return foodRepository.findListViewsByIsFavoriteTrueOrderByNameAsc(PageRequest.of(0, limit));
     }
     
     public List<Food> getAllFavorites() {
@@ -0,0 +1,390 @@
+package com.example.foodhistory.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 食物名稱模糊比對引擎（不可變，建立後可多執行緒共用）
+ * 三種比對方式，皆先以 n-gram 倒排索引挑出候選，再以有上限的編輯距離驗證：
+ * 1. 文字：中文單字索引，容許少量錯字（例如「番茄炒旦」→「番茄炒蛋」）
+ * 2. 拼音：拼音二字母索引，處理同音錯字、羅馬拼音與注音輸入（例如「炒反」、「chaofan」、「ㄔㄠˇㄈㄢˋ」）
+ * 3. 首字母：拼音首字母縮寫（例如「dcf」→「蛋炒飯」）
+ */
+public final class FuzzyNameMatcher {
+
+    static final int KIND_TEXT = 0;
+    static final int KIND_PINYIN = 1;
+    static final int KIND_INITIALS = 2;
+
+    /**
+     * 排序：編輯距離小者優先，其次文字 > 拼音 > 首字母，再來名稱較短、ID 較新者優先
+     */
+    static final Comparator<Match> ORDER = (a, b) -> {
+        if (a.distance != b.distance) {
+            return Integer.compare(a.distance, b.distance);
+        }
+        if (a.kind != b.kind) {
+            return Integer.compare(a.kind, b.kind);
+        }
+        if (a.name.length() != b.name.length()) {
+            return Integer.compare(a.name.length(), b.name.length());
+        }
+        return Long.compare(b.id, a.id);
+    };
+
+    private static final int[] EMPTY_POSTING = new int[0];
+
+    private final long[] ids;
+    private final String[] names;
+    private final String[] lowerNames;
+    private final String[] pinyinKeys;
+    private final String[] initialKeys;
+
+    private final Map<Character, int[]> hanziPostings;
+    private final Map<String, int[]> pinyinPostings;
+    private final Map<String, int[]> initialPostings;
+
+    /**
+     * 單筆比對結果
+     */
+    public static final class Match {
+        private final long id;
+        private final String name;
+        private final int distance;
+        private final int kind;
+
+        Match(long id, String name, int distance, int kind) {
+            this.id = id;
+            this.name = name;
+            this.distance = distance;
+            this.kind = kind;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getDistance() {
+            return distance;
+        }
+    }
+
+    /**
+     * 預先處理過的查詢（同一查詢比對多個來源時只需計算一次）
+     */
+    public static final class Query {
+        final String text;
+        final String hanzi;
+        final String pinyin;
+        final String initials;
+        final int textMaxDistance;
+        final int pinyinMaxDistance;
+
+        private Query(String text) {
+            this.text = text;
+            StringBuilder hanziChars = new StringBuilder();
+            boolean asciiLetters = true;
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (PhoneticKeys.isHanzi(c)) {
+                    hanziChars.append(c);
+                }
+                if (c > 0x7f || !Character.isLetter(c)) {
+                    asciiLetters = false;
+                }
+            }
+            this.hanzi = hanziChars.toString();
+            String key = PhoneticKeys.pinyin(text);
+            this.pinyin = key.length() >= 2 ? key : null;
+            this.initials = asciiLetters && text.length() >= 2 && text.length() <= 8 ? text : null;
+            this.textMaxDistance = text.length() <= 2 ? 0 : text.length() <= 5 ? 1 : 2;
+            this.pinyinMaxDistance = key.length() < 4 ? 0 : key.length() < 8 ? 1 : 2;
+        }
+    }
+
+    /**
+     * 建立索引
+     * @param ids 食物 ID
+     * @param names 對應的食物名稱
+     */
+    public FuzzyNameMatcher(long[] ids, String[] names) {
+        int n = ids.length;
+        this.ids = ids;
+        this.names = names;
+        this.lowerNames = new String[n];
+        this.pinyinKeys = new String[n];
+        this.initialKeys = new String[n];
+
+        Map<Character, IntList> hanzi = new HashMap<>();
+        Map<String, IntList> pinyin = new HashMap<>();
+        Map<String, IntList> initials = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            String name = names[i] != null ? names[i] : "";
+            lowerNames[i] = name.toLowerCase(Locale.ROOT);
+            pinyinKeys[i] = PhoneticKeys.pinyin(name);
+            initialKeys[i] = PhoneticKeys.initials(name);
+
+            for (int j = 0; j < lowerNames[i].length(); j++) {
+                char c = lowerNames[i].charAt(j);
+                if (PhoneticKeys.isHanzi(c)) {
+                    hanzi.computeIfAbsent(c, key -> new IntList()).addDistinct(i);
+                }
+            }
+            for (String gram : grams(pinyinKeys[i], 2)) {
+                pinyin.computeIfAbsent(gram, key -> new IntList()).addDistinct(i);
+            }
+            for (String gram : grams(initialKeys[i], 2)) {
+                initials.computeIfAbsent(gram, key -> new IntList()).addDistinct(i);
+            }
+        }
+        this.hanziPostings = freeze(hanzi);
+        this.pinyinPostings = freeze(pinyin);
+        this.initialPostings = freeze(initials);
+    }
+
+    /**
+     * 前處理查詢字串，空白查詢回傳 null
+     */
+    public static Query prepare(String query) {
+        if (query == null || query.trim().isEmpty()) {
+            return null;
+        }
+        return new Query(query.trim().toLowerCase(Locale.ROOT));
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * 模糊比對
+     * @param query 已前處理的查詢
+     * @param limit 最多回傳筆數
+     * @return 依相似度排序的結果
+     */
+    public List<Match> match(Query query, int limit) {
+        if (query == null || limit <= 0 || ids.length == 0) {
+            return new ArrayList<>();
+        }
+        Map<Integer, Match> best = new HashMap<>();
+
+        if (!query.hanzi.isEmpty()) {
+            List<int[]> postings = new ArrayList<>();
+            Set<Character> distinct = new LinkedHashSet<>();
+            for (int i = 0; i < query.hanzi.length(); i++) {
+                distinct.add(query.hanzi.charAt(i));
+            }
+            for (Character c : distinct) {
+                postings.add(hanziPostings.getOrDefault(c, EMPTY_POSTING));
+            }
+            IntList candidates = collect(postings, Math.max(1, distinct.size() - query.textMaxDistance));
+            for (int c = 0; c < candidates.size; c++) {
+                int idx = candidates.values[c];
+                int distance = approximateSubstringDistance(query.text, lowerNames[idx], query.textMaxDistance);
+                if (distance <= query.textMaxDistance) {
+                    offer(best, idx, distance, KIND_TEXT);
+                }
+            }
+        }
+
+        if (query.pinyin != null) {
+            List<String> grams = grams(query.pinyin, 2);
+            List<int[]> postings = new ArrayList<>(grams.size());
+            for (String gram : grams) {
+                postings.add(pinyinPostings.getOrDefault(gram, EMPTY_POSTING));
+            }
+            // 每次編輯最多破壞 2 個二字母組
+            IntList candidates = collect(postings, Math.max(1, grams.size() - 2 * query.pinyinMaxDistance));
+            for (int c = 0; c < candidates.size; c++) {
+                int idx = candidates.values[c];
+                int distance = approximateSubstringDistance(query.pinyin, pinyinKeys[idx], query.pinyinMaxDistance);
+                if (distance <= query.pinyinMaxDistance) {
+                    offer(best, idx, distance, KIND_PINYIN);
+                }
+            }
+        }
+
+        if (query.initials != null) {
+            List<String> grams = grams(query.initials, 2);
+            List<int[]> postings = new ArrayList<>(grams.size());
+            for (String gram : grams) {
+                postings.add(initialPostings.getOrDefault(gram, EMPTY_POSTING));
+            }
+            IntList candidates = collect(postings, grams.size());
+            for (int c = 0; c < candidates.size; c++) {
+                int idx = candidates.values[c];
+                if (initialKeys[idx].contains(query.initials)) {
+                    offer(best, idx, 0, KIND_INITIALS);
+                }
+            }
+        }
+
+        List<Match> matches = new ArrayList<>(best.values());
+        matches.sort(ORDER);
+        return matches.size() > limit ? new ArrayList<>(matches.subList(0, limit)) : matches;
+    }
+
+    /**
+     * 比對單筆名稱（用於尚未建入索引的異動資料）
+     * @return 符合時回傳結果，否則 null
+     */
+    public static Match matchOne(Query query, long id, String name) {
+        if (query == null || name == null) {
+            return null;
+        }
+        String lower = name.toLowerCase(Locale.ROOT);
+        Match match = null;
+        int distance = approximateSubstringDistance(query.text, lower, query.textMaxDistance);
+        if (distance <= query.textMaxDistance) {
+            match = new Match(id, name, distance, KIND_TEXT);
+        }
+        if (query.pinyin != null && (match == null || match.distance > 0)) {
+            int phonetic = approximateSubstringDistance(query.pinyin, PhoneticKeys.pinyin(name), query.pinyinMaxDistance);
+            if (phonetic <= query.pinyinMaxDistance && (match == null || phonetic < match.distance)) {
+                match = new Match(id, name, phonetic, KIND_PINYIN);
+            }
+        }
+        if (match == null && query.initials != null && PhoneticKeys.initials(name).contains(query.initials)) {
+            match = new Match(id, name, 0, KIND_INITIALS);
+        }
+        return match;
+    }
+
+    /**
+     * 近似子字串編輯距離：pattern 與 text 任一子字串間的最小編輯距離（Sellers 演算法），
+     * 超過 maxDistance 時提前結束並回傳 maxDistance + 1
+     */
+    static int approximateSubstringDistance(String pattern, String text, int maxDistance) {
+        int m = pattern.length();
+        int n = text.length();
+        if (m == 0) {
+            return 0;
+        }
+        if (m - maxDistance > n) {
+            return maxDistance + 1;
+        }
+        // 第 0 列全為 0：比對可以從 text 任一位置開始
+        int[] previous = new int[n + 1];
+        int[] current = new int[n + 1];
+        for (int i = 1; i <= m; i++) {
+            current[0] = i;
+            int rowMin = i;
+            char p = pattern.charAt(i - 1);
+            for (int j = 1; j <= n; j++) {
+                int cost = p == text.charAt(j - 1) ? 0 : 1;
+                int value = Math.min(Math.min(previous[j - 1] + cost, previous[j] + 1), current[j - 1] + 1);
+                current[j] = value;
+                if (value < rowMin) {
+                    rowMin = value;
+                }
+            }
+            if (rowMin > maxDistance) {
+                return maxDistance + 1;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        int best = maxDistance + 1;
+        for (int j = 0; j <= n; j++) {
+            if (previous[j] < best) {
+                best = previous[j];
+            }
+        }
+        return best;
+    }
+
+    private void offer(Map<Integer, Match> best, int idx, int distance, int kind) {
+        Match existing = best.get(idx);
+        if (existing == null || distance < existing.distance || (distance == existing.distance && kind < existing.kind)) {
+            best.put(idx, new Match(ids[idx], names[idx], distance, kind));
+        }
+    }
+
+    /**
+     * 合併倒排清單，回傳出現次數達 minShared 的 entry
+     * 各清單串接後排序再計算連續相同值的個數，暫存空間只與清單總長度有關，不隨索引大小配置
+     */
+    private static IntList collect(List<int[]> postings, int minShared) {
+        int total = 0;
+        for (int[] posting : postings) {
+            total += posting.length;
+        }
+        int[] all = new int[total];
+        int n = 0;
+        for (int[] posting : postings) {
+            System.arraycopy(posting, 0, all, n, posting.length);
+            n += posting.length;
+        }
+        Arrays.sort(all);
+        IntList result = new IntList();
+        for (int i = 0; i < total; ) {
+            int j = i + 1;
+            while (j < total && all[j] == all[i]) {
+                j++;
+            }
+            if (j - i >= minShared) {
+                result.add(all[i]);
+            }
+            i = j;
+        }
+        return result;
+    }
+
+    private static List<String> grams(String text, int size) {
+        List<String> grams = new ArrayList<>();
+        if (text.length() < size) {
+            return grams;
+        }
+        Set<String> distinct = new LinkedHashSet<>();
+        for (int i = 0; i + size <= text.length(); i++) {
+            distinct.add(text.substring(i, i + size));
+        }
+        grams.addAll(distinct);
+        return grams;
+    }
+
+    private static <K> Map<K, int[]> freeze(Map<K, IntList> lists) {
+        Map<K, int[]> frozen = new HashMap<>(lists.size() * 2);
+        for (Map.Entry<K, IntList> entry : lists.entrySet()) {
+            frozen.put(entry.getKey(), entry.getValue().toArray());
+        }
+        return frozen;
+    }
+
+    /**
+     * 可增長的 int 陣列，避免倒排清單裝箱
+     */
+    private static final class IntList {
+        int[] values = new int[4];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void addDistinct(int value) {
+            if (size == 0 || values[size - 1] != value) {
+                add(value);
+            }
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.foodhistory.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 熱門小圖的位元組快取
+ * 內容放在 heap 陣列（只收小圖，不會每次未命中都配置無法及時回收的 direct buffer）；以總位元組數為上限，超過時依 LRU 淘汰。
+ * key 為檔名，取用時比對 ETag，圖片被替換後舊內容不會再被送出；載入期間被 invalidate 的結果直接捨棄，不放入快取。
+ */
+final class ImageByteCache {
+
+    private final long maxBytes;
+    private final long maxEntryBytes;
+
+    private long currentBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    // access-order 的 LinkedHashMap 作為 LRU，淘汰依位元組數自行處理
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+
+    // 載入中的檔名與其世代，invalidate 時遞增；只保留仍有載入在進行的檔名，數量受同時請求數限制
+    private final HashMap<String, Load> loads = new HashMap<>();
+
+    private static final class Load {
+        long generation;
+        int loaders;
+    }
+
+    private static final class Entry {
+        final String etag;
+        final ByteBuffer content;
+
+        Entry(String etag, ByteBuffer content) {
+            this.etag = etag;
+            this.content = content;
+        }
+    }
+
+    ImageByteCache(long maxBytes, long maxEntryBytes) {
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = Math.min(maxEntryBytes, maxBytes);
+    }
+
+    /**
+     * 取得圖片內容，未命中時從檔案載入
+     * @param filename 檔名（快取 key）
+     * @param image 圖片中繼資料（ETag 與長度）
+     * @return 唯讀的內容（position = 0），圖片太大或快取停用時回傳 null
+     */
+    ByteBuffer get(String filename, FileStorageService.ImageMetadata image) throws IOException {
+        if (image.getLength() > maxEntryBytes) {
+            return null;
+        }
+        Load load;
+        long generation;
+        synchronized (entries) {
+            Entry entry = entries.get(filename);
+            if (entry != null && entry.etag.equals(image.getEtag())) {
+                hits.incrementAndGet();
+                return entry.content.duplicate();
+            }
+            load = loads.computeIfAbsent(filename, key -> new Load());
+            load.loaders++;
+            generation = load.generation;
+        }
+        misses.incrementAndGet();
+
+        ByteBuffer content = null;
+        try {
+            content = load(image.getPath(), (int) image.getLength());
+        } finally {
+            synchronized (entries) {
+                if (--load.loaders == 0) {
+                    loads.remove(filename);
+                }
+                // 檔案長度與中繼資料不符（被外部改寫），或載入期間已被替換 / 刪除時不快取
+                if (content != null && load.generation == generation) {
+                    put(filename, new Entry(image.getEtag(), content.asReadOnlyBuffer()));
+                }
+            }
+        }
+        return content == null ? null : content.asReadOnlyBuffer();
+    }
+
+    /**
+     * 移除檔案的快取內容（圖片替換或刪除時）
+     */
+    void invalidate(String filename) {
+        synchronized (entries) {
+            Load load = loads.get(filename);
+            if (load != null) {
+                load.generation++;
+            }
+            Entry removed = entries.remove(filename);
+            if (removed != null) {
+                currentBytes -= removed.content.capacity();
+                invalidations.incrementAndGet();
+            }
+        }
+    }
+
+    Map<String, Object> getStats() {
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        long total = hitCount + missCount;
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRatio", total == 0 ? 0.0 : (double) hitCount / total);
+        stats.put("evictions", evictions.get());
+        stats.put("invalidations", invalidations.get());
+        stats.put("maxBytes", maxBytes);
+        stats.put("maxEntryBytes", maxEntryBytes);
+        synchronized (entries) {
+            stats.put("size", entries.size());
+            stats.put("bytes", currentBytes);
+        }
+        return stats;
+    }
+
+    // 需持有 entries 的鎖
+    private void put(String filename, Entry entry) {
+        Entry previous = entries.put(filename, entry);
+        if (previous != null) {
+            currentBytes -= previous.content.capacity();
+        }
+        currentBytes += entry.content.capacity();
+        Iterator<Entry> it = entries.values().iterator();
+        while (currentBytes > maxBytes && it.hasNext()) {
+            Entry eldest = it.next();
+            if (eldest == entry) {
+                continue;
+            }
+            it.remove();
+            currentBytes -= eldest.content.capacity();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private static ByteBuffer load(Path path, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    return null;
+                }
+            }
+            if (channel.size() != length) {
+                return null;
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
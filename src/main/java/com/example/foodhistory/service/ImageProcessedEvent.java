@@ -0,0 +1,29 @@
+package com.example.foodhistory.service;
+
+/**
+ * 圖片背景處理完成（成功或放棄）時發布的應用程式事件
+ */
+public class ImageProcessedEvent {
+
+    private final Long foodId;
+    private final String filename;
+    private final boolean success;
+
+    public ImageProcessedEvent(Long foodId, String filename, boolean success) {
+        this.foodId = foodId;
+        this.filename = filename;
+        this.success = success;
+    }
+
+    public Long getFoodId() {
+        return foodId;
+    }
+
+    public String getFilename() {
+        return filename;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+}
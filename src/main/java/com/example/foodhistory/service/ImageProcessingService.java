@@ -0,0 +1,316 @@
+package com.example.foodhistory.service;
+
+import com.example.foodhistory.cluster.ClusterBus;
+import com.example.foodhistory.concurrent.VirtualThreads;
+import com.example.foodhistory.model.ImageJob;
+import com.example.foodhistory.repository.FoodRepository;
+import com.example.foodhistory.repository.ImageJobRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 圖片背景處理佇列
+ * 上傳的圖片先以原檔存入並標記為處理中，食物資料立即儲存；轉正、縮圖、重新壓縮、移除中繼資料
+ * 與產生 WebP / AVIF 變體交由固定大小的工作執行緒處理。工作先寫入 image_jobs 表再放入有界的記憶體佇列，
+ * 佇列已滿或應用程式重新啟動時，未完成的工作留在資料庫中，由定期掃描補送。
+ * 多個節點共用 image_jobs 表：工作以條件式更新認領，執行中定期更新 updated_at，
+ * 節點停止後逾時未更新的工作由其他節點改回 PENDING。
+ */
+@Service
+public class ImageProcessingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageProcessingService.class);
+
+    // 讀取 EXIF 方向所需的檔頭長度
+    private static final int HEADER_BYTES = 64 * 1024;
+
+    @Autowired
+    private ImageJobRepository imageJobRepository;
+
+    @Autowired
+    private FoodRepository foodRepository;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private ClusterBus clusterBus;
+
+    @Value("${app.image.processing.workers:2}")
+    private int workers = 2;
+
+    @Value("${app.image.processing.queue-capacity:100}")
+    private int queueCapacity = 100;
+
+    @Value("${app.image.processing.max-attempts:3}")
+    private int maxAttempts = 3;
+
+    @Value("${app.image.processing.max-dimension:1600}")
+    private int maxDimension = 1600;
+
+    @Value("${app.image.processing.jpeg-quality:0.85}")
+    private float jpegQuality = 0.85f;
+
+    @Value("${app.image.processing.stale-after-ms:600000}")
+    private long staleAfterMs = 600000;
+
+    @Value("${app.image.max-pixels:40000000}")
+    private long maxPixels = 40000000;
+
+    @Value("${app.threads.virtual:false}")
+    private boolean virtualThreads;
+
+    private ThreadPoolExecutor executor;
+
+    private ImageProcessor processor;
+
+    // 已放入記憶體佇列或執行中的工作，避免定期掃描重複送出
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    public void init() {
+        processor = new ImageProcessor(maxDimension, jpegQuality, maxPixels);
+        // 虛擬執行緒模式下等待外部編碼器與檔案 I/O 時不佔用平台執行緒；同時處理數仍由 workers 限制
+        executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                VirtualThreads.newFactory("image-processor-", virtualThreads));
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        // 佇列中尚未執行的工作仍是 PENDING，下次啟動時會繼續處理
+        executor.shutdownNow();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 啟動時把本節點上次中斷、以及逾時未更新的工作改回 PENDING 並重新送出
+     * 其他節點仍在執行的工作會持續更新 updated_at，不受影響
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        int reset = imageJobRepository.requeue(clusterBus.getNodeId(), staleBefore(),
+                ImageJob.Status.RUNNING, ImageJob.Status.PENDING);
+        if (reset > 0) {
+            logger.info("恢復 {} 個中斷的圖片處理工作", reset);
+        }
+        dispatchPending();
+    }
+
+    /**
+     * 定期更新本節點執行中工作的 updated_at，並把其他已停止節點逾時未更新的工作改回 PENDING
+     */
+    @Scheduled(fixedDelayString = "${app.image.processing.heartbeat-interval-ms:60000}")
+    public void heartbeat() {
+        if (executor.getActiveCount() > 0) {
+            imageJobRepository.heartbeat(clusterBus.getNodeId(), ImageJob.Status.RUNNING, new Date());
+        }
+        // owner 傳 null 時只比對逾時條件；本節點的工作剛更新過，不會被改回
+        int reset = imageJobRepository.requeue(null, staleBefore(), ImageJob.Status.RUNNING, ImageJob.Status.PENDING);
+        if (reset > 0) {
+            logger.warn("{} 個圖片處理工作逾時未更新，改回待處理", reset);
+        }
+    }
+
+    private Date staleBefore() {
+        return new Date(System.currentTimeMillis() - staleAfterMs);
+    }
+
+    /**
+     * 建立圖片處理工作（呼叫端應已將食物標記為 imageProcessing = true）
+     * @param foodId 食物ID
+     * @param filename 已儲存的原始圖片檔名
+     */
+    public ImageJob enqueue(Long foodId, String filename) {
+        ImageJob job = new ImageJob();
+        job.setFoodId(foodId);
+        job.setFilename(filename);
+        job.setStatus(ImageJob.Status.PENDING);
+        Date now = new Date();
+        job.setCreatedAt(now);
+        job.setUpdatedAt(now);
+        job = imageJobRepository.save(job);
+        submit(job.getId());
+        return job;
+    }
+
+    /**
+     * 查詢食物最近一次圖片處理工作的狀態
+     */
+    public Map<String, Object> getStatus(Long foodId) {
+        Map<String, Object> status = new HashMap<>();
+        status.put("foodId", foodId);
+        imageJobRepository.findFirstByFoodIdOrderByIdDesc(foodId).ifPresent(job -> {
+            status.put("status", job.getStatus().name());
+            status.put("filename", job.getFilename());
+            status.put("attempts", job.getAttempts());
+            status.put("updatedAt", job.getUpdatedAt());
+        });
+        return status;
+    }
+
+    /**
+     * 佇列統計
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("workers", workers);
+        stats.put("queueCapacity", queueCapacity);
+        stats.put("queued", executor.getQueue().size());
+        stats.put("active", executor.getActiveCount());
+        stats.put("pending", imageJobRepository.countByStatus(ImageJob.Status.PENDING));
+        stats.put("failed", imageJobRepository.countByStatus(ImageJob.Status.FAILED));
+        return stats;
+    }
+
+    /**
+     * 定期補送留在資料庫中的工作（佇列曾滿、重試中的工作）
+     */
+    @Scheduled(fixedDelayString = "${app.image.processing.poll-interval-ms:30000}")
+    public void dispatchPending() {
+        int free = executor.getQueue().remainingCapacity();
+        if (free <= 0) {
+            return;
+        }
+        List<ImageJob> jobs = imageJobRepository.findByStatusOrderByIdAsc(ImageJob.Status.PENDING,
+                PageRequest.of(0, free + inFlight.size()));
+        for (ImageJob job : jobs) {
+            if (!inFlight.contains(job.getId()) && !submit(job.getId())) {
+                break;
+            }
+        }
+    }
+
+    private boolean submit(Long jobId) {
+        if (!inFlight.add(jobId)) {
+            return true;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    run(jobId);
+                } finally {
+                    inFlight.remove(jobId);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            // 佇列已滿：工作保持 PENDING，由定期掃描稍後送出
+            inFlight.remove(jobId);
+            logger.debug("圖片處理佇列已滿，工作 {} 延後處理", jobId);
+            return false;
+        }
+    }
+
+    void run(Long jobId) {
+        // 多個工作執行緒或節點同時看到 PENDING 時，只有條件式更新成功的一方執行
+        String node = clusterBus.getNodeId();
+        if (imageJobRepository.claim(jobId, ImageJob.Status.PENDING, ImageJob.Status.RUNNING, node, new Date()) != 1) {
+            return;
+        }
+        ImageJob job = imageJobRepository.findById(jobId).orElse(null);
+        if (job == null) {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        try {
+            process(job.getFilename());
+            job.setStatus(ImageJob.Status.DONE);
+            job.setLastError(null);
+            logger.debug("圖片處理完成: {} ({} ms)", job.getFilename(), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            String message = e.getClass().getSimpleName() + ": " + e.getMessage();
+            job.setLastError(message.length() > 255 ? message.substring(0, 255) : message);
+            // 影像本身不合格時重試也不會成功
+            boolean retry = !(e instanceof InvalidImageException) && job.getAttempts() < maxAttempts;
+            job.setStatus(retry ? ImageJob.Status.PENDING : ImageJob.Status.FAILED);
+            logger.warn("圖片處理失敗（第 {} 次）: {}", job.getAttempts(), job.getFilename(), e);
+        }
+        if (imageJobRepository.finish(jobId, node, ImageJob.Status.RUNNING, job.getStatus(), job.getLastError(),
+                new Date()) != 1) {
+            // 逾時被改回 PENDING 或已由其他節點接手，結果交給目前的執行者寫入
+            logger.info("圖片處理工作 {} 已不屬於本節點，不寫入結果", jobId);
+            return;
+        }
+
+        if (job.getStatus() != ImageJob.Status.PENDING) {
+            // 完成或放棄時都清除處理中標記；放棄時保留原始上傳檔
+            foodRepository.updateImageProcessing(job.getFoodId(), job.getFilename(), false);
+            eventPublisher.publishEvent(new ImageProcessedEvent(job.getFoodId(), job.getFilename(),
+                    job.getStatus() == ImageJob.Status.DONE));
+        }
+    }
+
+    private void process(String filename) throws IOException {
+        FileStorageService.ImageMetadata image = fileStorageService.getImageMetadata(filename);
+        if (image == null) {
+            // 圖片已被刪除或替換成其他檔名，沒有需要處理的內容
+            return;
+        }
+        Path source = image.getPath();
+        BasicFileAttributes before = Files.readAttributes(source, BasicFileAttributes.class);
+        byte[] header = new byte[(int) Math.min(HEADER_BYTES, before.size())];
+        try (InputStream in = Files.newInputStream(source)) {
+            int read = 0;
+            while (read < header.length) {
+                int n = in.read(header, read, header.length - read);
+                if (n < 0) {
+                    break;
+                }
+                read += n;
+            }
+        }
+
+        Path temp = fileStorageService.createTempImageFile();
+        boolean replaced = false;
+        try {
+            boolean written;
+            try (InputStream in = Files.newInputStream(source);
+                 OutputStream out = Files.newOutputStream(temp)) {
+                written = processor.process(header, in, image.getContentType(), out);
+            }
+            // 處理期間使用者又上傳了新圖片（同檔名）時，不覆蓋新檔，交給新工作處理
+            if (!written || !fileStorageService.replaceImageIfUnchanged(filename, temp, source, before)) {
+                return;
+            }
+            replaced = true;
+        } finally {
+            if (!replaced) {
+                Files.deleteIfExists(temp);
+            }
+        }
+        // 以處理後的圖片產生 WebP / AVIF 變體
+        fileStorageService.generateVariants(filename);
+    }
+}
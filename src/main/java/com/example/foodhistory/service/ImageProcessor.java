@@ -0,0 +1,294 @@
+package com.example.foodhistory.service;
+
+import javax.imageio.IIOException;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.Iterator;
+
+/**
+ * 影像處理：依 EXIF 方向轉正、縮小到最大邊長、重新壓縮
+ * 以 ImageIO 重新編碼時不會寫入原檔的 EXIF / 文字區塊，因此同時移除了拍攝位置等中繼資料。
+ * 解碼前先從檔頭讀取寬高，像素數超過上限時直接拒絕，避免小檔案解碼成數 GB 的點陣圖。
+ */
+public final class ImageProcessor {
+
+    private final int maxDimension;
+    private final float jpegQuality;
+    private final long maxPixels;
+
+    public ImageProcessor(int maxDimension, float jpegQuality, long maxPixels) {
+        this.maxDimension = maxDimension;
+        this.jpegQuality = jpegQuality;
+        this.maxPixels = maxPixels;
+    }
+
+    /**
+     * 只讀取檔頭檢查影像的像素數（不解碼）
+     * @param file 影像檔
+     * @param maxPixels 像素數上限，0 表示不限制
+     * @throws InvalidImageException 寬 × 高超過上限
+     */
+    static void checkPixels(Path file, long maxPixels) throws IOException {
+        if (maxPixels <= 0) {
+            return;
+        }
+        try (ImageInputStream input = ImageIO.createImageInputStream(file.toFile())) {
+            ImageReader reader = readerFor(input);
+            if (reader == null) {
+                return;
+            }
+            try {
+                checkPixels(reader, maxPixels);
+            } catch (IIOException e) {
+                // 檔頭無法解析：交給背景處理判斷，解碼失敗時保留原檔
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static ImageReader readerFor(ImageInputStream input) {
+        if (input == null) {
+            return null;
+        }
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+        if (!readers.hasNext()) {
+            return null;
+        }
+        ImageReader reader = readers.next();
+        reader.setInput(input, true, true);
+        return reader;
+    }
+
+    private static void checkPixels(ImageReader reader, long maxPixels) throws IOException {
+        long pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+        if (maxPixels > 0 && pixels > maxPixels) {
+            throw new InvalidImageException("圖片尺寸超過限制（最多 " + maxPixels + " 像素）");
+        }
+    }
+
+    /**
+     * 處理影像
+     * @param header 檔案開頭（用於讀取 EXIF 方向，64KB 已足夠涵蓋 APP1 區段）
+     * @param in 完整影像內容
+     * @param contentType image/jpeg 或 image/png
+     * @param out 輸出
+     * @return 是否有輸出；無法解碼或格式不處理時回傳 false（保留原檔）
+     * @throws InvalidImageException 像素數超過上限（不會解碼）
+     */
+    public boolean process(byte[] header, InputStream in, String contentType, OutputStream out) throws IOException {
+        boolean jpeg = "image/jpeg".equals(contentType);
+        if (!jpeg && !"image/png".equals(contentType)) {
+            // GIF 可能是動畫，重新編碼會只剩第一格
+            return false;
+        }
+        BufferedImage image;
+        try (ImageInputStream input = ImageIO.createImageInputStream(in)) {
+            ImageReader reader = readerFor(input);
+            if (reader == null) {
+                return false;
+            }
+            try {
+                checkPixels(reader, maxPixels);
+                image = reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+        int orientation = jpeg ? readExifOrientation(header) : 1;
+        image = scale(orient(image, orientation), maxDimension);
+        if (jpeg) {
+            writeJpeg(toRgb(image), out);
+        } else {
+            ImageIO.write(image, "png", out);
+        }
+        return true;
+    }
+
+    /**
+     * 讀取 JPEG 的 EXIF 方向（tag 0x0112），找不到時回傳 1（正常方向）
+     */
+    static int readExifOrientation(byte[] data) {
+        if (data.length < 4 || (data[0] & 0xFF) != 0xFF || (data[1] & 0xFF) != 0xD8) {
+            return 1;
+        }
+        int pos = 2;
+        while (pos + 4 <= data.length) {
+            if ((data[pos] & 0xFF) != 0xFF) {
+                return 1;
+            }
+            int marker = data[pos + 1] & 0xFF;
+            int length = ((data[pos + 2] & 0xFF) << 8) | (data[pos + 3] & 0xFF);
+            if (marker == 0xDA || length < 2) {
+                // 影像資料開始，之後不會再有 APP 區段
+                return 1;
+            }
+            int segment = pos + 4;
+            if (marker == 0xE1 && segment + 6 <= data.length
+                    && data[segment] == 'E' && data[segment + 1] == 'x' && data[segment + 2] == 'i'
+                    && data[segment + 3] == 'f' && data[segment + 4] == 0 && data[segment + 5] == 0) {
+                return readTiffOrientation(data, segment + 6, Math.min(data.length, pos + 2 + length));
+            }
+            pos += 2 + length;
+        }
+        return 1;
+    }
+
+    private static int readTiffOrientation(byte[] data, int tiff, int end) {
+        if (tiff + 8 > end) {
+            return 1;
+        }
+        boolean little;
+        if (data[tiff] == 'I' && data[tiff + 1] == 'I') {
+            little = true;
+        } else if (data[tiff] == 'M' && data[tiff + 1] == 'M') {
+            little = false;
+        } else {
+            return 1;
+        }
+        long ifd = tiff + readInt(data, tiff + 4, little);
+        if (ifd + 2 > end) {
+            return 1;
+        }
+        int entries = readShort(data, (int) ifd, little);
+        for (int i = 0; i < entries; i++) {
+            int entry = (int) ifd + 2 + i * 12;
+            if (entry + 12 > end) {
+                return 1;
+            }
+            if (readShort(data, entry, little) == 0x0112) {
+                int value = readShort(data, entry + 8, little);
+                return value >= 1 && value <= 8 ? value : 1;
+            }
+        }
+        return 1;
+    }
+
+    private static int readShort(byte[] data, int pos, boolean little) {
+        return little
+                ? (data[pos] & 0xFF) | ((data[pos + 1] & 0xFF) << 8)
+                : ((data[pos] & 0xFF) << 8) | (data[pos + 1] & 0xFF);
+    }
+
+    private static long readInt(byte[] data, int pos, boolean little) {
+        long value = 0;
+        for (int i = 0; i < 4; i++) {
+            int b = data[pos + (little ? 3 - i : i)] & 0xFF;
+            value = (value << 8) | b;
+        }
+        return value;
+    }
+
+    /**
+     * 依 EXIF 方向轉正（2~8 為鏡像與旋轉的組合）
+     */
+    static BufferedImage orient(BufferedImage image, int orientation) {
+        if (orientation <= 1 || orientation > 8) {
+            return image;
+        }
+        int w = image.getWidth();
+        int h = image.getHeight();
+        boolean swap = orientation >= 5;
+        // 來源座標 (x, y) 對應到轉正後的座標：x' = m00·x + m01·y + m02，y' = m10·x + m11·y + m12
+        AffineTransform t;
+        switch (orientation) {
+            case 2: // 水平鏡像
+                t = new AffineTransform(-1, 0, 0, 1, w, 0);
+                break;
+            case 3: // 旋轉 180 度
+                t = new AffineTransform(-1, 0, 0, -1, w, h);
+                break;
+            case 4: // 垂直鏡像
+                t = new AffineTransform(1, 0, 0, -1, 0, h);
+                break;
+            case 5: // 沿主對角線翻轉
+                t = new AffineTransform(0, 1, 1, 0, 0, 0);
+                break;
+            case 6: // 順時針 90 度
+                t = new AffineTransform(0, 1, -1, 0, h, 0);
+                break;
+            case 7: // 沿副對角線翻轉
+                t = new AffineTransform(0, -1, -1, 0, h, w);
+                break;
+            default: // 8：逆時針 90 度
+                t = new AffineTransform(0, -1, 1, 0, 0, w);
+        }
+        BufferedImage rotated = new BufferedImage(swap ? h : w, swap ? w : h, imageType(image));
+        Graphics2D g = rotated.createGraphics();
+        g.drawImage(image, t, null);
+        g.dispose();
+        return rotated;
+    }
+
+    /**
+     * 等比例縮小到最大邊長以內；以每次減半的方式縮小，品質接近區域平均
+     */
+    static BufferedImage scale(BufferedImage image, int maxDimension) {
+        int w = image.getWidth();
+        int h = image.getHeight();
+        if (maxDimension <= 0 || (w <= maxDimension && h <= maxDimension)) {
+            return image;
+        }
+        double ratio = Math.min((double) maxDimension / w, (double) maxDimension / h);
+        int targetW = Math.max(1, (int) Math.round(w * ratio));
+        int targetH = Math.max(1, (int) Math.round(h * ratio));
+        BufferedImage current = image;
+        while (w != targetW || h != targetH) {
+            w = Math.max(targetW, w / 2);
+            h = Math.max(targetH, h / 2);
+            BufferedImage next = new BufferedImage(w, h, imageType(image));
+            Graphics2D g = next.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(current, 0, 0, w, h, null);
+            g.dispose();
+            current = next;
+        }
+        return current;
+    }
+
+    private static int imageType(BufferedImage image) {
+        return image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+    }
+
+    private static BufferedImage toRgb(BufferedImage image) {
+        if (image.getType() == BufferedImage.TYPE_INT_RGB) {
+            return image;
+        }
+        BufferedImage rgb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = rgb.createGraphics();
+        g.drawImage(image, 0, 0, java.awt.Color.WHITE, null);
+        g.dispose();
+        return rgb;
+    }
+
+    private void writeJpeg(BufferedImage image, OutputStream out) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpeg");
+        if (!writers.hasNext()) {
+            throw new IOException("No JPEG writer available");
+        }
+        ImageWriter writer = writers.next();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(jpegQuality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+}
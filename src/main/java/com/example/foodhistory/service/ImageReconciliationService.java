@@ -0,0 +1,283 @@
+package com.example.foodhistory.service;
+
+import com.example.foodhistory.repository.FoodRepository;
+import com.example.foodhistory.repository.projection.FoodImageView;
+import com.example.foodhistory.storage.BlobInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * 圖片儲存對帳
+ * 定期比對已儲存的影像（本機影像目錄或共用物件儲存）與 foods.image_path：刪除沒有任何食物引用的圖片、變體與殘留的上傳暫存檔，
+ * 並標記引用了不存在檔案的食物。目錄與資料表都以固定大小的批次逐段讀取，批次之間暫停，
+ * 在獨立的低優先權執行緒上執行，不佔用排程執行緒，也不影響圖片送出。
+ */
+@Service
+public class ImageReconciliationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageReconciliationService.class);
+
+    // 報告中最多列出的懸空引用食物 ID
+    private static final int MAX_REPORTED_IDS = 100;
+
+    @Autowired
+    private FoodRepository foodRepository;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Value("${app.image.gc.enabled:true}")
+    private boolean enabled = true;
+
+    // 只記錄不刪除
+    @Value("${app.image.gc.dry-run:false}")
+    private boolean dryRun = false;
+
+    @Value("${app.image.gc.batch-size:500}")
+    private int batchSize = 500;
+
+    @Value("${app.image.gc.batch-pause-ms:50}")
+    private long batchPauseMs = 50;
+
+    // 修改時間在這段期間內的檔案不處理，避免刪到上傳中、尚未寫入資料庫的圖片
+    @Value("${app.image.gc.grace-period-ms:3600000}")
+    private long gracePeriodMs = 60 * 60 * 1000;
+
+    private ExecutorService executor;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private volatile Map<String, Object> lastReport = Collections.emptyMap();
+
+    @PostConstruct
+    public void init() {
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "image-gc");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 定期觸發對帳（實際工作在背景執行緒進行）
+     */
+    @Scheduled(initialDelayString = "${app.image.gc.initial-delay-ms:600000}",
+            fixedDelayString = "${app.image.gc.interval-ms:21600000}")
+    public void scheduledRun() {
+        if (enabled) {
+            trigger();
+        }
+    }
+
+    /**
+     * 在背景執行一次對帳
+     * @return 是否已排入；上一次對帳還在執行時回傳 false
+     */
+    public boolean trigger() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        executor.execute(() -> {
+            try {
+                reconcile();
+            } catch (Exception e) {
+                logger.warn("圖片對帳失敗", e);
+            } finally {
+                running.set(false);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * 最近一次對帳的報告
+     */
+    public Map<String, Object> getReport() {
+        Map<String, Object> report = new HashMap<>(lastReport);
+        report.put("running", running.get());
+        report.put("dryRun", dryRun);
+        return report;
+    }
+
+    /**
+     * 執行一次完整對帳
+     */
+    Map<String, Object> reconcile() throws IOException, InterruptedException {
+        long start = System.currentTimeMillis();
+        Counters counters = new Counters();
+        sweepFiles(start - gracePeriodMs, counters);
+        List<Long> dangling = findDanglingReferences(counters);
+
+        Map<String, Object> report = new HashMap<>();
+        report.put("startedAt", new Date(start));
+        report.put("durationMs", System.currentTimeMillis() - start);
+        report.put("scannedFiles", counters.scannedFiles);
+        report.put("orphanFiles", counters.orphanFiles);
+        report.put("tempFiles", counters.tempFiles);
+        report.put("reclaimedBytes", counters.reclaimedBytes);
+        report.put("deleteErrors", counters.deleteErrors);
+        report.put("scannedReferences", counters.scannedReferences);
+        report.put("danglingReferences", counters.danglingReferences);
+        report.put("danglingFoodIds", dangling);
+        lastReport = report;
+
+        if (counters.orphanFiles + counters.tempFiles > 0 || counters.danglingReferences > 0) {
+            logger.info("圖片對帳完成：清除 {} 個孤立檔案、{} 個暫存檔（{} bytes），{} 筆食物引用不存在的圖片",
+                    counters.orphanFiles, counters.tempFiles, counters.reclaimedBytes, counters.danglingReferences);
+        }
+        return report;
+    }
+
+    private static final class Counters {
+        long scannedFiles;
+        long orphanFiles;
+        long tempFiles;
+        long reclaimedBytes;
+        long deleteErrors;
+        long scannedReferences;
+        long danglingReferences;
+    }
+
+    /**
+     * 逐批掃描已儲存的影像，刪除沒有被引用的檔案；再清除殘留的上傳暫存檔
+     */
+    private void sweepFiles(long cutoff, Counters counters) throws IOException, InterruptedException {
+        try (Stream<BlobInfo> files = fileStorageService.streamStoredFiles()) {
+            Iterator<BlobInfo> it = files.iterator();
+            List<BlobInfo> batch = new ArrayList<>(batchSize);
+            while (it.hasNext()) {
+                batch.add(it.next());
+                if (batch.size() >= batchSize || !it.hasNext()) {
+                    sweepBatch(batch, cutoff, counters);
+                    batch.clear();
+                    pause();
+                }
+            }
+        }
+        try (Stream<Path> temps = fileStorageService.streamTempFiles()) {
+            Iterator<Path> it = temps.iterator();
+            while (it.hasNext()) {
+                Path temp = it.next();
+                try {
+                    BasicFileAttributes attributes = Files.readAttributes(temp, BasicFileAttributes.class);
+                    if (attributes.lastModifiedTime().toMillis() < cutoff
+                            && (dryRun || Files.deleteIfExists(temp))) {
+                        counters.tempFiles++;
+                        counters.reclaimedBytes += attributes.size();
+                    }
+                } catch (NoSuchFileException e) {
+                    // 上傳已完成並搬到定位
+                } catch (IOException e) {
+                    counters.deleteErrors++;
+                    logger.warn("無法刪除上傳暫存檔: {}", temp, e);
+                }
+            }
+        }
+    }
+
+    private void sweepBatch(List<BlobInfo> batch, long cutoff, Counters counters) {
+        Map<BlobInfo, String> candidates = new HashMap<>();
+        for (BlobInfo file : batch) {
+            String original = FileStorageService.originalName(file.getKey());
+            if (original != null) {
+                counters.scannedFiles++;
+                candidates.put(file, original);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return;
+        }
+        Set<String> referenced = new HashSet<>(foodRepository.findImagePathsIn(new HashSet<>(candidates.values())));
+        for (Map.Entry<BlobInfo, String> candidate : candidates.entrySet()) {
+            BlobInfo file = candidate.getKey();
+            // 修改時間在寬限期內的檔案可能是上傳中、尚未寫入資料庫的圖片
+            if (!referenced.contains(candidate.getValue()) && file.getLastModified() < cutoff && delete(file, counters)) {
+                counters.orphanFiles++;
+            }
+        }
+    }
+
+    /**
+     * 以 ID 分段讀取有圖片的食物，找出圖片檔不存在的資料
+     */
+    private List<Long> findDanglingReferences(Counters counters) throws InterruptedException {
+        List<Long> dangling = new ArrayList<>();
+        long lastId = 0;
+        while (true) {
+            List<FoodImageView> page = foodRepository.findByImagePathIsNotNullAndIdGreaterThanOrderByIdAsc(
+                    lastId, PageRequest.of(0, batchSize));
+            for (FoodImageView food : page) {
+                counters.scannedReferences++;
+                // 只確認存在，不把使用共用物件儲存時的影像下載到本機
+                if (!fileStorageService.imageExists(food.getImagePath())) {
+                    counters.danglingReferences++;
+                    if (dangling.size() < MAX_REPORTED_IDS) {
+                        dangling.add(food.getId());
+                    }
+                    logger.warn("食物 {} 引用的圖片不存在: {}", food.getId(), food.getImagePath());
+                }
+                lastId = food.getId();
+            }
+            if (page.size() < batchSize) {
+                return dangling;
+            }
+            pause();
+        }
+    }
+
+    private boolean delete(BlobInfo file, Counters counters) {
+        if (dryRun) {
+            logger.info("（dry-run）將刪除孤立圖片檔: {}", file.getKey());
+            counters.reclaimedBytes += file.getSize();
+            return true;
+        }
+        try {
+            if (fileStorageService.deleteStoredFile(file.getKey())) {
+                counters.reclaimedBytes += file.getSize();
+                return true;
+            }
+        } catch (IOException e) {
+            counters.deleteErrors++;
+            logger.warn("無法刪除孤立圖片檔: {}", file.getKey(), e);
+        }
+        return false;
+    }
+
+    private void pause() throws InterruptedException {
+        if (batchPauseMs > 0) {
+            Thread.sleep(batchPauseMs);
+        }
+    }
+}
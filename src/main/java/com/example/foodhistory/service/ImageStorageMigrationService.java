@@ -0,0 +1,97 @@
+package com.example.foodhistory.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 影像目錄線上遷移：把舊的平面目錄檔案逐批搬到分層目錄
+ * 啟動後在背景執行，批次之間暫停；遷移期間圖片照常讀寫。中斷（重新啟動、搬移失敗）後下次啟動從剩下的檔案繼續。
+ */
+@Service
+public class ImageStorageMigrationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageStorageMigrationService.class);
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Value("${app.image.storage.migration.batch-size:200}")
+    private int batchSize = 200;
+
+    @Value("${app.image.storage.migration.batch-pause-ms:100}")
+    private long batchPauseMs = 100;
+
+    private final AtomicLong migrated = new AtomicLong();
+
+    private volatile Date finishedAt;
+
+    private volatile String lastError;
+
+    private Thread worker;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!fileStorageService.isMigrationPending()) {
+            return;
+        }
+        worker = new Thread(this::migrate, "image-migration");
+        worker.setDaemon(true);
+        worker.setPriority(Thread.MIN_PRIORITY);
+        worker.start();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (worker != null) {
+            worker.interrupt();
+        }
+    }
+
+    /**
+     * 遷移狀態
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("pending", fileStorageService.isMigrationPending());
+        status.put("migrated", migrated.get());
+        status.put("finishedAt", finishedAt);
+        status.put("lastError", lastError);
+        return status;
+    }
+
+    void migrate() {
+        long start = System.currentTimeMillis();
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                int moved = fileStorageService.migrateLegacyFiles(batchSize);
+                if (moved == 0 && !fileStorageService.isMigrationPending()) {
+                    finishedAt = new Date();
+                    logger.info("影像目錄遷移完成，共搬移 {} 個檔案（{} ms）",
+                            migrated.get(), System.currentTimeMillis() - start);
+                    return;
+                }
+                migrated.addAndGet(moved);
+                if (batchPauseMs > 0) {
+                    Thread.sleep(batchPauseMs);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            // 平面與分層路徑都仍可讀取，下次啟動時繼續
+            lastError = e.getClass().getSimpleName() + ": " + e.getMessage();
+            logger.warn("影像目錄遷移中斷，已搬移 {} 個檔案", migrated.get(), e);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.foodhistory.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 以外部編碼器（cwebp / avifenc）產生 WebP、AVIF 變體
+ * 編碼在獨立行程中執行，不佔用 JVM heap，也不需要載入原生函式庫；找不到編碼器時自動停用。
+ */
+final class ImageTranscoder {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageTranscoder.class);
+
+    // 丟棄編碼器輸出（Java 8 沒有 Redirect.DISCARD）
+    private static final File NULL_FILE = new File(
+            System.getProperty("os.name", "").startsWith("Windows") ? "NUL" : "/dev/null");
+
+    private final String extension;
+    private final String contentType;
+    private final String command;
+    private final List<String> options;
+    private final long timeoutMs;
+    private volatile Boolean available;
+
+    private ImageTranscoder(String extension, String contentType, String command, List<String> options, long timeoutMs) {
+        this.extension = extension;
+        this.contentType = contentType;
+        this.command = command;
+        this.options = options;
+        this.timeoutMs = timeoutMs;
+    }
+
+    /**
+     * WebP 編碼器，quality 為 0~100
+     */
+    static ImageTranscoder webp(String command, int quality, long timeoutMs) {
+        return new ImageTranscoder(".webp", "image/webp", command,
+                Arrays.asList("-quiet", "-mt", "-metadata", "none", "-q", String.valueOf(quality)), timeoutMs);
+    }
+
+    /**
+     * AVIF 編碼器，quality 為 0~100，換算成 avifenc 的量化範圍（0 最佳、63 最差）
+     */
+    static ImageTranscoder avif(String command, int quality, long timeoutMs) {
+        int quantizer = Math.max(0, Math.min(63, Math.round((100 - quality) * 63 / 100f)));
+        return new ImageTranscoder(".avif", "image/avif", command,
+                Arrays.asList("--speed", "6", "--jobs", "2",
+                        "--min", String.valueOf(quantizer), "--max", String.valueOf(Math.min(63, quantizer + 8))),
+                timeoutMs);
+    }
+
+    String getExtension() {
+        return extension;
+    }
+
+    String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * 編碼器是否可執行（第一次呼叫時檢查一次）
+     */
+    boolean isAvailable() {
+        Boolean result = available;
+        if (result == null) {
+            result = probe();
+            available = result;
+            if (!result) {
+                logger.info("找不到影像編碼器 {}，停用 {} 變體", command, extension);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 將 source 編碼為 target
+     * @return 編碼成功
+     */
+    boolean transcode(Path source, Path target) {
+        List<String> args = new ArrayList<>();
+        args.add(command);
+        args.addAll(options);
+        if (".webp".equals(extension)) {
+            args.add(source.toString());
+            args.add("-o");
+            args.add(target.toString());
+        } else {
+            args.add(source.toString());
+            args.add(target.toString());
+        }
+        return run(args, timeoutMs);
+    }
+
+    private boolean probe() {
+        List<String> args = new ArrayList<>();
+        args.add(command);
+        args.add(".webp".equals(extension) ? "-version" : "--version");
+        return run(args, 5000);
+    }
+
+    private static boolean run(List<String> args, long timeoutMs) {
+        Process process = null;
+        try {
+            process = new ProcessBuilder(args)
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.to(NULL_FILE))
+                    .start();
+            if (!process.waitFor(timeoutMs, TimeUnit.MILLISECONDS)) {
+                logger.warn("影像編碼逾時: {}", args.get(0));
+                return false;
+            }
+            return process.exitValue() == 0;
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            if (process != null && process.isAlive()) {
+                process.destroyForcibly();
+            }
+        }
+    }
+}
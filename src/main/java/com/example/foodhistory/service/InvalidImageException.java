@@ -0,0 +1,13 @@
+package com.example.foodhistory.service;
+
+import java.io.IOException;
+
+/**
+ * 上傳的影像不符合要求（格式不支援或超過大小上限），訊息可直接顯示給使用者
+ */
+public class InvalidImageException extends IOException {
+
+    public InvalidImageException(String message) {
+        super(message);
+    }
+}
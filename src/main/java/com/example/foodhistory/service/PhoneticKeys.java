@@ -0,0 +1,237 @@
+package com.example.foodhistory.service;
+
+import net.sourceforge.pinyin4j.PinyinHelper;
+import net.sourceforge.pinyin4j.format.HanyuPinyinCaseType;
+import net.sourceforge.pinyin4j.format.HanyuPinyinOutputFormat;
+import net.sourceforge.pinyin4j.format.HanyuPinyinToneType;
+import net.sourceforge.pinyin4j.format.HanyuPinyinVCharType;
+import net.sourceforge.pinyin4j.format.exception.BadHanyuPinyinOutputFormatCombination;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 食物名稱的發音鍵
+ * 將中文字轉為不含聲調的拼音（ü 以 v 表示），注音符號也轉為相同的拼音表示，
+ * 英數字轉小寫保留，其餘符號與空白忽略。例如「蛋炒飯」、「ㄉㄢˋㄔㄠˇㄈㄢˋ」、「Dan Chao Fan」皆為 danchaofan。
+ */
+public final class PhoneticKeys {
+
+    private static final HanyuPinyinOutputFormat FORMAT = new HanyuPinyinOutputFormat();
+
+    static {
+        FORMAT.setCaseType(HanyuPinyinCaseType.LOWERCASE);
+        FORMAT.setToneType(HanyuPinyinToneType.WITHOUT_TONE);
+        FORMAT.setVCharType(HanyuPinyinVCharType.WITH_V);
+    }
+
+    private static final Map<Character, String> ZHUYIN_INITIALS = new HashMap<>();
+    private static final Map<Character, String> ZHUYIN_FINALS = new HashMap<>();
+
+    static {
+        String[][] initials = {
+            {"ㄅ", "b"}, {"ㄆ", "p"}, {"ㄇ", "m"}, {"ㄈ", "f"}, {"ㄉ", "d"}, {"ㄊ", "t"}, {"ㄋ", "n"}, {"ㄌ", "l"},
+            {"ㄍ", "g"}, {"ㄎ", "k"}, {"ㄏ", "h"}, {"ㄐ", "j"}, {"ㄑ", "q"}, {"ㄒ", "x"},
+            {"ㄓ", "zh"}, {"ㄔ", "ch"}, {"ㄕ", "sh"}, {"ㄖ", "r"}, {"ㄗ", "z"}, {"ㄘ", "c"}, {"ㄙ", "s"}
+        };
+        for (String[] pair : initials) {
+            ZHUYIN_INITIALS.put(pair[0].charAt(0), pair[1]);
+        }
+        String[][] finals = {
+            {"ㄚ", "a"}, {"ㄛ", "o"}, {"ㄜ", "e"}, {"ㄝ", "e"}, {"ㄞ", "ai"}, {"ㄟ", "ei"}, {"ㄠ", "ao"}, {"ㄡ", "ou"},
+            {"ㄢ", "an"}, {"ㄣ", "en"}, {"ㄤ", "ang"}, {"ㄥ", "eng"}, {"ㄦ", "er"}
+        };
+        for (String[] pair : finals) {
+            ZHUYIN_FINALS.put(pair[0].charAt(0), pair[1]);
+        }
+    }
+
+    private static final char MEDIAL_I = 'ㄧ';
+    private static final char MEDIAL_U = 'ㄨ';
+    private static final char MEDIAL_V = 'ㄩ';
+
+    private PhoneticKeys() {
+    }
+
+    /**
+     * 完整拼音鍵，例如「蛋炒飯」→ danchaofan
+     */
+    public static String pinyin(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder key = new StringBuilder(text.length() * 4);
+        ZhuyinSyllable syllable = new ZhuyinSyllable();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (isZhuyin(c)) {
+                syllable.accept(c, key);
+                continue;
+            }
+            syllable.flush(key);
+            if (isToneMark(c)) {
+                continue;
+            }
+            String reading = hanziReading(c);
+            if (reading != null) {
+                key.append(reading);
+            } else if (Character.isLetterOrDigit(c)) {
+                key.append(Character.toLowerCase(c));
+            }
+        }
+        syllable.flush(key);
+        return key.toString();
+    }
+
+    /**
+     * 拼音首字母鍵，例如「蛋炒飯」→ dcf；英文單字取首字母
+     */
+    public static String initials(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder key = new StringBuilder(text.length());
+        boolean inWord = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            String reading = hanziReading(c);
+            if (reading != null) {
+                key.append(reading.charAt(0));
+                inWord = false;
+            } else if (Character.isLetterOrDigit(c)) {
+                if (!inWord) {
+                    key.append(Character.toLowerCase(c));
+                }
+                inWord = true;
+            } else {
+                inWord = false;
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * 是否為中日韓統一表意文字
+     */
+    public static boolean isHanzi(char c) {
+        return Character.UnicodeScript.of(c) == Character.UnicodeScript.HAN;
+    }
+
+    private static boolean isZhuyin(char c) {
+        return c >= 'ㄅ' && c <= 'ㄩ';
+    }
+
+    private static boolean isToneMark(char c) {
+        return c == 'ˊ' || c == 'ˇ' || c == 'ˋ' || c == '˙';
+    }
+
+    private static String hanziReading(char c) {
+        if (!isHanzi(c)) {
+            return null;
+        }
+        try {
+            // 破音字取第一個讀音
+            String[] readings = PinyinHelper.toHanyuPinyinStringArray(c, FORMAT);
+            return readings != null && readings.length > 0 ? readings[0] : null;
+        } catch (BadHanyuPinyinOutputFormatCombination e) {
+            return null;
+        }
+    }
+
+    /**
+     * 注音音節累加器：聲母 + 介音 + 韻母，遇到新音節或聲調符號時輸出拼音
+     */
+    private static final class ZhuyinSyllable {
+        private String initial;
+        private char medial;
+        private String rhyme;
+
+        void accept(char c, StringBuilder out) {
+            if (ZHUYIN_INITIALS.containsKey(c)) {
+                flush(out);
+                initial = ZHUYIN_INITIALS.get(c);
+            } else if (c == MEDIAL_I || c == MEDIAL_U || c == MEDIAL_V) {
+                if (medial != 0 || rhyme != null) {
+                    flush(out);
+                }
+                medial = c;
+            } else if (ZHUYIN_FINALS.containsKey(c)) {
+                if (rhyme != null) {
+                    flush(out);
+                }
+                rhyme = ZHUYIN_FINALS.get(c);
+            }
+        }
+
+        void flush(StringBuilder out) {
+            if (initial == null && medial == 0 && rhyme == null) {
+                return;
+            }
+            out.append(toPinyin(initial != null ? initial : "", medial, rhyme != null ? rhyme : ""));
+            initial = null;
+            medial = 0;
+            rhyme = null;
+        }
+
+        private static String toPinyin(String initial, char medial, String rhyme) {
+            boolean hasInitial = !initial.isEmpty();
+            if (medial == MEDIAL_I) {
+                String body;
+                switch (rhyme) {
+                    case "":
+                        return hasInitial ? initial + "i" : "yi";
+                    case "ou":
+                        return hasInitial ? initial + "iu" : "you";
+                    case "en":
+                        return hasInitial ? initial + "in" : "yin";
+                    case "eng":
+                        return hasInitial ? initial + "ing" : "ying";
+                    default:
+                        body = rhyme;
+                }
+                return hasInitial ? initial + "i" + body : "y" + body;
+            }
+            if (medial == MEDIAL_U) {
+                switch (rhyme) {
+                    case "":
+                        return hasInitial ? initial + "u" : "wu";
+                    case "ei":
+                        return hasInitial ? initial + "ui" : "wei";
+                    case "en":
+                        return hasInitial ? initial + "un" : "wen";
+                    case "eng":
+                        return hasInitial ? initial + "ong" : "weng";
+                    default:
+                        return hasInitial ? initial + "u" + rhyme : "w" + rhyme;
+                }
+            }
+            if (medial == MEDIAL_V) {
+                boolean jqx = "j".equals(initial) || "q".equals(initial) || "x".equals(initial);
+                if ("eng".equals(rhyme)) {
+                    return hasInitial ? initial + "iong" : "yong";
+                }
+                String body = "en".equals(rhyme) ? "n" : rhyme;
+                if (!hasInitial) {
+                    return "yu" + body;
+                }
+                return initial + (jqx ? "u" : "v") + body;
+            }
+            if (rhyme.isEmpty()) {
+                // ㄓㄔㄕㄖㄗㄘㄙ 單獨成音節時加 i
+                switch (initial) {
+                    case "zh":
+                    case "ch":
+                    case "sh":
+                    case "r":
+                    case "z":
+                    case "c":
+                    case "s":
+                        return initial + "i";
+                    default:
+                        return initial;
+                }
+            }
+            return initial + rhyme;
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.example.foodhistory.service;
+
+import com.example.foodhistory.cluster.ClusterBus;
+import com.example.foodhistory.cluster.ClusterMessage;
+import com.example.foodhistory.model.SearchHistory;
+import com.example.foodhistory.repository.SearchHistoryRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 使用者搜尋歷史服務
+ * 每位使用者在記憶體中保有一份有上限的 LRU 清單（O(1) 更新），
+ * 寫入資料庫則交由背景執行緒非同步處理，讓歷史紀錄跨裝置、登出後仍保留，
+ * 同時不再佔用 HttpSession。
+ * 多個節點時，寫入資料庫後經由 {@link ClusterBus} 通知其他節點丟棄該使用者的記憶體清單，下次讀取時重新載入。
+ */
+@Service
+public class SearchHistoryService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SearchHistoryService.class);
+
+    // 與 search_history.keyword 欄位長度一致
+    private static final int MAX_KEYWORD_LENGTH = 100;
+
+    static final String TOPIC = "search-history";
+
+    @Autowired
+    private SearchHistoryRepository searchHistoryRepository;
+
+    @Autowired
+    private ClusterBus clusterBus;
+
+    @Value("${app.search.history.max-size:50}")
+    private int maxSize = 50;
+
+    @Value("${app.search.history.max-cached-users:1000}")
+    private int maxCachedUsers = 1000;
+
+    @Value("${app.search.history.write-queue-capacity:1000}")
+    private int writeQueueCapacity = 1000;
+
+    // 記憶體中的使用者歷史（access-order LRU，超過上限時釋放最久未使用者，需要時再從資料庫載入）
+    private final LinkedHashMap<String, RecentSearches> cache = new LinkedHashMap<String, RecentSearches>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, RecentSearches> eldest) {
+            return size() > maxCachedUsers;
+        }
+    };
+
+    // 其他節點送來的失效通知次數；載入期間有失效時，載入結果不放入快取
+    private long invalidations;
+
+    private ExecutorService writer;
+
+    @PostConstruct
+    public void init() {
+        clusterBus.subscribe(TOPIC, this::onClusterMessage);
+        // 單一寫入執行緒 + 有界佇列：寫入順序固定，佇列滿時丟棄（歷史紀錄屬盡力而為）
+        writer = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(writeQueueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "search-history-writer");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        writer.shutdown();
+        writer.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 記錄一次搜尋
+     * @param username 使用者名稱，null 時不記錄
+     * @param keyword 搜尋關鍵字
+     */
+    public void record(String username, String keyword) {
+        if (username == null || keyword == null || keyword.trim().isEmpty()) {
+            return;
+        }
+        String trimmed = keyword.trim();
+        if (trimmed.length() > MAX_KEYWORD_LENGTH) {
+            trimmed = trimmed.substring(0, MAX_KEYWORD_LENGTH);
+        }
+
+        load(username).add(trimmed);
+
+        final String value = trimmed;
+        final Date searchedAt = new Date();
+        try {
+            writer.execute(() -> persist(username, value, searchedAt));
+        } catch (RejectedExecutionException e) {
+            logger.warn("搜尋歷史寫入佇列已滿，略過此筆: {}", username);
+        }
+    }
+
+    /**
+     * 取得最近的搜尋關鍵字（新到舊）
+     * @param username 使用者名稱，null 時回傳空清單
+     * @param limit 最多筆數
+     */
+    public List<String> getRecentSearches(String username, int limit) {
+        if (username == null) {
+            return new ArrayList<>();
+        }
+        return load(username).newestFirst(limit);
+    }
+
+    /**
+     * 取得全部搜尋歷史（新到舊）
+     */
+    public List<String> getRecentSearches(String username) {
+        return getRecentSearches(username, maxSize);
+    }
+
+    private RecentSearches load(String username) {
+        long generation;
+        synchronized (cache) {
+            RecentSearches recent = cache.get(username);
+            if (recent != null) {
+                return recent;
+            }
+            generation = invalidations;
+        }
+
+        RecentSearches loaded = new RecentSearches(maxSize);
+        try {
+            List<SearchHistory> rows = searchHistoryRepository.findByUsernameOrderBySearchedAtDesc(username);
+            // 由舊到新加入，最後加入的即為最新
+            for (int i = rows.size() - 1; i >= 0; i--) {
+                loaded.add(rows.get(i).getKeyword());
+            }
+        } catch (Exception e) {
+            logger.warn("載入搜尋歷史失敗: {}", username, e);
+        }
+
+        synchronized (cache) {
+            RecentSearches existing = cache.get(username);
+            if (existing != null) {
+                return existing;
+            }
+            if (generation == invalidations) {
+                cache.put(username, loaded);
+            }
+            return loaded;
+        }
+    }
+
+    /**
+     * 其他節點寫入了某位使用者的搜尋歷史：丟棄本機清單，下次讀取時從資料庫重新載入
+     */
+    private void onClusterMessage(ClusterMessage message) {
+        if (clusterBus.getNodeId().equals(message.getOrigin())) {
+            return;
+        }
+        synchronized (cache) {
+            invalidations++;
+            cache.remove(message.getPayload());
+        }
+    }
+
+    private void persist(String username, String keyword, Date searchedAt) {
+        try {
+            SearchHistory history = searchHistoryRepository.findByUsernameAndKeyword(username, keyword)
+                    .orElseGet(() -> {
+                        SearchHistory created = new SearchHistory();
+                        created.setUsername(username);
+                        created.setKeyword(keyword);
+                        return created;
+                    });
+            history.setSearchedAt(searchedAt);
+            searchHistoryRepository.save(history);
+
+            // 刪除超出上限的舊紀錄
+            List<SearchHistory> rows = searchHistoryRepository.findByUsernameOrderBySearchedAtDesc(username);
+            if (rows.size() > maxSize) {
+                searchHistoryRepository.deleteAllInBatch(rows.subList(maxSize, rows.size()));
+            }
+            clusterBus.publish(TOPIC, username);
+        } catch (Exception e) {
+            logger.warn("儲存搜尋歷史失敗: {} / {}", username, keyword, e);
+        }
+    }
+
+    /**
+     * 有上限的最近搜尋清單
+     * LinkedHashSet 以插入順序保存（舊到新），重複搜尋時先移除再加入即移到最新，皆為 O(1)
+     */
+    static final class RecentSearches {
+        private final int maxSize;
+        private final LinkedHashSet<String> keywords = new LinkedHashSet<>();
+
+        RecentSearches(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        synchronized void add(String keyword) {
+            keywords.remove(keyword);
+            keywords.add(keyword);
+            if (keywords.size() > maxSize) {
+                Iterator<String> oldest = keywords.iterator();
+                oldest.next();
+                oldest.remove();
+            }
+        }
+
+        synchronized List<String> newestFirst(int limit) {
+            int count = Math.min(limit, keywords.size());
+            String[] all = keywords.toArray(new String[0]);
+            List<String> result = new ArrayList<>(count);
+            for (int i = all.length - 1; i >= all.length - count; i--) {
+                result.add(all[i]);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.foodhistory.service;
+
+/**
+ * 搜尋模式
+ */
+public enum SearchMode {
+    /** 名稱子字串比對（LIKE） */
+    EXACT,
+    /** 模糊與發音比對 */
+    FUZZY
+}
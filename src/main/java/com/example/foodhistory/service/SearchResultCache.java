@@ -0,0 +1,193 @@
+package com.example.foodhistory.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 搜尋結果快取
+ * 以「關鍵字 + 分頁」為 key，只保存該頁的食物 ID 清單與總筆數（不保存實體），
+ * 資料寫入時依名稱選擇性失效，避免熱門關鍵字每次都重跑 LIKE 查詢與 count。
+ */
+@Component
+public class SearchResultCache {
+
+    @Value("${app.search.cache.max-entries:500}")
+    private int maxEntries = 500;
+
+    // 資料版本號：每次寫入遞增，用來丟棄查詢期間資料已變動的結果
+    private final AtomicLong revision = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    // access-order 的 LinkedHashMap 作為 LRU
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            if (size() > maxEntries) {
+                evictions.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    /**
+     * 快取的單頁結果
+     */
+    public static final class Entry {
+        private final String keyword;
+        private final List<Long> ids;
+        private final long totalElements;
+
+        Entry(String keyword, List<Long> ids, long totalElements) {
+            this.keyword = keyword;
+            this.ids = Collections.unmodifiableList(new ArrayList<>(ids));
+            this.totalElements = totalElements;
+        }
+
+        public List<Long> getIds() {
+            return ids;
+        }
+
+        public long getTotalElements() {
+            return totalElements;
+        }
+    }
+
+    /**
+     * 取得目前資料版本，查詢前先記下，put 時用來判斷結果是否仍有效
+     */
+    public long currentRevision() {
+        return revision.get();
+    }
+
+    /**
+     * 查詢快取
+     * @param keyword 搜尋關鍵字（null 或空白代表全部）
+     * @param pageable 分頁條件
+     * @return 快取的結果，未命中時回傳 null
+     */
+    public Entry get(String keyword, Pageable pageable) {
+        String key = key(normalize(keyword), pageable);
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        if (entry == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return entry;
+    }
+
+    /**
+     * 存入快取；若查詢期間資料版本已變動則不存，避免留下過期結果
+     * @param observedRevision 查詢前取得的資料版本
+     */
+    public void put(String keyword, Pageable pageable, long observedRevision, List<Long> ids, long totalElements) {
+        String normalized = normalize(keyword);
+        Entry entry = new Entry(normalized, ids, totalElements);
+        synchronized (entries) {
+            if (revision.get() != observedRevision) {
+                return;
+            }
+            entries.put(key(normalized, pageable), entry);
+        }
+    }
+
+    /**
+     * 新增食物：影響全部清單以及名稱符合的關鍵字
+     */
+    public void onFoodCreated(String name) {
+        invalidate(true, name, null);
+    }
+
+    /**
+     * 修改食物：ID 排序不變，只影響新舊名稱符合的關鍵字
+     */
+    public void onFoodUpdated(String oldName, String newName) {
+        invalidate(false, oldName, newName);
+    }
+
+    /**
+     * 刪除食物：影響全部清單以及名稱符合的關鍵字
+     */
+    public void onFoodDeleted(String name) {
+        invalidate(true, name, null);
+    }
+
+    /**
+     * 清除所有快取
+     */
+    public void clear() {
+        synchronized (entries) {
+            revision.incrementAndGet();
+            invalidations.addAndGet(entries.size());
+            entries.clear();
+        }
+    }
+
+    /**
+     * 快取統計資訊（命中率等）
+     */
+    public Map<String, Object> getStats() {
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        long total = hitCount + missCount;
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRatio", total == 0 ? 0.0 : (double) hitCount / total);
+        stats.put("evictions", evictions.get());
+        stats.put("invalidations", invalidations.get());
+        stats.put("revision", revision.get());
+        stats.put("maxEntries", maxEntries);
+        synchronized (entries) {
+            stats.put("size", entries.size());
+        }
+        return stats;
+    }
+
+    private void invalidate(boolean includeAll, String firstName, String secondName) {
+        String first = firstName != null ? firstName.toLowerCase(Locale.ROOT) : null;
+        String second = secondName != null ? secondName.toLowerCase(Locale.ROOT) : null;
+        synchronized (entries) {
+            revision.incrementAndGet();
+            Iterator<Entry> it = entries.values().iterator();
+            while (it.hasNext()) {
+                String keyword = it.next().keyword;
+                boolean affected = keyword.isEmpty()
+                        ? includeAll
+                        : (first != null && first.contains(keyword)) || (second != null && second.contains(keyword));
+                if (affected) {
+                    it.remove();
+                    invalidations.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    private static String normalize(String keyword) {
+        return keyword == null ? "" : keyword.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static String key(String normalizedKeyword, Pageable pageable) {
+        return normalizedKeyword + '\u0000' + pageable.getPageNumber() + ':' + pageable.getPageSize() + ':' + pageable.getSort();
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.foodhistory.session;
+
+import com.example.foodhistory.concurrent.VirtualThreads;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 以既有資料庫保存 Session
+ * app_session 存放中繼資料與到期時間，app_session_attribute 每個屬性一列；
+ * 讀取時以一次 join 查詢取回，寫入時只更新有變動的屬性。過期的 Session 由背景執行緒定期刪除。
+ */
+public class JdbcSessionStore implements SessionStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(JdbcSessionStore.class);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final long cleanupIntervalMs;
+
+    private ScheduledExecutorService cleaner;
+
+    public JdbcSessionStore(DataSource dataSource, long cleanupIntervalMs) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        this.cleanupIntervalMs = cleanupIntervalMs;
+    }
+
+    /**
+     * 開始定期清除過期 Session（app_session 與 app_session_attribute 表由 Flyway 遷移 V3 建立）
+     */
+    public void start() {
+        if (cleanupIntervalMs > 0) {
+            cleaner = Executors.newSingleThreadScheduledExecutor(VirtualThreads.newFactory("session-cleanup-", false));
+            cleaner.scheduleWithFixedDelay(this::deleteExpired, cleanupIntervalMs, cleanupIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (cleaner != null) {
+            cleaner.shutdownNow();
+        }
+    }
+
+    @Override
+    public String getType() {
+        return "jdbc";
+    }
+
+    @Override
+    public SessionRecord load(String id) {
+        List<SessionRecord> records = new ArrayList<>(1);
+        Map<String, byte[]> attributes = new HashMap<>();
+        jdbcTemplate.query("SELECT s.creation_time, s.last_access_time, s.max_inactive, a.attribute_name, a.attribute_bytes "
+                        + "FROM app_session s LEFT JOIN app_session_attribute a ON a.session_id = s.session_id "
+                        + "WHERE s.session_id = ? AND s.expiry_time > ?",
+                rs -> {
+                    if (records.isEmpty()) {
+                        records.add(new SessionRecord(id, rs.getLong(1), rs.getLong(2), rs.getInt(3), attributes));
+                    }
+                    String name = rs.getString(4);
+                    if (name != null) {
+                        attributes.put(name, rs.getBytes(5));
+                    }
+                },
+                id, System.currentTimeMillis());
+        return records.isEmpty() ? null : records.get(0);
+    }
+
+    @Override
+    public void save(SessionDelta delta) {
+        transactionTemplate.executeWithoutResult(status -> {
+            String id = delta.getId();
+            if (delta.getPreviousId() != null) {
+                jdbcTemplate.update("UPDATE app_session SET session_id = ? WHERE session_id = ?", id, delta.getPreviousId());
+                jdbcTemplate.update("UPDATE app_session_attribute SET session_id = ? WHERE session_id = ?",
+                        id, delta.getPreviousId());
+            }
+            int updated = delta.isNew() ? 0 : jdbcTemplate.update(
+                    "UPDATE app_session SET last_access_time = ?, max_inactive = ?, expiry_time = ? WHERE session_id = ?",
+                    delta.getLastAccessedTime(), delta.getMaxInactiveSeconds(), delta.getExpiryTime(), id);
+            if (updated == 0) {
+                // 新 Session，或在這次請求期間被清除的 Session
+                jdbcTemplate.update("INSERT INTO app_session (session_id, creation_time, last_access_time, max_inactive, expiry_time) "
+                                + "VALUES (?, ?, ?, ?, ?)",
+                        id, delta.getCreationTime(), delta.getLastAccessedTime(), delta.getMaxInactiveSeconds(),
+                        delta.getExpiryTime());
+            }
+            if (!delta.getRemovedAttributes().isEmpty()) {
+                List<Object[]> args = new ArrayList<>();
+                for (String name : delta.getRemovedAttributes()) {
+                    args.add(new Object[]{id, name});
+                }
+                jdbcTemplate.batchUpdate("DELETE FROM app_session_attribute WHERE session_id = ? AND attribute_name = ?", args);
+            }
+            for (Map.Entry<String, byte[]> attribute : delta.getChangedAttributes().entrySet()) {
+                int changed = delta.isNew() ? 0 : jdbcTemplate.update(
+                        "UPDATE app_session_attribute SET attribute_bytes = ? WHERE session_id = ? AND attribute_name = ?",
+                        attribute.getValue(), id, attribute.getKey());
+                if (changed == 0) {
+                    jdbcTemplate.update("INSERT INTO app_session_attribute (session_id, attribute_name, attribute_bytes) "
+                            + "VALUES (?, ?, ?)", id, attribute.getKey(), attribute.getValue());
+                }
+            }
+        });
+    }
+
+    @Override
+    public void delete(String id) {
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update("DELETE FROM app_session_attribute WHERE session_id = ?", id);
+            jdbcTemplate.update("DELETE FROM app_session WHERE session_id = ?", id);
+        });
+    }
+
+    /**
+     * 刪除已過期的 Session
+     * @return 刪除的 Session 數
+     */
+    int deleteExpired() {
+        try {
+            long now = System.currentTimeMillis();
+            Integer deleted = transactionTemplate.execute(status -> {
+                jdbcTemplate.update("DELETE FROM app_session_attribute WHERE session_id IN "
+                        + "(SELECT session_id FROM app_session WHERE expiry_time <= ?)", now);
+                return jdbcTemplate.update("DELETE FROM app_session WHERE expiry_time <= ?", now);
+            });
+            if (deleted != null && deleted > 0) {
+                logger.debug("已刪除 {} 個過期 Session", deleted);
+            }
+            return deleted == null ? 0 : deleted;
+        } catch (Exception e) {
+            logger.warn("過期 Session 刪除失敗", e);
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.foodhistory.session;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+import redis.clients.jedis.Pipeline;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 以 Redis（或相容服務，例如 Valkey、KeyDB）保存 Session
+ * 每個 Session 是一個 hash：#c / #a / #m 為建立時間、最後存取時間、逾時秒數，其餘欄位為「@屬性名稱」；
+ * 到期交給 Redis 的 key TTL，每次寫入時延長。讀取用一次 HGETALL，寫入以 pipeline 一次送出。
+ */
+public class RedisSessionStore implements SessionStore {
+
+    private static final byte[] CREATION_TIME = bytes("#c");
+    private static final byte[] LAST_ACCESSED_TIME = bytes("#a");
+    private static final byte[] MAX_INACTIVE = bytes("#m");
+    private static final String ATTRIBUTE_PREFIX = "@";
+
+    private final JedisPool pool;
+
+    private final String keyPrefix;
+
+    public RedisSessionStore(String host, int port, String password, int database, int timeoutMs, int maxConnections,
+                             String keyPrefix) {
+        JedisPoolConfig config = new JedisPoolConfig();
+        config.setMaxTotal(maxConnections);
+        config.setMaxIdle(maxConnections);
+        this.pool = new JedisPool(config, host, port, timeoutMs,
+                password == null || password.isEmpty() ? null : password, database);
+        this.keyPrefix = keyPrefix;
+    }
+
+    @Override
+    public void close() {
+        pool.close();
+    }
+
+    @Override
+    public String getType() {
+        return "redis";
+    }
+
+    @Override
+    public SessionRecord load(String id) {
+        Map<byte[], byte[]> hash;
+        try (Jedis jedis = pool.getResource()) {
+            hash = jedis.hgetAll(key(id));
+        }
+        if (hash == null || hash.isEmpty()) {
+            return null;
+        }
+        long creationTime = 0;
+        long lastAccessedTime = 0;
+        int maxInactive = -1;
+        boolean hasMetadata = false;
+        Map<String, byte[]> attributes = new HashMap<>();
+        for (Map.Entry<byte[], byte[]> field : hash.entrySet()) {
+            String name = new String(field.getKey(), StandardCharsets.UTF_8);
+            if (name.startsWith(ATTRIBUTE_PREFIX)) {
+                attributes.put(name.substring(ATTRIBUTE_PREFIX.length()), field.getValue());
+            } else if ("#c".equals(name)) {
+                creationTime = parseLong(field.getValue());
+                hasMetadata = true;
+            } else if ("#a".equals(name)) {
+                lastAccessedTime = parseLong(field.getValue());
+            } else if ("#m".equals(name)) {
+                maxInactive = (int) parseLong(field.getValue());
+            }
+        }
+        // 只剩屬性沒有中繼資料（例如改 ID 時舊 key 已過期）視為不存在
+        return hasMetadata ? new SessionRecord(id, creationTime, lastAccessedTime, maxInactive, attributes) : null;
+    }
+
+    @Override
+    public void save(SessionDelta delta) {
+        byte[] key = key(delta.getId());
+        Map<byte[], byte[]> fields = new HashMap<>();
+        if (delta.isNew()) {
+            fields.put(CREATION_TIME, bytes(Long.toString(delta.getCreationTime())));
+        }
+        fields.put(LAST_ACCESSED_TIME, bytes(Long.toString(delta.getLastAccessedTime())));
+        fields.put(MAX_INACTIVE, bytes(Integer.toString(delta.getMaxInactiveSeconds())));
+        for (Map.Entry<String, byte[]> attribute : delta.getChangedAttributes().entrySet()) {
+            fields.put(attributeField(attribute.getKey()), attribute.getValue());
+        }
+
+        try (Jedis jedis = pool.getResource()) {
+            Pipeline pipeline = jedis.pipelined();
+            if (delta.getPreviousId() != null) {
+                // 舊 key 不存在時 RENAME 回傳錯誤，不影響後續命令，新 key 只會有這次寫入的內容
+                pipeline.rename(key(delta.getPreviousId()), key);
+            }
+            if (!delta.isNew()) {
+                // 舊 key 已過期時補上建立時間，讓 load 仍能辨識
+                pipeline.hsetnx(key, CREATION_TIME, bytes(Long.toString(delta.getCreationTime())));
+            }
+            pipeline.hset(key, fields);
+            if (!delta.getRemovedAttributes().isEmpty()) {
+                byte[][] removed = new byte[delta.getRemovedAttributes().size()][];
+                int i = 0;
+                for (String name : delta.getRemovedAttributes()) {
+                    removed[i++] = attributeField(name);
+                }
+                pipeline.hdel(key, removed);
+            }
+            if (delta.getMaxInactiveSeconds() >= 0) {
+                pipeline.pexpireAt(key, delta.getExpiryTime());
+            } else {
+                pipeline.persist(key);
+            }
+            pipeline.sync();
+        }
+    }
+
+    @Override
+    public void delete(String id) {
+        try (Jedis jedis = pool.getResource()) {
+            jedis.del(key(id));
+        }
+    }
+
+    private byte[] key(String id) {
+        return bytes(keyPrefix + id);
+    }
+
+    private static byte[] attributeField(String name) {
+        return bytes(ATTRIBUTE_PREFIX + name);
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static long parseLong(byte[] value) {
+        return Long.parseLong(new String(value, StandardCharsets.US_ASCII));
+    }
+}
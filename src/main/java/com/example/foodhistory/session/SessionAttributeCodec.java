@@ -0,0 +1,131 @@
+package com.example.foodhistory.session;
+
+import org.springframework.core.ConfigurableObjectInputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Session 屬性的精簡編碼
+ * 第一個位元組為型別標記：字串、整數、布林直接以原始位元組保存；其他物件（例如 SecurityContext）使用 Java 序列化，
+ * 超過 compress-threshold 位元組時以 Deflate 壓縮（壓縮後較小才採用）。
+ * Java 序列化的類別描述大多是重複的類別名稱與欄位名稱，壓縮效果明顯。
+ */
+public class SessionAttributeCodec {
+
+    static final byte NULL = 0;
+    static final byte STRING = 1;
+    static final byte LONG = 2;
+    static final byte INTEGER = 3;
+    static final byte TRUE = 4;
+    static final byte FALSE = 5;
+    static final byte SERIALIZED = 6;
+    static final byte DEFLATED = 7;
+
+    private final int compressThreshold;
+
+    private final ClassLoader classLoader;
+
+    public SessionAttributeCodec(int compressThreshold, ClassLoader classLoader) {
+        this.compressThreshold = compressThreshold;
+        this.classLoader = classLoader;
+    }
+
+    public byte[] encode(Object value) {
+        if (value == null) {
+            return new byte[]{NULL};
+        }
+        if (value instanceof String) {
+            byte[] utf8 = ((String) value).getBytes(StandardCharsets.UTF_8);
+            return ByteBuffer.allocate(1 + utf8.length).put(STRING).put(utf8).array();
+        }
+        if (value instanceof Long) {
+            return ByteBuffer.allocate(9).put(LONG).putLong((Long) value).array();
+        }
+        if (value instanceof Integer) {
+            return ByteBuffer.allocate(5).put(INTEGER).putInt((Integer) value).array();
+        }
+        if (value instanceof Boolean) {
+            return new byte[]{(Boolean) value ? TRUE : FALSE};
+        }
+        byte[] serialized = serialize(value);
+        if (serialized.length >= compressThreshold) {
+            byte[] deflated = deflate(serialized);
+            if (deflated.length < serialized.length) {
+                return deflated;
+            }
+        }
+        return serialized;
+    }
+
+    public Object decode(byte[] bytes) {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        switch (bytes[0]) {
+            case NULL:
+                return null;
+            case STRING:
+                return new String(bytes, 1, bytes.length - 1, StandardCharsets.UTF_8);
+            case LONG:
+                return ByteBuffer.wrap(bytes, 1, 8).getLong();
+            case INTEGER:
+                return ByteBuffer.wrap(bytes, 1, 4).getInt();
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case SERIALIZED:
+                return deserialize(new ByteArrayInputStream(bytes, 1, bytes.length - 1));
+            case DEFLATED:
+                return deserialize(new InflaterInputStream(new ByteArrayInputStream(bytes, 1, bytes.length - 1)));
+            default:
+                throw new IllegalStateException("無法辨識的 Session 屬性型別標記: " + bytes[0]);
+        }
+    }
+
+    private static byte[] serialize(Object value) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+        buffer.write(SERIALIZED);
+        try (ObjectOutputStream out = new ObjectOutputStream(buffer)) {
+            out.writeObject(value);
+        } catch (NotSerializableException e) {
+            throw new IllegalArgumentException("Session 屬性無法序列化: " + value.getClass().getName(), e);
+        } catch (IOException e) {
+            throw new IllegalStateException("Session 屬性序列化失敗: " + value.getClass().getName(), e);
+        }
+        return buffer.toByteArray();
+    }
+
+    private static byte[] deflate(byte[] serialized) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(serialized.length / 2);
+        buffer.write(DEFLATED);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try (DeflaterOutputStream out = new DeflaterOutputStream(buffer, deflater)) {
+            out.write(serialized, 1, serialized.length - 1);
+        } catch (IOException e) {
+            throw new IllegalStateException("Session 屬性壓縮失敗", e);
+        } finally {
+            deflater.end();
+        }
+        return buffer.toByteArray();
+    }
+
+    private Object deserialize(InputStream in) {
+        try (ObjectInputStream objectIn = new ConfigurableObjectInputStream(in, classLoader)) {
+            return objectIn.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            throw new IllegalStateException("Session 屬性還原失敗", e);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.foodhistory.session;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 一次儲存要寫入的內容：中繼資料，以及上次儲存後有變動的屬性
+ * previousId 不為 null 時表示 Session ID 已變更（例如登入時防止 session fixation），應先把舊資料改到新 ID 下。
+ */
+public class SessionDelta {
+
+    private final String id;
+    private final String previousId;
+    private final boolean isNew;
+    private final long creationTime;
+    private final long lastAccessedTime;
+    private final int maxInactiveSeconds;
+    private final Map<String, byte[]> changedAttributes;
+    private final Set<String> removedAttributes;
+
+    public SessionDelta(String id, String previousId, boolean isNew, long creationTime, long lastAccessedTime,
+                        int maxInactiveSeconds, Map<String, byte[]> changedAttributes, Set<String> removedAttributes) {
+        this.id = id;
+        this.previousId = previousId;
+        this.isNew = isNew;
+        this.creationTime = creationTime;
+        this.lastAccessedTime = lastAccessedTime;
+        this.maxInactiveSeconds = maxInactiveSeconds;
+        this.changedAttributes = changedAttributes;
+        this.removedAttributes = removedAttributes;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getPreviousId() {
+        return previousId;
+    }
+
+    public boolean isNew() {
+        return isNew;
+    }
+
+    public long getCreationTime() {
+        return creationTime;
+    }
+
+    public long getLastAccessedTime() {
+        return lastAccessedTime;
+    }
+
+    public int getMaxInactiveSeconds() {
+        return maxInactiveSeconds;
+    }
+
+    /**
+     * 到期時間（毫秒），不逾時時為 Long.MAX_VALUE
+     */
+    public long getExpiryTime() {
+        return maxInactiveSeconds < 0 ? Long.MAX_VALUE : lastAccessedTime + maxInactiveSeconds * 1000L;
+    }
+
+    public Map<String, byte[]> getChangedAttributes() {
+        return changedAttributes;
+    }
+
+    public Set<String> getRemovedAttributes() {
+        return removedAttributes;
+    }
+}
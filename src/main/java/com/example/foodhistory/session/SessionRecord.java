@@ -0,0 +1,47 @@
+package com.example.foodhistory.session;
+
+import java.util.Map;
+
+/**
+ * 從 {@link SessionStore} 讀出的 Session：中繼資料與尚未解碼的屬性位元組
+ */
+public class SessionRecord {
+
+    private final String id;
+    private final long creationTime;
+    private final long lastAccessedTime;
+    private final int maxInactiveSeconds;
+    private final Map<String, byte[]> attributes;
+
+    public SessionRecord(String id, long creationTime, long lastAccessedTime, int maxInactiveSeconds,
+                         Map<String, byte[]> attributes) {
+        this.id = id;
+        this.creationTime = creationTime;
+        this.lastAccessedTime = lastAccessedTime;
+        this.maxInactiveSeconds = maxInactiveSeconds;
+        this.attributes = attributes;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public long getCreationTime() {
+        return creationTime;
+    }
+
+    public long getLastAccessedTime() {
+        return lastAccessedTime;
+    }
+
+    /**
+     * 閒置逾時秒數，小於 0 表示不逾時
+     */
+    public int getMaxInactiveSeconds() {
+        return maxInactiveSeconds;
+    }
+
+    public Map<String, byte[]> getAttributes() {
+        return attributes;
+    }
+}
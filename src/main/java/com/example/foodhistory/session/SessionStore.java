@@ -0,0 +1,36 @@
+package com.example.foodhistory.session;
+
+import java.io.Closeable;
+
+/**
+ * Session 的外部儲存
+ * 所有節點共用同一個 SessionStore，任一節點都能處理任一請求，nginx 不需要 sticky session。
+ * 屬性以 {@link SessionAttributeCodec} 編碼後的位元組保存，儲存端不需要認得屬性的型別。
+ */
+public interface SessionStore extends Closeable {
+
+    /**
+     * 讀取 Session（一次讀出中繼資料與所有屬性位元組）
+     * @return 不存在或已逾時時回傳 null
+     */
+    SessionRecord load(String id);
+
+    /**
+     * 寫入中繼資料與有變動的屬性
+     */
+    void save(SessionDelta delta);
+
+    /**
+     * 刪除 Session 與其所有屬性
+     */
+    void delete(String id);
+
+    /**
+     * 實作名稱（統計用）
+     */
+    String getType();
+
+    @Override
+    default void close() {
+    }
+}
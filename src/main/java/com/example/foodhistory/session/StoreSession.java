@@ -0,0 +1,207 @@
+package com.example.foodhistory.session;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.session.Session;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * 由 {@link SessionStore} 讀出的 Session
+ * 屬性在第一次 getAttribute 時才解碼，多數請求只讀 SecurityContext，其他屬性（例如 OAuth2 登入中的授權請求）不必還原；
+ * 記錄上次儲存後設定與移除的屬性，儲存時只寫入這些屬性。
+ * 與 Spring Session 預設的 SaveMode.ON_SET_ATTRIBUTE 相同，取出的物件被直接修改而沒有再 setAttribute 時不會寫回。
+ */
+public class StoreSession implements Session {
+
+    private static final Logger logger = LoggerFactory.getLogger(StoreSession.class);
+
+    private final SessionAttributeCodec codec;
+
+    private String id;
+    // 儲存端目前的 ID，新 Session 尚未寫入時為 null
+    private String storedId;
+
+    private final long creationTime;
+    private long lastAccessedTime;
+    private long storedLastAccessedTime;
+    private int maxInactiveSeconds;
+    private boolean metadataChanged;
+
+    private final Map<String, Object> decoded = new HashMap<>();
+    private final Map<String, byte[]> encoded;
+    private final Set<String> changed = new HashSet<>();
+    private final Set<String> removed = new HashSet<>();
+
+    /**
+     * 建立新 Session
+     */
+    StoreSession(SessionAttributeCodec codec, int maxInactiveSeconds) {
+        this.codec = codec;
+        this.id = newId();
+        this.creationTime = System.currentTimeMillis();
+        this.lastAccessedTime = creationTime;
+        this.maxInactiveSeconds = maxInactiveSeconds;
+        this.encoded = new HashMap<>();
+    }
+
+    /**
+     * 還原已儲存的 Session，屬性保持編碼狀態
+     */
+    StoreSession(SessionAttributeCodec codec, SessionRecord record) {
+        this.codec = codec;
+        this.id = record.getId();
+        this.storedId = record.getId();
+        this.creationTime = record.getCreationTime();
+        this.lastAccessedTime = record.getLastAccessedTime();
+        this.storedLastAccessedTime = record.getLastAccessedTime();
+        this.maxInactiveSeconds = record.getMaxInactiveSeconds();
+        this.encoded = new HashMap<>(record.getAttributes());
+    }
+
+    private static String newId() {
+        return UUID.randomUUID().toString();
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public String changeSessionId() {
+        id = newId();
+        return id;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T getAttribute(String attributeName) {
+        if (decoded.containsKey(attributeName)) {
+            return (T) decoded.get(attributeName);
+        }
+        byte[] bytes = encoded.remove(attributeName);
+        if (bytes == null) {
+            return null;
+        }
+        try {
+            Object value = codec.decode(bytes);
+            decoded.put(attributeName, value);
+            return (T) value;
+        } catch (RuntimeException e) {
+            // 例如部署後類別已變更：當作屬性不存在並從儲存端移除，需要時重新登入（remember-me）
+            logger.warn("Session 屬性無法還原，已捨棄: {}", attributeName, e);
+            removed.add(attributeName);
+            return null;
+        }
+    }
+
+    @Override
+    public Set<String> getAttributeNames() {
+        Set<String> names = new HashSet<>(decoded.keySet());
+        names.addAll(encoded.keySet());
+        return names;
+    }
+
+    @Override
+    public void setAttribute(String attributeName, Object attributeValue) {
+        if (attributeValue == null) {
+            removeAttribute(attributeName);
+            return;
+        }
+        decoded.put(attributeName, attributeValue);
+        encoded.remove(attributeName);
+        changed.add(attributeName);
+        removed.remove(attributeName);
+    }
+
+    @Override
+    public void removeAttribute(String attributeName) {
+        boolean existed = decoded.remove(attributeName) != null | encoded.remove(attributeName) != null;
+        changed.remove(attributeName);
+        if (existed && storedId != null) {
+            removed.add(attributeName);
+        }
+    }
+
+    @Override
+    public Instant getCreationTime() {
+        return Instant.ofEpochMilli(creationTime);
+    }
+
+    @Override
+    public void setLastAccessedTime(Instant lastAccessedTime) {
+        this.lastAccessedTime = lastAccessedTime.toEpochMilli();
+    }
+
+    @Override
+    public Instant getLastAccessedTime() {
+        return Instant.ofEpochMilli(lastAccessedTime);
+    }
+
+    @Override
+    public void setMaxInactiveInterval(Duration interval) {
+        int seconds = (int) interval.getSeconds();
+        if (seconds != maxInactiveSeconds) {
+            maxInactiveSeconds = seconds;
+            metadataChanged = true;
+        }
+    }
+
+    @Override
+    public Duration getMaxInactiveInterval() {
+        return Duration.ofSeconds(maxInactiveSeconds);
+    }
+
+    @Override
+    public boolean isExpired() {
+        return maxInactiveSeconds >= 0
+                && System.currentTimeMillis() - lastAccessedTime >= maxInactiveSeconds * 1000L;
+    }
+
+    /**
+     * 是否有需要寫入的內容
+     * 只有最後存取時間改變時，距上次寫入超過 touchIntervalMs 才寫入，避免每個請求都寫一次儲存端
+     */
+    boolean needsSave(long touchIntervalMs) {
+        return storedId == null || !id.equals(storedId) || metadataChanged
+                || !changed.isEmpty() || !removed.isEmpty()
+                || lastAccessedTime - storedLastAccessedTime >= touchIntervalMs;
+    }
+
+    SessionDelta toDelta() {
+        Map<String, byte[]> changedBytes = new LinkedHashMap<>();
+        for (String name : changed) {
+            changedBytes.put(name, codec.encode(decoded.get(name)));
+        }
+        String previousId = storedId != null && !storedId.equals(id) ? storedId : null;
+        return new SessionDelta(id, previousId, storedId == null, creationTime, lastAccessedTime,
+                maxInactiveSeconds, changedBytes, new HashSet<>(removed));
+    }
+
+    void markSaved() {
+        storedId = id;
+        storedLastAccessedTime = lastAccessedTime;
+        metadataChanged = false;
+        changed.clear();
+        removed.clear();
+    }
+
+    String getStoredId() {
+        return storedId;
+    }
+
+    /**
+     * 屬性是否已解碼（測試用）
+     */
+    boolean isDecoded(String attributeName) {
+        return decoded.containsKey(attributeName);
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.foodhistory.session;
+
+import org.springframework.session.SessionRepository;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 以 {@link SessionStore} 保存 Session 的 SessionRepository
+ * 由 Spring Session 的 SessionRepositoryFilter 使用，取代 Tomcat 記憶體中的 HttpSession。
+ */
+public class StoreSessionRepository implements SessionRepository<StoreSession> {
+
+    private final SessionStore store;
+
+    private final SessionAttributeCodec codec;
+
+    private final int defaultMaxInactiveSeconds;
+
+    private final long touchIntervalMs;
+
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong saves = new AtomicLong();
+    private final AtomicLong skippedSaves = new AtomicLong();
+    private final AtomicLong attributeWrites = new AtomicLong();
+    private final AtomicLong attributeBytesWritten = new AtomicLong();
+
+    public StoreSessionRepository(SessionStore store, SessionAttributeCodec codec, Duration defaultMaxInactiveInterval,
+                                  long touchIntervalMs) {
+        this.store = store;
+        this.codec = codec;
+        this.defaultMaxInactiveSeconds = (int) defaultMaxInactiveInterval.getSeconds();
+        this.touchIntervalMs = touchIntervalMs;
+    }
+
+    @Override
+    public StoreSession createSession() {
+        created.incrementAndGet();
+        return new StoreSession(codec, defaultMaxInactiveSeconds);
+    }
+
+    @Override
+    public void save(StoreSession session) {
+        if (!session.needsSave(touchIntervalMs)) {
+            skippedSaves.incrementAndGet();
+            return;
+        }
+        SessionDelta delta = session.toDelta();
+        store.save(delta);
+        saves.incrementAndGet();
+        attributeWrites.addAndGet(delta.getChangedAttributes().size());
+        for (byte[] bytes : delta.getChangedAttributes().values()) {
+            attributeBytesWritten.addAndGet(bytes.length);
+        }
+        session.markSaved();
+    }
+
+    @Override
+    public StoreSession findById(String id) {
+        loads.incrementAndGet();
+        SessionRecord record = store.load(id);
+        if (record == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        StoreSession session = new StoreSession(codec, record);
+        if (session.isExpired()) {
+            store.delete(id);
+            misses.incrementAndGet();
+            return null;
+        }
+        return session;
+    }
+
+    @Override
+    public void deleteById(String id) {
+        store.delete(id);
+    }
+
+    /**
+     * 統計資訊（讀取 / 寫入次數、略過的寫入、寫入的屬性位元組數）
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("store", store.getType());
+        stats.put("created", created.get());
+        stats.put("loads", loads.get());
+        stats.put("misses", misses.get());
+        stats.put("saves", saves.get());
+        stats.put("skippedSaves", skippedSaves.get());
+        stats.put("attributeWrites", attributeWrites.get());
+        stats.put("attributeBytesWritten", attributeBytesWritten.get());
+        return stats;
+    }
+}
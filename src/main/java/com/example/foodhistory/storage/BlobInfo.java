@@ -0,0 +1,32 @@
+package com.example.foodhistory.storage;
+
+/**
+ * 物件儲存中單一物件的資訊
+ */
+public final class BlobInfo {
+
+    private final String key;
+    private final long size;
+    private final long lastModified;
+
+    public BlobInfo(String key, long size, long lastModified) {
+        this.key = key;
+        this.size = size;
+        this.lastModified = lastModified;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * 內容的修改時間（毫秒）；上傳時指定的時間會隨物件保存，各節點下載後的本機副本 ETag 一致
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+}
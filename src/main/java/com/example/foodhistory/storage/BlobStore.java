@@ -0,0 +1,49 @@
+package com.example.foodhistory.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+/**
+ * 影像的共用物件儲存
+ * 多個應用程式節點共用同一個 BlobStore，各節點的影像目錄作為本機讀取快取。
+ * key 即影像檔名（例如 12.jpg、12.jpg.webp）。
+ */
+public interface BlobStore extends Closeable {
+
+    /**
+     * 查詢物件資訊
+     * @return 物件不存在時回傳 null
+     */
+    BlobInfo head(String key) throws IOException;
+
+    /**
+     * 上傳（或覆蓋）物件
+     * @param source 本機檔案
+     * @param contentType 內容類型
+     * @param lastModified 內容的修改時間（毫秒），隨物件保存
+     */
+    void put(String key, Path source, String contentType, long lastModified) throws IOException;
+
+    /**
+     * 下載物件到本機檔案（覆蓋既有內容）
+     * @return 物件資訊，物件不存在時回傳 null
+     */
+    BlobInfo get(String key, Path target) throws IOException;
+
+    /**
+     * 刪除物件
+     * @return 是否有刪除（無法得知時回傳 true）
+     */
+    boolean delete(String key) throws IOException;
+
+    /**
+     * 逐一列出所有物件（惰性讀取，呼叫端負責關閉 Stream）
+     */
+    Stream<BlobInfo> list() throws IOException;
+
+    @Override
+    default void close() throws IOException {
+    }
+}
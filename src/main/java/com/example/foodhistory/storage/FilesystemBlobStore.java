@@ -0,0 +1,110 @@
+package com.example.foodhistory.storage;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * 以共用檔案系統（例如 NFS 掛載目錄）作為物件儲存
+ * 物件放在 key 雜湊的兩層前綴目錄下；寫入先寫暫存檔再原子搬移，其他節點不會讀到寫到一半的內容。
+ */
+public class FilesystemBlobStore implements BlobStore {
+
+    private static final String TEMP_PREFIX = ".put-";
+
+    private final Path root;
+
+    public FilesystemBlobStore(String root) throws IOException {
+        this.root = Paths.get(root).toAbsolutePath().normalize();
+        Files.createDirectories(this.root);
+    }
+
+    @Override
+    public BlobInfo head(String key) throws IOException {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path(key), BasicFileAttributes.class);
+            return new BlobInfo(key, attributes.size(), attributes.lastModifiedTime().toMillis());
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void put(String key, Path source, String contentType, long lastModified) throws IOException {
+        Path target = path(key);
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), TEMP_PREFIX, ".tmp");
+        try {
+            Files.copy(source, temp, StandardCopyOption.REPLACE_EXISTING);
+            Files.setLastModifiedTime(temp, FileTime.fromMillis(lastModified));
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public BlobInfo get(String key, Path target) throws IOException {
+        Path source = path(key);
+        try {
+            Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        BasicFileAttributes attributes = Files.readAttributes(target, BasicFileAttributes.class);
+        return new BlobInfo(key, attributes.size(), attributes.lastModifiedTime().toMillis());
+    }
+
+    @Override
+    public boolean delete(String key) throws IOException {
+        return Files.deleteIfExists(path(key));
+    }
+
+    @Override
+    public Stream<BlobInfo> list() throws IOException {
+        return Files.walk(root, 3)
+                .filter(path -> !path.getFileName().toString().startsWith("."))
+                .map(path -> {
+                    try {
+                        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                        return attributes.isRegularFile()
+                                ? new BlobInfo(path.getFileName().toString(), attributes.size(),
+                                        attributes.lastModifiedTime().toMillis())
+                                : null;
+                    } catch (IOException e) {
+                        return null;
+                    }
+                })
+                .filter(Objects::nonNull);
+    }
+
+    private Path path(String key) throws IOException {
+        if (key.isEmpty() || key.startsWith(".") || key.indexOf('/') >= 0 || key.indexOf('\\') >= 0) {
+            throw new IOException("Invalid blob key: " + key);
+        }
+        byte[] hash;
+        try {
+            hash = MessageDigest.getInstance("MD5").digest(key.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 not available", e);
+        }
+        return root.resolve(String.format("%02x", hash[0] & 0xFF))
+                .resolve(String.format("%02x", hash[1] & 0xFF))
+                .resolve(key);
+    }
+}
@@ -0,0 +1,280 @@
+package com.example.foodhistory.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3ClientBuilder;
+import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateBucketRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadBucketRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.NoSuchBucketException;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * S3 API 物件儲存（AWS S3、MinIO 等相容服務）
+ * 超過分段大小的檔案以 multipart upload 平行上傳各段，任一段失敗時中止整個上傳，不留下未完成的分段。
+ */
+public class S3BlobStore implements BlobStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(S3BlobStore.class);
+
+    // 物件 metadata：內容的修改時間（毫秒）
+    static final String MTIME_METADATA = "mtime";
+
+    // S3 規定除最後一段外，每段至少 5MB
+    private static final long MIN_PART_SIZE = 5L * 1024 * 1024;
+
+    private final S3Client client;
+    private final String bucket;
+    private final String prefix;
+    private final long partSize;
+    private final ExecutorService uploadExecutor;
+
+    /**
+     * @param endpoint S3 相容服務位址（空白代表 AWS 預設）
+     * @param region 區域
+     * @param bucket 儲存桶
+     * @param prefix 物件 key 前綴（可為空白）
+     * @param accessKey 存取金鑰（空白時使用預設憑證鏈）
+     * @param secretKey 秘密金鑰
+     * @param pathStyle 是否使用 path-style 位址（MinIO 需要）
+     * @param partSize 分段上傳的每段大小（位元組）
+     * @param uploadParallelism 同時上傳的分段數
+     */
+    public S3BlobStore(String endpoint, String region, String bucket, String prefix,
+                       String accessKey, String secretKey, boolean pathStyle,
+                       long partSize, int uploadParallelism) {
+        AwsCredentialsProvider credentials = accessKey == null || accessKey.isEmpty()
+                ? DefaultCredentialsProvider.create()
+                : StaticCredentialsProvider.create(AwsBasicCredentials.create(accessKey, secretKey));
+        S3ClientBuilder builder = S3Client.builder()
+                .region(Region.of(region))
+                .credentialsProvider(credentials)
+                .serviceConfiguration(S3Configuration.builder().pathStyleAccessEnabled(pathStyle).build());
+        if (endpoint != null && !endpoint.isEmpty()) {
+            builder.endpointOverride(URI.create(endpoint));
+        }
+        this.client = builder.build();
+        this.bucket = bucket;
+        this.prefix = prefix == null ? "" : prefix;
+        this.partSize = Math.max(MIN_PART_SIZE, partSize);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.uploadExecutor = Executors.newFixedThreadPool(Math.max(1, uploadParallelism), runnable -> {
+            Thread thread = new Thread(runnable, "s3-upload-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 儲存桶不存在時建立（本機 MinIO 首次啟動時）
+     */
+    public void ensureBucket() throws IOException {
+        try {
+            client.headBucket(HeadBucketRequest.builder().bucket(bucket).build());
+        } catch (SdkException e) {
+            if (!isNotFound(e)) {
+                throw new IOException("S3 bucket check failed: " + bucket, e);
+            }
+            try {
+                client.createBucket(CreateBucketRequest.builder().bucket(bucket).build());
+                logger.info("已建立 S3 儲存桶 {}", bucket);
+            } catch (SdkException createError) {
+                throw new IOException("S3 bucket creation failed: " + bucket, createError);
+            }
+        }
+    }
+
+    @Override
+    public BlobInfo head(String key) throws IOException {
+        try {
+            HeadObjectResponse response = client.headObject(HeadObjectRequest.builder()
+                    .bucket(bucket).key(prefix + key).build());
+            return new BlobInfo(key, response.contentLength(), lastModified(response.metadata(), response.lastModified()));
+        } catch (SdkException e) {
+            if (isNotFound(e)) {
+                return null;
+            }
+            throw new IOException("S3 HEAD failed: " + key, e);
+        }
+    }
+
+    @Override
+    public void put(String key, Path source, String contentType, long lastModified) throws IOException {
+        long size = Files.size(source);
+        Map<String, String> metadata = Collections.singletonMap(MTIME_METADATA, String.valueOf(lastModified));
+        try {
+            if (size <= partSize) {
+                client.putObject(PutObjectRequest.builder()
+                        .bucket(bucket).key(prefix + key).contentType(contentType).metadata(metadata).build(),
+                        RequestBody.fromFile(source));
+            } else {
+                putMultipart(prefix + key, source, size, contentType, metadata);
+            }
+        } catch (SdkException e) {
+            throw new IOException("S3 PUT failed: " + key, e);
+        }
+    }
+
+    private void putMultipart(String objectKey, Path source, long size, String contentType,
+                              Map<String, String> metadata) throws IOException {
+        String uploadId = client.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                .bucket(bucket).key(objectKey).contentType(contentType).metadata(metadata).build()).uploadId();
+        try {
+            List<Future<CompletedPart>> futures = new ArrayList<>();
+            int partNumber = 1;
+            for (long offset = 0; offset < size; offset += partSize) {
+                long position = offset;
+                int length = (int) Math.min(partSize, size - offset);
+                int number = partNumber++;
+                futures.add(uploadExecutor.submit(() -> uploadPart(objectKey, uploadId, source, number, position, length)));
+            }
+            List<CompletedPart> parts = new ArrayList<>(futures.size());
+            for (Future<CompletedPart> future : futures) {
+                parts.add(future.get());
+            }
+            client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                    .bucket(bucket).key(objectKey).uploadId(uploadId)
+                    .multipartUpload(CompletedMultipartUpload.builder().parts(parts).build())
+                    .build());
+        } catch (InterruptedException | ExecutionException | RuntimeException e) {
+            abort(objectKey, uploadId);
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+            throw cause instanceof IOException ? (IOException) cause : new IOException("S3 multipart upload failed", cause);
+        }
+    }
+
+    private CompletedPart uploadPart(String objectKey, String uploadId, Path source,
+                                     int partNumber, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new IOException("File truncated during upload: " + source);
+                }
+            }
+        }
+        buffer.flip();
+        String etag = client.uploadPart(UploadPartRequest.builder()
+                .bucket(bucket).key(objectKey).uploadId(uploadId)
+                .partNumber(partNumber).contentLength((long) length).build(),
+                RequestBody.fromByteBuffer(buffer)).eTag();
+        return CompletedPart.builder().partNumber(partNumber).eTag(etag).build();
+    }
+
+    private void abort(String objectKey, String uploadId) {
+        try {
+            client.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                    .bucket(bucket).key(objectKey).uploadId(uploadId).build());
+        } catch (SdkException e) {
+            logger.warn("無法中止分段上傳 {}（{}）", objectKey, uploadId, e);
+        }
+    }
+
+    @Override
+    public BlobInfo get(String key, Path target) throws IOException {
+        try (ResponseInputStream<GetObjectResponse> in = client.getObject(GetObjectRequest.builder()
+                .bucket(bucket).key(prefix + key).build())) {
+            Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+            GetObjectResponse response = in.response();
+            return new BlobInfo(key, Files.size(target), lastModified(response.metadata(), response.lastModified()));
+        } catch (SdkException e) {
+            if (isNotFound(e)) {
+                return null;
+            }
+            throw new IOException("S3 GET failed: " + key, e);
+        }
+    }
+
+    @Override
+    public boolean delete(String key) throws IOException {
+        try {
+            client.deleteObject(DeleteObjectRequest.builder().bucket(bucket).key(prefix + key).build());
+            return true;
+        } catch (SdkException e) {
+            throw new IOException("S3 DELETE failed: " + key, e);
+        }
+    }
+
+    @Override
+    public Stream<BlobInfo> list() throws IOException {
+        try {
+            // 分頁由 paginator 依需要逐頁請求；列表不含 metadata，修改時間使用物件的 LastModified
+            return client.listObjectsV2Paginator(ListObjectsV2Request.builder().bucket(bucket).prefix(prefix).build())
+                    .contents().stream()
+                    .filter(object -> object.key().length() > prefix.length())
+                    .map(object -> new BlobInfo(object.key().substring(prefix.length()), object.size(),
+                            object.lastModified().toEpochMilli()));
+        } catch (SdkException e) {
+            throw new IOException("S3 LIST failed", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        uploadExecutor.shutdownNow();
+        client.close();
+    }
+
+    private static long lastModified(Map<String, String> metadata, Instant fallback) {
+        String mtime = metadata.get(MTIME_METADATA);
+        if (mtime != null) {
+            try {
+                return Long.parseLong(mtime);
+            } catch (NumberFormatException e) {
+                // 使用物件的 LastModified
+            }
+        }
+        return fallback != null ? fallback.toEpochMilli() : 0;
+    }
+
+    private static boolean isNotFound(SdkException e) {
+        return e instanceof NoSuchKeyException || e instanceof NoSuchBucketException
+                || (e instanceof S3Exception && ((S3Exception) e).statusCode() == 404);
+    }
+}
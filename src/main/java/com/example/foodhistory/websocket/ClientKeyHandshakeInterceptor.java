@@ -0,0 +1,39 @@
+package com.example.foodhistory.websocket;
+
+import com.example.foodhistory.concurrent.ConnectionLimiter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+import java.util.Map;
+
+/**
+ * 握手時計算 {@link ConnectionLimiter} 使用的客戶端識別
+ * 握手請求經過 ForwardedHeaderFilter，這裡取得的是轉送標頭中的客戶端位址；
+ * 連線建立後 WebSocketSession 只剩下反向代理的位址，也取不到 HTTP session。
+ */
+public class ClientKeyHandshakeInterceptor implements HandshakeInterceptor {
+
+    static final String CLIENT_KEY = ClientKeyHandshakeInterceptor.class.getName() + ".clientKey";
+
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler wsHandler, Map<String, Object> attributes) {
+        if (request instanceof ServletServerHttpRequest) {
+            HttpServletRequest servletRequest = ((ServletServerHttpRequest) request).getServletRequest();
+            HttpSession httpSession = servletRequest.getSession(false);
+            attributes.put(CLIENT_KEY, ConnectionLimiter.clientKey(servletRequest.getUserPrincipal(),
+                    httpSession == null ? null : httpSession.getId(), servletRequest.getRemoteAddr()));
+        }
+        return true;
+    }
+
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                               WebSocketHandler wsHandler, Exception exception) {
+    }
+}
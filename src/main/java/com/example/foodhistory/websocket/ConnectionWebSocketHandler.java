@@ -1,85 +1,334 @@
 package com.example.foodhistory.websocket;
 
+import com.example.foodhistory.concurrent.ConnectionLimiter;
+import com.example.foodhistory.concurrent.SerialExecutor;
+import com.example.foodhistory.concurrent.StreamDispatcher;
+import com.example.foodhistory.service.FoodChangeBatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
 import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.PingMessage;
+import org.springframework.web.socket.PongMessage;
+import org.springframework.web.socket.SubProtocolCapable;
 import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
 import org.springframework.web.socket.WebSocketSession;
-import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.web.socket.handler.AbstractWebSocketHandler;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.IOException;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * WebSocket 連線處理器
  * 用於即時偵測客戶端與伺服器的連線狀態
+ * 每個 session 的寫入都經由各自的 {@link SerialExecutor}，回應 ping 與廣播不會同時寫入同一個 session。
+ * 存活偵測使用 WebSocket 協定層的 ping / pong 控制框（瀏覽器自動回應，不必由頁面腳本送出 JSON ping）：
+ * 所有連線共用一個排程，每 ping-interval-ms 送出一次 ping，超過 idle-timeout-ms 沒有收到任何訊息的連線直接關閉。
+ * 客戶端以子協定 fh.bin.v1 連線時推送精簡的二進位訊息（見 {@link WsMessageCodec}），否則維持 JSON 文字。
+ * 連線數受 {@link ConnectionLimiter} 限制（客戶端識別於握手時由 {@link ClientKeyHandshakeInterceptor} 計算）：
+ * 總數已滿時以 1013（稍後再試）關閉；到期或被同一使用者的新連線取代時以 1012 關閉，reason 為「原因:重連毫秒數」，
+ * 例如 expired:3000。replaced 為終止狀態，客戶端不自動重連，等頁面回到前景或取得焦點時才重新連線。
  */
 @Component
-public class ConnectionWebSocketHandler extends TextWebSocketHandler {
-    
-    private final List<WebSocketSession> sessions = new CopyOnWriteArrayList<>();
-    
+public class ConnectionWebSocketHandler extends AbstractWebSocketHandler implements SubProtocolCapable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConnectionWebSocketHandler.class);
+
+    private static final List<String> SUB_PROTOCOLS = Arrays.asList(WsMessageCodec.BINARY_PROTOCOL, WsMessageCodec.JSON_PROTOCOL);
+
+    @Autowired
+    private StreamDispatcher streamDispatcher;
+
+    @Autowired
+    private ConnectionLimiter connectionLimiter;
+
+    @Value("${app.ws.ping-interval-ms:20000}")
+    private long pingIntervalMs = 20000;
+
+    @Value("${app.ws.idle-timeout-ms:60000}")
+    private long idleTimeoutMs = 60000;
+
+    private final WsMessageCodec codec = new WsMessageCodec();
+
+    private final Map<WebSocketSession, Connection> sessions = new ConcurrentHashMap<>();
+
+    private ScheduledFuture<?> pingTask;
+
+    private volatile int lastPresence = -1;
+
+    private final AtomicLong pingsSent = new AtomicLong();
+    private final AtomicLong pongsReceived = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+    private final AtomicLong messagesSent = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+
+    /**
+     * 單一連線的狀態
+     */
+    static final class Connection {
+        final SerialExecutor writer;
+        final boolean binary;
+        ConnectionLimiter.Lease lease;
+        volatile long lastSeen = System.currentTimeMillis();
+        volatile int topics = WsMessage.TOPIC_CHANGES;
+
+        Connection(SerialExecutor writer, boolean binary) {
+            this.writer = writer;
+            this.binary = binary;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        pingTask = streamDispatcher.scheduleAtFixedRate(this::tick, pingIntervalMs);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (pingTask != null) {
+            pingTask.cancel(false);
+        }
+    }
+
+    @Override
+    public List<String> getSubProtocols() {
+        return SUB_PROTOCOLS;
+    }
+
     @Override
     public void afterConnectionEstablished(WebSocketSession session) throws Exception {
-        sessions.add(session);
-        System.out.println("[WebSocket] 新連線建立: " + session.getId());
-        
+        boolean binary = WsMessageCodec.BINARY_PROTOCOL.equals(session.getAcceptedProtocol());
+        Connection connection = new Connection(streamDispatcher.newConnectionExecutor(), binary);
+        String client = (String) session.getAttributes().get(ClientKeyHandshakeInterceptor.CLIENT_KEY);
+        if (client == null) {
+            client = ConnectionLimiter.clientKey(session.getPrincipal(), null,
+                    session.getRemoteAddress() == null ? null : session.getRemoteAddress().getAddress().getHostAddress());
+        }
+        connection.lease = connectionLimiter.tryAcquire(ConnectionLimiter.WEBSOCKET, client,
+                (reason, retryMs) -> connection.writer.execute(() -> close(session,
+                        CloseStatus.SERVICE_RESTARTED.withReason(reason.name().toLowerCase(Locale.ROOT) + ":" + retryMs))));
+        if (connection.lease == null) {
+            logger.debug("WebSocket 連線數已達上限，拒絕: {}", session.getId());
+            close(session, CloseStatus.SERVICE_OVERLOAD.withReason("busy:" + connectionLimiter.getBusyRetryMs()));
+            return;
+        }
+        sessions.put(session, connection);
+        logger.debug("WebSocket 新連線建立: {}（{}）", session.getId(), binary ? "binary" : "json");
+
         // 立即發送連線確認訊息
-        String connectedMessage = "{\"type\":\"connected\",\"timestamp\":" + System.currentTimeMillis() + "}";
-        session.sendMessage(new TextMessage(connectedMessage));
+        WebSocketMessage<?> connected = codec.encode(WsMessage.connected(), binary);
+        connection.writer.execute(() -> send(session, connected));
     }
-    
+
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) throws Exception {
-        sessions.remove(session);
-        System.out.println("[WebSocket] 連線已關閉: " + session.getId() + ", 狀態: " + status);
+        remove(session);
+        logger.debug("WebSocket 連線已關閉: {}, 狀態: {}", session.getId(), status);
     }
-    
+
     @Override
     protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
-        String payload = message.getPayload();
-        
-        // 處理客戶端的 ping 訊息
-        if (payload.contains("\"type\":\"ping\"")) {
-            String pongMessage = "{\"type\":\"pong\",\"timestamp\":" + System.currentTimeMillis() + "}";
-            session.sendMessage(new TextMessage(pongMessage));
+        onClientMessage(session, message);
+    }
+
+    @Override
+    protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) throws Exception {
+        onClientMessage(session, message);
+    }
+
+    @Override
+    protected void handlePongMessage(WebSocketSession session, PongMessage message) throws Exception {
+        Connection connection = sessions.get(session);
+        if (connection != null) {
+            connection.lastSeen = System.currentTimeMillis();
+            pongsReceived.incrementAndGet();
         }
     }
-    
+
     @Override
     public void handleTransportError(WebSocketSession session, Throwable exception) throws Exception {
-        System.out.println("[WebSocket] 傳輸錯誤: " + session.getId() + ", 錯誤: " + exception.getMessage());
-        sessions.remove(session);
+        logger.warn("WebSocket 傳輸錯誤: {}, 錯誤: {}", session.getId(), exception.getMessage());
+        remove(session);
+    }
+
+    private void onClientMessage(WebSocketSession session, WebSocketMessage<?> message) {
+        Connection connection = sessions.get(session);
+        if (connection == null) {
+            return;
+        }
+        connection.lastSeen = System.currentTimeMillis();
+        WsMessage decoded = codec.decode(message);
+        if (decoded == null) {
+            return;
+        }
+        if (decoded.getType() == WsMessage.Type.PING) {
+            // 頁面在背景分頁恢復時仍可能送出應用層 ping，回應 pong 讓它立即確認連線
+            WebSocketMessage<?> pong = codec.encode(WsMessage.pong(), connection.binary);
+            connection.writer.execute(() -> send(session, pong));
+        } else if (decoded.getType() == WsMessage.Type.SUBSCRIBE) {
+            connection.topics = decoded.getTopics();
+            if ((decoded.getTopics() & WsMessage.TOPIC_PRESENCE) != 0) {
+                WebSocketMessage<?> presence = codec.encode(WsMessage.presence(sessions.size()), connection.binary);
+                connection.writer.execute(() -> send(session, presence));
+            }
+        }
     }
-    
+
+    /**
+     * 共用排程：關閉閒置過久的連線、對其餘連線送出 ping，連線數有變化時通知訂閱 presence 的客戶端
+     */
+    void tick() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<WebSocketSession, Connection> entry : sessions.entrySet()) {
+            WebSocketSession session = entry.getKey();
+            Connection connection = entry.getValue();
+            if (now - connection.lastSeen > idleTimeoutMs) {
+                evict(session, connection);
+            } else if (connection.writer.isIdle()) {
+                // 上一次寫入還沒完成時略過這次 ping，寫入卡住的連線最後會因閒置而被關閉
+                connection.writer.execute(() -> sendPing(session));
+            }
+        }
+        int connections = sessions.size();
+        if (connections != lastPresence) {
+            lastPresence = connections;
+            broadcast(WsMessage.presence(connections), WsMessage.TOPIC_PRESENCE);
+        }
+    }
+
+    private void evict(WebSocketSession session, Connection connection) {
+        if (!remove(session)) {
+            return;
+        }
+        evicted.incrementAndGet();
+        logger.debug("WebSocket 連線閒置過久，關閉: {}", session.getId());
+        // 關閉交給該連線的寫入執行緒：送出 close frame 不會卡住共用排程，也不會與進行中的寫入同時操作 session
+        connection.writer.execute(() -> close(session, CloseStatus.SESSION_NOT_RELIABLE));
+    }
+
+    private void close(WebSocketSession session, CloseStatus status) {
+        remove(session);
+        try {
+            session.close(status);
+        } catch (IOException | IllegalStateException e) {
+            logger.debug("關閉 WebSocket 連線失敗: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 移除連線並歸還連線許可，回傳連線是否仍在清單中
+     */
+    private boolean remove(WebSocketSession session) {
+        Connection connection = sessions.remove(session);
+        if (connection == null) {
+            return false;
+        }
+        connection.lease.release();
+        return true;
+    }
+
     /**
-     * 廣播訊息給所有連線的客戶端
+     * 廣播訊息給訂閱指定主題的客戶端；JSON 與二進位格式各只編碼一次
      */
-    public void broadcast(String type, String data) {
-        String message = "{\"type\":\"" + type + "\",\"data\":" + data + ",\"timestamp\":" + System.currentTimeMillis() + "}";
-        TextMessage textMessage = new TextMessage(message);
-        
-        List<WebSocketSession> deadSessions = new java.util.ArrayList<>();
-        
-        for (WebSocketSession session : sessions) {
-            if (session.isOpen()) {
-                try {
-                    session.sendMessage(textMessage);
-                } catch (IOException e) {
-                    deadSessions.add(session);
+    public void broadcast(WsMessage message, int topic) {
+        String text = null;
+        byte[] binary = null;
+        for (Map.Entry<WebSocketSession, Connection> entry : sessions.entrySet()) {
+            WebSocketSession session = entry.getKey();
+            Connection connection = entry.getValue();
+            if ((connection.topics & topic) == 0) {
+                continue;
+            }
+            WebSocketMessage<?> encoded;
+            if (connection.binary) {
+                if (binary == null) {
+                    binary = codec.encodeBinary(message);
                 }
+                // ByteBuffer 帶有讀取位置，每個 session 需要各自的包裝
+                encoded = new BinaryMessage(binary);
             } else {
-                deadSessions.add(session);
+                if (text == null) {
+                    text = codec.encodeText(message);
+                }
+                encoded = new TextMessage(text);
             }
+            connection.writer.execute(() -> send(session, encoded));
         }
-        
-        sessions.removeAll(deadSessions);
     }
-    
+
+    /**
+     * 食物資料變更合併後推送（前端收到 data-updated 時檢查快取版本）
+     */
+    @EventListener
+    public void onFoodChanges(FoodChangeBatch batch) {
+        broadcast(WsMessage.dataUpdated(batch), WsMessage.TOPIC_CHANGES);
+    }
+
+    private void sendPing(WebSocketSession session) {
+        if (send(session, new PingMessage())) {
+            pingsSent.incrementAndGet();
+        }
+    }
+
+    private boolean send(WebSocketSession session, WebSocketMessage<?> message) {
+        if (!session.isOpen()) {
+            remove(session);
+            return false;
+        }
+        try {
+            session.sendMessage(message);
+            if (!(message instanceof PingMessage)) {
+                messagesSent.incrementAndGet();
+                bytesSent.addAndGet(message.getPayloadLength());
+            }
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            remove(session);
+            return false;
+        }
+    }
+
     /**
      * 獲取當前連線數
      */
     public int getConnectionCount() {
         return sessions.size();
     }
+
+    /**
+     * 統計資訊（連線數、二進位協定連線數、ping / pong 次數、閒置關閉數、送出的訊息數與位元組數）
+     */
+    public Map<String, Object> getStats() {
+        int binaryConnections = 0;
+        for (Connection connection : sessions.values()) {
+            if (connection.binary) {
+                binaryConnections++;
+            }
+        }
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("connections", sessions.size());
+        stats.put("binaryConnections", binaryConnections);
+        stats.put("pingIntervalMs", pingIntervalMs);
+        stats.put("idleTimeoutMs", idleTimeoutMs);
+        stats.put("pingsSent", pingsSent.get());
+        stats.put("pongsReceived", pongsReceived.get());
+        stats.put("evicted", evicted.get());
+        stats.put("messagesSent", messagesSent.get());
+        stats.put("bytesSent", bytesSent.get());
+        return stats;
+    }
 }
@@ -0,0 +1,126 @@
+package com.example.foodhistory.websocket;
+
+import com.example.foodhistory.service.FoodChangeBatch;
+
+/**
+ * /ws/connection 上的訊息
+ * 由 {@link WsMessageCodec} 編碼為 JSON 文字或精簡的二進位格式，依連線協商的子協定而定。
+ */
+public final class WsMessage {
+
+    public enum Type {
+        CONNECTED(1, "connected"),
+        PING(2, "ping"),
+        PONG(3, "pong"),
+        SUBSCRIBE(4, "subscribe"),
+        DATA_UPDATED(5, "data-updated"),
+        PRESENCE(6, "presence");
+
+        private final int code;
+        private final String name;
+
+        Type(int code, String name) {
+            this.code = code;
+            this.name = name;
+        }
+
+        public int getCode() {
+            return code;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        static Type fromCode(int code) {
+            for (Type type : values()) {
+                if (type.code == code) {
+                    return type;
+                }
+            }
+            return null;
+        }
+
+        static Type fromName(String name) {
+            for (Type type : values()) {
+                if (type.name.equals(name)) {
+                    return type;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 訂閱主題（位元旗標）：changes 為資料變更通知（預設訂閱），presence 為線上連線數
+     */
+    public static final int TOPIC_CHANGES = 1;
+    public static final int TOPIC_PRESENCE = 2;
+
+    private final Type type;
+    private final long timestamp;
+    private final FoodChangeBatch batch;
+    private final int topics;
+    private final int connections;
+
+    private WsMessage(Type type, long timestamp, FoodChangeBatch batch, int topics, int connections) {
+        this.type = type;
+        this.timestamp = timestamp;
+        this.batch = batch;
+        this.topics = topics;
+        this.connections = connections;
+    }
+
+    public static WsMessage connected() {
+        return new WsMessage(Type.CONNECTED, System.currentTimeMillis(), null, 0, 0);
+    }
+
+    public static WsMessage ping() {
+        return new WsMessage(Type.PING, System.currentTimeMillis(), null, 0, 0);
+    }
+
+    public static WsMessage pong() {
+        return new WsMessage(Type.PONG, System.currentTimeMillis(), null, 0, 0);
+    }
+
+    public static WsMessage subscribe(int topics) {
+        return new WsMessage(Type.SUBSCRIBE, System.currentTimeMillis(), null, topics, 0);
+    }
+
+    public static WsMessage dataUpdated(FoodChangeBatch batch) {
+        return new WsMessage(Type.DATA_UPDATED, System.currentTimeMillis(), batch, 0, 0);
+    }
+
+    public static WsMessage presence(int connections) {
+        return new WsMessage(Type.PRESENCE, System.currentTimeMillis(), null, 0, connections);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * DATA_UPDATED 的變更內容
+     */
+    public FoodChangeBatch getBatch() {
+        return batch;
+    }
+
+    /**
+     * SUBSCRIBE 的主題旗標
+     */
+    public int getTopics() {
+        return topics;
+    }
+
+    /**
+     * PRESENCE 的連線數
+     */
+    public int getConnections() {
+        return connections;
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.foodhistory.websocket;
+
+import com.example.foodhistory.service.FoodChangeBatch;
+import com.example.foodhistory.service.FoodChangeEvent;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+/**
+ * {@link WsMessage} 的編碼
+ * 子協定 fh.json.v1（或未指定）使用 JSON 文字，與既有前端的訊息格式相同；
+ * fh.bin.v1 使用二進位格式，第一個位元組為訊息型別，數值一律 big-endian：
+ * <pre>
+ * CONNECTED     [1][timestamp:8]
+ * PING / PONG   [2] / [3]
+ * SUBSCRIBE     [4][topics:1]
+ * DATA_UPDATED  [5][revision:8][flags:1，bit0=reload][count:4]([id:8][op:1])*
+ * PRESENCE      [6][connections:4]
+ * </pre>
+ * op 為 1=save、2=delete、3=favorite、4=image。
+ */
+public class WsMessageCodec {
+
+    public static final String BINARY_PROTOCOL = "fh.bin.v1";
+    public static final String JSON_PROTOCOL = "fh.json.v1";
+
+    private static final FoodChangeEvent.Op[] OPS = {
+            FoodChangeEvent.Op.SAVE, FoodChangeEvent.Op.DELETE, FoodChangeEvent.Op.FAVORITE, FoodChangeEvent.Op.IMAGE};
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    public String encodeText(WsMessage message) {
+        StringBuilder json = new StringBuilder(64).append("{\"type\":\"").append(message.getType().getName()).append('"');
+        switch (message.getType()) {
+            case DATA_UPDATED:
+                json.append(",\"data\":").append(message.getBatch().toJson());
+                break;
+            case PRESENCE:
+                json.append(",\"data\":{\"connections\":").append(message.getConnections()).append('}');
+                break;
+            case SUBSCRIBE:
+                json.append(",\"topics\":[");
+                boolean first = true;
+                for (String topic : topicNames(message.getTopics())) {
+                    json.append(first ? "\"" : ",\"").append(topic).append('"');
+                    first = false;
+                }
+                json.append(']');
+                break;
+            default:
+                break;
+        }
+        return json.append(",\"timestamp\":").append(message.getTimestamp()).append('}').toString();
+    }
+
+    public byte[] encodeBinary(WsMessage message) {
+        byte type = (byte) message.getType().getCode();
+        switch (message.getType()) {
+            case CONNECTED:
+                return ByteBuffer.allocate(9).put(type).putLong(message.getTimestamp()).array();
+            case SUBSCRIBE:
+                return new byte[]{type, (byte) message.getTopics()};
+            case PRESENCE:
+                return ByteBuffer.allocate(5).put(type).putInt(message.getConnections()).array();
+            case DATA_UPDATED: {
+                FoodChangeBatch batch = message.getBatch();
+                int count = batch.isReload() ? 0 : batch.getChanges().size();
+                ByteBuffer buffer = ByteBuffer.allocate(14 + count * 9)
+                        .put(type)
+                        .putLong(batch.getRevision())
+                        .put((byte) (batch.isReload() ? 1 : 0))
+                        .putInt(count);
+                if (!batch.isReload()) {
+                    for (Map.Entry<Long, FoodChangeEvent.Op> change : batch.getChanges().entrySet()) {
+                        buffer.putLong(change.getKey()).put(opCode(change.getValue()));
+                    }
+                }
+                return buffer.array();
+            }
+            default:
+                return new byte[]{type};
+        }
+    }
+
+    public WebSocketMessage<?> encode(WsMessage message, boolean binary) {
+        return binary ? new BinaryMessage(encodeBinary(message)) : new TextMessage(encodeText(message));
+    }
+
+    /**
+     * 解析客戶端送來的訊息（只需要 PING 與 SUBSCRIBE），無法辨識時回傳 null
+     */
+    public WsMessage decode(WebSocketMessage<?> message) {
+        if (message instanceof TextMessage) {
+            return decodeText(((TextMessage) message).getPayload());
+        }
+        if (message instanceof BinaryMessage) {
+            ByteBuffer payload = ((BinaryMessage) message).getPayload();
+            if (!payload.hasRemaining()) {
+                return null;
+            }
+            WsMessage.Type type = WsMessage.Type.fromCode(payload.get(payload.position()) & 0xff);
+            if (type == WsMessage.Type.PING) {
+                return WsMessage.ping();
+            }
+            if (type == WsMessage.Type.SUBSCRIBE && payload.remaining() >= 2) {
+                return WsMessage.subscribe(payload.get(payload.position() + 1) & 0xff);
+            }
+        }
+        return null;
+    }
+
+    private static WsMessage decodeText(String payload) {
+        JsonNode node;
+        try {
+            node = MAPPER.readTree(payload);
+        } catch (IOException e) {
+            return null;
+        }
+        if (node == null || !node.isObject()) {
+            return null;
+        }
+        WsMessage.Type type = WsMessage.Type.fromName(node.path("type").asText());
+        if (type == WsMessage.Type.PING) {
+            return WsMessage.ping();
+        }
+        if (type == WsMessage.Type.SUBSCRIBE) {
+            int topics = 0;
+            for (JsonNode topic : node.path("topics")) {
+                if ("changes".equals(topic.asText())) {
+                    topics |= WsMessage.TOPIC_CHANGES;
+                } else if ("presence".equals(topic.asText())) {
+                    topics |= WsMessage.TOPIC_PRESENCE;
+                }
+            }
+            return WsMessage.subscribe(topics);
+        }
+        return null;
+    }
+
+    private static String[] topicNames(int topics) {
+        if (topics == (WsMessage.TOPIC_CHANGES | WsMessage.TOPIC_PRESENCE)) {
+            return new String[]{"changes", "presence"};
+        }
+        if (topics == WsMessage.TOPIC_CHANGES) {
+            return new String[]{"changes"};
+        }
+        if (topics == WsMessage.TOPIC_PRESENCE) {
+            return new String[]{"presence"};
+        }
+        return new String[0];
+    }
+
+    private static byte opCode(FoodChangeEvent.Op op) {
+        for (int i = 0; i < OPS.length; i++) {
+            if (OPS[i] == op) {
+                return (byte) (i + 1);
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,61 @@
+-- 基準結構（與 JPA 實體一致，啟動時以 ddl-auto=validate 驗證）
+-- 既有、由 Hibernate ddl-auto=update 建立的資料庫以 baseline-on-migrate 標記為版本 1，不執行本檔；
+-- 其中 image_processing 欄位、search_history 與 image_jobs 表由 V4 補上
+
+CREATE TABLE IF NOT EXISTS users (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    username VARCHAR(50) NOT NULL UNIQUE,
+    email VARCHAR(255) UNIQUE,
+    encrypted_password VARCHAR(255) NOT NULL,
+    role VARCHAR(255) NOT NULL,
+    enabled BOOLEAN NOT NULL,
+    is_authorized BOOLEAN DEFAULT FALSE NOT NULL,
+    refresh_token VARCHAR(1000)
+);
+
+CREATE TABLE IF NOT EXISTS foods (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    name VARCHAR(30) NOT NULL,
+    coefficient DOUBLE,
+    carb_grams DOUBLE,
+    quantity DOUBLE,
+    unit VARCHAR(10),
+    notes VARCHAR(100),
+    image_path VARCHAR(255),
+    image_content_type VARCHAR(255),
+    image_processing BOOLEAN DEFAULT FALSE NOT NULL,
+    is_favorite BOOLEAN DEFAULT FALSE NOT NULL
+);
+
+-- Remember Me token 表
+CREATE TABLE IF NOT EXISTS persistent_logins (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    series VARCHAR(64) NOT NULL UNIQUE,
+    username VARCHAR(64) NOT NULL,
+    token VARCHAR(64) NOT NULL,
+    last_used TIMESTAMP NOT NULL,
+    ip VARCHAR(45)
+);
+
+-- 使用者搜尋歷史表
+CREATE TABLE IF NOT EXISTS search_history (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    username VARCHAR(255) NOT NULL,
+    keyword VARCHAR(100) NOT NULL,
+    searched_at TIMESTAMP NOT NULL,
+    UNIQUE (username, keyword)
+);
+CREATE INDEX IF NOT EXISTS idx_search_history_user_time ON search_history (username, searched_at);
+
+-- 圖片背景處理工作表
+CREATE TABLE IF NOT EXISTS image_jobs (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    food_id BIGINT NOT NULL,
+    filename VARCHAR(255) NOT NULL,
+    status VARCHAR(10) NOT NULL,
+    attempts INT NOT NULL DEFAULT 0,
+    last_error VARCHAR(255),
+    created_at TIMESTAMP NOT NULL,
+    updated_at TIMESTAMP NOT NULL
+);
+CREATE INDEX IF NOT EXISTS idx_image_jobs_status ON image_jobs (status, id);
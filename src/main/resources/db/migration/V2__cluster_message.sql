@@ -0,0 +1,12 @@
+-- 跨節點訊息匯流排（app.cluster.bus=jdbc）的訊息表，由 JdbcClusterBus 寫入與輪詢
+-- 先前版本由應用程式啟動時建立，因此使用 IF NOT EXISTS
+
+CREATE TABLE IF NOT EXISTS cluster_message (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    message_id VARCHAR(36) NOT NULL,
+    origin VARCHAR(64) NOT NULL,
+    topic VARCHAR(64) NOT NULL,
+    payload VARCHAR(4000) NOT NULL,
+    created_at BIGINT NOT NULL
+);
+CREATE INDEX IF NOT EXISTS idx_cluster_message_created_at ON cluster_message (created_at);
@@ -0,0 +1,19 @@
+-- 以資料庫保存 Session（app.session.store=jdbc），由 JdbcSessionStore 讀寫
+-- 先前版本由應用程式啟動時建立，因此使用 IF NOT EXISTS
+-- BYTEA 在 PostgreSQL 為原生型別，在 H2 為 VARBINARY 的別名，兩者都以 byte[] 存取
+
+CREATE TABLE IF NOT EXISTS app_session (
+    session_id VARCHAR(36) NOT NULL PRIMARY KEY,
+    creation_time BIGINT NOT NULL,
+    last_access_time BIGINT NOT NULL,
+    max_inactive INT NOT NULL,
+    expiry_time BIGINT NOT NULL
+);
+CREATE INDEX IF NOT EXISTS idx_app_session_expiry_time ON app_session (expiry_time);
+
+CREATE TABLE IF NOT EXISTS app_session_attribute (
+    session_id VARCHAR(36) NOT NULL,
+    attribute_name VARCHAR(200) NOT NULL,
+    attribute_bytes BYTEA NOT NULL,
+    PRIMARY KEY (session_id, attribute_name)
+);
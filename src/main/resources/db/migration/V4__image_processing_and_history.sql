@@ -0,0 +1,27 @@
+-- 既有資料庫以 baseline-on-migrate 標記為版本 1、不執行 V1，這裡補上之後加入的欄位與表
+-- 由 V1 建立的新資料庫已有這些結構，因此全部使用 IF NOT EXISTS
+
+ALTER TABLE foods ADD COLUMN IF NOT EXISTS image_processing BOOLEAN DEFAULT FALSE NOT NULL;
+
+-- 使用者搜尋歷史表
+CREATE TABLE IF NOT EXISTS search_history (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    username VARCHAR(255) NOT NULL,
+    keyword VARCHAR(100) NOT NULL,
+    searched_at TIMESTAMP NOT NULL,
+    UNIQUE (username, keyword)
+);
+CREATE INDEX IF NOT EXISTS idx_search_history_user_time ON search_history (username, searched_at);
+
+-- 圖片背景處理工作表
+CREATE TABLE IF NOT EXISTS image_jobs (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    food_id BIGINT NOT NULL,
+    filename VARCHAR(255) NOT NULL,
+    status VARCHAR(10) NOT NULL,
+    attempts INT NOT NULL DEFAULT 0,
+    last_error VARCHAR(255),
+    created_at TIMESTAMP NOT NULL,
+    updated_at TIMESTAMP NOT NULL
+);
+CREATE INDEX IF NOT EXISTS idx_image_jobs_status ON image_jobs (status, id);
@@ -0,0 +1,3 @@
+-- 圖片處理工作改以條件式更新認領，記錄認領的節點；執行中的工作定期更新 updated_at 作為心跳
+
+ALTER TABLE image_jobs ADD COLUMN IF NOT EXISTS owner_node VARCHAR(64);
@@ -22,6 +22,7 @@ CREATE TABLE IF NOT EXISTS foods (
     notes VARCHAR(100),
     image BLOB,
     image_content_type VARCHAR(100),
+    image_processing BOOLEAN DEFAULT FALSE,
     is_favorite BOOLEAN DEFAULT FALSE
 );
 
@@ -31,4 +32,27 @@ CREATE TABLE IF NOT EXISTS persistent_logins (
     series VARCHAR(64) PRIMARY KEY,
     token VARCHAR(64) NOT NULL,
     last_used TIMESTAMP NOT NULL
-);
\ No newline at end of file
+);
+
+-- 使用者搜尋歷史表
+CREATE TABLE IF NOT EXISTS search_history (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    username VARCHAR(255) NOT NULL,
+    keyword VARCHAR(100) NOT NULL,
+    searched_at TIMESTAMP NOT NULL,
+    UNIQUE (username, keyword)
+);
+CREATE INDEX IF NOT EXISTS idx_search_history_user_time ON search_history (username, searched_at);
+
+-- 圖片背景處理工作表
+CREATE TABLE IF NOT EXISTS image_jobs (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    food_id BIGINT NOT NULL,
+    filename VARCHAR(255) NOT NULL,
+    status VARCHAR(10) NOT NULL,
+    attempts INT NOT NULL DEFAULT 0,
+    last_error VARCHAR(255),
+    created_at TIMESTAMP NOT NULL,
+    updated_at TIMESTAMP NOT NULL
+);
+CREATE INDEX IF NOT EXISTS idx_image_jobs_status ON image_jobs (status, id);
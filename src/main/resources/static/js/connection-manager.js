@@ -5,6 +5,11 @@
 class ConnectionManager {
     // sessionStorage key 用於跨頁面保存連線狀態
     static STORAGE_KEY = 'connectionState';
+    // WebSocket 子協定：伺服器支援時使用精簡的二進位訊息，否則為 JSON 文字
+    static SUB_PROTOCOLS = ['fh.bin.v1', 'fh.json.v1'];
+    // 伺服器以協定層 ping 偵測連線（瀏覽器自動回應），只有超過 IDLE_PROBE_MS 沒收到任何訊息時才主動探測
+    static IDLE_PROBE_MS = 45000;
+    static OPS = [null, 'save', 'delete', 'favorite', 'image'];
     
     constructor(options = {}) {
         // 從 sessionStorage 讀取先前的狀態
@@ -22,8 +27,10 @@ class ConnectionManager {
         this.connectionConfirmed = savedState.connectionConfirmed;
         this.pingInterval = null;
         this.pongTimeout = null;
+        this.lastMessageAt = 0;
         this.intentionalClose = false;
         this.errorOccurred = false; // 標記是否發生連線錯誤
+        this.replaced = false; // 連線被同一使用者的其他分頁取代，等回到此頁面才重連
         
         // 回調函數（可由各頁面自訂）
         this.onUpdateUI = options.onUpdateUI || null;
@@ -134,10 +141,20 @@ class ConnectionManager {
             this.saveStateToStorage();
         });
         
+        // 連線被其他分頁取代後，使用者回到這個分頁時才重新連線
+        window.addEventListener('focus', () => {
+            if (this.replaced && navigator.onLine) {
+                console.log('[Connection] 頁面取得焦點，重新建立被取代的連線');
+                this.replaced = false;
+                this.connectWebSocket();
+            }
+        });
+        
         // 頁面可見性變化時重新連線
         document.addEventListener('visibilitychange', () => {
             if (document.visibilityState === 'visible') {
                 console.log('[Connection] 頁面回到前景');
+                this.replaced = false;
                 // 頁面回到前景時，先快速檢查伺服器狀態
                 // 這樣可以避免因為背景閒置導致 WebSocket 斷線而誤判為離線
                 if (navigator.onLine) {
@@ -222,7 +239,8 @@ class ConnectionManager {
         }
         
         try {
-            this.websocket = new WebSocket(this.wsEndpoint);
+            this.websocket = new WebSocket(this.wsEndpoint, ConnectionManager.SUB_PROTOCOLS);
+            this.websocket.binaryType = 'arraybuffer';
         } catch (error) {
             console.log('[Connection] 無法建立 WebSocket 連線:', error);
             this.setServerOnline(false);
@@ -236,38 +254,39 @@ class ConnectionManager {
             this.setServerOnline(true);
             // 連線成功時儲存狀態
             this.saveStateToStorage();
+            this.lastMessageAt = Date.now();
             this.startPing();
         };
         
         this.websocket.onmessage = (event) => {
             const data = event.data;
-            console.log('[Connection] 收到訊息:', data);
+            // 收到任何訊息都代表連線仍然有效
+            this.lastMessageAt = Date.now();
+            if (this.pongTimeout) {
+                clearTimeout(this.pongTimeout);
+                this.pongTimeout = null;
+            }
             
+            let message;
             try {
-                const message = JSON.parse(data);
-                
-                if (message.type === 'pong') {
-                    if (this.pongTimeout) {
-                        clearTimeout(this.pongTimeout);
-                        this.pongTimeout = null;
-                    }
-                } else if (message.type === 'heartbeat') {
-                    console.log('[Connection] 收到伺服器心跳');
-                } else if (message.type === 'connected') {
-                    console.log('[Connection] 收到連線確認');
-                }
-                
-                // 呼叫自訂訊息處理器
-                if (this.onMessage) {
-                    this.onMessage(message);
-                }
+                message = data instanceof ArrayBuffer ? ConnectionManager.decodeBinary(data) : JSON.parse(data);
             } catch (e) {
-                if (data === 'pong') {
-                    if (this.pongTimeout) {
-                        clearTimeout(this.pongTimeout);
-                        this.pongTimeout = null;
-                    }
-                }
+                return;
+            }
+            if (!message) {
+                return;
+            }
+            console.log('[Connection] 收到訊息:', message.type);
+            
+            if (message.type === 'heartbeat') {
+                console.log('[Connection] 收到伺服器心跳');
+            } else if (message.type === 'connected') {
+                console.log('[Connection] 收到連線確認');
+            }
+            
+            // 呼叫自訂訊息處理器
+            if (this.onMessage) {
+                this.onMessage(message);
             }
         };
         
@@ -291,6 +310,22 @@ class ConnectionManager {
             this.intentionalClose = false;
             this.errorOccurred = false; // 重設錯誤標記
             
+            // 1012：連線到期或被同一使用者的新連線取代；1013：伺服器連線數已滿
+            // 伺服器仍在線，reason 為「原因:重連毫秒數」，依提示的時間重新連線，不顯示離線
+            if (event.code === 1012 && String(event.reason).startsWith('replaced')) {
+                // 同一使用者開啟的分頁超過上限，這個分頁的連線被新分頁取代：不自動重連，
+                // 否則各分頁會輪流踢掉彼此；等頁面回到前景或取得焦點時再連線
+                console.log('[Connection] 連線已由其他分頁取代，回到此頁面時再重新連線');
+                this.replaced = true;
+                return;
+            }
+            if (event.code === 1012 || event.code === 1013) {
+                const retryDelay = parseInt(String(event.reason).split(':')[1], 10);
+                console.log('[Connection] 伺服器要求稍後重新連線:', event.reason);
+                this.scheduleReconnect(Number.isFinite(retryDelay) ? retryDelay : undefined);
+                return;
+            }
+            
             if (isNormalClose) {
                 console.log('[Connection] 正常關閉連線，不視為離線');
                 // 正常關閉時不改變 connectionConfirmed，保持當前狀態
@@ -318,31 +353,74 @@ class ConnectionManager {
     }
     
     startPing() {
+        if (this.pingInterval) {
+            clearInterval(this.pingInterval);
+        }
         this.pingInterval = setInterval(() => {
-            if (this.websocket && this.websocket.readyState === WebSocket.OPEN) {
-                // 如果頁面在背景中，跳過 ping（避免因背景閒置導致誤判離線）
-                if (document.visibilityState === 'hidden') {
-                    console.log('[Connection] 頁面在背景中，跳過 ping');
-                    return;
-                }
-                
-                console.log('[Connection] 發送 ping');
+            if (!this.websocket || this.websocket.readyState !== WebSocket.OPEN || this.pongTimeout) {
+                return;
+            }
+            // 如果頁面在背景中，跳過探測（避免因背景閒置導致誤判離線）
+            if (document.visibilityState === 'hidden') {
+                return;
+            }
+            if (Date.now() - this.lastMessageAt < ConnectionManager.IDLE_PROBE_MS) {
+                return;
+            }
+            
+            console.log('[Connection] 一段時間沒有收到訊息，發送 ping');
+            if (this.websocket.protocol === 'fh.bin.v1') {
+                this.websocket.send(new Uint8Array([2]));
+            } else {
                 this.websocket.send(JSON.stringify({ type: 'ping' }));
-                
-                this.pongTimeout = setTimeout(() => {
-                    console.log('[Connection] ping 超時未收到 pong');
-                    this.closeWebSocket();
-                    // 只有頁面在前景時才更新離線狀態
-                    if (document.visibilityState === 'visible') {
-                        this.setServerOnline(false);
-                    }
-                    this.scheduleReconnect();
-                }, 5000);
             }
+            
+            this.pongTimeout = setTimeout(() => {
+                this.pongTimeout = null;
+                console.log('[Connection] ping 超時未收到 pong');
+                this.closeWebSocket();
+                // 只有頁面在前景時才更新離線狀態
+                if (document.visibilityState === 'visible') {
+                    this.setServerOnline(false);
+                }
+                this.scheduleReconnect();
+            }, 5000);
         }, 15000);
     }
     
-    scheduleReconnect() {
+    /**
+     * 解析 fh.bin.v1 二進位訊息，轉成與 JSON 訊息相同的物件格式
+     * 格式見伺服器端 WsMessageCodec；數值為 big-endian，64 位元整數以高低兩段 32 位元讀取
+     */
+    static decodeBinary(buffer) {
+        const view = new DataView(buffer);
+        const readLong = (offset) => view.getUint32(offset) * 4294967296 + view.getUint32(offset + 4);
+        switch (view.getUint8(0)) {
+            case 1:
+                return { type: 'connected', timestamp: readLong(1) };
+            case 3:
+                return { type: 'pong', timestamp: Date.now() };
+            case 5: {
+                const data = { revision: readLong(1) };
+                if (view.getUint8(9) & 1) {
+                    data.reload = true;
+                } else {
+                    const count = view.getUint32(10);
+                    data.changes = [];
+                    for (let i = 0, offset = 14; i < count; i++, offset += 9) {
+                        data.changes.push({ id: readLong(offset), op: ConnectionManager.OPS[view.getUint8(offset + 8)] });
+                    }
+                }
+                return { type: 'data-updated', data: data, timestamp: Date.now() };
+            }
+            case 6:
+                return { type: 'presence', data: { connections: view.getUint32(1) }, timestamp: Date.now() };
+            default:
+                return null;
+        }
+    }
+    
+    scheduleReconnect(retryDelay = 3000) {
         if (this.reconnectTimeout) return;
         
         if (!navigator.onLine) {
@@ -350,7 +428,6 @@ class ConnectionManager {
             return;
         }
         
-        const retryDelay = 3000;
         console.log(`[Connection] 將在 ${retryDelay / 1000} 秒後嘗試重新連線...`);
         
         this.reconnectTimeout = setTimeout(() => {
@@ -178,6 +178,8 @@ class OfflineSearchManager {
             detail: {
                 results: data.results,
                 keyword: data.keyword,
+                total: data.total,
+                source: data.source,
                 totalCached: data.totalCached,
                 error: data.error
             }
@@ -232,6 +234,7 @@ class OfflineSearchManager {
     
     /**
      * 執行離線搜尋
+     * Service Worker 先嘗試伺服器搜尋 API，連不上時才在快取資料中過濾
      */
     searchOffline(keyword) {
         console.log('[OfflineSearch] 離線搜尋:', keyword);
@@ -323,9 +326,8 @@ class OfflineSearchManager {
         if (searchForm && !searchForm.dataset.offlineEnabled) {
             searchForm.dataset.offlineEnabled = 'true';
             searchForm.addEventListener('submit', (e) => {
-                // 只有在瀏覽器確定離線且伺服器也離線時才攔截
-                const browserOffline = !navigator.onLine;
-                if (browserOffline && !this.isOnline) {
+                // 伺服器連線中斷時才攔截（搜尋 API 仍可能可用，否則使用快取資料）
+                if (!this.isOnline) {
                     e.preventDefault();
                     const keyword = searchForm.querySelector('input[name="keyword"]').value;
                     this.searchOffline(keyword);
@@ -437,6 +439,8 @@ class OfflineSearchRenderer {
         if (!this.offlineContainer) return;
         
         const { results, keyword, error } = data;
+        const fromServer = data.source === 'server';
+        const total = fromServer && data.total !== undefined ? data.total : results.length;
         
         // 儲存原始統計數據
         const statsContainer = document.querySelector('.stats-container');
@@ -445,7 +449,7 @@ class OfflineSearchRenderer {
             if (totalEl && this.originalTotal === undefined) {
                 this.originalTotal = totalEl.textContent;
             }
-            if (totalEl) totalEl.textContent = results.length;
+            if (totalEl) totalEl.textContent = total;
         }
         
         // 隱藏原始內容與分頁
@@ -499,8 +503,8 @@ class OfflineSearchRenderer {
         headerDiv.style.cssText = 'display: flex; justify-content: space-between; align-items: center; margin-bottom: 1rem;';
         headerDiv.innerHTML = `
             <div class="alert alert-info mb-0" style="flex: 1; margin-right: 1rem; margin-bottom: 0;">
-                <i class="bi bi-wifi-off"></i>
-                離線模式 - 顯示 ${results.length} 筆快取資料
+                <i class="bi bi-${fromServer ? 'search' : 'wifi-off'}"></i>
+                ${fromServer ? `搜尋結果 - 顯示 ${results.length} / ${total} 筆` : `離線模式 - 顯示 ${results.length} 筆快取資料`}
                 ${keyword ? ` (搜尋: "${keyword}")` : ''}
             </div>
             <button type="button" class="btn btn-secondary" onclick="offlineSearchRenderer.clearOfflineSearch()">
@@ -651,12 +655,11 @@ document.addEventListener('DOMContentLoaded', function() {
     const searchForm = document.querySelector('.search-container form');
     if (searchForm) {
         searchForm.addEventListener('submit', function(e) {
-            // 只有在瀏覽器確定離線且 WebSocket 也離線時才攔截
-            // 如果瀏覽器認為在線，讓表單正常提交到伺服器
-            const browserOffline = !navigator.onLine;
+            // 伺服器連線中斷時攔截：Service Worker 先呼叫搜尋 API，連不上才在快取資料中過濾
+            // 連線正常時讓表單正常提交到伺服器
             const serverOffline = offlineSearchManager && !offlineSearchManager.isOnline;
             
-            if (browserOffline && serverOffline) {
+            if (serverOffline) {
                 e.preventDefault();
                 const keyword = this.querySelector('input[name="keyword"]').value;
                 offlineSearchManager.searchOffline(keyword);
@@ -6,14 +6,18 @@
 // 從 CDN 載入 Workbox
 importScripts('https://storage.googleapis.com/workbox-cdn/releases/7.0.0/workbox-sw.js');
 
+// 伺服器產生的預快取清單（含內容雜湊的靜態資源網址，設定 self.__PRECACHE_MANIFEST）
+// 資源內容改變時清單跟著改變，瀏覽器會因此更新 Service Worker
+importScripts('/sw-precache.js');
+
 // 設定 Workbox
 workbox.setConfig({ debug: false });
 
 // 快取名稱配置
 const CACHE_PREFIX = 'food-history';
 
-// 程式碼版本 - 更新 JS/CSS 等靜態資源時修改此版本
-const CODE_VERSION = 'c14';
+// 程式碼版本 - 只有快取策略改變時才需要修改；JS/CSS/字型網址已含內容雜湊，更新內容不必修改
+const CODE_VERSION = 'c15';
 
 // 資料版本 - 只有資料結構改變時才需要修改，一般不需要改
 const DATA_VERSION = 'd1';
@@ -34,16 +38,9 @@ const HTML_CACHE = `${CACHE_PREFIX}-html-${HTML_VERSION}`;
 const OFFLINE_DATA_CACHE = `${CACHE_PREFIX}-offline-data-${DATA_VERSION}`;
 const IMAGE_CACHE = `${CACHE_PREFIX}-images-${DATA_VERSION}`;
 
-// 預快取靜態資源
+// 預快取靜態資源：網址已含內容雜湊，不需要 revision
 workbox.precaching.precacheAndRoute([
-    { url: '/css/main.css', revision: '3' },
-    { url: '/css/recommendations.css', revision: '3' },
-    { url: '/css/bootstrap-icons.css', revision: '3' },
-    { url: '/fonts/bootstrap-icons.woff2', revision: '3' },
-    { url: '/fonts/bootstrap-icons.woff', revision: '3' },
-    { url: '/js/food.js', revision: '3' },
-    { url: '/js/offline-search.js', revision: '3' },
-    { url: '/js/connection-manager.js', revision: '4' },
+    ...(self.__PRECACHE_MANIFEST || []),
     { url: '/manifest.json', revision: '3' }
 ]);
 
@@ -83,6 +80,8 @@ workbox.routing.registerRoute(
     ({ url }) => url.pathname.startsWith('/foods/images/'),
     new workbox.strategies.CacheFirst({
         cacheName: IMAGE_CACHE,
+        // 圖片回應帶有 Vary: Accept（WebP / AVIF 協商），同一瀏覽器的 Accept 固定，比對時忽略 Vary
+        matchOptions: { ignoreVary: true },
         plugins: [
             new workbox.expiration.ExpirationPlugin({
                 maxEntries: 200,
@@ -393,7 +392,10 @@ async function prefetchAllData(event) {
         
         for (const imageUrl of imageUrls) {
             try {
-                const imageResponse = await fetch(imageUrl);
+                // Service Worker 的 fetch 預設 Accept 為 */*，明確要求 WebP 變體以減少預載流量
+                const imageResponse = await fetch(imageUrl, {
+                    headers: { 'Accept': 'image/webp,image/*,*/*;q=0.8' }
+                });
                 if (imageResponse.ok) {
                     await imageCache.put(imageUrl, imageResponse);
                 }
@@ -413,6 +415,7 @@ async function prefetchAllData(event) {
         // 4. 儲存快取版本資訊
         const versionInfo = {
             version: data.cacheVersion,
+            revision: data.revision,
             timestamp: data.timestamp,
             totalFoods: data.foods.length,
             cachedAt: new Date().toISOString()
@@ -463,10 +466,23 @@ async function getCachedData(event) {
     }
 }
 
-// 離線搜尋
+// 搜尋：先使用伺服器的結構化搜尋 API（名稱或備註包含關鍵字），無法連線時才在快取的離線資料中過濾
 async function searchOffline(event) {
+    const keyword = (event.data.keyword || '').trim();
+    
+    const serverResults = await searchServer(keyword);
+    if (serverResults) {
+        notifyClient(event, {
+            type: 'SEARCH_RESULT',
+            results: serverResults.foods || [],
+            total: serverResults.totalElements,
+            keyword,
+            source: 'server'
+        });
+        return;
+    }
+    
     try {
-        const keyword = event.data.keyword || '';
         const cache = await caches.open(OFFLINE_DATA_CACHE);
         const response = await cache.match('/api/foods/offline-cache');
         
@@ -483,22 +499,21 @@ async function searchOffline(event) {
         const data = await response.json();
         const foods = data.foods || [];
         
-        // 執行本地搜尋
-        const results = keyword.trim() === '' 
+        // 離線備援：本地過濾
+        const searchTerm = keyword.toLowerCase();
+        const results = searchTerm === ''
             ? foods 
-            : foods.filter(food => {
-                const searchTerm = keyword.toLowerCase();
-                return (
-                    (food.name && food.name.toLowerCase().includes(searchTerm)) ||
-                    (food.notes && food.notes.toLowerCase().includes(searchTerm))
-                );
-            });
+            : foods.filter(food =>
+                (food.name && food.name.toLowerCase().includes(searchTerm)) ||
+                (food.notes && food.notes.toLowerCase().includes(searchTerm))
+            );
         
         notifyClient(event, {
             type: 'SEARCH_RESULT',
             results,
             keyword,
-            totalCached: foods.length
+            totalCached: foods.length,
+            source: 'cache'
         });
         
     } catch (error) {
@@ -510,6 +525,27 @@ async function searchOffline(event) {
     }
 }
 
+// 呼叫伺服器搜尋 API，逾時或失敗時回傳 null
+async function searchServer(keyword) {
+    const controller = new AbortController();
+    const timeoutId = setTimeout(() => controller.abort(), 3000);
+    try {
+        const response = await fetch(`/api/foods/search?q=${encodeURIComponent(keyword)}&size=100`, {
+            cache: 'no-store',
+            credentials: 'same-origin',
+            signal: controller.signal
+        });
+        if (!response.ok || response.redirected) {
+            return null;
+        }
+        return await response.json();
+    } catch (error) {
+        return null;
+    } finally {
+        clearTimeout(timeoutId);
+    }
+}
+
 // 檢查快取版本
 async function checkCacheVersion(event) {
     try {
@@ -531,8 +567,10 @@ async function checkCacheVersion(event) {
             fetchError = err.message;
         }
         
+        // 版本號或資料版本（revision，每次資料變更遞增）不同時都需要更新
         const needsUpdate = serverVersion && localVersion && 
-            serverVersion.version !== localVersion.version;
+            (serverVersion.version !== localVersion.version ||
+             serverVersion.revision !== localVersion.revision);
         
         notifyClient(event, {
             type: 'CACHE_VERSION_INFO',
@@ -580,6 +618,7 @@ async function syncFoodData() {
             // 更新版本資訊
             const versionInfo = {
                 version: data.cacheVersion,
+                revision: data.revision,
                 timestamp: data.timestamp,
                 totalFoods: data.foods.length,
                 cachedAt: new Date().toISOString()
@@ -0,0 +1,150 @@
+package com.example.foodhistory.cluster;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JdbcClusterBusTest {
+
+    private static final String TOPIC = "food-changes";
+
+    private DataSource dataSource;
+    private final List<JdbcClusterBus> buses = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() {
+        // 兩個節點共用同一個記憶體資料庫
+        DriverManagerDataSource shared = new DriverManagerDataSource(
+                "jdbc:h2:mem:cluster-" + System.nanoTime() + ";DB_CLOSE_DELAY=-1");
+        shared.setDriverClassName("org.h2.Driver");
+        Flyway.configure().dataSource(shared).load().migrate();
+        dataSource = shared;
+    }
+
+    @AfterEach
+    public void tearDown() {
+        for (JdbcClusterBus bus : buses) {
+            bus.close();
+        }
+    }
+
+    @Test
+    public void testMessagesReachEveryNodeInSameOrder() {
+        JdbcClusterBus nodeA = node("a");
+        JdbcClusterBus nodeB = node("b");
+        List<ClusterMessage> receivedA = subscribe(nodeA);
+        List<ClusterMessage> receivedB = subscribe(nodeB);
+
+        nodeA.publish(TOPIC, "1:save");
+        nodeA.publish(TOPIC, "2:delete");
+        nodeA.flushOutbox();
+        nodeB.publish(TOPIC, "3:favorite");
+        nodeB.flushOutbox();
+        nodeA.poll();
+        nodeB.poll();
+
+        assertEquals(3, receivedA.size());
+        assertEquals(3, receivedB.size());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(receivedA.get(i).getSequence(), receivedB.get(i).getSequence());
+            assertEquals(receivedA.get(i).getPayload(), receivedB.get(i).getPayload());
+        }
+        assertEquals("a", receivedB.get(0).getOrigin());
+        assertEquals("b", receivedA.get(2).getOrigin());
+        assertTrue(receivedA.get(0).getSequence() < receivedA.get(1).getSequence());
+        assertEquals(nodeA.lastSequence(), nodeB.lastSequence());
+
+        // 再次讀取不會重送
+        nodeA.poll();
+        nodeB.poll();
+        assertEquals(3, receivedA.size());
+        assertEquals(3, receivedB.size());
+    }
+
+    @Test
+    public void testOutboxIsWrittenInBatches() {
+        JdbcClusterBus nodeA = node("a");
+        JdbcClusterBus nodeB = node("b");
+        List<ClusterMessage> receivedB = subscribe(nodeB);
+
+        for (int i = 0; i < 12; i++) {
+            nodeA.publish(TOPIC, i + ":save");
+        }
+        nodeA.flushOutbox();
+        assertEquals(3L, nodeA.getStats().get("insertBatches"));
+        assertEquals(0, nodeA.getStats().get("pending"));
+
+        // batch-size=5，一次讀取分成多批查詢
+        nodeB.poll();
+        assertEquals(12, receivedB.size());
+        for (int i = 0; i < 12; i++) {
+            assertEquals(i + ":save", receivedB.get(i).getPayload());
+        }
+    }
+
+    @Test
+    public void testLateCommittedMessageIsDeliveredOnce() {
+        JdbcClusterBus nodeA = node("a");
+        JdbcClusterBus nodeB = node("b");
+        List<ClusterMessage> receivedB = subscribe(nodeB);
+
+        for (int i = 0; i < 3; i++) {
+            nodeA.publish(TOPIC, i + ":save");
+        }
+        nodeA.flushOutbox();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        long firstId = jdbcTemplate.queryForObject("SELECT MIN(id) FROM cluster_message", Long.class);
+        // 模擬中間的 id 較晚提交：先移除，讀取後再以原本的 id 寫入
+        jdbcTemplate.update("DELETE FROM cluster_message WHERE id = ?", firstId + 1);
+        nodeB.poll();
+        assertEquals(2, receivedB.size());
+
+        jdbcTemplate.update("INSERT INTO cluster_message (id, message_id, origin, topic, payload, created_at) "
+                + "VALUES (?, 'late', 'c', ?, 'late', ?)", firstId + 1, TOPIC, System.currentTimeMillis());
+        nodeB.poll();
+        nodeB.poll();
+        assertEquals(3, receivedB.size());
+        assertEquals("late", receivedB.get(2).getPayload());
+        assertEquals(firstId + 2, nodeB.lastSequence());
+        assertEquals(1L, nodeB.getStats().get("lateDeliveries"));
+    }
+
+    @Test
+    public void testNewNodeStartsFromLatestSequence() {
+        JdbcClusterBus nodeA = node("a");
+        nodeA.publish(TOPIC, "1:save");
+        nodeA.flushOutbox();
+        nodeA.poll();
+
+        JdbcClusterBus nodeB = node("b");
+        List<ClusterMessage> receivedB = subscribe(nodeB);
+        nodeB.poll();
+
+        assertTrue(receivedB.isEmpty());
+        assertEquals(nodeA.lastSequence(), nodeB.lastSequence());
+    }
+
+    private JdbcClusterBus node(String nodeId) {
+        // 間隔設得很長，由測試直接呼叫 flushOutbox / poll
+        JdbcClusterBus bus = new JdbcClusterBus(dataSource, nodeId, 60000, 60000, 5, 10, 0);
+        bus.start();
+        buses.add(bus);
+        return bus;
+    }
+
+    private static List<ClusterMessage> subscribe(ClusterBus bus) {
+        List<ClusterMessage> received = new ArrayList<>();
+        bus.subscribe(TOPIC, received::add);
+        return received;
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.foodhistory.concurrent;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ConnectionLimiterTest {
+
+    private StreamDispatcher dispatcher;
+    private ScheduledFuture<?> expiry;
+    private ConnectionLimiter limiter;
+    private final List<String> closed = Collections.synchronizedList(new ArrayList<>());
+
+    @BeforeEach
+    public void setUp() {
+        dispatcher = mock(StreamDispatcher.class);
+        expiry = mock(ScheduledFuture.class);
+        when(dispatcher.schedule(any(Runnable.class), anyLong())).thenAnswer(invocation -> expiry);
+        limiter = new ConnectionLimiter();
+        ReflectionTestUtils.setField(limiter, "streamDispatcher", dispatcher);
+        ReflectionTestUtils.setField(limiter, "maxConnections", 3);
+        ReflectionTestUtils.setField(limiter, "maxConnectionsPerUser", 2);
+        ReflectionTestUtils.setField(limiter, "maxLifetimeMs", 10000L);
+    }
+
+    private ConnectionLimiter.Lease acquire(String kind, String client, String name) {
+        return limiter.tryAcquire(kind, client, (reason, retryMs) -> closed.add(name + ":" + reason + ":" + retryMs));
+    }
+
+    @Test
+    public void testOldestConnectionOfUserIsReplaced() {
+        acquire(ConnectionLimiter.SSE, "user:alice", "a1");
+        acquire(ConnectionLimiter.WEBSOCKET, "user:alice", "a2");
+        assertNotNull(acquire(ConnectionLimiter.SSE, "user:alice", "a3"));
+
+        assertEquals(Collections.singletonList("a1:REPLACED:30000"), closed);
+        assertEquals(2, limiter.getStats().get("active"));
+        assertEquals(1, limiter.getStats().get(ConnectionLimiter.SSE));
+        assertEquals(1, limiter.getStats().get(ConnectionLimiter.WEBSOCKET));
+        assertEquals(1L, limiter.getStats().get("shed"));
+    }
+
+    @Test
+    public void testGlobalLimitRejectsNewClients() {
+        acquire(ConnectionLimiter.SSE, "user:alice", "a1");
+        acquire(ConnectionLimiter.SSE, "user:alice", "a2");
+        ConnectionLimiter.Lease bob = acquire(ConnectionLimiter.SSE, "user:bob", "b1");
+
+        assertNull(acquire(ConnectionLimiter.SSE, "user:carol", "c1"));
+        assertEquals(1L, limiter.getStats().get("rejected"));
+
+        // 已滿時同一使用者的新連線仍可取代自己的舊連線
+        assertNotNull(acquire(ConnectionLimiter.SSE, "user:alice", "a3"));
+        assertEquals(Collections.singletonList("a1:REPLACED:30000"), closed);
+
+        bob.release();
+        bob.release();
+        assertNotNull(acquire(ConnectionLimiter.SSE, "user:carol", "c1"));
+        assertEquals(3, limiter.getStats().get("active"));
+    }
+
+    @Test
+    public void testExpiredConnectionIsClosedWithReconnectHint() {
+        ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+        ArgumentCaptor<Long> delay = ArgumentCaptor.forClass(Long.class);
+        ConnectionLimiter.Lease lease = acquire(ConnectionLimiter.WEBSOCKET, "ip:10.0.0.1", "w1");
+        verify(dispatcher).schedule(task.capture(), delay.capture());
+        assertTrue(delay.getValue() >= 9000L && delay.getValue() <= 10000L, String.valueOf(delay.getValue()));
+
+        task.getValue().run();
+        assertEquals(Arrays.asList("w1:EXPIRED:3000"), closed);
+        assertEquals(0, limiter.getStats().get("active"));
+        assertEquals(1L, limiter.getStats().get("expired"));
+
+        // 關閉後的清理再呼叫 release 不會重複扣除
+        lease.release();
+        assertEquals(0, limiter.getStats().get("active"));
+    }
+
+    @Test
+    public void testReleaseCancelsExpiry() {
+        acquire(ConnectionLimiter.SSE, "user:alice", "a1").release();
+        verify(expiry).cancel(false);
+        assertEquals(0, limiter.getStats().get("clients"));
+    }
+
+    @Test
+    public void testClientKeyPrefersUserThenSessionThenAddress() {
+        Principal alice = () -> "alice";
+        assertEquals("user:alice", ConnectionLimiter.clientKey(alice, "s1", "10.0.0.1"));
+        // 未登入時同一個 NAT 後的訪客以各自的 session 區分，日誌中不出現原始 session id
+        String session = ConnectionLimiter.clientKey(null, "s1", "10.0.0.1");
+        assertTrue(session.startsWith("session:") && !session.contains("s1"), session);
+        assertNotEquals(session, ConnectionLimiter.clientKey(null, "s2", "10.0.0.1"));
+        assertEquals("ip:10.0.0.1", ConnectionLimiter.clientKey(null, null, "10.0.0.1"));
+    }
+
+    @Test
+    public void testZeroMeansUnlimited() {
+        ReflectionTestUtils.setField(limiter, "maxConnections", 0);
+        ReflectionTestUtils.setField(limiter, "maxConnectionsPerUser", 0);
+        for (int i = 0; i < 10; i++) {
+            assertNotNull(acquire(ConnectionLimiter.SSE, "ip:127.0.0.1", "s" + i));
+        }
+        assertTrue(closed.isEmpty());
+        assertEquals(10, limiter.getStats().get("active"));
+    }
+}
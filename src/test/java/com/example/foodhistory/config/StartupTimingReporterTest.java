@@ -0,0 +1,66 @@
+package com.example.foodhistory.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.metrics.StartupStep;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class StartupTimingReporterTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSummarizesBufferedStartupSteps() throws Exception {
+        BufferingApplicationStartup startup = new BufferingApplicationStartup(StartupTimingReporter.CAPACITY);
+        startup.start("spring.boot.application.context-prepared").end();
+        StartupStep refresh = startup.start("spring.context.refresh");
+        StartupStep slow = startup.start("spring.beans.instantiate").tag("beanName", "entityManagerFactory");
+        Thread.sleep(20);
+        slow.end();
+        startup.start("spring.beans.instantiate").tag("beanName", "foodService").end();
+        refresh.end();
+
+        StartupTimingReporter reporter = new StartupTimingReporter();
+        reporter.onApplicationReady(readyEvent(startup));
+
+        Map<String, Object> report = reporter.getReport();
+        assertTrue((Long) report.get("totalMs") > 0);
+        assertTrue(((Map<String, Long>) report.get("milestonesMs")).containsKey("context-prepared"));
+        assertTrue(((Map<String, Long>) report.get("phasesMs")).get("spring.context.refresh") >= 20);
+
+        Map<String, Long> slowest = (Map<String, Long>) report.get("slowestBeansMs");
+        assertEquals(2, slowest.size());
+        assertEquals("entityManagerFactory", slowest.keySet().iterator().next());
+        assertTrue(slowest.get("entityManagerFactory") >= 20);
+
+        // 啟動完成後不再記錄延遲建立的 bean
+        startup.start("spring.beans.instantiate").tag("beanName", "lazyBean").end();
+        assertTrue(startup.getBufferedTimeline().getEvents().isEmpty());
+    }
+
+    @Test
+    public void testReportsTotalWithoutBufferedStartup() {
+        StartupTimingReporter reporter = new StartupTimingReporter();
+        reporter.onApplicationReady(readyEvent(null));
+
+        assertTrue(reporter.getReport().containsKey("totalMs"));
+        assertEquals(1, reporter.getReport().size());
+    }
+
+    private static ApplicationReadyEvent readyEvent(BufferingApplicationStartup startup) {
+        ConfigurableApplicationContext context = mock(ConfigurableApplicationContext.class);
+        if (startup != null) {
+            when(context.getApplicationStartup()).thenReturn(startup);
+        }
+        ApplicationReadyEvent event = mock(ApplicationReadyEvent.class);
+        when(event.getApplicationContext()).thenReturn(context);
+        return event;
+    }
+}
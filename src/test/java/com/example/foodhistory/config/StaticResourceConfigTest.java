@@ -0,0 +1,38 @@
+package com.example.foodhistory.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class StaticResourceConfigTest {
+
+    private final StaticResourceConfig.VersionedResourceCacheInterceptor interceptor =
+            new StaticResourceConfig.VersionedResourceCacheInterceptor();
+
+    @Test
+    public void testVersionedUrlIsImmutable() {
+        MockHttpServletResponse response = handle("/css/main-0123456789abcdef0123456789abcdef.css");
+        assertEquals(StaticResourceConfig.IMMUTABLE_CACHE_CONTROL, response.getHeader("Cache-Control"));
+
+        response = handle("/fonts/bootstrap-icons-fedcba9876543210fedcba9876543210.woff2");
+        assertEquals(StaticResourceConfig.IMMUTABLE_CACHE_CONTROL, response.getHeader("Cache-Control"));
+    }
+
+    @Test
+    public void testPlainUrlKeepsRevalidation() {
+        assertNull(handle("/css/main.css").getHeader("Cache-Control"));
+        assertNull(handle("/js/connection-manager.js").getHeader("Cache-Control"));
+        // 雜湊長度不符
+        assertNull(handle("/js/food-0123abcd.js").getHeader("Cache-Control"));
+    }
+
+    private MockHttpServletResponse handle(String uri) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", uri);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        interceptor.preHandle(request, response, null);
+        return response;
+    }
+}
@@ -0,0 +1,205 @@
+package com.example.foodhistory.controller;
+
+import com.example.foodhistory.concurrent.StreamDispatcher;
+import com.example.foodhistory.config.MockOAuth2LoginConfig;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 長連線效能基準：同時維持大量 SSE 連線時的連線建立時間、心跳送達量、一般請求吞吐量、執行緒數與 heap
+ * 分別以平台執行緒與虛擬執行緒模式執行後比較輸出：
+ *   mvn test -Dtest=ConnectionStreamBenchmarkTest -Dbenchmark=true
+ *   mvn test -Pjava21 -Dtest=ConnectionStreamBenchmarkTest -Dbenchmark=true -Dapp.threads.virtual=true
+ * 預設 10000 條連線（-Dbenchmark.connections 調整），需要足夠的檔案描述子（ulimit -n 65536）。
+ * 客戶端與伺服器在同一個 JVM，執行緒數與 heap 包含客戶端，但兩種模式的客戶端相同，可以直接比較。
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "server.tomcat.max-connections=20000",
+        "server.tomcat.accept-count=1000",
+        "app.stream.heartbeat-interval-ms=1000",
+        "app.stream.max-connections=0",
+        "app.stream.max-connections-per-user=0",
+        "app.image.gc.enabled=false"
+})
+@ActiveProfiles("test")
+@Import(MockOAuth2LoginConfig.class)
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class ConnectionStreamBenchmarkTest {
+
+    private static final long MEASURE_MILLIS = 10_000;
+    private static final int REQUEST_CLIENTS = 16;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private OfflineCacheController offlineCacheController;
+
+    @Autowired
+    private StreamDispatcher streamDispatcher;
+
+    @Test
+    public void benchmarkLongLivedConnections() throws Exception {
+        int connections = Integer.getInteger("benchmark.connections", 10_000);
+        byte[] request = ("GET /api/foods/connection-stream HTTP/1.1\r\n"
+                + "Host: localhost\r\nAccept: text/event-stream\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+
+        Selector selector = Selector.open();
+        List<SocketChannel> channels = new ArrayList<>(connections);
+        try {
+            long openStart = System.nanoTime();
+            for (int i = 0; i < connections; i++) {
+                SocketChannel channel = SocketChannel.open(new InetSocketAddress("127.0.0.1", port));
+                channel.write(ByteBuffer.wrap(request));
+                channel.configureBlocking(false);
+                channel.register(selector, SelectionKey.OP_READ);
+                channels.add(channel);
+            }
+            long openMillis = (System.nanoTime() - openStart) / 1_000_000;
+
+            // 等所有連線都收到 connected 事件
+            StreamCounter counter = new StreamCounter(selector);
+            long deadline = System.currentTimeMillis() + 60_000;
+            while (counter.connected.get() < connections && System.currentTimeMillis() < deadline) {
+                counter.poll();
+            }
+            long establishedMillis = (System.nanoTime() - openStart) / 1_000_000;
+            assertEquals(connections, counter.connected.get(), "not every stream received its connected event");
+            assertEquals(connections, offlineCacheController.getConnectionCount());
+
+            // 量測期間：背景讀取心跳，同時以少量客戶端持續送出一般請求
+            AtomicBoolean measuring = new AtomicBoolean(true);
+            long heartbeatsBefore = counter.heartbeats.get();
+            Thread reader = new Thread(() -> {
+                while (measuring.get()) {
+                    counter.poll();
+                }
+            }, "benchmark-sse-reader");
+            reader.start();
+
+            AtomicLong requests = new AtomicLong();
+            ExecutorService clients = Executors.newFixedThreadPool(REQUEST_CLIENTS);
+            URL health = new URL("http://127.0.0.1:" + port + "/api/foods/health");
+            for (int i = 0; i < REQUEST_CLIENTS; i++) {
+                clients.execute(() -> {
+                    while (measuring.get()) {
+                        if (get(health)) {
+                            requests.incrementAndGet();
+                        }
+                    }
+                });
+            }
+            Thread.sleep(MEASURE_MILLIS);
+            int platformThreads = ManagementFactory.getThreadMXBean().getThreadCount();
+            measuring.set(false);
+            clients.shutdown();
+            clients.awaitTermination(10, TimeUnit.SECONDS);
+            reader.join();
+            long heartbeats = counter.heartbeats.get() - heartbeatsBefore;
+
+            System.gc();
+            long heapUsed = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+
+            System.out.printf("Connection stream benchmark (%s threads, Java %s): %d connections, "
+                            + "open %d ms, all established %d ms, heartbeats %.0f/s, requests %.0f/s, "
+                            + "platform threads %d, heap used %d MB%n",
+                    streamDispatcher.isVirtual() ? "virtual" : "platform", System.getProperty("java.version"),
+                    connections, openMillis, establishedMillis,
+                    heartbeats * 1000.0 / MEASURE_MILLIS, requests.get() * 1000.0 / MEASURE_MILLIS,
+                    platformThreads, heapUsed / (1024 * 1024));
+            assertTrue(heartbeats > 0, "no heartbeats delivered");
+            assertTrue(requests.get() > 0, "no requests completed");
+        } finally {
+            for (SocketChannel channel : channels) {
+                channel.close();
+            }
+            selector.close();
+        }
+    }
+
+    private static boolean get(URL url) {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            try (InputStream in = connection.getInputStream()) {
+                byte[] buffer = new byte[1024];
+                while (in.read(buffer) >= 0) {
+                    // 讀完內容才能重複使用連線
+                }
+            }
+            return connection.getResponseCode() == 200;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 以單一 selector 讀取所有 SSE 連線，計算收到的事件數（不需要每條連線一個客戶端執行緒）
+     */
+    private static class StreamCounter {
+
+        private final Selector selector;
+        private final ByteBuffer buffer = ByteBuffer.allocate(16 * 1024);
+        final AtomicLong connected = new AtomicLong();
+        final AtomicLong heartbeats = new AtomicLong();
+
+        StreamCounter(Selector selector) {
+            this.selector = selector;
+        }
+
+        void poll() {
+            try {
+                if (selector.select(100) == 0) {
+                    return;
+                }
+                for (SelectionKey key : selector.selectedKeys()) {
+                    buffer.clear();
+                    if (((SocketChannel) key.channel()).read(buffer) < 0) {
+                        key.cancel();
+                        continue;
+                    }
+                    String chunk = new String(buffer.array(), 0, buffer.position(), StandardCharsets.US_ASCII);
+                    connected.addAndGet(count(chunk, "event:connected"));
+                    heartbeats.addAndGet(count(chunk, "event:heartbeat"));
+                }
+                selector.selectedKeys().clear();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private static int count(String text, String token) {
+            int count = 0;
+            for (int index = text.indexOf(token); index >= 0; index = text.indexOf(token, index + token.length())) {
+                count++;
+            }
+            return count;
+        }
+    }
+}
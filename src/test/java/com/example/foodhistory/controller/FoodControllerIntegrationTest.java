@@ -0,0 +1,99 @@
+package com.example.foodhistory.controller;
+
+import com.example.foodhistory.config.MockOAuth2LoginConfig;
+import com.example.foodhistory.model.Food;
+import com.example.foodhistory.repository.FoodRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * 經由控制器編輯食物後重新從資料庫讀取，確認變更確實寫入（唯讀交易載入的實體不能讓之後的儲存失效）
+ */
+@SpringBootTest(properties = {
+        "app.image.storage.path=target/test-images",
+        "app.image.gc.enabled=false"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@Import(MockOAuth2LoginConfig.class)
+public class FoodControllerIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private FoodRepository foodRepository;
+
+    @Test
+    public void testEditWithImagePersistsAllFields() throws Exception {
+        Long id = createFood();
+        MockMultipartFile image = new MockMultipartFile("imageFile", "photo.png", "image/png", png());
+
+        mockMvc.perform(multipart("/foods")
+                        .file(image)
+                        .param("id", id.toString())
+                        .param("name", "新名稱")
+                        .param("carbGrams", "25.5")
+                        .param("unit", "碗")
+                        .param("notes", "改過的備註")
+                        .with(csrf())
+                        .with(user("test@example.com").roles("USER")))
+                .andExpect(status().is3xxRedirection());
+
+        Food saved = foodRepository.findById(id).orElseThrow(IllegalStateException::new);
+        assertEquals("新名稱", saved.getName());
+        assertEquals(25.5, saved.getCarbGrams());
+        assertEquals("碗", saved.getUnit());
+        assertEquals("改過的備註", saved.getNotes());
+        assertEquals(id + ".png", saved.getImagePath());
+        assertEquals("image/png", saved.getImageContentType());
+    }
+
+    @Test
+    public void testStreamingUploadPersistsImagePath() throws Exception {
+        Long id = createFood();
+
+        mockMvc.perform(put("/foods/" + id + "/image")
+                        .content(png())
+                        .contentType("application/octet-stream")
+                        .with(csrf())
+                        .with(user("test@example.com").roles("USER")))
+                .andExpect(status().isOk());
+
+        Food saved = foodRepository.findById(id).orElseThrow(IllegalStateException::new);
+        assertEquals(id + ".png", saved.getImagePath());
+        assertEquals("image/png", saved.getImageContentType());
+        assertEquals("舊名稱", saved.getName());
+    }
+
+    private Long createFood() {
+        Food food = new Food();
+        food.setName("舊名稱");
+        food.setCarbGrams(10.0);
+        food.setNotes("原本的備註");
+        return foodRepository.save(food).getId();
+    }
+
+    private static byte[] png() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB), "png", out);
+        return out.toByteArray();
+    }
+}
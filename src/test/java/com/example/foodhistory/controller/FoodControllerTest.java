@@ -10,10 +10,9 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.security.Principal;
 import java.util.Collections;
 
-import javax.servlet.http.HttpSession;
-
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
@@ -26,13 +25,19 @@ import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import com.example.foodhistory.model.Food;
+import com.example.foodhistory.repository.projection.FoodListView;
 import com.example.foodhistory.service.FoodService;
+import com.example.foodhistory.service.SearchHistoryService;
+import com.example.foodhistory.service.SearchMode;
 
 public class FoodControllerTest {
 
     @Mock
     private FoodService foodService;
 
+    @Mock
+    private SearchHistoryService searchHistoryService;
+
     @Mock
     private Model model;
 
@@ -52,12 +57,13 @@ public class FoodControllerTest {
 
     @Test
     public void testList() {
-        // 模擬 HttpSession
-        HttpSession session = mock(HttpSession.class);
+        // 模擬登入使用者
+        Principal principal = mock(Principal.class);
+        when(principal.getName()).thenReturn("user");
         
         // 模擬分頁結果
         @SuppressWarnings("unchecked")
-        Page<Food> mockPage = mock(Page.class);
+        Page<FoodListView> mockPage = mock(Page.class);
         when(mockPage.getContent()).thenReturn(Collections.emptyList());
         when(mockPage.getTotalElements()).thenReturn(0L);
         when(mockPage.getTotalPages()).thenReturn(0);
@@ -66,12 +72,30 @@ public class FoodControllerTest {
         when(mockPage.hasNext()).thenReturn(false);
         when(mockPage.hasPrevious()).thenReturn(false);
         
-        when(foodService.searchFoods(isNull(), any(Pageable.class))).thenReturn(mockPage);
+        when(foodService.searchFoodViews(isNull(), any(Pageable.class))).thenReturn(mockPage);
         when(foodService.getFavoriteRecommendations(anyInt())).thenReturn(Collections.emptyList());
+        when(searchHistoryService.getRecentSearches("user", 5)).thenReturn(Collections.emptyList());
         
-        String viewName = foodController.list(null, 0, 12, session, model);
+        String viewName = foodController.list(null, 0, 12, principal, model);
         assertEquals("food/list", viewName);
         verify(model).addAttribute("foods", Collections.emptyList());
+        verify(model).addAttribute("recentSearches", Collections.emptyList());
+    }
+
+    @Test
+    public void testListRecordsSearchHistory() {
+        Principal principal = mock(Principal.class);
+        when(principal.getName()).thenReturn("user");
+
+        @SuppressWarnings("unchecked")
+        Page<FoodListView> mockPage = mock(Page.class);
+        when(mockPage.getContent()).thenReturn(Collections.emptyList());
+        when(mockPage.getTotalElements()).thenReturn(1L);
+        when(foodService.searchFoodViews(eq("白飯"), any(Pageable.class))).thenReturn(mockPage);
+        when(foodService.getFavoriteRecommendations(anyInt())).thenReturn(Collections.emptyList());
+
+        foodController.list("白飯", 0, 12, principal, model);
+        verify(searchHistoryService).record("user", "白飯");
     }
 
     @Test
@@ -115,4 +139,28 @@ public class FoodControllerTest {
         foodController.delete(1L);
         verify(foodService).deleteFood(1L);
     }
+
+    @Test
+    public void testListFallsBackToFuzzySearch() {
+        Principal principal = mock(Principal.class);
+        when(principal.getName()).thenReturn("user");
+
+        @SuppressWarnings("unchecked")
+        Page<FoodListView> emptyPage = mock(Page.class);
+        when(emptyPage.getContent()).thenReturn(Collections.emptyList());
+        when(emptyPage.getTotalElements()).thenReturn(0L);
+        FoodListView food = mock(FoodListView.class);
+        when(food.getName()).thenReturn("蛋炒飯");
+        @SuppressWarnings("unchecked")
+        Page<FoodListView> fuzzyPage = mock(Page.class);
+        when(fuzzyPage.getContent()).thenReturn(Collections.singletonList(food));
+        when(fuzzyPage.getTotalElements()).thenReturn(1L);
+        when(foodService.searchFoodViews(eq("炒反"), any(Pageable.class))).thenReturn(emptyPage);
+        when(foodService.searchFoodViews(eq("炒反"), any(Pageable.class), eq(SearchMode.FUZZY))).thenReturn(fuzzyPage);
+        when(foodService.getFavoriteRecommendations(anyInt())).thenReturn(Collections.emptyList());
+
+        foodController.list("炒反", 0, 12, principal, model);
+        verify(model).addAttribute("foods", Collections.singletonList(food));
+        verify(model).addAttribute("fuzzyMatch", true);
+    }
 }
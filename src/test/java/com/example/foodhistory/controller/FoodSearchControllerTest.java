@@ -0,0 +1,102 @@
+package com.example.foodhistory.controller;
+
+import com.example.foodhistory.model.Food;
+import com.example.foodhistory.service.FoodNameIndex;
+import com.example.foodhistory.service.FoodSearchCriteria;
+import com.example.foodhistory.service.FoodService;
+import com.example.foodhistory.service.SearchHistoryService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.security.Principal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class FoodSearchControllerTest {
+
+    @Mock
+    private FoodService foodService;
+
+    @Mock
+    private SearchHistoryService searchHistoryService;
+
+    private FoodNameIndex foodNameIndex;
+
+    private FoodSearchController controller;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        // 使用真正的索引：新增的食物先放在暫存區，不需要資料庫
+        foodNameIndex = new FoodNameIndex();
+        ReflectionTestUtils.setField(foodNameIndex, "rebuildDelayMs", 3_600_000L);
+        foodNameIndex.init();
+
+        controller = new FoodSearchController();
+        ReflectionTestUtils.setField(controller, "foodNameIndex", foodNameIndex);
+        ReflectionTestUtils.setField(controller, "foodService", foodService);
+        ReflectionTestUtils.setField(controller, "searchHistoryService", searchHistoryService);
+        ReflectionTestUtils.setField(controller, "maxResults", 2);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        foodNameIndex.shutdown();
+    }
+
+    private static Food food(long id, String name, boolean favorite) {
+        Food food = new Food();
+        food.setId(id);
+        food.setName(name);
+        food.setIsFavorite(favorite);
+        return food;
+    }
+
+    @Test
+    public void testSuggestRanksEscapesAndCapsLimit() {
+        Principal principal = mock(Principal.class);
+        when(principal.getName()).thenReturn("alice");
+        when(searchHistoryService.getRecentSearches("alice", 10)).thenReturn(Collections.emptyList());
+        foodNameIndex.onFoodSaved(food(1L, "紅燒牛肉", false));
+        foodNameIndex.onFoodSaved(food(2L, "牛\"<肉>", true));
+        foodNameIndex.onFoodSaved(food(3L, "滷牛腱", false));
+
+        ResponseEntity<String> response = controller.suggest("牛", 50, principal);
+
+        assertEquals("{\"items\":[{\"id\":2,\"name\":\"牛\\\"\\u003c肉\\u003e\",\"favorite\":true},"
+                + "{\"id\":3,\"name\":\"滷牛腱\",\"favorite\":false}]}", response.getBody());
+        assertEquals("no-cache", response.getHeaders().getCacheControl());
+    }
+
+    @Test
+    public void testSearchClampsPaging() {
+        Food food = food(1L, "白飯", false);
+        when(foodService.searchFoods(any(FoodSearchCriteria.class), any(Pageable.class)))
+                .thenReturn(new PageImpl<>(Arrays.asList(food), PageRequest.of(0, 100), 1));
+
+        Map<String, Object> response = controller.search(new FoodSearchCriteria(), -1, 1000);
+
+        ArgumentCaptor<Pageable> pageable = ArgumentCaptor.forClass(Pageable.class);
+        verify(foodService).searchFoods(any(FoodSearchCriteria.class), pageable.capture());
+        assertEquals(0, pageable.getValue().getPageNumber());
+        assertEquals(100, pageable.getValue().getPageSize());
+        assertEquals(1L, response.get("totalElements"));
+        assertEquals(Collections.singletonList(food), response.get("foods"));
+    }
+}
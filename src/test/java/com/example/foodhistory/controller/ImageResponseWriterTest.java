@@ -0,0 +1,112 @@
+package com.example.foodhistory.controller;
+
+import com.example.foodhistory.service.FileStorageService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class ImageResponseWriterTest {
+
+    @TempDir
+    Path imageDir;
+
+    private FileStorageService.ImageMetadata image;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        Files.write(imageDir.resolve("1.jpg"), "0123456789".getBytes());
+        FileStorageService fileStorageService = new FileStorageService();
+        ReflectionTestUtils.setField(fileStorageService, "imageStoragePath", imageDir.toString());
+        fileStorageService.init();
+        image = fileStorageService.getImageMetadata("1.jpg");
+    }
+
+    @Test
+    public void testFullResponse() throws Exception {
+        MockHttpServletResponse response = write(new MockHttpServletRequest("GET", "/foods/images/1.jpg"));
+        assertEquals(200, response.getStatus());
+        assertEquals("bytes", response.getHeader(HttpHeaders.ACCEPT_RANGES));
+        assertEquals("image/jpeg", response.getContentType());
+        assertEquals(10, response.getContentLength());
+        assertEquals("0123456789", response.getContentAsString());
+    }
+
+    @Test
+    public void testPartialContent() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/foods/images/1.jpg");
+        request.addHeader(HttpHeaders.RANGE, "bytes=4-");
+        MockHttpServletResponse response = write(request);
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 4-9/10", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals("456789", response.getContentAsString());
+    }
+
+    @Test
+    public void testIfRangeMismatchSendsFullContent() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/foods/images/1.jpg");
+        request.addHeader(HttpHeaders.RANGE, "bytes=4-");
+        request.addHeader(HttpHeaders.IF_RANGE, "\"stale\"");
+        MockHttpServletResponse response = write(request);
+        assertEquals(200, response.getStatus());
+        assertNull(response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals("0123456789", response.getContentAsString());
+
+        MockHttpServletRequest matching = new MockHttpServletRequest("GET", "/foods/images/1.jpg");
+        matching.addHeader(HttpHeaders.RANGE, "bytes=-3");
+        matching.addHeader(HttpHeaders.IF_RANGE, image.getEtag());
+        assertEquals("789", write(matching).getContentAsString());
+    }
+
+    @Test
+    public void testUnsatisfiableRange() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/foods/images/1.jpg");
+        request.addHeader(HttpHeaders.RANGE, "bytes=20-30");
+        MockHttpServletResponse response = write(request);
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */10", response.getHeader(HttpHeaders.CONTENT_RANGE));
+    }
+
+    @Test
+    public void testCachedContentRange() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/foods/images/1.jpg");
+        request.addHeader(HttpHeaders.RANGE, "bytes=2-5");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        ImageResponseWriter.write(request, response, image, () -> ByteBuffer.wrap("0123456789".getBytes()));
+        assertEquals(206, response.getStatus());
+        assertEquals("2345", response.getContentAsString());
+    }
+
+    @Test
+    public void testNotModified() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/foods/images/1.jpg");
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, image.getEtag());
+        assertEquals(304, write(request).getStatus());
+    }
+
+    @Test
+    public void testParseRange() {
+        assertArrayEquals(new long[]{0, 4}, ImageResponseWriter.parseRange("bytes=0-4", 10));
+        assertArrayEquals(new long[]{5, 9}, ImageResponseWriter.parseRange("bytes=5-100", 10));
+        assertNull(ImageResponseWriter.parseRange("bytes=0-1,3-4", 10));
+        assertNull(ImageResponseWriter.parseRange("items=0-1", 10));
+        assertNull(ImageResponseWriter.parseRange("bytes=abc", 10));
+    }
+
+    private MockHttpServletResponse write(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        ImageResponseWriter.write(request, response, image);
+        return response;
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.foodhistory.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ConnectionPoolMetricsTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testRecordsPoolStateAndAcquireLatency() throws Exception {
+        ConnectionPoolMetrics metrics = new ConnectionPoolMetrics();
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:pool-metrics;DB_CLOSE_DELAY=-1");
+        dataSource.setPoolName("test-pool");
+        dataSource.setMaximumPoolSize(2);
+        metrics.postProcessBeforeInitialization(dataSource, "dataSource");
+
+        try {
+            try (Connection connection = dataSource.getConnection()) {
+                Map<String, Object> pool = (Map<String, Object>) metrics.getStats().get("test-pool");
+                assertEquals(1L, pool.get("acquireCount"));
+                assertEquals(2, pool.get("max"));
+            }
+            try (Connection connection = dataSource.getConnection()) {
+                connection.createStatement().execute("SELECT 1");
+            }
+
+            Map<String, Object> pool = (Map<String, Object>) metrics.getStats().get("test-pool");
+            assertEquals(2L, pool.get("acquireCount"));
+            assertTrue((Double) pool.get("acquireMaxMs") >= 0);
+            assertEquals(0L, pool.get("timeouts"));
+        } finally {
+            dataSource.close();
+        }
+    }
+
+    @Test
+    public void testIgnoresOtherBeans() {
+        ConnectionPoolMetrics metrics = new ConnectionPoolMetrics();
+        Object bean = new Object();
+        assertEquals(bean, metrics.postProcessBeforeInitialization(bean, "other"));
+        assertTrue(metrics.getStats().isEmpty());
+    }
+}
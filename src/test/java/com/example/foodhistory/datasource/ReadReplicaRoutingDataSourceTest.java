@@ -0,0 +1,76 @@
+package com.example.foodhistory.datasource;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ReadReplicaRoutingDataSourceTest {
+
+    private ReadReplicaRoutingDataSource routing;
+    private JdbcTemplate jdbcTemplate;
+    private DataSourceTransactionManager transactionManager;
+
+    @BeforeEach
+    public void setUp() {
+        // 兩個獨立的記憶體資料庫，各自存放不同的標記值，查到哪一個就知道連線被導向哪裡
+        DataSource primary = database("primary");
+        DataSource replica = database("replica");
+        routing = new ReadReplicaRoutingDataSource(primary, replica);
+        routing.afterPropertiesSet();
+
+        DataSource dataSource = new LazyConnectionDataSourceProxy(routing);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionManager = new DataSourceTransactionManager(dataSource);
+    }
+
+    @Test
+    public void testReadOnlyTransactionUsesReplica() {
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+
+        assertEquals("replica", readOnly.execute(status -> marker()));
+        assertEquals(1L, routing.getStats().get("replicaConnections"));
+    }
+
+    @Test
+    public void testWriteTransactionAndNoTransactionUsePrimary() {
+        TransactionTemplate readWrite = new TransactionTemplate(transactionManager);
+
+        assertEquals("primary", readWrite.execute(status -> marker()));
+        assertEquals("primary", marker());
+        assertEquals(0L, routing.getStats().get("replicaConnections"));
+    }
+
+    @Test
+    public void testTransactionWithoutStatementsTakesNoConnection() {
+        // LazyConnectionDataSourceProxy 建立時會先取一次連線讀取預設值，之後的交易沒有 SQL 就不取得連線
+        Map<String, Object> before = routing.getStats();
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        readOnly.execute(status -> null);
+
+        assertEquals(before, routing.getStats());
+    }
+
+    private String marker() {
+        return jdbcTemplate.queryForObject("SELECT name FROM marker", String.class);
+    }
+
+    private static DataSource database(String name) {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:routing-" + name + "-" + System.nanoTime() + ";DB_CLOSE_DELAY=-1");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE marker (name VARCHAR(20))");
+        jdbcTemplate.update("INSERT INTO marker VALUES (?)", name);
+        return dataSource;
+    }
+}
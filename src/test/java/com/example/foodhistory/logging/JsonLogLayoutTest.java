@@ -0,0 +1,55 @@
+package com.example.foodhistory.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JsonLogLayoutTest {
+
+    private final LoggerContext context = new LoggerContext();
+    private final Logger logger = context.getLogger("com.example.Test");
+
+    @Test
+    public void testWritesOneLineWithMdcAndEscapedMessage() {
+        LoggingEvent event = new LoggingEvent(Logger.class.getName(), logger, Level.INFO,
+                "食物 \"{}\"\n已儲存", null, new Object[]{"白飯"});
+        event.setMDCPropertyMap(Collections.singletonMap(RequestIdFilter.MDC_KEY, "abc123"));
+
+        String line = layout().doLayout(event);
+
+        assertTrue(line.startsWith("{\"timestamp\":\""));
+        assertTrue(line.contains("\"level\":\"INFO\""));
+        assertTrue(line.contains("\"logger\":\"com.example.Test\""));
+        assertTrue(line.contains("\"message\":\"食物 \\\"白飯\\\"\\n已儲存\""));
+        assertTrue(line.contains("\"requestId\":\"abc123\""));
+        assertFalse(line.contains("exception"));
+        // 除了結尾換行外不可有真正的換行
+        assertFalse(line.trim().contains("\n"));
+    }
+
+    @Test
+    public void testIncludesStackTrace() {
+        LoggingEvent event = new LoggingEvent(Logger.class.getName(), logger, Level.ERROR,
+                "失敗", new IllegalStateException("boom"), null);
+        event.setMDCPropertyMap(Collections.emptyMap());
+
+        String line = layout().doLayout(event);
+
+        assertTrue(line.contains("\"exception\":\"java.lang.IllegalStateException: boom"));
+        assertFalse(line.trim().contains("\n"));
+    }
+
+    private JsonLogLayout layout() {
+        JsonLogLayout layout = new JsonLogLayout();
+        layout.setContext(context);
+        layout.start();
+        return layout;
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.foodhistory.logging;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class RequestIdFilterTest {
+
+    private final RequestIdFilter filter = new RequestIdFilter();
+
+    @Test
+    public void testReusesValidIncomingId() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/foods");
+        request.addHeader(RequestIdFilter.HEADER, "nginx-42");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertEquals("nginx-42", run(request, response));
+        assertEquals("nginx-42", response.getHeader(RequestIdFilter.HEADER));
+        assertNull(MDC.get(RequestIdFilter.MDC_KEY));
+    }
+
+    @Test
+    public void testGeneratesIdForMissingOrUnsafeHeader() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/foods");
+        request.addHeader(RequestIdFilter.HEADER, "bad\nid");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        String requestId = run(request, response);
+        assertNotNull(requestId);
+        assertNotEquals("bad\nid", requestId);
+        assertEquals(requestId, response.getHeader(RequestIdFilter.HEADER));
+    }
+
+    /**
+     * 執行過濾器並回傳處理請求期間 MDC 中的 requestId
+     */
+    private String run(MockHttpServletRequest request, MockHttpServletResponse response) throws Exception {
+        AtomicReference<String> seen = new AtomicReference<>();
+        MockFilterChain chain = new MockFilterChain(new HttpServlet() {
+            @Override
+            protected void service(HttpServletRequest req, HttpServletResponse resp) {
+                seen.set(MDC.get(RequestIdFilter.MDC_KEY));
+            }
+        });
+        filter.doFilter(request, response, chain);
+        return seen.get();
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.foodhistory.logging;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.logging.LogLevel;
+import org.springframework.boot.logging.LoggingSystem;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class SqlLoggingTest {
+
+    private LoggingSystem loggingSystem;
+    private SqlLogging sqlLogging;
+
+    @BeforeEach
+    public void setUp() {
+        loggingSystem = mock(LoggingSystem.class);
+        sqlLogging = new SqlLogging();
+        ReflectionTestUtils.setField(sqlLogging, "loggingSystem", loggingSystem);
+    }
+
+    @Test
+    public void testExpiresAfterMaxDuration() {
+        ReflectionTestUtils.setField(sqlLogging, "maxDurationMs", 1L);
+        sqlLogging.setEnabled(true, true);
+        verify(loggingSystem).setLogLevel(SqlLogging.BINDER_LOGGER, LogLevel.TRACE);
+
+        ReflectionTestUtils.setField(sqlLogging, "expiresAt", System.currentTimeMillis() - 1);
+        sqlLogging.expire();
+
+        verify(loggingSystem).setLogLevel(SqlLogging.SQL_LOGGER, LogLevel.INFO);
+        verify(loggingSystem).setLogLevel(SqlLogging.BINDER_LOGGER, LogLevel.INFO);
+    }
+
+    @Test
+    public void testZeroDurationNeverExpires() {
+        ReflectionTestUtils.setField(sqlLogging, "maxDurationMs", 0L);
+        sqlLogging.setEnabled(true, false);
+        clearInvocations(loggingSystem);
+
+        sqlLogging.expire();
+
+        verify(loggingSystem, never()).setLogLevel(SqlLogging.SQL_LOGGER, LogLevel.INFO);
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.foodhistory.migration;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class FlywayMigrationTest {
+
+    @Test
+    public void testBaselinedDatabaseGetsLaterSchema() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:baselined-" + System.nanoTime() + ";DB_CLOSE_DELAY=-1");
+        dataSource.setDriverClassName("org.h2.Driver");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        // 由舊版 ddl-auto=update 建立、沒有遷移紀錄的資料庫
+        jdbcTemplate.execute("CREATE TABLE foods (id BIGINT AUTO_INCREMENT PRIMARY KEY, name VARCHAR(30) NOT NULL, "
+                + "is_favorite BOOLEAN DEFAULT FALSE NOT NULL)");
+        jdbcTemplate.update("INSERT INTO foods (name) VALUES ('白飯')");
+
+        Flyway.configure().dataSource(dataSource)
+                .baselineOnMigrate(true)
+                .baselineVersion("1")
+                .load()
+                .migrate();
+
+        assertEquals(Boolean.FALSE, jdbcTemplate.queryForObject(
+                "SELECT image_processing FROM foods WHERE name = '白飯'", Boolean.class));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM search_history", Integer.class));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM image_jobs", Integer.class));
+    }
+}
@@ -6,9 +6,17 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -23,8 +31,8 @@ class FileStorageServiceTest {
 
     @Test
     void testStoreAndRetrieveImage() throws Exception {
-        // 創建測試圖片
-        byte[] imageData = "test image content".getBytes();
+        // 創建測試圖片（JPEG 開頭的 magic bytes）
+        byte[] imageData = jpeg("test image content");
         MockMultipartFile file = new MockMultipartFile(
             "file",
             "test.jpg",
@@ -68,4 +76,152 @@ class FileStorageServiceTest {
         String filename = fileStorageService.storeImage(emptyFile, 999L);
         assertNull(filename);
     }
+
+    @Test
+    void testStoreImageStreamDetectsFormatAndHashes() throws Exception {
+        byte[] png = {(byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A, 0, 0, 0, 0x0D};
+        FileStorageService.StoredImage stored = fileStorageService.storeImage(new ByteArrayInputStream(png), 2L);
+
+        // 副檔名與 content type 依實際內容決定
+        assertEquals("2.png", stored.getFilename());
+        assertEquals("image/png", stored.getContentType());
+        assertEquals(png.length, stored.getSize());
+        assertEquals(64, stored.getSha256().length());
+        assertArrayEquals(png, Files.readAllBytes(fileStorageService.getImagePath("2.png")));
+
+        fileStorageService.deleteImage(stored.getFilename());
+    }
+
+    @Test
+    void testRejectsNonImageContent() {
+        MockMultipartFile file = new MockMultipartFile(
+            "file",
+            "fake.jpg",
+            "image/jpeg",
+            "not really an image".getBytes(StandardCharsets.UTF_8)
+        );
+
+        assertThrows(InvalidImageException.class, () -> fileStorageService.storeImage(file, 3L));
+        assertFalse(fileStorageService.imageExists("3.jpg"));
+    }
+
+    @Test
+    void testAcceptsType() {
+        String chrome = "image/avif,image/webp,image/apng,image/svg+xml,image/*,*/*;q=0.8";
+        assertTrue(FileStorageService.acceptsType(chrome, "image/webp"));
+        assertTrue(FileStorageService.acceptsType(chrome, "image/avif"));
+        assertFalse(FileStorageService.acceptsType("image/*,*/*;q=0.8", "image/webp"));
+        assertFalse(FileStorageService.acceptsType("image/webp;q=0", "image/webp"));
+    }
+
+    @Test
+    void testGetBestImagePrefersAcceptedVariant() throws Exception {
+        String filename = fileStorageService.storeImage(new MockMultipartFile(
+            "file", "photo.jpg", "image/jpeg", jpeg("original image bytes")), 4L);
+        // 模擬背景處理產生的 WebP 變體
+        Files.write(fileStorageService.getImagePath(filename + ".webp"), "webp".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals("image/webp", fileStorageService.getBestImage(filename, "image/webp,*/*").getContentType());
+        assertEquals("image/jpeg", fileStorageService.getBestImage(filename, "*/*").getContentType());
+        assertEquals("image/jpeg", fileStorageService.getBestImage(filename, null).getContentType());
+
+        // 刪除原檔時變體一併刪除
+        fileStorageService.deleteImage(filename);
+        assertFalse(fileStorageService.imageExists(filename + ".webp"));
+    }
+
+    @Test
+    void testMetadataCacheIsBoundedAndMissingVariantsExpire(@TempDir Path imageDir) throws Exception {
+        FileStorageService storage = new FileStorageService();
+        ReflectionTestUtils.setField(storage, "imageStoragePath", imageDir.toString());
+        ReflectionTestUtils.setField(storage, "metadataCacheMaxEntries", 2);
+        ReflectionTestUtils.setField(storage, "missingTtlMs", 0L);
+        storage.init();
+        for (long id = 1; id <= 3; id++) {
+            String filename = storage.storeImage(new ByteArrayInputStream(jpeg("image " + id)), id).getFilename();
+            assertNotNull(storage.getImageMetadata(filename));
+        }
+        Map<?, ?> cache = (Map<?, ?>) ReflectionTestUtils.getField(storage, "metadataCache");
+        assertEquals(2, cache.size());
+
+        // 變體不存在的標記到期後，重新查詢就能找到之後產生的變體
+        String filename = storage.storeImage(new ByteArrayInputStream(jpeg("variant")), 4L).getFilename();
+        assertEquals("image/jpeg", storage.getBestImage(filename, "image/webp").getContentType());
+        Files.write(storage.getImagePath(filename + ".webp"), "webp".getBytes(StandardCharsets.UTF_8));
+        assertEquals("image/webp", storage.getBestImage(filename, "image/webp").getContentType());
+    }
+
+    @Test
+    void testRejectsImageOverPixelLimit(@TempDir Path imageDir) throws Exception {
+        FileStorageService storage = new FileStorageService();
+        ReflectionTestUtils.setField(storage, "imageStoragePath", imageDir.toString());
+        ReflectionTestUtils.setField(storage, "maxPixels", 100L);
+        storage.init();
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(20, 10, BufferedImage.TYPE_INT_RGB), "png", png);
+
+        assertThrows(InvalidImageException.class,
+            () -> storage.storeImage(new ByteArrayInputStream(png.toByteArray()), 5L));
+        assertNull(storage.getImageMetadata("5.png"));
+    }
+
+    @Test
+    void testMigratesFlatFilesIntoShards(@TempDir Path imageDir) throws Exception {
+        Files.write(imageDir.resolve("7.jpg"), jpeg("legacy"));
+        Files.write(imageDir.resolve("7.jpg.webp"), "webp".getBytes(StandardCharsets.UTF_8));
+        FileStorageService storage = new FileStorageService();
+        ReflectionTestUtils.setField(storage, "imageStoragePath", imageDir.toString());
+        storage.init();
+
+        // 遷移前仍可從平面目錄讀取
+        assertEquals(imageDir.resolve("7.jpg").toRealPath(), storage.getImageMetadata("7.jpg").getPath());
+        assertTrue(storage.isMigrationPending());
+
+        assertEquals(2, storage.migrateLegacyFiles(10));
+        Path shard = imageDir.resolve(FileStorageService.shardOf("7.jpg"));
+        assertTrue(Files.exists(shard.resolve("7.jpg")));
+        // 變體與原檔放在同一個目錄
+        assertTrue(Files.exists(shard.resolve("7.jpg.webp")));
+        assertFalse(Files.exists(imageDir.resolve("7.jpg")));
+        assertEquals(shard.resolve("7.jpg").toRealPath(), storage.getImageMetadata("7.jpg").getPath());
+
+        assertEquals(0, storage.migrateLegacyFiles(10));
+        assertFalse(storage.isMigrationPending());
+
+        // 新上傳直接寫到分層目錄
+        String filename = storage.storeImage(new ByteArrayInputStream(jpeg("new")), 8L).getFilename();
+        assertTrue(Files.exists(imageDir.resolve(FileStorageService.shardOf(filename)).resolve(filename)));
+        assertNull(storage.getImageMetadata("../7.jpg"));
+    }
+
+    @Test
+    void testMigrationNeverOverwritesNewerUpload(@TempDir Path imageDir) throws Exception {
+        Files.write(imageDir.resolve("9.jpg"), jpeg("legacy"));
+        FileStorageService storage = new FileStorageService();
+        ReflectionTestUtils.setField(storage, "imageStoragePath", imageDir.toString());
+        storage.init();
+        Path legacy = imageDir.resolve("9.jpg");
+        Path target = imageDir.resolve(FileStorageService.shardOf("9.jpg")).resolve("9.jpg");
+        Files.createDirectories(target.getParent());
+
+        // 遷移列出舊檔之後、搬移之前，上傳已寫入分層目錄
+        Files.write(target, jpeg("uploaded"));
+        assertThrows(FileAlreadyExistsException.class, () -> FileStorageService.moveWithoutReplacing(legacy, target));
+        assertArrayEquals(jpeg("uploaded"), Files.readAllBytes(target));
+        assertArrayEquals(jpeg("legacy"), Files.readAllBytes(legacy));
+
+        assertEquals(1, storage.migrateLegacyFiles(10));
+        assertArrayEquals(jpeg("uploaded"), Files.readAllBytes(target));
+        assertFalse(Files.exists(legacy));
+    }
+
+    private static byte[] jpeg(String body) {
+        byte[] content = body.getBytes(StandardCharsets.UTF_8);
+        byte[] data = new byte[content.length + 3];
+        data[0] = (byte) 0xFF;
+        data[1] = (byte) 0xD8;
+        data[2] = (byte) 0xFF;
+        System.arraycopy(content, 0, data, 3, content.length);
+        return data;
+    }
 }
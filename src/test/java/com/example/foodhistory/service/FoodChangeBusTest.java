@@ -0,0 +1,144 @@
+package com.example.foodhistory.service;
+
+import com.example.foodhistory.cluster.ClusterMessage;
+import com.example.foodhistory.cluster.LocalClusterBus;
+import com.example.foodhistory.concurrent.StreamDispatcher;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class FoodChangeBusTest {
+
+    private StreamDispatcher streamDispatcher;
+    private ApplicationEventPublisher eventPublisher;
+    private LocalClusterBus clusterBus;
+    private FoodChangeBus bus;
+
+    @BeforeEach
+    public void setUp() {
+        streamDispatcher = new StreamDispatcher();
+        streamDispatcher.init();
+        eventPublisher = mock(ApplicationEventPublisher.class);
+        clusterBus = new LocalClusterBus("local");
+        bus = new FoodChangeBus();
+        ReflectionTestUtils.setField(bus, "streamDispatcher", streamDispatcher);
+        ReflectionTestUtils.setField(bus, "eventPublisher", eventPublisher);
+        ReflectionTestUtils.setField(bus, "clusterBus", clusterBus);
+        ReflectionTestUtils.setField(bus, "coalesceWindowMs", 50L);
+        ReflectionTestUtils.setField(bus, "maxDelayMs", 1000L);
+        ReflectionTestUtils.setField(bus, "maxItems", 10);
+        bus.init();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        streamDispatcher.shutdown();
+    }
+
+    @Test
+    public void testCoalescesChangesIntoOneBatch() {
+        long start = bus.currentRevision();
+        bus.onFoodChanged(new FoodChangeEvent(1L, FoodChangeEvent.Op.SAVE));
+        bus.onFoodChanged(new FoodChangeEvent(2L, FoodChangeEvent.Op.SAVE));
+        bus.onFoodChanged(new FoodChangeEvent(1L, FoodChangeEvent.Op.FAVORITE));
+        bus.onImageProcessed(new ImageProcessedEvent(3L, "a.jpg", true));
+
+        FoodChangeBatch batch = awaitSingleBatch();
+        assertEquals(start + 1, batch.getRevision());
+        assertEquals(batch.getRevision(), bus.currentRevision());
+        assertFalse(batch.isReload());
+        assertFalse(batch.isRemote());
+        assertEquals(3, batch.getChanges().size());
+        assertEquals(FoodChangeEvent.Op.FAVORITE, batch.getChanges().get(1L));
+        assertEquals(FoodChangeEvent.Op.IMAGE, batch.getChanges().get(3L));
+        assertEquals("{\"revision\":" + batch.getRevision()
+                + ",\"changes\":[{\"id\":1,\"op\":\"favorite\"},{\"id\":2,\"op\":\"save\"},{\"id\":3,\"op\":\"image\"}]}",
+                batch.toJson());
+    }
+
+    @Test
+    public void testBulkChangesBecomeSingleReload() {
+        long start = bus.currentRevision();
+        for (long id = 1; id <= 1000; id++) {
+            bus.onFoodChanged(new FoodChangeEvent(id, FoodChangeEvent.Op.SAVE));
+        }
+
+        FoodChangeBatch batch = awaitSingleBatch();
+        assertTrue(batch.isReload());
+        assertNull(batch.getChanges());
+        assertEquals(start + 1, batch.getRevision());
+        assertEquals("{\"revision\":" + batch.getRevision() + ",\"reload\":true}", batch.toJson());
+    }
+
+    @Test
+    public void testSteadyStreamIsFlushedAfterMaxDelay() throws Exception {
+        // 每 10ms 一筆、持續超過最長延遲：仍會在 max-delay-ms 後送出，不會無限延後
+        ReflectionTestUtils.setField(bus, "maxDelayMs", 200L);
+        long deadline = System.currentTimeMillis() + 400;
+        long id = 1;
+        while (System.currentTimeMillis() < deadline) {
+            bus.onFoodChanged(new FoodChangeEvent(id++ % 5, FoodChangeEvent.Op.SAVE));
+            Thread.sleep(10);
+        }
+        verify(eventPublisher, timeout(1000).atLeast(2)).publishEvent(any(FoodChangeBatch.class));
+    }
+
+    @Test
+    public void testRemoteBatchIsPublishedWithoutRevisionGoingBack() {
+        long start = bus.currentRevision();
+        ReflectionTestUtils.invokeMethod(bus, "onClusterMessage",
+                new ClusterMessage(start + 5, "m1", "other", FoodChangeBus.TOPIC, "7:delete,8:image"));
+        // 較晚提交、序號較小的訊息不會讓版本倒退
+        ReflectionTestUtils.invokeMethod(bus, "onClusterMessage",
+                new ClusterMessage(start + 3, "m2", "other", FoodChangeBus.TOPIC, "*"));
+
+        ArgumentCaptor<FoodChangeBatch> captor = ArgumentCaptor.forClass(FoodChangeBatch.class);
+        verify(eventPublisher, times(2)).publishEvent(captor.capture());
+        FoodChangeBatch first = captor.getAllValues().get(0);
+        assertTrue(first.isRemote());
+        assertEquals(start + 5, first.getRevision());
+        assertEquals(FoodChangeEvent.Op.DELETE, first.getChanges().get(7L));
+        assertEquals(FoodChangeEvent.Op.IMAGE, first.getChanges().get(8L));
+        FoodChangeBatch second = captor.getAllValues().get(1);
+        assertTrue(second.isReload());
+        assertEquals(start + 5, second.getRevision());
+        assertEquals(start + 5, bus.currentRevision());
+    }
+
+    @Test
+    public void testPayloadRoundTrip() {
+        Map<Long, FoodChangeEvent.Op> changes = new LinkedHashMap<>();
+        changes.put(3L, FoodChangeEvent.Op.SAVE);
+        changes.put(5L, FoodChangeEvent.Op.FAVORITE);
+        assertEquals("3:save,5:favorite", FoodChangeBatch.encode(changes));
+        assertEquals(changes, FoodChangeBatch.decode("3:save,5:favorite"));
+        assertEquals("*", FoodChangeBatch.encode(null));
+        assertNull(FoodChangeBatch.decode("*"));
+        // 無法辨識的內容改為重新載入
+        assertNull(FoodChangeBatch.decode("3:unknown"));
+    }
+
+    private FoodChangeBatch awaitSingleBatch() {
+        // 合併窗（50ms）結束後只應有一次通知
+        ArgumentCaptor<FoodChangeBatch> captor = ArgumentCaptor.forClass(FoodChangeBatch.class);
+        verify(eventPublisher, after(500)).publishEvent(captor.capture());
+        return captor.getValue();
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.foodhistory.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FoodColumnIndexTest {
+
+    private FoodColumnIndex index;
+
+    @BeforeEach
+    public void setUp() {
+        FoodNameIndex.Entry[] entries = {
+            new FoodNameIndex.Entry(1L, "白飯", "早餐", "碗", 56.0, 1.0, true, false),
+            new FoodNameIndex.Entry(2L, "吐司", "早餐 全麥", "片", 15.0, 0.5, false, false),
+            new FoodNameIndex.Entry(3L, "牛肉麵", null, "碗", 70.0, 1.2, false, false),
+            new FoodNameIndex.Entry(4L, "蘋果", "水果", "Piece", 12.5, null, true, false),
+            new FoodNameIndex.Entry(5L, "香蕉", "水果", null, null, 0.8, false, false)
+        };
+        index = new FoodColumnIndex(entries);
+    }
+
+    @Test
+    public void testCarbRange() {
+        FoodSearchCriteria criteria = new FoodSearchCriteria();
+        criteria.setCarbMin(10.0);
+        criteria.setCarbMax(20.0);
+        assertEquals(Arrays.asList(2L, 4L), search(criteria));
+    }
+
+    @Test
+    public void testOpenEndedRangeSkipsNullValues() {
+        FoodSearchCriteria criteria = new FoodSearchCriteria();
+        criteria.setCoefficientMin(0.8);
+        assertEquals(Arrays.asList(1L, 3L, 5L), search(criteria));
+    }
+
+    @Test
+    public void testCombinedPredicates() {
+        FoodSearchCriteria criteria = new FoodSearchCriteria();
+        criteria.setUnit("碗");
+        criteria.setNotes("早");
+        criteria.setCarbMax(60.0);
+        assertEquals(Arrays.asList(1L), search(criteria));
+    }
+
+    @Test
+    public void testQueryMatchesNameOrNotesIgnoringCase() {
+        FoodSearchCriteria criteria = new FoodSearchCriteria();
+        criteria.setQ("水果");
+        assertEquals(Arrays.asList(4L, 5L), search(criteria));
+
+        FoodSearchCriteria byUnit = new FoodSearchCriteria();
+        byUnit.setUnit("piece");
+        assertEquals(Arrays.asList(4L), search(byUnit));
+    }
+
+    @Test
+    public void testFavoriteFilter() {
+        FoodSearchCriteria favorites = new FoodSearchCriteria();
+        favorites.setFavorite(true);
+        assertEquals(Arrays.asList(1L, 4L), search(favorites));
+
+        FoodSearchCriteria others = new FoodSearchCriteria();
+        others.setFavorite(false);
+        others.setUnit("碗");
+        assertEquals(Arrays.asList(3L), search(others));
+    }
+
+    @Test
+    public void testNonFavoriteDrivesQuery() {
+        FoodSearchCriteria others = new FoodSearchCriteria();
+        others.setFavorite(false);
+        assertEquals(Arrays.asList(2L, 3L, 5L), search(others));
+
+        // 非最愛 3 筆少於碳水範圍 4 筆，由非最愛條件取出候選列
+        others.setCarbMin(0.0);
+        assertEquals(Arrays.asList(2L, 3L), search(others));
+    }
+
+    @Test
+    public void testEmptyCriteriaReturnsAll() {
+        FoodSearchCriteria criteria = new FoodSearchCriteria();
+        assertFalse(criteria.hasConditions());
+        assertEquals(Arrays.asList(1L, 2L, 3L, 4L, 5L), search(criteria));
+    }
+
+    @Test
+    public void testQueryMatchesSingleEntry() {
+        FoodSearchCriteria criteria = new FoodSearchCriteria();
+        criteria.setName("麵");
+        criteria.setCarbMin(50.0);
+        FoodColumnIndex.Query query = FoodColumnIndex.prepare(criteria);
+        assertTrue(query.matches(new FoodNameIndex.Entry(9L, "炒麵", null, null, 60.0, null, false, false)));
+        assertFalse(query.matches(new FoodNameIndex.Entry(9L, "炒麵", null, null, null, null, false, false)));
+    }
+
+    private List<Long> search(FoodSearchCriteria criteria) {
+        List<Long> ids = new ArrayList<>();
+        for (FoodNameIndex.Entry entry : index.search(FoodColumnIndex.prepare(criteria))) {
+            ids.add(entry.getId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.foodhistory.service;
+
+import com.example.foodhistory.model.Food;
+import com.example.foodhistory.repository.FoodRepository;
+import com.example.foodhistory.repository.projection.FoodIndexView;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class FoodNameIndexTest {
+
+    private FoodRepository foodRepository;
+    private FoodNameIndex index;
+    private final List<FoodIndexView> rows = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() {
+        foodRepository = mock(FoodRepository.class);
+        when(foodRepository.findAllProjectedBy()).thenAnswer(invocation -> new ArrayList<>(rows));
+        index = new FoodNameIndex();
+        ReflectionTestUtils.setField(index, "foodRepository", foodRepository);
+        // 測試中只手動重建，背景重建不會在測試期間執行
+        ReflectionTestUtils.setField(index, "rebuildDelayMs", 3_600_000L);
+        index.init();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        index.shutdown();
+    }
+
+    private void addRow(long id, String name, boolean favorite) {
+        FoodIndexView row = mock(FoodIndexView.class);
+        when(row.getId()).thenReturn(id);
+        when(row.getName()).thenReturn(name);
+        when(row.getIsFavorite()).thenReturn(favorite);
+        rows.add(row);
+    }
+
+    private static Food food(long id, String name) {
+        Food food = new Food();
+        food.setId(id);
+        food.setName(name);
+        return food;
+    }
+
+    private List<Long> suggestIds(String query, int limit, List<String> recent) {
+        List<Long> ids = new ArrayList<>();
+        for (FoodNameIndex.Entry entry : index.suggest(query, limit, recent)) {
+            ids.add(entry.getId());
+        }
+        return ids;
+    }
+
+    @Test
+    public void testPrefixMatchesRankBeforeInfixMatches() {
+        addRow(1L, "紅燒牛肉", true);
+        addRow(2L, "牛肉麵", false);
+        addRow(3L, "牛奶", false);
+        addRow(4L, "滷牛腱", false);
+        index.rebuild();
+
+        // 開頭相符（名稱短者優先）> 最愛 > 其他
+        assertEquals(Arrays.asList(3L, 2L, 1L, 4L), suggestIds("牛", 10, null));
+        assertEquals(Arrays.asList(3L, 2L), suggestIds("牛", 2, null));
+    }
+
+    @Test
+    public void testRecentTermsBreakTiesWithinSameTier() {
+        addRow(1L, "炸雞排", false);
+        addRow(2L, "鹽酥雞", false);
+        index.rebuild();
+
+        // 同分同長度時 ID 新者在前；符合近期搜尋詞者優先
+        assertEquals(Arrays.asList(2L, 1L), suggestIds("雞", 10, null));
+        assertEquals(Arrays.asList(1L, 2L), suggestIds("雞", 10, Collections.singletonList("炸雞")));
+    }
+
+    @Test
+    public void testPrefixMatchIsNotLostBehindManyInfixSuffixes() {
+        // 「雞a…」的後綴排在「雞排」之前，數量超過舊的掃描上限
+        for (int i = 0; i < 600; i++) {
+            addRow(1000L + i, "炸雞a" + i, false);
+        }
+        addRow(1L, "雞排", false);
+        index.rebuild();
+
+        assertEquals(Collections.singletonList(1L), suggestIds("雞", 1, null));
+        List<Long> all = suggestIds("雞", 1000, null);
+        assertEquals(601, all.size());
+        assertEquals(1L, all.get(0).longValue());
+    }
+
+    @Test
+    public void testPendingSaveAndDeleteOverrideSnapshot() {
+        addRow(1L, "白飯", false);
+        addRow(2L, "糙米飯", false);
+        index.rebuild();
+
+        index.onFoodSaved(food(1L, "白粥"));
+        index.onFoodSaved(food(3L, "炒飯"));
+        index.onFoodDeleted(2L);
+
+        assertEquals(Collections.singletonList(3L), suggestIds("飯", 10, null));
+        assertEquals(Collections.singletonList(1L), suggestIds("粥", 10, null));
+
+        // 重建後資料庫已反映異動，結果不變
+        rows.clear();
+        addRow(1L, "白粥", false);
+        addRow(3L, "炒飯", false);
+        index.rebuild();
+        assertEquals(Collections.singletonList(3L), suggestIds("飯", 10, null));
+        assertEquals(Collections.singletonList(1L), suggestIds("粥", 10, null));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    public void testBlankQueryReturnsNothing() {
+        addRow(1L, "白飯", false);
+        index.rebuild();
+        assertTrue(index.suggest("  ", 10, null).isEmpty());
+        assertTrue(index.suggest(null, 10, null).isEmpty());
+        assertTrue(index.suggest("飯", 0, null).isEmpty());
+    }
+}
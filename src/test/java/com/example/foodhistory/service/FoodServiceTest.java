@@ -2,12 +2,21 @@ package com.example.foodhistory.service;
 
 import com.example.foodhistory.model.Food;
 import com.example.foodhistory.repository.FoodRepository;
+import com.example.foodhistory.repository.projection.FoodListView;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
@@ -20,6 +29,15 @@ public class FoodServiceTest {
     @Mock
     private FoodRepository foodRepository;
 
+    @Spy
+    private SearchResultCache searchResultCache = new SearchResultCache();
+
+    @Mock
+    private FoodNameIndex foodNameIndex;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     @InjectMocks
     private FoodService foodService;
 
@@ -64,5 +82,73 @@ public class FoodServiceTest {
         doNothing().when(foodRepository).deleteById(1L);
         foodService.deleteFood(1L);
         verify(foodRepository).deleteById(1L);
+        verify(eventPublisher).publishEvent(argThat((Object event) -> event instanceof FoodChangeEvent
+                && ((FoodChangeEvent) event).getOp() == FoodChangeEvent.Op.DELETE
+                && ((FoodChangeEvent) event).getFoodId() == 1L));
+    }
+
+    @Test
+    public void testSearchFoodsPagedUsesCache() {
+        Pageable pageable = PageRequest.of(0, 12, Sort.by("id").descending());
+        Food food = new Food();
+        food.setId(7L);
+        food.setName("白飯");
+        when(foodRepository.findByNameContainingIgnoreCase("飯", pageable))
+                .thenReturn(new PageImpl<>(Collections.singletonList(food), pageable, 1));
+        when(foodRepository.findAllById(Arrays.asList(7L))).thenReturn(Collections.singletonList(food));
+
+        foodService.searchFoods("飯", pageable);
+        Page<Food> cached = foodService.searchFoods(" 飯 ", pageable);
+
+        assertEquals(Collections.singletonList(food), cached.getContent());
+        assertEquals(1L, cached.getTotalElements());
+        verify(foodRepository, times(1)).findByNameContainingIgnoreCase("飯", pageable);
+        assertEquals(1L, searchResultCache.getStats().get("hits"));
+    }
+
+    @Test
+    public void testSaveFoodInvalidatesMatchingKeywordOnly() {
+        Pageable pageable = PageRequest.of(0, 12);
+        when(foodRepository.findByNameContainingIgnoreCase(anyString(), eq(pageable)))
+                .thenReturn(new PageImpl<>(Collections.emptyList(), pageable, 0));
+        foodService.searchFoods("飯", pageable);
+        foodService.searchFoods("麵", pageable);
+
+        Food food = new Food();
+        food.setName("炒飯");
+        when(foodRepository.save(food)).thenReturn(food);
+        foodService.saveFood(food);
+
+        foodService.searchFoods("飯", pageable);
+        foodService.searchFoods("麵", pageable);
+        verify(foodRepository, times(2)).findByNameContainingIgnoreCase("飯", pageable);
+        verify(foodRepository, times(1)).findByNameContainingIgnoreCase("麵", pageable);
+    }
+
+    @Test
+    public void testSearchFoodViewsSharesCacheWithEntitySearch() {
+        Pageable pageable = PageRequest.of(0, 12, Sort.by("id").descending());
+        Food food = new Food();
+        food.setId(7L);
+        when(foodRepository.findByNameContainingIgnoreCase("飯", pageable))
+                .thenReturn(new PageImpl<>(Collections.singletonList(food), pageable, 1));
+        FoodListView view = mock(FoodListView.class);
+        when(view.getId()).thenReturn(7L);
+        when(foodRepository.findListViewsByIdIn(Arrays.asList(7L))).thenReturn(Collections.singletonList(view));
+
+        foodService.searchFoods("飯", pageable);
+        Page<FoodListView> cached = foodService.searchFoodViews("飯", pageable);
+
+        assertEquals(Collections.singletonList(view), cached.getContent());
+        verify(foodRepository, never()).findListViewsByNameContainingIgnoreCase(anyString(), any(Pageable.class));
+        verify(foodRepository, never()).findAllById(anyIterable());
+    }
+
+    @Test
+    public void testFavoriteRecommendationsLimitedInQuery() {
+        when(foodRepository.findListViewsByIsFavoriteTrueOrderByNameAsc(PageRequest.of(0, 5)))
+                .thenReturn(Collections.emptyList());
+        assertEquals(Collections.emptyList(), foodService.getFavoriteRecommendations(5));
+        verify(foodRepository, never()).findByIsFavoriteTrueOrderByNameAsc();
     }
 }
@@ -0,0 +1,132 @@
+package com.example.foodhistory.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FuzzyNameMatcherTest {
+
+    private FuzzyNameMatcher matcher;
+
+    @BeforeEach
+    public void setUp() {
+        String[] names = {"蛋炒飯", "番茄炒蛋", "牛肉麵", "白飯", "Rice Bowl"};
+        long[] ids = {1L, 2L, 3L, 4L, 5L};
+        matcher = new FuzzyNameMatcher(ids, names);
+    }
+
+    @Test
+    public void testPhoneticKeys() {
+        assertEquals("danchaofan", PhoneticKeys.pinyin("蛋炒飯"));
+        assertEquals("danchaofan", PhoneticKeys.pinyin("ㄉㄢˋㄔㄠˇㄈㄢˋ"));
+        assertEquals("danchaofan", PhoneticKeys.pinyin("Dan Chao Fan"));
+        assertEquals("dcf", PhoneticKeys.initials("蛋炒飯"));
+    }
+
+    @Test
+    public void testHomophoneTypo() {
+        // 「反」與「飯」同音
+        assertEquals(1L, firstId("炒反"));
+    }
+
+    @Test
+    public void testCharacterTypo() {
+        assertEquals(2L, firstId("番茄炒旦"));
+    }
+
+    @Test
+    public void testPinyinZhuyinAndInitials() {
+        assertEquals(3L, firstId("niuroumian"));
+        assertEquals(1L, firstId("ㄔㄠˇㄈㄢˋ"));
+        assertEquals(1L, firstId("dcf"));
+    }
+
+    @Test
+    public void testLatinTypo() {
+        assertEquals(5L, firstId("rize"));
+    }
+
+    @Test
+    public void testNoMatch() {
+        assertTrue(matcher.match(FuzzyNameMatcher.prepare("xyz"), 10).isEmpty());
+    }
+
+    @Test
+    public void testMatchOne() {
+        FuzzyNameMatcher.Match match = FuzzyNameMatcher.matchOne(FuzzyNameMatcher.prepare("炒反"), 9L, "蛋炒飯");
+        assertEquals(9L, match.getId());
+        assertEquals(0, match.getDistance());
+    }
+
+    /**
+     * 效能基準：10 萬筆食物下模糊查詢的 p95 延遲需在預算內
+     * 執行方式：mvn test -Dtest=FuzzyNameMatcherTest -Dbenchmark=true
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    public void benchmarkLatencyAt100kFoods() {
+        Random random = new Random(42);
+        int count = 100_000;
+        long[] ids = new long[count];
+        String[] names = new String[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = i;
+            StringBuilder name = new StringBuilder();
+            int length = 2 + random.nextInt(6);
+            for (int j = 0; j < length; j++) {
+                name.append((char) (0x4e00 + random.nextInt(3000)));
+            }
+            names[i] = name.toString();
+        }
+
+        long buildStart = System.nanoTime();
+        FuzzyNameMatcher big = new FuzzyNameMatcher(ids, names);
+        long buildMillis = (System.nanoTime() - buildStart) / 1_000_000;
+
+        List<String> queries = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            String name = names[random.nextInt(count)];
+            switch (i % 3) {
+                case 0:
+                    queries.add(name.substring(0, 2));
+                    break;
+                case 1:
+                    queries.add(PhoneticKeys.pinyin(name));
+                    break;
+                default:
+                    queries.add(name.substring(1) + "菜");
+            }
+        }
+        // 暖機
+        for (int i = 0; i < 1000; i++) {
+            big.match(FuzzyNameMatcher.prepare(queries.get(i)), 50);
+        }
+        long[] latencies = new long[queries.size() - 1000];
+        for (int i = 1000; i < queries.size(); i++) {
+            long start = System.nanoTime();
+            big.match(FuzzyNameMatcher.prepare(queries.get(i)), 50);
+            latencies[i - 1000] = System.nanoTime() - start;
+        }
+        Arrays.sort(latencies);
+        double p50 = latencies[latencies.length / 2] / 1e6;
+        double p95 = latencies[(int) (latencies.length * 0.95)] / 1e6;
+        System.out.printf("Fuzzy match benchmark: %d foods, build %d ms, p50 %.2f ms, p95 %.2f ms%n",
+                count, buildMillis, p50, p95);
+        assertFalse(p95 > 50.0, "p95 latency " + p95 + " ms exceeds 50 ms budget");
+    }
+
+    private long firstId(String query) {
+        List<FuzzyNameMatcher.Match> matches = matcher.match(FuzzyNameMatcher.prepare(query), 10);
+        assertFalse(matches.isEmpty(), "no match for " + query);
+        return matches.get(0).getId();
+    }
+}
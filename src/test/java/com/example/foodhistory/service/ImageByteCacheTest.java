@@ -0,0 +1,95 @@
+package com.example.foodhistory.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class ImageByteCacheTest {
+
+    @TempDir
+    Path imageDir;
+
+    private FileStorageService fileStorageService;
+
+    @BeforeEach
+    public void setUp() {
+        fileStorageService = new FileStorageService();
+        ReflectionTestUtils.setField(fileStorageService, "imageStoragePath", imageDir.toString());
+        ReflectionTestUtils.setField(fileStorageService, "imageCacheMaxBytes", 25L);
+        ReflectionTestUtils.setField(fileStorageService, "imageCacheMaxEntryBytes", 10L);
+        fileStorageService.init();
+    }
+
+    @Test
+    public void testHitAfterFirstLoad() throws Exception {
+        write("1.jpg", "0123456789");
+
+        assertEquals("0123456789", read("1.jpg"));
+        assertEquals("0123456789", read("1.jpg"));
+
+        Map<String, Object> stats = fileStorageService.getImageCacheStats();
+        assertEquals(1L, stats.get("hits"));
+        assertEquals(1L, stats.get("misses"));
+        assertEquals(10L, stats.get("bytes"));
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsedByBytes() throws Exception {
+        write("1.jpg", "aaaaaaaaaa");
+        write("2.jpg", "bbbbbbbbbb");
+        write("3.jpg", "cccccccccc");
+
+        read("1.jpg");
+        read("2.jpg");
+        read("1.jpg");
+        read("3.jpg");
+
+        Map<String, Object> stats = fileStorageService.getImageCacheStats();
+        assertEquals(1L, stats.get("evictions"));
+        assertEquals(20L, stats.get("bytes"));
+        // 2.jpg 最久未使用，已被淘汰
+        read("1.jpg");
+        read("2.jpg");
+        assertEquals(2L, fileStorageService.getImageCacheStats().get("hits"));
+    }
+
+    @Test
+    public void testSkipsLargeImages() throws Exception {
+        write("1.jpg", "0123456789abc");
+        assertNull(fileStorageService.getImageBytes(fileStorageService.getImageMetadata("1.jpg")));
+    }
+
+    @Test
+    public void testReplaceInvalidatesCachedBytes() throws Exception {
+        write("1.jpg", "old");
+        assertEquals("old", read("1.jpg"));
+
+        Path temp = fileStorageService.createTempImageFile();
+        Files.write(temp, "newer".getBytes(StandardCharsets.US_ASCII));
+        fileStorageService.replaceImage("1.jpg", temp);
+
+        assertEquals("newer", read("1.jpg"));
+        assertEquals(1L, fileStorageService.getImageCacheStats().get("invalidations"));
+    }
+
+    private void write(String filename, String content) throws Exception {
+        Files.write(imageDir.resolve(filename), content.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private String read(String filename) throws Exception {
+        ByteBuffer bytes = fileStorageService.getImageBytes(fileStorageService.getImageMetadata(filename));
+        byte[] content = new byte[bytes.remaining()];
+        bytes.get(content);
+        return new String(content, StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.foodhistory.service;
+
+import com.example.foodhistory.cluster.LocalClusterBus;
+import com.example.foodhistory.model.ImageJob;
+import com.example.foodhistory.repository.FoodRepository;
+import com.example.foodhistory.repository.ImageJobRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+public class ImageProcessingServiceTest {
+
+    private ImageJobRepository imageJobRepository;
+    private FoodRepository foodRepository;
+    private FileStorageService fileStorageService;
+    private ApplicationEventPublisher eventPublisher;
+    private ImageProcessingService service;
+
+    @BeforeEach
+    public void setUp() {
+        imageJobRepository = mock(ImageJobRepository.class);
+        foodRepository = mock(FoodRepository.class);
+        fileStorageService = mock(FileStorageService.class);
+        eventPublisher = mock(ApplicationEventPublisher.class);
+        service = new ImageProcessingService();
+        ReflectionTestUtils.setField(service, "imageJobRepository", imageJobRepository);
+        ReflectionTestUtils.setField(service, "foodRepository", foodRepository);
+        ReflectionTestUtils.setField(service, "fileStorageService", fileStorageService);
+        ReflectionTestUtils.setField(service, "eventPublisher", eventPublisher);
+        ReflectionTestUtils.setField(service, "clusterBus", new LocalClusterBus("node-a"));
+    }
+
+    @Test
+    public void testJobClaimedByAnotherWorkerIsSkipped() {
+        when(imageJobRepository.claim(eq(1L), eq(ImageJob.Status.PENDING), eq(ImageJob.Status.RUNNING),
+                eq("node-a"), any())).thenReturn(0);
+
+        service.run(1L);
+
+        verify(imageJobRepository, never()).findById(anyLong());
+        verifyNoInteractions(fileStorageService, foodRepository, eventPublisher);
+    }
+
+    @Test
+    public void testResultIsDroppedWhenJobWasTakenOver() {
+        when(imageJobRepository.claim(eq(1L), eq(ImageJob.Status.PENDING), eq(ImageJob.Status.RUNNING),
+                eq("node-a"), any())).thenReturn(1);
+        ImageJob job = new ImageJob();
+        job.setId(1L);
+        job.setFoodId(7L);
+        job.setFilename("7.jpg");
+        job.setStatus(ImageJob.Status.RUNNING);
+        job.setAttempts(1);
+        when(imageJobRepository.findById(1L)).thenReturn(Optional.of(job));
+        // 逾時期間已被其他節點改回 PENDING 並重新認領
+        when(imageJobRepository.finish(eq(1L), eq("node-a"), eq(ImageJob.Status.RUNNING), eq(ImageJob.Status.DONE),
+                isNull(), any())).thenReturn(0);
+
+        service.run(1L);
+
+        verify(foodRepository, never()).updateImageProcessing(anyLong(), anyString(), anyBoolean());
+        verifyNoInteractions(eventPublisher);
+    }
+}
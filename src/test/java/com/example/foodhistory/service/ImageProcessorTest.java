@@ -0,0 +1,90 @@
+package com.example.foodhistory.service;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ImageProcessorTest {
+
+    private final ImageProcessor processor = new ImageProcessor(1600, 0.85f, 40000000);
+
+    @Test
+    public void testScalesDownLargeJpeg() throws Exception {
+        byte[] jpeg = encode(new BufferedImage(4000, 3000, BufferedImage.TYPE_INT_RGB), "jpeg");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        assertTrue(processor.process(jpeg, new ByteArrayInputStream(jpeg), "image/jpeg", out));
+
+        BufferedImage result = ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(1600, result.getWidth());
+        assertEquals(1200, result.getHeight());
+    }
+
+    @Test
+    public void testKeepsSmallPngSize() throws Exception {
+        byte[] png = encode(new BufferedImage(200, 100, BufferedImage.TYPE_INT_ARGB), "png");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        assertTrue(processor.process(png, new ByteArrayInputStream(png), "image/png", out));
+
+        BufferedImage result = ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(200, result.getWidth());
+        assertEquals(100, result.getHeight());
+    }
+
+    @Test
+    public void testRejectsTooManyPixelsBeforeDecoding() throws Exception {
+        byte[] png = encode(new BufferedImage(300, 200, BufferedImage.TYPE_INT_RGB), "png");
+        ImageProcessor limited = new ImageProcessor(1600, 0.85f, 300 * 200 - 1);
+
+        assertThrows(InvalidImageException.class,
+                () -> limited.process(png, new ByteArrayInputStream(png), "image/png", new ByteArrayOutputStream()));
+    }
+
+    @Test
+    public void testSkipsGif() throws Exception {
+        byte[] gif = encode(new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB), "gif");
+        assertFalse(processor.process(gif, new ByteArrayInputStream(gif), "image/gif", new ByteArrayOutputStream()));
+    }
+
+    @Test
+    public void testReadExifOrientation() {
+        // SOI + APP1(Exif, big-endian TIFF, IFD0 只有 Orientation = 6) + SOS
+        byte[] exif = {
+            (byte) 0xFF, (byte) 0xD8,
+            (byte) 0xFF, (byte) 0xE1, 0, 30, 'E', 'x', 'i', 'f', 0, 0,
+            'M', 'M', 0, 42, 0, 0, 0, 8,
+            0, 1, 0x01, 0x12, 0, 3, 0, 0, 0, 1, 0, 6, 0, 0,
+            (byte) 0xFF, (byte) 0xDA
+        };
+        assertEquals(6, ImageProcessor.readExifOrientation(exif));
+        assertEquals(1, ImageProcessor.readExifOrientation(new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xDA}));
+    }
+
+    @Test
+    public void testOrientRotatesClockwise() {
+        BufferedImage image = new BufferedImage(3, 2, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, 0xFF0000);
+
+        BufferedImage rotated = ImageProcessor.orient(image, 6);
+
+        assertEquals(2, rotated.getWidth());
+        assertEquals(3, rotated.getHeight());
+        // 左上角旋轉 90 度後到右上角
+        assertEquals(0xFF0000, rotated.getRGB(1, 0) & 0xFFFFFF);
+    }
+
+    private static byte[] encode(BufferedImage image, String format) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, format, out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.foodhistory.service;
+
+import com.example.foodhistory.repository.FoodRepository;
+import com.example.foodhistory.repository.projection.FoodImageView;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.when;
+
+public class ImageReconciliationServiceTest {
+
+    @TempDir
+    Path imageDir;
+
+    @Mock
+    private FoodRepository foodRepository;
+
+    @InjectMocks
+    private ImageReconciliationService reconciliationService;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        FileStorageService fileStorageService = new FileStorageService();
+        ReflectionTestUtils.setField(fileStorageService, "imageStoragePath", imageDir.toString());
+        fileStorageService.init();
+        ReflectionTestUtils.setField(reconciliationService, "fileStorageService", fileStorageService);
+        ReflectionTestUtils.setField(reconciliationService, "batchPauseMs", 0L);
+    }
+
+    @Test
+    public void testDeletesOldOrphansAndFlagsDanglingReferences() throws Exception {
+        write("1.jpg", true);
+        write("1.jpg.webp", true);
+        write("2.png", true);
+        write("2.png.webp", true);
+        write("3.jpg", false);
+        write(".upload-123.tmp", true);
+        write("notes.txt", true);
+        when(foodRepository.findImagePathsIn(anyCollection())).thenReturn(Collections.singletonList("1.jpg"));
+        when(foodRepository.findByImagePathIsNotNullAndIdGreaterThanOrderByIdAsc(anyLong(), any()))
+                .thenReturn(Arrays.asList(view(1L, "1.jpg"), view(4L, "4.jpg")));
+
+        Map<String, Object> report = reconciliationService.reconcile();
+
+        assertTrue(Files.exists(imageDir.resolve("1.jpg")));
+        assertTrue(Files.exists(imageDir.resolve("1.jpg.webp")));
+        assertFalse(Files.exists(imageDir.resolve("2.png")));
+        assertFalse(Files.exists(imageDir.resolve("2.png.webp")));
+        // 剛上傳、尚未寫入資料庫的檔案不刪
+        assertTrue(Files.exists(imageDir.resolve("3.jpg")));
+        assertFalse(Files.exists(imageDir.resolve(".upload-123.tmp")));
+        assertTrue(Files.exists(imageDir.resolve("notes.txt")));
+
+        assertEquals(2L, report.get("orphanFiles"));
+        assertEquals(1L, report.get("tempFiles"));
+        assertEquals(12L, report.get("reclaimedBytes"));
+        assertEquals(1L, report.get("danglingReferences"));
+        assertEquals(Collections.singletonList(4L), report.get("danglingFoodIds"));
+    }
+
+    @Test
+    public void testOriginalName() {
+        assertEquals("12.jpg", FileStorageService.originalName("12.jpg"));
+        assertEquals("12.jpg", FileStorageService.originalName("12.jpg.webp"));
+        assertEquals("12.png", FileStorageService.originalName("12.png.avif"));
+        assertNull(FileStorageService.originalName("12.webp"));
+        assertNull(FileStorageService.originalName("readme.txt"));
+    }
+
+    private void write(String name, boolean old) throws Exception {
+        Path file = imageDir.resolve(name);
+        Files.write(file, "abcd".getBytes());
+        if (old) {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() - 2 * 60 * 60 * 1000L));
+        }
+    }
+
+    private static FoodImageView view(Long id, String imagePath) {
+        return new FoodImageView() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public String getImagePath() {
+                return imagePath;
+            }
+        };
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.foodhistory.service;
+
+import com.example.foodhistory.cluster.ClusterBus;
+import com.example.foodhistory.cluster.ClusterMessage;
+import com.example.foodhistory.model.SearchHistory;
+import com.example.foodhistory.repository.SearchHistoryRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class SearchHistoryServiceTest {
+
+    private SearchHistoryRepository repository;
+    private ClusterBus clusterBus;
+    private SearchHistoryService service;
+    private ClusterBus.Listener listener;
+
+    @BeforeEach
+    public void setUp() {
+        repository = mock(SearchHistoryRepository.class);
+        clusterBus = mock(ClusterBus.class);
+        when(clusterBus.getNodeId()).thenReturn("node-a");
+        service = new SearchHistoryService();
+        ReflectionTestUtils.setField(service, "searchHistoryRepository", repository);
+        ReflectionTestUtils.setField(service, "clusterBus", clusterBus);
+        service.init();
+        ArgumentCaptor<ClusterBus.Listener> captor = ArgumentCaptor.forClass(ClusterBus.Listener.class);
+        verify(clusterBus).subscribe(eq(SearchHistoryService.TOPIC), captor.capture());
+        listener = captor.getValue();
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        service.shutdown();
+    }
+
+    @Test
+    public void testSearchOnOtherNodeInvalidatesCachedHistory() {
+        when(repository.findByUsernameOrderBySearchedAtDesc("alice")).thenReturn(rows("白飯"));
+        assertEquals(Collections.singletonList("白飯"), service.getRecentSearches("alice"));
+
+        // 其他節點記錄了新的搜尋
+        when(repository.findByUsernameOrderBySearchedAtDesc("alice")).thenReturn(rows("麵", "白飯"));
+        assertEquals(Collections.singletonList("白飯"), service.getRecentSearches("alice"));
+        listener.onMessage(new ClusterMessage(1, "m1", "node-b", SearchHistoryService.TOPIC, "alice"));
+
+        assertEquals(Arrays.asList("麵", "白飯"), service.getRecentSearches("alice"));
+    }
+
+    @Test
+    public void testOwnMessagesKeepCachedHistory() {
+        when(repository.findByUsernameOrderBySearchedAtDesc("alice")).thenReturn(rows("白飯"));
+        service.getRecentSearches("alice");
+        when(repository.findByUsernameOrderBySearchedAtDesc("alice")).thenReturn(rows("麵"));
+
+        listener.onMessage(new ClusterMessage(1, "m1", "node-a", SearchHistoryService.TOPIC, "alice"));
+
+        assertEquals(Collections.singletonList("白飯"), service.getRecentSearches("alice"));
+    }
+
+    // 新到舊
+    private static List<SearchHistory> rows(String... keywords) {
+        List<SearchHistory> rows = new ArrayList<>();
+        for (String keyword : keywords) {
+            SearchHistory history = new SearchHistory();
+            history.setUsername("alice");
+            history.setKeyword(keyword);
+            history.setSearchedAt(new Date());
+            rows.add(history);
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,291 @@
+package com.example.foodhistory.session;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 測試用的本機 Redis 相容服務（Redis 的替身）
+ * 只實作 RESP2 與 RedisSessionStore 用到的命令：HGETALL、HSET、HSETNX、HDEL、PEXPIREAT、PERSIST、DEL、RENAME，
+ * 以及連線時可能送出的 PING、AUTH、SELECT、QUIT。key 與欄位以 ISO-8859-1 字串保存，位元組不會失真。
+ */
+final class FakeRedisServer implements AutoCloseable {
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private final Map<String, Map<String, byte[]>> hashes = new HashMap<>();
+    private final Map<String, Long> expireAt = new HashMap<>();
+
+    final AtomicInteger commands = new AtomicInteger();
+
+    FakeRedisServer() throws IOException {
+        serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        executor.execute(this::acceptLoop);
+    }
+
+    int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * 目前的 key（已過期的不列出）
+     */
+    synchronized List<String> keys() {
+        List<String> keys = new ArrayList<>();
+        for (String key : new ArrayList<>(hashes.keySet())) {
+            if (live(key) != null) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+
+    synchronized Long expireAt(String key) {
+        return expireAt.get(key);
+    }
+
+    /**
+     * 讓 key 立即過期（模擬 TTL 到期）
+     */
+    synchronized void expire(String key) {
+        expireAt.put(key, 0L);
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        executor.shutdownNow();
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                executor.execute(() -> serve(socket));
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (Socket s = socket;
+             InputStream in = new BufferedInputStream(s.getInputStream());
+             OutputStream out = new BufferedOutputStream(s.getOutputStream())) {
+            while (true) {
+                List<byte[]> command = readCommand(in);
+                if (command == null) {
+                    return;
+                }
+                commands.incrementAndGet();
+                String name = text(command.get(0)).toUpperCase();
+                execute(name, command, out);
+                out.flush();
+                if ("QUIT".equals(name)) {
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            // 連線中斷
+        }
+    }
+
+    private synchronized void execute(String name, List<byte[]> args, OutputStream out) throws IOException {
+        switch (name) {
+            case "PING":
+                simple(out, "PONG");
+                break;
+            case "AUTH":
+            case "SELECT":
+            case "QUIT":
+                simple(out, "OK");
+                break;
+            case "HGETALL": {
+                Map<String, byte[]> hash = live(text(args.get(1)));
+                int size = hash == null ? 0 : hash.size();
+                out.write(("*" + size * 2 + "\r\n").getBytes(StandardCharsets.US_ASCII));
+                if (hash != null) {
+                    for (Map.Entry<String, byte[]> field : hash.entrySet()) {
+                        bulk(out, field.getKey().getBytes(StandardCharsets.ISO_8859_1));
+                        bulk(out, field.getValue());
+                    }
+                }
+                break;
+            }
+            case "HSET": {
+                Map<String, byte[]> hash = hashForWrite(text(args.get(1)));
+                int added = 0;
+                for (int i = 2; i + 1 < args.size(); i += 2) {
+                    if (hash.put(text(args.get(i)), args.get(i + 1)) == null) {
+                        added++;
+                    }
+                }
+                integer(out, added);
+                break;
+            }
+            case "HSETNX": {
+                Map<String, byte[]> hash = hashForWrite(text(args.get(1)));
+                integer(out, hash.putIfAbsent(text(args.get(2)), args.get(3)) == null ? 1 : 0);
+                break;
+            }
+            case "HDEL": {
+                Map<String, byte[]> hash = live(text(args.get(1)));
+                int removed = 0;
+                for (int i = 2; hash != null && i < args.size(); i++) {
+                    if (hash.remove(text(args.get(i))) != null) {
+                        removed++;
+                    }
+                }
+                integer(out, removed);
+                break;
+            }
+            case "PEXPIREAT": {
+                String key = text(args.get(1));
+                boolean exists = live(key) != null;
+                if (exists) {
+                    expireAt.put(key, Long.parseLong(text(args.get(2))));
+                }
+                integer(out, exists ? 1 : 0);
+                break;
+            }
+            case "PERSIST":
+                integer(out, expireAt.remove(text(args.get(1))) != null ? 1 : 0);
+                break;
+            case "DEL": {
+                int removed = 0;
+                for (int i = 1; i < args.size(); i++) {
+                    String key = text(args.get(i));
+                    if (live(key) != null) {
+                        removed++;
+                    }
+                    hashes.remove(key);
+                    expireAt.remove(key);
+                }
+                integer(out, removed);
+                break;
+            }
+            case "RENAME": {
+                String from = text(args.get(1));
+                String to = text(args.get(2));
+                Map<String, byte[]> hash = live(from);
+                if (hash == null) {
+                    error(out, "ERR no such key");
+                    break;
+                }
+                hashes.remove(from);
+                Long expiry = expireAt.remove(from);
+                hashes.put(to, hash);
+                if (expiry != null) {
+                    expireAt.put(to, expiry);
+                } else {
+                    expireAt.remove(to);
+                }
+                simple(out, "OK");
+                break;
+            }
+            default:
+                error(out, "ERR unknown command '" + name + "'");
+        }
+    }
+
+    private Map<String, byte[]> live(String key) {
+        Long expiry = expireAt.get(key);
+        if (expiry != null && expiry <= System.currentTimeMillis()) {
+            hashes.remove(key);
+            expireAt.remove(key);
+            return null;
+        }
+        return hashes.get(key);
+    }
+
+    private Map<String, byte[]> hashForWrite(String key) {
+        Map<String, byte[]> hash = live(key);
+        if (hash == null) {
+            hash = new LinkedHashMap<>();
+            hashes.put(key, hash);
+        }
+        return hash;
+    }
+
+    private static List<byte[]> readCommand(InputStream in) throws IOException {
+        int first = in.read();
+        if (first == -1) {
+            return null;
+        }
+        if (first != '*') {
+            throw new IOException("只支援 RESP 陣列格式的命令");
+        }
+        int count = Integer.parseInt(readLine(in));
+        List<byte[]> args = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            if (in.read() != '$') {
+                throw new IOException("預期 bulk string");
+            }
+            int length = Integer.parseInt(readLine(in));
+            byte[] value = new byte[length];
+            int read = 0;
+            while (read < length) {
+                int n = in.read(value, read, length - read);
+                if (n < 0) {
+                    throw new EOFException();
+                }
+                read += n;
+            }
+            readLine(in);
+            args.add(value);
+        }
+        return args;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int c;
+        while ((c = in.read()) != '\r') {
+            if (c < 0) {
+                throw new EOFException();
+            }
+            line.write(c);
+        }
+        in.read(); // \n
+        return new String(line.toByteArray(), StandardCharsets.US_ASCII);
+    }
+
+    private static String text(byte[] value) {
+        return new String(value, StandardCharsets.ISO_8859_1);
+    }
+
+    private static void simple(OutputStream out, String value) throws IOException {
+        out.write(("+" + value + "\r\n").getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static void error(OutputStream out, String message) throws IOException {
+        out.write(("-" + message + "\r\n").getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static void integer(OutputStream out, long value) throws IOException {
+        out.write((":" + value + "\r\n").getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static void bulk(OutputStream out, byte[] value) throws IOException {
+        out.write(("$" + value.length + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.write(value);
+        out.write("\r\n".getBytes(StandardCharsets.US_ASCII));
+    }
+}
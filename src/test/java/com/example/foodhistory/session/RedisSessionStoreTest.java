@@ -0,0 +1,108 @@
+package com.example.foodhistory.session;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.context.SecurityContext;
+
+import java.time.Duration;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RedisSessionStoreTest {
+
+    private static final String PREFIX = "test:session:";
+
+    private FakeRedisServer server;
+    private RedisSessionStore store;
+    private StoreSessionRepository nodeA;
+    private StoreSessionRepository nodeB;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        server = new FakeRedisServer();
+        store = new RedisSessionStore("127.0.0.1", server.getPort(), "", 0, 2000, 4, PREFIX);
+        nodeA = StoreSessionRepositoryTest.repository(store);
+        nodeB = StoreSessionRepositoryTest.repository(store);
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        store.close();
+        server.close();
+    }
+
+    @Test
+    public void testSessionIsSharedWithTtl() {
+        StoreSession created = nodeA.createSession();
+        created.setAttribute("SPRING_SECURITY_CONTEXT", StoreSessionRepositoryTest.securityContext("alice"));
+        created.setAttribute("greeting", "hello");
+        nodeA.save(created);
+
+        assertEquals(Collections.singletonList(PREFIX + created.getId()), server.keys());
+        long expectedExpiry = created.getLastAccessedTime().toEpochMilli() + Duration.ofMinutes(30).toMillis();
+        assertEquals(Long.valueOf(expectedExpiry), server.expireAt(PREFIX + created.getId()));
+
+        StoreSession loaded = nodeB.findById(created.getId());
+        assertNotNull(loaded);
+        assertFalse(loaded.isDecoded("SPRING_SECURITY_CONTEXT"));
+        SecurityContext context = loaded.getAttribute("SPRING_SECURITY_CONTEXT");
+        assertEquals("alice", context.getAuthentication().getName());
+        assertEquals("hello", loaded.getAttribute("greeting"));
+        assertEquals(created.getCreationTime(), loaded.getCreationTime());
+    }
+
+    @Test
+    public void testUpdateRenameAndRemove() {
+        StoreSession created = nodeA.createSession();
+        created.setAttribute("greeting", "hello");
+        created.setAttribute("other", "value");
+        nodeA.save(created);
+
+        StoreSession loaded = nodeB.findById(created.getId());
+        String newId = loaded.changeSessionId();
+        loaded.removeAttribute("other");
+        loaded.setAttribute("greeting", "hi");
+        nodeB.save(loaded);
+
+        assertNull(nodeA.findById(created.getId()));
+        StoreSession moved = nodeA.findById(newId);
+        assertEquals("hi", moved.getAttribute("greeting"));
+        assertEquals(Collections.singleton("greeting"), moved.getAttributeNames());
+        assertNotNull(server.expireAt(PREFIX + newId));
+    }
+
+    @Test
+    public void testExpiredAndDeletedSessionsAreGone() {
+        StoreSession first = nodeA.createSession();
+        nodeA.save(first);
+        server.expire(PREFIX + first.getId());
+        assertNull(nodeB.findById(first.getId()));
+
+        StoreSession second = nodeA.createSession();
+        nodeA.save(second);
+        nodeB.deleteById(second.getId());
+        assertNull(nodeA.findById(second.getId()));
+        assertTrue(server.keys().isEmpty());
+    }
+
+    @Test
+    public void testSaveUsesSinglePipeline() {
+        StoreSession created = nodeA.createSession();
+        nodeA.save(created);
+        StoreSession loaded = nodeB.findById(created.getId());
+        loaded.setAttribute("a", "1");
+        loaded.setAttribute("b", "2");
+        loaded.removeAttribute("missing");
+
+        int before = server.commands.get();
+        nodeB.save(loaded);
+        // HSETNX、HSET、PEXPIREAT：屬性再多也只送出固定幾個命令
+        assertEquals(3, server.commands.get() - before);
+    }
+}
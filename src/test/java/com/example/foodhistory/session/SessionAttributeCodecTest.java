@@ -0,0 +1,61 @@
+package com.example.foodhistory.session;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.context.SecurityContext;
+
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SessionAttributeCodecTest {
+
+    private final SessionAttributeCodec codec = new SessionAttributeCodec(256, getClass().getClassLoader());
+
+    @Test
+    public void testPrimitivesUseTaggedRawBytes() {
+        assertEquals(1 + "你好".getBytes(StandardCharsets.UTF_8).length, codec.encode("你好").length);
+        assertEquals(9, codec.encode(42L).length);
+        assertEquals(5, codec.encode(7).length);
+        assertEquals(1, codec.encode(Boolean.TRUE).length);
+
+        assertEquals("你好", codec.decode(codec.encode("你好")));
+        assertEquals(42L, codec.decode(codec.encode(42L)));
+        assertEquals(7, codec.decode(codec.encode(7)));
+        assertEquals(Boolean.FALSE, codec.decode(codec.encode(Boolean.FALSE)));
+        assertNull(codec.decode(codec.encode(null)));
+    }
+
+    @Test
+    public void testLargeObjectsAreCompressed() throws Exception {
+        SecurityContext context = StoreSessionRepositoryTest.securityContext("alice");
+        ByteArrayOutputStream plain = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(plain)) {
+            out.writeObject(context);
+        }
+
+        byte[] encoded = codec.encode(context);
+        assertEquals(SessionAttributeCodec.DEFLATED, encoded[0]);
+        assertTrue(encoded.length < plain.size(), encoded.length + " / " + plain.size());
+        SecurityContext decoded = (SecurityContext) codec.decode(encoded);
+        assertEquals("alice", decoded.getAuthentication().getName());
+    }
+
+    @Test
+    public void testSmallObjectsStayUncompressed() {
+        byte[] encoded = codec.encode(new ArrayList<>(Arrays.asList("a", "b")));
+        assertEquals(SessionAttributeCodec.SERIALIZED, encoded[0]);
+        assertEquals(Arrays.asList("a", "b"), codec.decode(encoded));
+    }
+
+    @Test
+    public void testNonSerializableValueIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> codec.encode(new Object()));
+    }
+}
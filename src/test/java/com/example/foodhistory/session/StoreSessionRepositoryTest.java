@@ -0,0 +1,192 @@
+package com.example.foodhistory.session;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.core.userdetails.User;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StoreSessionRepositoryTest {
+
+    private static final String SECURITY_CONTEXT = "SPRING_SECURITY_CONTEXT";
+
+    private JdbcSessionStore store;
+    private JdbcTemplate jdbcTemplate;
+    // 兩個節點各自的 repository，共用同一個資料庫
+    private StoreSessionRepository nodeA;
+    private StoreSessionRepository nodeB;
+
+    @BeforeEach
+    public void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:sessions-" + System.nanoTime() + ";DB_CLOSE_DELAY=-1");
+        dataSource.setDriverClassName("org.h2.Driver");
+        Flyway.configure().dataSource(dataSource).load().migrate();
+        store = new JdbcSessionStore(dataSource, 0);
+        store.start();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        nodeA = repository(store);
+        nodeB = repository(store);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        store.close();
+    }
+
+    static StoreSessionRepository repository(SessionStore store) {
+        SessionAttributeCodec codec = new SessionAttributeCodec(256, StoreSessionRepositoryTest.class.getClassLoader());
+        return new StoreSessionRepository(store, codec, Duration.ofMinutes(30), 60000);
+    }
+
+    static SecurityContext securityContext(String username) {
+        User user = new User(username, "", AuthorityUtils.createAuthorityList("ROLE_USER"));
+        return new SecurityContextImpl(new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+    }
+
+    @Test
+    public void testSessionIsServedByAnotherNodeWithLazyAttributes() {
+        StoreSession created = nodeA.createSession();
+        created.setAttribute(SECURITY_CONTEXT, securityContext("alice"));
+        created.setAttribute("greeting", "你好");
+        created.setAttribute("count", 3);
+        nodeA.save(created);
+
+        StoreSession loaded = nodeB.findById(created.getId());
+        assertNotNull(loaded);
+        assertEquals(3, loaded.getAttributeNames().size());
+        assertFalse(loaded.isDecoded(SECURITY_CONTEXT));
+
+        SecurityContext context = loaded.getAttribute(SECURITY_CONTEXT);
+        assertEquals("alice", context.getAuthentication().getName());
+        assertTrue(loaded.isDecoded(SECURITY_CONTEXT));
+        // 沒有讀取的屬性維持編碼狀態
+        assertFalse(loaded.isDecoded("greeting"));
+        assertEquals("你好", loaded.getAttribute("greeting"));
+        assertEquals(Integer.valueOf(3), loaded.getAttribute("count"));
+        assertEquals(created.getCreationTime().toEpochMilli(), loaded.getCreationTime().toEpochMilli());
+    }
+
+    @Test
+    public void testOnlyChangedAttributesAreWritten() {
+        StoreSession created = nodeA.createSession();
+        created.setAttribute(SECURITY_CONTEXT, securityContext("alice"));
+        created.setAttribute("greeting", "hello");
+        nodeA.save(created);
+
+        StoreSession loaded = nodeB.findById(created.getId());
+        loaded.setAttribute("greeting", "hi");
+        nodeB.save(loaded);
+        assertEquals(1L, nodeB.getStats().get("attributeWrites"));
+
+        StoreSession reloaded = nodeA.findById(created.getId());
+        assertEquals("hi", reloaded.getAttribute("greeting"));
+        SecurityContext context = reloaded.getAttribute(SECURITY_CONTEXT);
+        assertEquals("alice", context.getAuthentication().getName());
+    }
+
+    @Test
+    public void testAccessWithinTouchIntervalIsNotWritten() {
+        StoreSession created = nodeA.createSession();
+        nodeA.save(created);
+
+        StoreSession loaded = nodeB.findById(created.getId());
+        loaded.setLastAccessedTime(loaded.getLastAccessedTime().plusSeconds(1));
+        nodeB.save(loaded);
+        assertEquals(1L, nodeB.getStats().get("skippedSaves"));
+        assertEquals(0L, nodeB.getStats().get("saves"));
+
+        loaded.setLastAccessedTime(loaded.getLastAccessedTime().plusSeconds(120));
+        nodeB.save(loaded);
+        assertEquals(1L, nodeB.getStats().get("saves"));
+    }
+
+    @Test
+    public void testChangeSessionIdMovesAttributes() {
+        StoreSession created = nodeA.createSession();
+        created.setAttribute("greeting", "hello");
+        nodeA.save(created);
+        String oldId = created.getId();
+
+        StoreSession loaded = nodeB.findById(oldId);
+        String newId = loaded.changeSessionId();
+        loaded.setAttribute(SECURITY_CONTEXT, securityContext("bob"));
+        nodeB.save(loaded);
+
+        assertNull(nodeA.findById(oldId));
+        StoreSession moved = nodeA.findById(newId);
+        assertEquals("hello", moved.getAttribute("greeting"));
+        SecurityContext context = moved.getAttribute(SECURITY_CONTEXT);
+        assertEquals("bob", context.getAuthentication().getName());
+    }
+
+    @Test
+    public void testRemovedAttributeIsDeleted() {
+        StoreSession created = nodeA.createSession();
+        created.setAttribute("greeting", "hello");
+        created.setAttribute("other", "value");
+        nodeA.save(created);
+
+        StoreSession loaded = nodeB.findById(created.getId());
+        loaded.removeAttribute("greeting");
+        nodeB.save(loaded);
+
+        StoreSession reloaded = nodeA.findById(created.getId());
+        assertNull(reloaded.getAttribute("greeting"));
+        assertEquals(1, reloaded.getAttributeNames().size());
+    }
+
+    @Test
+    public void testExpiredSessionIsNotFoundAndCleanedUp() {
+        StoreSession created = nodeA.createSession();
+        created.setMaxInactiveInterval(Duration.ofSeconds(1));
+        created.setLastAccessedTime(Instant.now().minusSeconds(5));
+        created.setAttribute("greeting", "hello");
+        nodeA.save(created);
+
+        assertNull(nodeB.findById(created.getId()));
+        assertEquals(1, store.deleteExpired());
+        assertEquals(Integer.valueOf(0),
+                jdbcTemplate.queryForObject("SELECT COUNT(*) FROM app_session_attribute", Integer.class));
+    }
+
+    @Test
+    public void testUnreadableAttributeIsDropped() {
+        StoreSession created = nodeA.createSession();
+        created.setAttribute("greeting", "hello");
+        nodeA.save(created);
+        // 模擬部署後無法還原的內容
+        jdbcTemplate.update("UPDATE app_session_attribute SET attribute_bytes = ? WHERE attribute_name = 'greeting'",
+                (Object) new byte[]{SessionAttributeCodec.SERIALIZED, 1, 2, 3});
+
+        StoreSession loaded = nodeB.findById(created.getId());
+        assertNull(loaded.getAttribute("greeting"));
+        nodeB.save(loaded);
+        assertTrue(nodeA.findById(created.getId()).getAttributeNames().isEmpty());
+    }
+
+    @Test
+    public void testDeleteById() {
+        StoreSession created = nodeA.createSession();
+        created.setAttribute("greeting", "hello");
+        nodeA.save(created);
+
+        nodeB.deleteById(created.getId());
+        assertNull(nodeA.findById(created.getId()));
+    }
+}
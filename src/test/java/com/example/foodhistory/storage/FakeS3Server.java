@@ -0,0 +1,330 @@
+package com.example.foodhistory.storage;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 測試用的本機 S3 相容服務（MinIO 的替身）
+ * 只實作 S3BlobStore 用到的 path-style API：bucket HEAD / PUT、物件 PUT / GET / HEAD / DELETE、
+ * ListObjectsV2 與 multipart upload；不驗證簽章。
+ */
+final class FakeS3Server implements AutoCloseable {
+
+    private static final String XMLNS = "http://s3.amazonaws.com/doc/2006-03-01/";
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+    private final Set<String> buckets = ConcurrentHashMap.newKeySet();
+    private final Map<String, StoredObject> objects = new ConcurrentHashMap<>();
+    private final Map<String, Upload> uploads = new ConcurrentHashMap<>();
+
+    final AtomicInteger uploadedParts = new AtomicInteger();
+
+    private static final class StoredObject {
+        final byte[] content;
+        final String contentType;
+        final Map<String, String> metadata;
+        final Instant lastModified = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        final String etag;
+
+        StoredObject(byte[] content, String contentType, Map<String, String> metadata, String etag) {
+            this.content = content;
+            this.contentType = contentType;
+            this.metadata = metadata;
+            this.etag = etag;
+        }
+    }
+
+    private static final class Upload {
+        final String contentType;
+        final Map<String, String> metadata;
+        final Map<Integer, byte[]> parts = new ConcurrentHashMap<>();
+
+        Upload(String contentType, Map<String, String> metadata) {
+            this.contentType = contentType;
+            this.metadata = metadata;
+        }
+    }
+
+    FakeS3Server() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            try {
+                handle(exchange);
+            } catch (Exception e) {
+                send(exchange, 500, "application/xml", error("InternalError", String.valueOf(e)));
+            } finally {
+                exchange.close();
+            }
+        });
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    String endpoint() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws Exception {
+        String method = exchange.getRequestMethod();
+        String path = exchange.getRequestURI().getPath().substring(1);
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        int slash = path.indexOf('/');
+        String bucket = slash < 0 ? path : path.substring(0, slash);
+        String key = slash < 0 ? "" : path.substring(slash + 1);
+
+        if (key.isEmpty()) {
+            handleBucket(exchange, method, bucket, query);
+            return;
+        }
+        if (!buckets.contains(bucket)) {
+            send(exchange, 404, "application/xml", error("NoSuchBucket", bucket));
+            return;
+        }
+        String objectKey = bucket + "/" + key;
+        switch (method) {
+            case "PUT":
+                if (query.containsKey("uploadId")) {
+                    byte[] part = body(exchange);
+                    uploads.get(query.get("uploadId")).parts.put(Integer.parseInt(query.get("partNumber")), part);
+                    uploadedParts.incrementAndGet();
+                    exchange.getResponseHeaders().set("ETag", "\"" + md5(part) + "\"");
+                } else {
+                    byte[] content = body(exchange);
+                    String etag = md5(content);
+                    objects.put(objectKey, new StoredObject(content, contentType(exchange), metadata(exchange), etag));
+                    exchange.getResponseHeaders().set("ETag", "\"" + etag + "\"");
+                }
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            case "POST":
+                if (query.containsKey("uploads")) {
+                    String uploadId = UUID.randomUUID().toString();
+                    uploads.put(uploadId, new Upload(contentType(exchange), metadata(exchange)));
+                    send(exchange, 200, "application/xml", "<InitiateMultipartUploadResult xmlns=\"" + XMLNS + "\">"
+                            + "<Bucket>" + bucket + "</Bucket><Key>" + key + "</Key>"
+                            + "<UploadId>" + uploadId + "</UploadId></InitiateMultipartUploadResult>");
+                } else {
+                    body(exchange);
+                    Upload upload = uploads.remove(query.get("uploadId"));
+                    ByteArrayOutputStream content = new ByteArrayOutputStream();
+                    for (byte[] part : new TreeMap<>(upload.parts).values()) {
+                        content.write(part);
+                    }
+                    String etag = md5(content.toByteArray()) + "-" + upload.parts.size();
+                    objects.put(objectKey, new StoredObject(content.toByteArray(), upload.contentType, upload.metadata, etag));
+                    send(exchange, 200, "application/xml", "<CompleteMultipartUploadResult xmlns=\"" + XMLNS + "\">"
+                            + "<Bucket>" + bucket + "</Bucket><Key>" + key + "</Key>"
+                            + "<ETag>&quot;" + etag + "&quot;</ETag></CompleteMultipartUploadResult>");
+                }
+                return;
+            case "DELETE":
+                if (query.containsKey("uploadId")) {
+                    uploads.remove(query.get("uploadId"));
+                } else {
+                    objects.remove(objectKey);
+                }
+                exchange.sendResponseHeaders(204, -1);
+                return;
+            case "HEAD":
+            case "GET":
+                StoredObject object = objects.get(objectKey);
+                if (object == null) {
+                    if ("HEAD".equals(method)) {
+                        exchange.sendResponseHeaders(404, -1);
+                    } else {
+                        send(exchange, 404, "application/xml", error("NoSuchKey", key));
+                    }
+                    return;
+                }
+                Headers headers = exchange.getResponseHeaders();
+                headers.set("ETag", "\"" + object.etag + "\"");
+                headers.set("Last-Modified", DateTimeFormatter.RFC_1123_DATE_TIME.format(object.lastModified.atZone(ZoneOffset.UTC)));
+                headers.set("Content-Type", object.contentType);
+                for (Map.Entry<String, String> meta : object.metadata.entrySet()) {
+                    headers.set("x-amz-meta-" + meta.getKey(), meta.getValue());
+                }
+                if ("HEAD".equals(method)) {
+                    headers.set("Content-Length", String.valueOf(object.content.length));
+                    exchange.sendResponseHeaders(200, -1);
+                } else {
+                    exchange.sendResponseHeaders(200, object.content.length);
+                    try (OutputStream out = exchange.getResponseBody()) {
+                        out.write(object.content);
+                    }
+                }
+                return;
+            default:
+                send(exchange, 405, "application/xml", error("MethodNotAllowed", method));
+        }
+    }
+
+    private void handleBucket(HttpExchange exchange, String method, String bucket, Map<String, String> query) throws IOException {
+        if ("PUT".equals(method)) {
+            body(exchange);
+            buckets.add(bucket);
+            exchange.sendResponseHeaders(200, -1);
+            return;
+        }
+        if (!buckets.contains(bucket)) {
+            if ("HEAD".equals(method)) {
+                exchange.sendResponseHeaders(404, -1);
+            } else {
+                send(exchange, 404, "application/xml", error("NoSuchBucket", bucket));
+            }
+            return;
+        }
+        if ("HEAD".equals(method)) {
+            exchange.sendResponseHeaders(200, -1);
+            return;
+        }
+        // ListObjectsV2：一次回傳全部
+        String prefix = query.getOrDefault("prefix", "");
+        List<String> keys = new ArrayList<>();
+        for (String objectKey : new TreeMap<>(objects).keySet()) {
+            if (objectKey.startsWith(bucket + "/" + prefix)) {
+                keys.add(objectKey);
+            }
+        }
+        StringBuilder xml = new StringBuilder("<ListBucketResult xmlns=\"" + XMLNS + "\">")
+                .append("<Name>").append(bucket).append("</Name>")
+                .append("<Prefix>").append(prefix).append("</Prefix>")
+                .append("<KeyCount>").append(keys.size()).append("</KeyCount>")
+                .append("<MaxKeys>1000</MaxKeys><IsTruncated>false</IsTruncated>");
+        for (String objectKey : keys) {
+            StoredObject object = objects.get(objectKey);
+            xml.append("<Contents><Key>").append(objectKey.substring(bucket.length() + 1)).append("</Key>")
+                    .append("<LastModified>").append(DateTimeFormatter.ISO_INSTANT.format(object.lastModified)).append("</LastModified>")
+                    .append("<ETag>&quot;").append(object.etag).append("&quot;</ETag>")
+                    .append("<Size>").append(object.content.length).append("</Size>")
+                    .append("<StorageClass>STANDARD</StorageClass></Contents>");
+        }
+        send(exchange, 200, "application/xml", xml.append("</ListBucketResult>").toString());
+    }
+
+    /**
+     * 讀取請求內容；SDK 在 http 連線上以 aws-chunked 格式送出簽章分塊時解開
+     */
+    private static byte[] body(HttpExchange exchange) throws IOException {
+        ByteArrayOutputStream raw = new ByteArrayOutputStream();
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                raw.write(buffer, 0, read);
+            }
+        }
+        String sha256 = exchange.getRequestHeaders().getFirst("x-amz-content-sha256");
+        String encoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+        boolean chunked = (sha256 != null && sha256.startsWith("STREAMING-"))
+                || (encoding != null && encoding.contains("aws-chunked"));
+        return chunked ? decodeAwsChunked(raw.toByteArray()) : raw.toByteArray();
+    }
+
+    private static byte[] decodeAwsChunked(byte[] raw) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int pos = 0;
+        while (pos < raw.length) {
+            int lineEnd = pos;
+            while (lineEnd + 1 < raw.length && !(raw[lineEnd] == '\r' && raw[lineEnd + 1] == '\n')) {
+                lineEnd++;
+            }
+            String header = new String(raw, pos, lineEnd - pos, StandardCharsets.US_ASCII);
+            int size = Integer.parseInt(header.split(";")[0].trim(), 16);
+            pos = lineEnd + 2;
+            if (size == 0) {
+                break;
+            }
+            out.write(raw, pos, size);
+            pos += size + 2;
+        }
+        return out.toByteArray();
+    }
+
+    private static Map<String, String> metadata(HttpExchange exchange) {
+        Map<String, String> metadata = new HashMap<>();
+        for (Map.Entry<String, List<String>> header : exchange.getRequestHeaders().entrySet()) {
+            String name = header.getKey().toLowerCase();
+            if (name.startsWith("x-amz-meta-")) {
+                metadata.put(name.substring("x-amz-meta-".length()), header.getValue().get(0));
+            }
+        }
+        return metadata;
+    }
+
+    private static String contentType(HttpExchange exchange) {
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        return contentType != null ? contentType : "application/octet-stream";
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) throws IOException {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), "UTF-8");
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), "UTF-8");
+            query.put(name, value);
+        }
+        return query;
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>" + body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static String error(String code, String message) {
+        return "<Error><Code>" + code + "</Code><Message>" + message + "</Message></Error>";
+    }
+
+    private static String md5(byte[] content) throws IOException {
+        try {
+            StringBuilder hex = new StringBuilder();
+            for (byte b : MessageDigest.getInstance("MD5").digest(content)) {
+                hex.append(String.format("%02x", b & 0xFF));
+            }
+            return hex.toString();
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+}
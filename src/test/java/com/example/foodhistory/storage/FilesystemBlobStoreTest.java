@@ -0,0 +1,97 @@
+package com.example.foodhistory.storage;
+
+import com.example.foodhistory.service.FileStorageService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 兩個節點（各自的本機影像目錄）共用同一個 FilesystemBlobStore
+ */
+public class FilesystemBlobStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    private FileStorageService nodeA;
+    private FileStorageService nodeB;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        BlobStore blobStore = new FilesystemBlobStore(tempDir.resolve("shared").toString());
+        nodeA = node(blobStore, tempDir.resolve("a"));
+        nodeB = node(blobStore, tempDir.resolve("b"));
+    }
+
+    @Test
+    public void testOtherNodeReadsThroughLocalCache() throws Exception {
+        String filename = nodeA.storeImage(new ByteArrayInputStream(jpeg(100)), 1L).getFilename();
+
+        FileStorageService.ImageMetadata onA = nodeA.getImageMetadata(filename);
+        FileStorageService.ImageMetadata onB = nodeB.getImageMetadata(filename);
+        assertNotNull(onB);
+        assertTrue(onB.getPath().startsWith(tempDir.resolve("b").toRealPath()));
+        // 兩個節點送出相同的 ETag，瀏覽器與 CDN 快取不會因為換節點而失效
+        assertEquals(onA.getEtag(), onB.getEtag());
+        assertArrayEquals(Files.readAllBytes(onA.getPath()), Files.readAllBytes(onB.getPath()));
+    }
+
+    @Test
+    public void testReplaceAndDeleteAreSeenByOtherNode() throws Exception {
+        String filename = nodeA.storeImage(new ByteArrayInputStream(jpeg(100)), 2L).getFilename();
+        assertEquals(103, nodeB.getImageMetadata(filename).getLength());
+
+        nodeA.storeImage(new ByteArrayInputStream(jpeg(200)), 2L);
+        assertEquals(203, nodeB.getImageMetadata(filename).getLength());
+
+        nodeA.deleteImage(filename);
+        assertNull(nodeB.getImageMetadata(filename));
+        assertFalse(nodeB.imageExists(filename));
+    }
+
+    @Test
+    public void testListsStoredBlobs() throws Exception {
+        nodeA.storeImage(new ByteArrayInputStream(jpeg(10)), 3L);
+        nodeB.storeImage(new ByteArrayInputStream(jpeg(10)), 4L);
+
+        try (Stream<BlobInfo> blobs = nodeA.streamStoredFiles()) {
+            List<String> keys = blobs.map(BlobInfo::getKey).sorted().collect(Collectors.toList());
+            assertEquals(2, keys.size());
+            assertEquals("3.jpg", keys.get(0));
+            assertEquals("4.jpg", keys.get(1));
+        }
+    }
+
+    private static FileStorageService node(BlobStore blobStore, Path localDir) {
+        FileStorageService node = new FileStorageService();
+        ReflectionTestUtils.setField(node, "imageStoragePath", localDir.toString());
+        ReflectionTestUtils.setField(node, "blobStore", blobStore);
+        // 每次讀取都向共用儲存確認
+        ReflectionTestUtils.setField(node, "blobRevalidateMs", 0L);
+        node.init();
+        return node;
+    }
+
+    private static byte[] jpeg(int bodyLength) {
+        byte[] data = new byte[bodyLength + 3];
+        data[0] = (byte) 0xFF;
+        data[1] = (byte) 0xD8;
+        data[2] = (byte) 0xFF;
+        return data;
+    }
+}
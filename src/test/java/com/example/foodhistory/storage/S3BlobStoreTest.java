@@ -0,0 +1,95 @@
+package com.example.foodhistory.storage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class S3BlobStoreTest {
+
+    private static final long PART_SIZE = 5L * 1024 * 1024;
+
+    @TempDir
+    Path tempDir;
+
+    private FakeS3Server server;
+    private S3BlobStore store;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        server = new FakeS3Server();
+        store = new S3BlobStore(server.endpoint(), "us-east-1", "food-history", "images/",
+                "test", "test-secret", true, PART_SIZE, 3);
+        store.ensureBucket();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        store.close();
+        server.close();
+    }
+
+    @Test
+    public void testRoundTripKeepsModifiedTime() throws Exception {
+        Path source = file("source.jpg", 10);
+        store.put("1.jpg", source, "image/jpeg", 1234567890000L);
+
+        BlobInfo head = store.head("1.jpg");
+        assertNotNull(head);
+        assertEquals(10, head.getSize());
+        // 修改時間來自 metadata，而不是上傳時間，各節點算出的 ETag 才會一致
+        assertEquals(1234567890000L, head.getLastModified());
+
+        Path target = tempDir.resolve("copy.jpg");
+        BlobInfo fetched = store.get("1.jpg", target);
+        assertEquals(1234567890000L, fetched.getLastModified());
+        assertArrayEquals(Files.readAllBytes(source), Files.readAllBytes(target));
+
+        store.delete("1.jpg");
+        assertNull(store.head("1.jpg"));
+        assertNull(store.get("1.jpg", tempDir.resolve("missing.jpg")));
+    }
+
+    @Test
+    public void testLargeFileUsesParallelMultipartUpload() throws Exception {
+        Path source = file("large.jpg", (int) (PART_SIZE * 2 + 1024));
+        store.put("2.jpg", source, "image/jpeg", 1000L);
+
+        assertEquals(3, server.uploadedParts.get());
+        Path target = tempDir.resolve("large-copy.jpg");
+        store.get("2.jpg", target);
+        assertArrayEquals(Files.readAllBytes(source), Files.readAllBytes(target));
+        assertEquals(1000L, store.head("2.jpg").getLastModified());
+    }
+
+    @Test
+    public void testListStripsPrefix() throws Exception {
+        store.put("3.jpg", file("a.jpg", 5), "image/jpeg", 1000L);
+        store.put("4.jpg", file("b.jpg", 7), "image/jpeg", 1000L);
+
+        try (Stream<BlobInfo> blobs = store.list()) {
+            List<String> keys = blobs.map(BlobInfo::getKey).sorted().collect(Collectors.toList());
+            assertEquals(2, keys.size());
+            assertEquals("3.jpg", keys.get(0));
+            assertEquals("4.jpg", keys.get(1));
+        }
+    }
+
+    private Path file(String name, int length) throws Exception {
+        byte[] data = new byte[length];
+        new Random(length).nextBytes(data);
+        return Files.write(tempDir.resolve(name), data);
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.foodhistory.websocket;
+
+import com.example.foodhistory.concurrent.ConnectionLimiter;
+import com.example.foodhistory.concurrent.SerialExecutor;
+import com.example.foodhistory.concurrent.StreamDispatcher;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.PingMessage;
+import org.springframework.web.socket.PongMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ConnectionWebSocketHandlerTest {
+
+    private ConnectionWebSocketHandler handler;
+
+    @BeforeEach
+    public void setUp() {
+        StreamDispatcher dispatcher = mock(StreamDispatcher.class);
+        // 寫入直接在呼叫端執行，方便驗證
+        when(dispatcher.newConnectionExecutor()).thenAnswer(invocation -> new SerialExecutor(Runnable::run));
+        handler = new ConnectionWebSocketHandler();
+        ConnectionLimiter limiter = new ConnectionLimiter();
+        ReflectionTestUtils.setField(limiter, "streamDispatcher", dispatcher);
+        ReflectionTestUtils.setField(handler, "streamDispatcher", dispatcher);
+        ReflectionTestUtils.setField(handler, "connectionLimiter", limiter);
+        ReflectionTestUtils.setField(handler, "idleTimeoutMs", 1000L);
+    }
+
+    private static WebSocketSession session(String protocol) {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn(protocol + "-session");
+        when(session.isOpen()).thenReturn(true);
+        when(session.getAcceptedProtocol()).thenReturn(protocol);
+        return session;
+    }
+
+    @SuppressWarnings("unchecked")
+    private long lastSeen(WebSocketSession session) {
+        Map<WebSocketSession, ConnectionWebSocketHandler.Connection> sessions =
+                (Map<WebSocketSession, ConnectionWebSocketHandler.Connection>) ReflectionTestUtils.getField(handler, "sessions");
+        return sessions.get(session).lastSeen;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void setLastSeen(WebSocketSession session, long lastSeen) {
+        Map<WebSocketSession, ConnectionWebSocketHandler.Connection> sessions =
+                (Map<WebSocketSession, ConnectionWebSocketHandler.Connection>) ReflectionTestUtils.getField(handler, "sessions");
+        sessions.get(session).lastSeen = lastSeen;
+    }
+
+    @Test
+    public void testSubProtocolSelectsEncoding() throws Exception {
+        WebSocketSession binary = session(WsMessageCodec.BINARY_PROTOCOL);
+        WebSocketSession json = session(null);
+        handler.afterConnectionEstablished(binary);
+        handler.afterConnectionEstablished(json);
+
+        verify(binary).sendMessage(any(BinaryMessage.class));
+        verify(json).sendMessage(argThat((WebSocketMessage<?> m) ->
+                m instanceof TextMessage && ((TextMessage) m).getPayload().startsWith("{\"type\":\"connected\"")));
+        assertEquals(1, handler.getStats().get("binaryConnections"));
+    }
+
+    @Test
+    public void testTickPingsLiveSessionsAndEvictsIdleOnes() throws Exception {
+        WebSocketSession live = session(null);
+        WebSocketSession idle = session(null);
+        handler.afterConnectionEstablished(live);
+        handler.afterConnectionEstablished(idle);
+        setLastSeen(idle, System.currentTimeMillis() - 5000);
+
+        handler.tick();
+
+        verify(live).sendMessage(any(PingMessage.class));
+        verify(idle, never()).sendMessage(any(PingMessage.class));
+        verify(idle).close(CloseStatus.SESSION_NOT_RELIABLE);
+        assertEquals(1, handler.getConnectionCount());
+        assertEquals(1L, handler.getStats().get("evicted"));
+    }
+
+    @Test
+    public void testIdleSessionIsClosedOnItsOwnWriter() throws Exception {
+        // 寫入先排入佇列，模擬連線的寫入執行緒尚未執行
+        List<Runnable> pending = new ArrayList<>();
+        StreamDispatcher dispatcher = mock(StreamDispatcher.class);
+        when(dispatcher.newConnectionExecutor()).thenAnswer(invocation -> new SerialExecutor(pending::add));
+        ReflectionTestUtils.setField(handler, "streamDispatcher", dispatcher);
+        WebSocketSession idle = session(null);
+        handler.afterConnectionEstablished(idle);
+        setLastSeen(idle, System.currentTimeMillis() - 5000);
+
+        handler.tick();
+
+        // 共用排程只移除連線，close 交給該連線的寫入執行緒
+        verify(idle, never()).close(any(CloseStatus.class));
+        assertEquals(0, handler.getConnectionCount());
+        while (!pending.isEmpty()) {
+            pending.remove(0).run();
+        }
+        verify(idle).close(CloseStatus.SESSION_NOT_RELIABLE);
+    }
+
+    @Test
+    public void testPongRefreshesLiveness() throws Exception {
+        WebSocketSession session = session(null);
+        handler.afterConnectionEstablished(session);
+        setLastSeen(session, 0L);
+
+        handler.handleMessage(session, new PongMessage());
+
+        assertTrue(lastSeen(session) > 0L);
+        assertEquals(1L, handler.getStats().get("pongsReceived"));
+    }
+
+    @Test
+    public void testPresenceOnlyGoesToSubscribers() throws Exception {
+        WebSocketSession watcher = session(null);
+        WebSocketSession other = session(null);
+        handler.afterConnectionEstablished(watcher);
+        handler.afterConnectionEstablished(other);
+        handler.handleMessage(watcher, new TextMessage("{\"type\":\"subscribe\",\"topics\":[\"presence\"]}"));
+
+        verify(watcher).sendMessage(argThat((WebSocketMessage<?> m) ->
+                m instanceof TextMessage && ((TextMessage) m).getPayload().contains("\"connections\":2")));
+        verify(other, never()).sendMessage(argThat((WebSocketMessage<?> m) ->
+                m instanceof TextMessage && ((TextMessage) m).getPayload().startsWith("{\"type\":\"presence\"")));
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.foodhistory.websocket;
+
+import com.example.foodhistory.service.FoodChangeBatch;
+import com.example.foodhistory.service.FoodChangeEvent;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class WsMessageCodecTest {
+
+    private final WsMessageCodec codec = new WsMessageCodec();
+
+    private static FoodChangeBatch batch() {
+        Map<Long, FoodChangeEvent.Op> changes = new LinkedHashMap<>();
+        changes.put(3L, FoodChangeEvent.Op.SAVE);
+        changes.put(5L, FoodChangeEvent.Op.DELETE);
+        return new FoodChangeBatch(1700000000123L, changes);
+    }
+
+    @Test
+    public void testTextKeepsExistingJsonShape() {
+        WsMessage message = WsMessage.dataUpdated(batch());
+        assertEquals("{\"type\":\"data-updated\",\"data\":" + batch().toJson() + ",\"timestamp\":" + message.getTimestamp() + "}",
+                codec.encodeText(message));
+
+        WsMessage presence = WsMessage.presence(7);
+        assertEquals("{\"type\":\"presence\",\"data\":{\"connections\":7},\"timestamp\":" + presence.getTimestamp() + "}",
+                codec.encodeText(presence));
+    }
+
+    @Test
+    public void testBinaryDataUpdatedLayout() {
+        WsMessage message = WsMessage.dataUpdated(batch());
+        byte[] encoded = codec.encodeBinary(message);
+        assertEquals(1 + 8 + 1 + 4 + 2 * 9, encoded.length);
+        assertTrue(encoded.length < codec.encodeText(message).length());
+
+        ByteBuffer buffer = ByteBuffer.wrap(encoded);
+        assertEquals(WsMessage.Type.DATA_UPDATED.getCode(), buffer.get());
+        assertEquals(1700000000123L, buffer.getLong());
+        assertEquals(0, buffer.get());
+        assertEquals(2, buffer.getInt());
+        assertEquals(3L, buffer.getLong());
+        assertEquals(1, buffer.get());
+        assertEquals(5L, buffer.getLong());
+        assertEquals(2, buffer.get());
+    }
+
+    @Test
+    public void testBinaryReloadHasNoChanges() {
+        byte[] encoded = codec.encodeBinary(WsMessage.dataUpdated(new FoodChangeBatch(9L, null)));
+        assertEquals(14, encoded.length);
+        assertEquals(1, encoded[9]);
+    }
+
+    @Test
+    public void testDecodeClientMessages() {
+        assertEquals(WsMessage.Type.PING, codec.decode(new TextMessage("{\"type\":\"ping\"}")).getType());
+        assertEquals(WsMessage.Type.PING, codec.decode(new BinaryMessage(new byte[]{2})).getType());
+
+        WsMessage subscribe = codec.decode(new TextMessage("{\"type\":\"subscribe\",\"topics\":[\"changes\",\"presence\"]}"));
+        assertEquals(WsMessage.TOPIC_CHANGES | WsMessage.TOPIC_PRESENCE, subscribe.getTopics());
+        assertEquals(WsMessage.TOPIC_PRESENCE,
+                codec.decode(new BinaryMessage(codec.encodeBinary(WsMessage.subscribe(WsMessage.TOPIC_PRESENCE)))).getTopics());
+        assertEquals(WsMessage.TOPIC_CHANGES,
+                codec.decode(new TextMessage(codec.encodeText(WsMessage.subscribe(WsMessage.TOPIC_CHANGES)))).getTopics());
+    }
+
+    @Test
+    public void testUnknownMessagesAreIgnored() {
+        assertNull(codec.decode(new TextMessage("not json")));
+        assertNull(codec.decode(new TextMessage("{\"type\":\"unknown\"}")));
+        assertNull(codec.decode(new BinaryMessage(new byte[0])));
+        assertNull(codec.decode(new BinaryMessage(new byte[]{99})));
+    }
+}